@@ -3,6 +3,8 @@
 package net.sf.gogui.game;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import net.sf.gogui.go.*;
 import net.sf.gogui.gtp.BoardParameters;
@@ -11,69 +13,308 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
 
-/** Updates a go.Board to a node in a GameTree. */
+/** Updates a go.Board to a node in a GameTree.
+    The updater remembers the path to the node of the last update. If the
+    same board is updated again, the moves are taken back to the common
+    ancestor of the old and the new node and only the remaining nodes are
+    played. Additionally, snapshots of the board at depths that are a
+    multiple of CHECKPOINT_INTERVAL are kept in a least-recently-used cache,
+    such that a jump to a distant node only needs to replay the nodes after
+    the nearest snapshot.
+    If nodes in the tree are modified or the board is changed by other
+    means than by this class, clearCache() must be called before the next
+    update. */
 public class BoardUpdater
 {
+    /** Distance in depth between board snapshots. */
+    public static final int CHECKPOINT_INTERVAL = 32;
+
+    /** Maximum number of board snapshots in the cache. */
+    public static final int MAX_CHECKPOINTS = 64;
+
     public BoardUpdater()
     {
         m_nodes = new ArrayList<ConstNode>(400);
+        m_path = new ArrayList<ConstNode>(400);
+        m_states = new ArrayList<State>(400);
+        m_checkpoints = new LinkedHashMap<ConstNode,Checkpoint>(16, 0.75f,
+                                                                true)
+            {
+                protected boolean removeEldestEntry(Map.Entry<ConstNode,
+                                                    Checkpoint> eldest)
+                {
+                    return size() > MAX_CHECKPOINTS;
+                }
+            };
+    }
+
+    /** Forget the path of the last update and all board snapshots.
+        Needs to be called if a node in the tree was modified in a way that
+        changes the position (setup stones, player to move) or if the board
+        was modified by other means than by this class. */
+    public void clearCache()
+    {
+        m_tree = null;
+        m_board = null;
+        m_path.clear();
+        m_checkpoints.clear();
     }
 
     public void update(ConstGameTree tree, ConstNode currentNode, Board board)
     {
-        board.init(new BoardParameters(tree.getBoardSize(), tree.getBoardSize(), board.getParameters().geometry())); // TODO: GameTree should probably have width & height
+        int size = tree.getBoardSize();
+        // TODO: GameTree should probably have width & height
+        BoardParameters parameters =
+            new BoardParameters(size, size,
+                                board.getParameters().geometry());
         int handicap = tree.getGameInfoConst(currentNode).getHandicap();
+        // Positions computed by a game ruler cannot be restored by undo or
+        // by a snapshot, see GenericBoard.copyBoardState()
+        boolean useCache = ! board.isGameRulerAttached();
+        if (! useCache || tree != m_tree || handicap != m_handicap
+            || ! parameters.equals(m_parameters))
+        {
+            clearCache();
+            m_tree = tree;
+            m_handicap = handicap;
+            m_parameters = parameters;
+        }
         NodeUtil.getPathToRoot(currentNode, m_nodes);
-        int nuMoves = 0;
-        boolean isFirstPlacement = true;
-        boolean isHandicapSetupDone = false;
-        boolean isInInitialBlackMoveSequence = true;
-        for (int i = m_nodes.size() - 1; i >= 0; --i)
-        {
-            ConstNode node = m_nodes.get(i);
-            GoColor player = node.getPlayer();
-            if (node.hasSetup())
+        int last = m_nodes.size() - 1;
+        // Find the cheapest way to position the board: undo to the common
+        // ancestor of the last update, restore a snapshot or start from
+        // the empty board
+        int cost = last + 1;
+        int ancestor = getUndoAncestor(board);
+        if (ancestor >= 0)
+            cost = Math.min(cost, (m_path.size() - 1 - ancestor)
+                            + (last - ancestor));
+        Checkpoint checkpoint = null;
+        int checkpointDepth = last - last % CHECKPOINT_INTERVAL;
+        for ( ; checkpointDepth > 0 && last - checkpointDepth < cost;
+              checkpointDepth -= CHECKPOINT_INTERVAL)
+        {
+            checkpoint = m_checkpoints.get(getNode(checkpointDepth));
+            if (checkpoint != null)
+                break;
+        }
+        int start;
+        if (checkpoint != null)
+        {
+            board.copyFrom(checkpoint.m_board);
+            truncatePath(0);
+            for (int i = 0; i <= checkpointDepth; ++i)
+                m_path.add(getNode(i));
+            getState(checkpointDepth).copyFrom(checkpoint.m_state);
+            m_firstKnown = checkpointDepth;
+            start = checkpointDepth + 1;
+        }
+        else if (ancestor >= 0 && cost < last + 1)
+        {
+            State state = m_states.get(ancestor);
+            board.undo(board.getNumberMoves() - state.m_numberMoves);
+            board.setToMove(state.m_toMove);
+            truncatePath(ancestor + 1);
+            start = ancestor + 1;
+        }
+        else
+        {
+            board.init(parameters);
+            truncatePath(0);
+            m_firstKnown = 0;
+            start = 0;
+        }
+        m_board = board;
+        for (int i = start; i <= last; ++i)
+        {
+            ConstNode node = getNode(i);
+            State state = getState(i);
+            if (i == 0)
+                state.init();
+            else
+                state.copyFrom(m_states.get(i - 1));
+            apply(node, board, handicap, i, state);
+            m_path.add(node);
+            if (useCache && i > 0 && i % CHECKPOINT_INTERVAL == 0
+                && ! m_checkpoints.containsKey(node))
+                m_checkpoints.put(node, new Checkpoint(board, state));
+        }
+        if (! useCache)
+            clearCache();
+    }
+
+    /** Board snapshot with the state of the update loop after a node. */
+    private static final class Checkpoint
+    {
+        public final Board m_board;
+
+        public final State m_state = new State();
+
+        public Checkpoint(Board board, State state)
+        {
+            m_board = new Board(board.getParameters());
+            m_board.copyFrom(board);
+            m_state.copyFrom(state);
+        }
+    }
+
+    /** State of the board and the update loop after a node in the path. */
+    private static final class State
+    {
+        public int m_numberMoves;
+
+        public GoColor m_toMove;
+
+        /** Depth of the last node on the path that cleared the move
+            history of the board by a setup. */
+        public int m_lastReset;
+
+        public int m_nuMoves;
+
+        public boolean m_isFirstPlacement;
+
+        public boolean m_isHandicapSetupDone;
+
+        public boolean m_isInInitialBlackMoveSequence;
+
+        public void copyFrom(State state)
+        {
+            m_numberMoves = state.m_numberMoves;
+            m_toMove = state.m_toMove;
+            m_lastReset = state.m_lastReset;
+            m_nuMoves = state.m_nuMoves;
+            m_isFirstPlacement = state.m_isFirstPlacement;
+            m_isHandicapSetupDone = state.m_isHandicapSetupDone;
+            m_isInInitialBlackMoveSequence =
+                state.m_isInInitialBlackMoveSequence;
+        }
+
+        public void init()
+        {
+            m_numberMoves = 0;
+            m_toMove = BLACK;
+            m_lastReset = 0;
+            m_nuMoves = 0;
+            m_isFirstPlacement = true;
+            m_isHandicapSetupDone = false;
+            m_isInInitialBlackMoveSequence = true;
+        }
+    }
+
+    private int m_handicap;
+
+    /** Depth of the first node in m_path with a valid entry in m_states.
+        Nodes before a restored snapshot have no known state. */
+    private int m_firstKnown;
+
+    private ConstGameTree m_tree;
+
+    private Board m_board;
+
+    private BoardParameters m_parameters;
+
+    /** Local variable used in update.
+        Member variable for avoiding frequent new memory allocations.
+        Contains the path from the node to the root. */
+    private final ArrayList<ConstNode> m_nodes;
+
+    /** Path from the root to the node of the last update. */
+    private final ArrayList<ConstNode> m_path;
+
+    /** State after each node in m_path.
+        Elements are reused and the list can be longer than m_path. */
+    private final ArrayList<State> m_states;
+
+    private final LinkedHashMap<ConstNode,Checkpoint> m_checkpoints;
+
+    private void apply(ConstNode node, Board board, int handicap, int depth,
+                       State state)
+    {
+        GoColor player = node.getPlayer();
+        if (node.hasSetup())
+        {
+            ConstPointList setupBlack = node.getSetup(BLACK);
+            ConstPointList setupWhite = node.getSetup(WHITE);
+            ConstPointList setupEmpty = node.getSetup(EMPTY);
+            if (handicap > 0 && state.m_isFirstPlacement
+                && setupBlack.size() == handicap && setupWhite.isEmpty()
+                && setupEmpty.isEmpty())
             {
-                ConstPointList setupBlack = node.getSetup(BLACK);
-                ConstPointList setupWhite = node.getSetup(WHITE);
-                ConstPointList setupEmpty = node.getSetup(EMPTY);
-                if (handicap > 0 && isFirstPlacement
-                    && setupBlack.size() == handicap && setupWhite.isEmpty()
-                    && setupEmpty.isEmpty())
-                {
-                    board.setupHandicap(setupBlack);
-                    isHandicapSetupDone = true;
-                }
-                else
-                    newSetup(board, setupBlack, setupWhite, setupEmpty, player);
-                isFirstPlacement = false;
-                isInInitialBlackMoveSequence = false;
+                board.setupHandicap(setupBlack);
+                state.m_isHandicapSetupDone = true;
             }
-            else if (player != null)
-                board.setToMove(player);
-            Move move = node.getMove();
-            if (move != null)
+            else
+                newSetup(board, setupBlack, setupWhite, setupEmpty, player);
+            state.m_lastReset = depth;
+            state.m_isFirstPlacement = false;
+            state.m_isInInitialBlackMoveSequence = false;
+        }
+        else if (player != null)
+            board.setToMove(player);
+        Move move = node.getMove();
+        if (move != null)
+        {
+            board.play(move);
+            ++state.m_nuMoves;
+            state.m_isFirstPlacement = false;
+            if (move.getColor() != BLACK)
+                state.m_isInInitialBlackMoveSequence = false;
+            // Files from the KGS Go server with Chines rules store
+            // handicap stones as moves, not as setup as specified by SGF
+            if (handicap > 0 && ! state.m_isHandicapSetupDone
+                && state.m_isInInitialBlackMoveSequence
+                && state.m_nuMoves == handicap)
             {
-                board.play(move);
-                ++nuMoves;
-                isFirstPlacement = false;
-                if (move.getColor() != BLACK)
-                    isInInitialBlackMoveSequence = false;
-                // Files from the KGS Go server with Chines rules store
-                // handicap stones as moves, not as setup as specified by SGF
-                if (handicap > 0 && ! isHandicapSetupDone &&
-                    isInInitialBlackMoveSequence && nuMoves == handicap)
-                {
-                    setupMovesAsHandicap(board);
-                    isHandicapSetupDone = true;
-                }
+                setupMovesAsHandicap(board);
+                state.m_isHandicapSetupDone = true;
+                state.m_lastReset = depth;
             }
         }
+        state.m_numberMoves = board.getNumberMoves();
+        state.m_toMove = board.getToMove();
     }
 
-    /** Local variable used in update.
-        Member variable for avoiding frequent new memory allocations. */
-    private final ArrayList<ConstNode> m_nodes;
+    /** Get node in m_nodes by depth. */
+    private ConstNode getNode(int depth)
+    {
+        return m_nodes.get(m_nodes.size() - 1 - depth);
+    }
+
+    private State getState(int depth)
+    {
+        while (m_states.size() <= depth)
+            m_states.add(new State());
+        return m_states.get(depth);
+    }
+
+    /** Find the common ancestor of the last and the new node, to which the
+        board can be taken back with undo.
+        @return The depth of the ancestor or -1, if the board cannot be
+        positioned by undo. */
+    private int getUndoAncestor(Board board)
+    {
+        if (board != m_board || m_path.isEmpty())
+            return -1;
+        State lastState = m_states.get(m_path.size() - 1);
+        if (board.getNumberMoves() != lastState.m_numberMoves
+            || board.getToMove() != lastState.m_toMove
+            || ! board.getParameters().equals(m_parameters))
+            return -1;
+        int n = Math.min(m_path.size(), m_nodes.size());
+        int ancestor = -1;
+        while (ancestor + 1 < n
+               && m_path.get(ancestor + 1) == getNode(ancestor + 1))
+            ++ancestor;
+        if (ancestor < m_firstKnown || ancestor < lastState.m_lastReset)
+            return -1;
+        return ancestor;
+    }
+
+    private void truncatePath(int size)
+    {
+        while (m_path.size() > size)
+            m_path.remove(m_path.size() - 1);
+    }
 
     /** Initialize board with new setup from merging the current position
         with the setup properties from a node. */
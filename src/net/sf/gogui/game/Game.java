@@ -269,6 +269,13 @@ public class Game
         }
     }
 
+    /** Set the ko rule of the board.
+        @see Board#setKoRule */
+    public void setKoRule(KoRule koRule)
+    {
+        m_board.setKoRule(koRule);
+    }
+
     public void setKomi(Komi komi)
     {
         Node node = m_tree.getGameInfoNode(m_current);
@@ -309,6 +316,7 @@ public class Game
             || color.equals(m_board.getToMove()))
             setModified();
         m_current.setPlayer(color);
+        m_boardUpdater.clearCache();
         updateBoard();
     }
 
@@ -352,6 +360,7 @@ public class Game
     {
         assert p != null;
         m_current.removeSetup(p);
+        m_boardUpdater.clearCache();
         Node father = m_current.getFather();
         if (father != null)
         {
@@ -426,6 +435,7 @@ public class Game
     private void updateBoard(BoardParameters parameters)
     {
         m_board.init(parameters);
+        m_boardUpdater.clearCache();
         updateBoard();
     }
 
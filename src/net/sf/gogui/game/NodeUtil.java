@@ -603,6 +603,28 @@ public final class NodeUtil
         return node;
     }
 
+    /** Get next node for iteration through subtree.
+        Faster than nextNode(ConstNode,int) for deep trees, because it does
+        not need the depth of the node.
+        @param node The current node.
+        @param root The root node of the subtree.
+        @return The next node or null, if the iteration is finished. */
+    public static ConstNode nextNode(ConstNode node, ConstNode root)
+    {
+        ConstNode child = node.getChildConst();
+        if (child != null)
+            return child;
+        while (node != root)
+        {
+            ConstNode father = node.getFatherConst();
+            ConstNode variation = father.variationAfter(node);
+            if (variation != null)
+                return variation;
+            node = father;
+        }
+        return null;
+    }
+
     /** Return a string containing information about a node.
         The string contains a listing of the data stored in the node
         (like moves or setup stones) and properties of the node in the
@@ -757,13 +779,13 @@ public final class NodeUtil
     public static boolean subtreeGreaterThan(ConstNode node, int size)
     {
         int n = 0;
-        int depth = NodeUtil.getDepth(node);
+        ConstNode root = node;
         while (node != null)
         {
             ++n;
             if (n > size)
                 return true;
-            node = nextNode(node, depth);
+            node = nextNode(node, root);
         }
         return false;
     }
@@ -775,11 +797,11 @@ public final class NodeUtil
     public static int subtreeSize(ConstNode node)
     {
         int n = 0;
-        int depth = NodeUtil.getDepth(node);
+        ConstNode root = node;
         while (node != null)
         {
             ++n;
-            node = nextNode(node, depth);
+            node = nextNode(node, root);
         }
         return n;
     }
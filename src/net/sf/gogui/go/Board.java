@@ -4,7 +4,9 @@ package net.sf.gogui.go;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
 
 import net.sf.gogui.gtp.BoardParameters;
 import net.sf.gogui.gtp.GtpClientBase;
@@ -91,7 +93,38 @@ implements ConstBoard
         @return BLACK, WHITE or EMPTY */
     public GoColor getColor(GoPoint p)
     {
-        return m_color[p.getIndex()];
+        return s_colors[m_color[p.getIndex()]];
+    }
+
+    /** Get Zobrist hash code of the position.
+        The hash code is updated incrementally and depends only on the
+        stones on the board, not on the color to move, captured stones or
+        the move history.
+        Hash codes of positions with the same stones are equal for all board
+        instances and all runs of the program.
+        @return The 64-bit hash code. */
+    public long getHash()
+    {
+        return m_hash;
+    }
+
+    /** Get the Zobrist hash code of a stone.
+        The hash code of a position is the exclusive-or of the hash codes
+        of all stones on the board.
+        @param p The location of the stone.
+        @param c The color of the stone.
+        @return The hash code; zero for EMPTY. */
+    public static long getHash(GoPoint p, GoColor c)
+    {
+        return s_zobrist[c.ordinal()][p.getIndex()];
+    }
+
+    /** Get the rule for forbidding repetitions.
+        @return The ko rule.
+        @see #setKoRule */
+    public KoRule getKoRule()
+    {
+        return m_koRule;
     }
 
     /** Get location of handicap stones for a given board size.
@@ -118,6 +151,14 @@ implements ConstBoard
         return m_stack.get(n - 1).m_killed;
     }
 
+    /** Get the point that is illegal to play because of the simple ko rule.
+        Does not depend on the ko rule set with setKoRule().
+        @return The ko point or null, if there is none. */
+    public GoPoint getKoPoint()
+    {
+        return m_koPoint;
+    }
+
     /** Return last move.
         @return Last move or null if there is no last move. */
     public Move getLastMove()
@@ -133,7 +174,7 @@ implements ConstBoard
         @see #getMove */
     public int getNumberMoves()
     {
-        return m_stack.size();
+        return m_numberMoves;
     }
 
     /** Get a move from the sequence of moves played so far.
@@ -142,6 +183,7 @@ implements ConstBoard
         @see #getNumberMoves() */
     public Move getMove(int i)
     {
+        assert i < m_numberMoves;
         return m_stack.get(i).m_move;
     }
 
@@ -270,20 +312,67 @@ implements ConstBoard
         return m_constants.isHandicap(point);
     }
 
-    /** Check if move would violate the simple Ko rule.
+    /** Check if move would violate the ko rule.
         Assumes other color to move than the color of the last move.
+        If a superko rule is set, also checks if a move of the color to move
+        would repeat a previous position.
         @param point The point to check
-        @return true, if a move at this point would violate the simple ko
-        rule */
+        @return true, if a move at this point would violate the ko rule
+        @see #setKoRule */
     public boolean isKo(GoPoint point)
     {
-        return point == m_koPoint;
+        if (point == m_koPoint)
+            return true;
+        return isRepetition(m_toMove, point);
+    }
+
+    /** Check if a move would repeat a previous position.
+        Positions are compared according to the superko rule that was set
+        with setKoRule(). Does not play the move, but computes the hash code
+        of the resulting position from the blocks the move would capture.
+        Takes O(1) time independent of the length of the move history,
+        because the hash codes of all previous positions since the last
+        setup are stored in a hash set.
+        @param c The player color.
+        @param p The point to check.
+        @return true, if a superko rule is set and the move would repeat a
+        position; always false for pass moves, occupied points and boards
+        with a game ruler attached. */
+    public boolean isRepetition(GoColor c, GoPoint p)
+    {
+        if (m_koRule == KoRule.SIMPLE || p == null || getColor(p) != EMPTY
+            || isGameRulerAttached())
+            return false;
+        assert m_mark.isCleared();
+        GoColor otherColor = c.otherColor();
+        long hash = m_hash ^ s_zobrist[c.ordinal()][p.getIndex()];
+        boolean isCapture = false;
+        m_tryMarked.clear();
+        ConstPointList adjacent = getAdjacent(p);
+        int nuAdjacent = adjacent.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            GoPoint adj = adjacent.get(i);
+            if (getColor(adj) != otherColor || m_mark.get(adj))
+                continue;
+            if (! findBlock(adj, otherColor, p))
+            {
+                isCapture = true;
+                hash ^= getHash(m_tryBlock, otherColor);
+            }
+        }
+        // Suicide removes the block of the move including its stone
+        if (! isCapture && ! findBlock(p, c, p))
+            hash ^= getHash(m_tryBlock, c);
+        m_mark.clear(m_tryMarked);
+        return (m_history.count(getHistoryKey(hash, otherColor)) > 0);
     }
 
     /** Check if any moves were played or setup stones placed on the board. */
     public boolean isModified()
     {
-        return (! m_stack.isEmpty()
+        return (m_numberMoves > 0
                 || !m_setup.get(BLACK).isEmpty()
                 || !m_setup.get(WHITE).isEmpty()
                 || m_toMove != BLACK);
@@ -322,9 +411,12 @@ implements ConstBoard
         Takes back the effects of any moves or setup stones on the board. */
     public void clear()
     {
+        Arrays.fill(m_color, (byte)0);
+        byte empty = toByte(EMPTY);
         for (GoPoint p : this)
-            setColor(p, EMPTY);
-        m_stack.clear();
+            m_color[p.getIndex()] = empty;
+        m_hash = 0;
+        m_numberMoves = 0;
         for (GoColor c : BLACK_WHITE)
         {
             m_setup.get(c).clear();
@@ -341,6 +433,39 @@ implements ConstBoard
         m_koPoint = null;
         m_isSetupHandicap = false;
         m_setupPlayer = null;
+        m_setupHash = m_hash;
+        m_setupToMove = m_toMove;
+        resetHistory();
+    }
+
+    /** Copy the state of another board.
+        Copies the position, the move history, setup stones and captured
+        stones, such that moves played on the other board can be taken back
+        with undo() on this board. An attached game ruler and the ko rule
+        are not copied.
+        @param board The board to copy. */
+    public void copyFrom(Board board)
+    {
+        if (! board.m_parameters.equals(m_parameters))
+            init(board.m_parameters);
+        System.arraycopy(board.m_color, 0, m_color, 0, m_color.length);
+        m_hash = board.m_hash;
+        m_numberMoves = board.m_numberMoves;
+        for (int i = 0; i < m_numberMoves; ++i)
+            getStackEntry(i).copyFrom(board.m_stack.get(i));
+        for (GoColor c : BLACK_WHITE)
+        {
+            m_setup.set(c, new PointList(board.m_setup.get(c)));
+            m_captured.set(c, board.m_captured.get(c));
+        }
+        m_toMove = board.m_toMove;
+        m_koPoint = board.m_koPoint;
+        m_isSetupHandicap = board.m_isSetupHandicap;
+        m_setupPlayer = board.m_setupPlayer;
+        m_lastMoveIndex = board.m_lastMoveIndex;
+        m_setupHash = board.m_setupHash;
+        m_setupToMove = board.m_setupToMove;
+        resetHistory();
     }
 
     /** Play a move.
@@ -362,16 +487,31 @@ implements ConstBoard
         @param move The move (location and player) */
     public void play(Move move)
     {
-        StackEntry entry = new StackEntry(move);
+        StackEntry entry = getStackEntry(m_numberMoves);
+        entry.init(move);
         entry.execute(this);
-        m_stack.add(entry);
+        entry.m_hash = m_hash;
+        entry.m_toMove = m_toMove;
+        if (m_koRule != KoRule.SIMPLE)
+            m_history.add(getHistoryKey(m_hash, m_toMove));
+        ++m_numberMoves;
     }
     
     public void playGameMove(Move move)
     {
-        StackEntry entry = new StackEntry(move);
-        entry.execute(this);
-        m_stack.add(entry);
+        play(move);
+    }
+
+    /** Set the rule for forbidding repetitions.
+        The rule is used by isKo() and isRepetition(). It does not change the
+        behavior of play(), which never fails. The rule is kept if the board
+        is initialized or cleared.
+        @param koRule The ko rule. */
+    public void setKoRule(KoRule koRule)
+    {
+        assert koRule != null;
+        m_koRule = koRule;
+        resetHistory();
     }
 
     /** Change the color to move.
@@ -412,10 +552,15 @@ implements ConstBoard
                 m_setup.set(c, new PointList(stones));
             }
         }
+        m_setupHash = m_hash;
+        m_setupToMove = m_toMove;
+        resetHistory();
     }
     
     /**
-     * Forces the points to color c
+     * Forces the points to color c.
+     * The resulting position is used as the setup position for the
+     * superko rules.
      */
     public void setPoints(ConstPointList points, GoColor c)
     {
@@ -423,6 +568,9 @@ implements ConstBoard
         {
             setColor(p, c);
         }
+        m_setupHash = m_hash;
+        m_setupToMove = m_toMove;
+        resetHistory();
     }
 
     /** Setup initial handicap stones.
@@ -443,8 +591,11 @@ implements ConstBoard
     {
         int index = getNumberMoves() - 1;
         assert index >= 0;
-        m_stack.get(index).undo(this);
-        m_stack.remove(index);
+        StackEntry entry = m_stack.get(index);
+        if (m_koRule != KoRule.SIMPLE)
+            m_history.remove(getHistoryKey(entry.m_hash, entry.m_toMove));
+        entry.undo(this);
+        m_numberMoves = index;
         m_lastMoveIndex = index;
     }
 
@@ -460,9 +611,12 @@ implements ConstBoard
             undo();
     }
 
+    /** Undo information of a move.
+        Entries are reused by the board to avoid memory allocations in
+        play(). */
     private static class StackEntry
     {
-        public final Move m_move;
+        public Move m_move;
 
         public GoPoint m_oldKoPoint;
 
@@ -470,25 +624,47 @@ implements ConstBoard
 
         public GoColor m_oldToMove;
 
-        public PointList m_killed;
+        public final PointList m_killed = new PointList();
 
-        public PointList m_suicide;
+        public final PointList m_suicide = new PointList();
 
         public int m_moveIndex = 0;
 
-        public StackEntry(Move move)
+        /** Hash code of the position after the move. */
+        public long m_hash;
+
+        /** Color to move after the move. */
+        public GoColor m_toMove;
+
+        public void copyFrom(StackEntry entry)
+        {
+            m_hash = entry.m_hash;
+            m_toMove = entry.m_toMove;
+            m_move = entry.m_move;
+            m_oldKoPoint = entry.m_oldKoPoint;
+            m_oldColor = entry.m_oldColor;
+            m_oldToMove = entry.m_oldToMove;
+            m_killed.clear();
+            m_killed.addAllFromConst(entry.m_killed);
+            m_suicide.clear();
+            m_suicide.addAllFromConst(entry.m_suicide);
+            m_moveIndex = entry.m_moveIndex;
+        }
+
+        public void init(Move move)
         {
             m_move = move;
+            m_moveIndex = 0;
         }
 
         public void execute(Board board)
         {
-            m_killed = new PointList();
-            m_suicide = new PointList();
+            m_killed.clear();
+            m_suicide.clear();
             m_oldKoPoint = board.m_koPoint;
             board.m_koPoint = null;
-            if (m_moveIndex < board.m_stack.size())
-                m_moveIndex = board.m_stack.size();
+            if (m_moveIndex < board.m_numberMoves)
+                m_moveIndex = board.m_numberMoves;
             if (board.isGameRulerAttached())
             {
                 try {
@@ -527,8 +703,12 @@ implements ConstBoard
                 m_oldColor = board.getColor(p);
                 board.setColor(p, c);
                 assert c != EMPTY;
-                for (GoPoint adj : board.getAdjacent(p))
+                ConstPointList adjacent = board.getAdjacent(p);
+                int nuAdjacent = adjacent.size();
+                // Don't use an iterator for efficiency
+                for (int i = 0; i < nuAdjacent; ++i)
                 {
+                    GoPoint adj = adjacent.get(i);
                     int killedSize = m_killed.size();
                     if (board.getColor(adj) == otherColor)
                         board.checkKill(adj, m_killed);
@@ -557,11 +737,12 @@ implements ConstBoard
             {
                 GoColor c = m_move.getColor();
                 GoColor otherColor = c.otherColor();
-                for (GoPoint stone : m_suicide)
-                    board.setColor(stone, c);
+                // Don't use an iterator for efficiency
+                for (int i = 0; i < m_suicide.size(); ++i)
+                    board.setColor(m_suicide.get(i), c);
                 board.setColor(p, m_oldColor);
-                for (GoPoint stone : m_killed)
-                    board.setColor(stone, otherColor);
+                for (int i = 0; i < m_killed.size(); ++i)
+                    board.setColor(m_killed.get(i), otherColor);
                 board.m_captured.set(c,
                                      board.m_captured.get(c)
                                      - m_suicide.size());
@@ -581,16 +762,74 @@ implements ConstBoard
     private final BlackWhiteSet<Integer> m_captured
         = new BlackWhiteSet<Integer>(0, 0);
 
+    /** Undo information of the moves played.
+        Only the first m_numberMoves entries are valid, the remaining
+        entries are kept for reuse. */
     private final ArrayList<StackEntry> m_stack
         = new ArrayList<StackEntry>(361);
 
+    private int m_numberMoves;
+
     /** Temporary variable reused for efficiency. */
     private final PointList m_checkKillStones = new PointList();
 
     /** Temporary variable reused for efficiency. */
     private final PointList m_checkKillStack = new PointList();
 
-    private GoColor[] m_color = new GoColor[GoPoint.NUMBER_INDEXES];
+    /** Temporary variables of isRepetition() reused for efficiency. */
+    private final PointList m_tryBlock = new PointList();
+
+    private final PointList m_tryMarked = new PointList();
+
+    private final PointList m_tryStack = new PointList();
+
+    /** State of the points indexed by GoPoint.getIndex().
+        Contains the result of toByte(); points not on the board are zero. */
+    private final byte[] m_color = new byte[GoPoint.NUMBER_INDEXES];
+
+    /** See getHash() */
+    private long m_hash;
+
+    private KoRule m_koRule = KoRule.SIMPLE;
+
+    /** Hash code of the position after the last setup or clear. */
+    private long m_setupHash;
+
+    /** Color to move after the last setup or clear. */
+    private GoColor m_setupToMove;
+
+    /** Keys of the positions since the last setup.
+        See getHistoryKey(). Only used if the ko rule is a superko rule. */
+    private final LongMultiSet m_history = new LongMultiSet();
+
+    /** Zobrist hash code for White to move used in the keys of the
+        situational superko rule. */
+    private static final long s_zobristWhiteToMove;
+
+    /** Lookup table for converting the elements of m_color to colors. */
+    private static final GoColor[] s_colors;
+
+    /** Zobrist hash codes indexed by GoColor.ordinal() and
+        GoPoint.getIndex(). */
+    private static final long[][] s_zobrist;
+
+    static
+    {
+        GoColor[] values = GoColor.values();
+        s_colors = new GoColor[values.length + 1];
+        s_zobrist = new long[values.length][GoPoint.NUMBER_INDEXES];
+        // Use a fixed seed, such that hash codes are reproducible
+        Random random = new Random(3141592653589793L);
+        for (GoColor c : values)
+        {
+            s_colors[toByte(c)] = c;
+            if (c == EMPTY)
+                continue;
+            for (int i = 0; i < GoPoint.NUMBER_INDEXES; ++i)
+                s_zobrist[c.ordinal()][i] = random.nextLong();
+        }
+        s_zobristWhiteToMove = random.nextLong();
+    }
 
     private GoColor m_toMove;
 
@@ -688,10 +927,102 @@ implements ConstBoard
             findStones(adj, color, stones);
     }
 
+    /** Find the stones of a block for a move that was not played.
+        The point of the move is treated as occupied by the stone of the
+        move. The stones are marked in m_mark and added to m_tryMarked.
+        @param start A stone of the block or the point of the move.
+        @param color The color of the block.
+        @param move The point of the move.
+        @return true, if the block has a liberty. The stones are stored in
+        m_tryBlock. */
+    private boolean findBlock(GoPoint start, GoColor color, GoPoint move)
+    {
+        boolean hasLiberty = false;
+        m_tryBlock.clear();
+        m_tryStack.clear();
+        m_tryStack.add(start);
+        m_mark.set(start);
+        m_tryMarked.add(start);
+        while (! m_tryStack.isEmpty())
+        {
+            GoPoint p = m_tryStack.pop();
+            m_tryBlock.add(p);
+            ConstPointList adjacent = getAdjacent(p);
+            int nuAdjacent = adjacent.size();
+            // Don't use an iterator for efficiency
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                GoPoint adj = adjacent.get(i);
+                if (adj == move)
+                    continue;
+                GoColor c = getColor(adj);
+                if (c == EMPTY)
+                    hasLiberty = true;
+                else if (c == color && ! m_mark.get(adj))
+                {
+                    m_tryStack.add(adj);
+                    m_mark.set(adj);
+                    m_tryMarked.add(adj);
+                }
+            }
+        }
+        return hasLiberty;
+    }
+
+    /** Get the hash code of stones of a color. */
+    private static long getHash(ConstPointList points, GoColor c)
+    {
+        long[] zobrist = s_zobrist[c.ordinal()];
+        long hash = 0;
+        for (int i = 0; i < points.size(); ++i)
+            hash ^= zobrist[points.get(i).getIndex()];
+        return hash;
+    }
+
+    /** Get the key of a position in m_history. */
+    private long getHistoryKey(long hash, GoColor toMove)
+    {
+        if (m_koRule == KoRule.SITUATIONAL_SUPERKO && toMove == WHITE)
+            return hash ^ s_zobristWhiteToMove;
+        return hash;
+    }
+
+    /** Rebuild m_history from the setup position and the move stack. */
+    private void resetHistory()
+    {
+        m_history.clear();
+        if (m_koRule == KoRule.SIMPLE)
+            return;
+        m_history.add(getHistoryKey(m_setupHash, m_setupToMove));
+        for (int i = 0; i < m_numberMoves; ++i)
+        {
+            StackEntry entry = m_stack.get(i);
+            m_history.add(getHistoryKey(entry.m_hash, entry.m_toMove));
+        }
+    }
+
+    private StackEntry getStackEntry(int i)
+    {
+        while (m_stack.size() <= i)
+            m_stack.add(new StackEntry());
+        return m_stack.get(i);
+    }
+
     private void setColor(GoPoint p, GoColor c)
     {
         assert p != null;
-        m_color[p.getIndex()] = c;
+        int index = p.getIndex();
+        long[] zobrist = s_zobrist[c.ordinal()];
+        byte oldValue = m_color[index];
+        if (oldValue != 0)
+            m_hash ^= s_zobrist[s_colors[oldValue].ordinal()][index];
+        m_hash ^= zobrist[index];
+        m_color[index] = toByte(c);
+    }
+
+    private static byte toByte(GoColor c)
+    {
+        return (byte)(c.ordinal() + 1);
     }
 
     public GtpClientBase getGameRuler() {
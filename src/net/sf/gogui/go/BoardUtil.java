@@ -2,6 +2,7 @@
 
 package net.sf.gogui.go;
 
+import java.util.Locale;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 
@@ -12,6 +13,38 @@ public final class BoardUtil
         @see #rotate */
     public static final int NUMBER_ROTATIONS = 8;
 
+    /** Get a key for caching the response to a command in a position.
+        @see #getPositionKey(long,int,GoColor,GoPoint,Komi,String) */
+    public static String getPositionKey(ConstBoard board, Komi komi,
+                                        String command)
+    {
+        return getPositionKey(board.getHash(), board.getSize(),
+                              board.getToMove(), board.getKoPoint(), komi,
+                              command);
+    }
+
+    /** Get a key for caching the response to a command in a position.
+        Contains the Zobrist hash code, board size, color to move, ko point,
+        komi and the command line. The hash code and ko point are
+        parameters, so that keys can be built for a transformed position.
+        @param hash The hash code of the position (see Board.getHash())
+        @param size The board size
+        @param toMove The color to move
+        @param koPoint The ko point or null
+        @param komi The komi or null
+        @param command The command line */
+    public static String getPositionKey(long hash, int size, GoColor toMove,
+                                        GoPoint koPoint, Komi komi,
+                                        String command)
+    {
+        return String.format(Locale.ENGLISH, "%016x", hash)
+            + " " + size
+            + " " + toMove.getUppercaseLetter()
+            + " " + (koPoint == null ? "-" : koPoint.toString())
+            + " " + Komi.toString(komi)
+            + " " + command.trim();
+    }
+
     /** Copy the state of one board to another.
         Initializes the target board with the size and the setup stones of the
         source board and executes all moves of the source board on the target
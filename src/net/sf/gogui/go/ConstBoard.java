@@ -22,8 +22,14 @@ public interface ConstBoard
 
     GoColor getColor(GoPoint p);
 
+    long getHash();
+
+    KoRule getKoRule();
+
     ConstPointList getKilled();
 
+    GoPoint getKoPoint();
+
     Move getLastMove();
 
     Move getMove(int i);
@@ -50,6 +56,8 @@ public interface ConstBoard
 
     boolean isModified();
 
+    boolean isRepetition(GoColor c, GoPoint p);
+
     boolean isSetupHandicap();
 
     boolean isSuicide(GoColor c, GoPoint p);
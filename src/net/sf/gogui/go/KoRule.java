@@ -0,0 +1,34 @@
+// KoRule.java
+
+package net.sf.gogui.go;
+
+/** Rule for forbidding the repetition of positions.
+    @see Board#setKoRule */
+public enum KoRule
+{
+    /** Only immediate recapture of a single stone is forbidden. */
+    SIMPLE,
+
+    /** A move may not recreate a previous position. */
+    POSITIONAL_SUPERKO,
+
+    /** A move may not recreate a previous position with the same color
+        to move. */
+    SITUATIONAL_SUPERKO;
+
+    /** Parse ko rule from a string.
+        @param s The string (simple, positional or situational; case
+        insensitive).
+        @return The ko rule or null, if the string is not a valid ko rule. */
+    public static KoRule parse(String s)
+    {
+        s = s.trim().toLowerCase();
+        if (s.equals("simple"))
+            return SIMPLE;
+        if (s.equals("positional"))
+            return POSITIONAL_SUPERKO;
+        if (s.equals("situational"))
+            return SITUATIONAL_SUPERKO;
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+// LongMultiSet.java
+
+package net.sf.gogui.go;
+
+import java.util.Arrays;
+
+/** Multiset of long values.
+    Uses open addressing with primitive arrays to avoid the memory
+    allocations of a HashMap with boxed keys. Used by Board for storing the
+    hash codes of the positions in the move history.
+    Elements whose count dropped to zero keep their slot, which is fine for
+    a move history, because the same positions are added again after an
+    undo. */
+final class LongMultiSet
+{
+    public LongMultiSet()
+    {
+        allocate(64);
+    }
+
+    public void add(long value)
+    {
+        int i = find(value);
+        if (! m_used[i])
+        {
+            if (2 * (m_numberUsed + 1) > m_keys.length)
+            {
+                grow();
+                i = find(value);
+            }
+            m_used[i] = true;
+            m_keys[i] = value;
+            ++m_numberUsed;
+        }
+        ++m_count[i];
+    }
+
+    public void clear()
+    {
+        if (m_numberUsed == 0)
+            return;
+        Arrays.fill(m_used, false);
+        Arrays.fill(m_count, 0);
+        m_numberUsed = 0;
+    }
+
+    public int count(long value)
+    {
+        int i = find(value);
+        return (m_used[i] ? m_count[i] : 0);
+    }
+
+    /** Remove one occurrence of a value.
+        The value must be contained in the set. */
+    public void remove(long value)
+    {
+        int i = find(value);
+        assert m_used[i] && m_count[i] > 0;
+        --m_count[i];
+    }
+
+    private int m_numberUsed;
+
+    private boolean[] m_used;
+
+    private int[] m_count;
+
+    private long[] m_keys;
+
+    private void allocate(int capacity)
+    {
+        m_used = new boolean[capacity];
+        m_count = new int[capacity];
+        m_keys = new long[capacity];
+        m_numberUsed = 0;
+    }
+
+    /** Find slot of a value or the empty slot where it would be inserted. */
+    private int find(long value)
+    {
+        int mask = m_keys.length - 1;
+        int i = (int)(value ^ (value >>> 32)) & mask;
+        while (m_used[i] && m_keys[i] != value)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow()
+    {
+        boolean[] used = m_used;
+        int[] count = m_count;
+        long[] keys = m_keys;
+        allocate(2 * keys.length);
+        for (int i = 0; i < keys.length; ++i)
+            if (used[i] && count[i] > 0)
+            {
+                int j = find(keys[i]);
+                m_used[j] = true;
+                m_keys[j] = keys[i];
+                m_count[j] = count[i];
+                ++m_numberUsed;
+            }
+    }
+}
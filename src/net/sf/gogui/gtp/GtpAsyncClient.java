@@ -0,0 +1,276 @@
+// GtpAsyncClient.java
+
+package net.sf.gogui.gtp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/** Non-blocking interface to a Go program that uses GTP.
+    Commands are queued and executed in order by a single thread per
+    connection, the responses are returned as futures. A future completes
+    exceptionally with the GtpError of a failed command.
+    <p>
+    Cancelling the future of a queued command removes the command from the
+    queue. Cancelling the future of a running command, or the expiration of
+    its timeout, sends an interrupt to the program (see
+    GtpClientBase.sendInterrupt()). The connection stays busy until the
+    program has responded to the interrupted command, so the program should
+    support interrupting commands if timeouts are used.
+    </p>
+    <p>
+    Futures complete in the thread of the connection, dependent actions
+    should not block and should not send commands through the wrapped
+    GtpClientBase directly. While this class is used, commands should not
+    be sent through the wrapped GtpClientBase from other threads.
+    </p> */
+public final class GtpAsyncClient
+{
+    /** Constructor.
+        Starts the thread of the connection.
+        @param gtp The connection to the program. */
+    public GtpAsyncClient(GtpClientBase gtp)
+    {
+        m_gtp = gtp;
+        m_thread = new IOThread();
+        m_thread.start();
+    }
+
+    /** Get the wrapped connection. */
+    public GtpClientBase getGtpClient()
+    {
+        return m_gtp;
+    }
+
+    /** Queue a command.
+        @return The future of the response text of the command. */
+    public CompletableFuture<String> send(String command)
+    {
+        return send(command, -1);
+    }
+
+    /** Queue a command with timeout.
+        @param command The command to send
+        @param timeout Timeout in milliseconds, measured from the start of
+        the execution of the command, or -1, if no timeout. If the timeout
+        expires, the command is interrupted and the future completes with a
+        GtpError.
+        @return The future of the response text of the command. */
+    public CompletableFuture<String> send(final String command, long timeout)
+    {
+        return queue(new Request<String>(timeout)
+            {
+                protected String execute() throws GtpError
+                {
+                    return m_gtp.send(command);
+                }
+            });
+    }
+
+    /** Queue a sequence of commands, which is sent pipelined.
+        @see GtpClientBase#sendPipelined
+        @return The future of the response texts of the commands. */
+    public CompletableFuture<ArrayList<String>>
+        sendPipelined(final List<String> commands)
+    {
+        final ArrayList<String> copy = new ArrayList<String>(commands);
+        return queue(new Request<ArrayList<String>>(-1)
+            {
+                protected ArrayList<String> execute() throws GtpError
+                {
+                    return m_gtp.sendPipelined(copy);
+                }
+            });
+    }
+
+    /** Stop the thread of the connection.
+        Commands queued before are still executed. Does not close the
+        connection to the program. */
+    public void shutdown()
+    {
+        m_queue.add(m_shutdown);
+    }
+
+    /** Wait until the thread of the connection has terminated.
+        Call shutdown() first. */
+    public void waitForShutdown() throws InterruptedException
+    {
+        m_thread.join();
+    }
+
+    private abstract static class Request<T>
+    {
+        public Request(long timeout)
+        {
+            m_timeout = timeout;
+        }
+
+        public final CompletableFuture<T> m_future =
+            new CompletableFuture<T>();
+
+        public final long m_timeout;
+
+        protected abstract T execute() throws GtpError;
+
+        public void run()
+        {
+            try
+            {
+                m_future.complete(execute());
+            }
+            catch (GtpError e)
+            {
+                m_future.completeExceptionally(e);
+            }
+            catch (RuntimeException e)
+            {
+                m_future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private class IOThread
+        extends Thread
+    {
+        IOThread()
+        {
+            super("GtpAsyncClient");
+            setDaemon(true);
+        }
+
+        public void run()
+        {
+            while (true)
+            {
+                Request<?> request;
+                try
+                {
+                    request = m_queue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                if (request == m_shutdown)
+                    return;
+                synchronized (m_mutex)
+                {
+                    if (request.m_future.isDone())
+                        continue;
+                    m_current = request;
+                }
+                ScheduledFuture<?> timeout = null;
+                if (request.m_timeout >= 0)
+                    timeout = scheduleTimeout(request);
+                try
+                {
+                    request.run();
+                }
+                finally
+                {
+                    if (timeout != null)
+                        timeout.cancel(false);
+                    synchronized (m_mutex)
+                    {
+                        m_current = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Timer for the timeouts of all connections. */
+    private static ScheduledExecutorService s_timer;
+
+    private final Object m_mutex = new Object();
+
+    /** Currently executed request.
+        Protected by m_mutex. */
+    private Request<?> m_current;
+
+    private final Request<Object> m_shutdown = new Request<Object>(-1)
+        {
+            protected Object execute()
+            {
+                return null;
+            }
+        };
+
+    private final BlockingQueue<Request<?>> m_queue =
+        new LinkedBlockingQueue<Request<?>>();
+
+    private final GtpClientBase m_gtp;
+
+    private final IOThread m_thread;
+
+    private static synchronized ScheduledExecutorService getTimer()
+    {
+        if (s_timer == null)
+        {
+            ScheduledThreadPoolExecutor timer =
+                new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+                    {
+                        public Thread newThread(Runnable runnable)
+                        {
+                            Thread thread =
+                                new Thread(runnable, "GtpAsyncClient timer");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            timer.setRemoveOnCancelPolicy(true);
+            s_timer = timer;
+        }
+        return s_timer;
+    }
+
+    /** Send an interrupt, if the request is currently executed.
+        The interrupt is sent while holding m_mutex, such that the IO
+        thread cannot start the next request before it was sent. */
+    private void interrupt(Request<?> request)
+    {
+        synchronized (m_mutex)
+        {
+            if (m_current != request)
+                return;
+            try
+            {
+                m_gtp.sendInterrupt();
+            }
+            catch (GtpError e)
+            {
+                // Interrupt not supported, the command will run to
+                // completion
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> queue(final Request<T> request)
+    {
+        request.m_future.whenComplete((result, e) -> {
+                if (e instanceof CancellationException)
+                    interrupt(request);
+            });
+        m_queue.add(request);
+        return request.m_future;
+    }
+
+    private ScheduledFuture<?> scheduleTimeout(final Request<?> request)
+    {
+        Runnable task = () -> {
+            GtpError error = new GtpError("Timeout");
+            if (request.m_future.completeExceptionally(error))
+                interrupt(request);
+        };
+        return getTimer().schedule(task, request.m_timeout,
+                                   TimeUnit.MILLISECONDS);
+    }
+}
@@ -10,6 +10,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -200,6 +202,16 @@ public final class GtpClient
         return m_fullResponse;
     }
 
+    /** Get the wall-clock latencies of the commands sent.
+        The latency of a command is measured from sending the command (or
+        receiving the previous response for pipelined commands) to
+        receiving the response. Commands without response, because the
+        program died, are not included. */
+    public GtpMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
     /** Get the command line that was used for invoking the Go program.
         @return The command line that was given to the constructor. */
     public String getProgramCommand()
@@ -244,12 +256,8 @@ public final class GtpClient
         m_timeoutCallback = timeoutCallback;
         m_fullResponse = "";
         m_response = "";
-        ++m_commandNumber;
-        if (m_autoNumber)
-            command = Integer.toString(m_commandNumber) + " " + command;
-        if (m_log)
-            logOut(command);
-        m_out.println(command);
+        long time = System.nanoTime();
+        command = writeCommand(command, m_autoNumber);
         m_out.flush();
         try
         {
@@ -267,6 +275,125 @@ public final class GtpClient
             e.setCommand(command);
             throw e;
         }
+        finally
+        {
+            if (! m_isProgramDead)
+                m_metrics.add(command, System.nanoTime() - time);
+        }
+    }
+
+    /** Send a sequence of commands without waiting for each response.
+        The commands are numbered and the ids of the responses are checked
+        against the ids of the commands. Up to MAX_PIPELINED commands are
+        written before the first response is read, which avoids a round
+        trip per command if the program is connected through a pipe or
+        network.
+        All commands are executed, even if some of them fail. If a
+        response has an invalid id, no more commands are sent, but the
+        responses of the commands already sent are read.
+        @return The response texts of the commands.
+        @throws GtpError The invalid response id or the error of the first
+        failed command. */
+    public ArrayList<String> sendPipelined(List<String> commands)
+        throws GtpError
+    {
+        return sendPipelined(commands, -1, null);
+    }
+
+    /** Send a sequence of commands with timeout.
+        @param commands The commands to send
+        @param timeout Timeout in milliseconds for each response or -1, if
+        no timeout
+        @param timeoutCallback Timeout callback or null if no timeout.
+        @see #sendPipelined(List) */
+    public ArrayList<String> sendPipelined(List<String> commands,
+                                           long timeout,
+                                           TimeoutCallback timeoutCallback)
+        throws GtpError
+    {
+        m_timeoutCallback = timeoutCallback;
+        m_fullResponse = "";
+        m_response = "";
+        int size = commands.size();
+        ArrayList<String> responses = new ArrayList<String>(size);
+        String[] lines = new String[size];
+        long[] times = new long[size];
+        long lastTime = Long.MIN_VALUE;
+        int firstId = m_commandNumber + 1;
+        int numberSent = 0;
+        GtpError error = null;
+        GtpError idError = null;
+        // After an invalid response id, no more commands are sent, but the
+        // responses to the commands already sent are read, such that the
+        // next command gets its own response
+        int last = size;
+        for (int i = 0; i < last; ++i)
+        {
+            int end = Math.min(last, i + MAX_PIPELINED);
+            if (numberSent < end)
+            {
+                int begin = numberSent;
+                for ( ; numberSent < end; ++numberSent)
+                {
+                    String command = commands.get(numberSent);
+                    assert ! command.trim().equals("");
+                    assert ! command.trim().startsWith("#");
+                    lines[numberSent] = writeCommand(command, true);
+                    if (m_callback != null)
+                        m_callback.sentCommand(lines[numberSent]);
+                }
+                m_out.flush();
+                long time = System.nanoTime();
+                for (int j = begin; j < numberSent; ++j)
+                    times[j] = time;
+                if (m_out.checkError())
+                {
+                    try
+                    {
+                        throwProgramDied();
+                    }
+                    catch (GtpError e)
+                    {
+                        e.setCommand(lines[numberSent - 1]);
+                        throw e;
+                    }
+                }
+            }
+            GtpError responseError = null;
+            try
+            {
+                readResponse(timeout);
+            }
+            catch (GtpError e)
+            {
+                e.setCommand(lines[i]);
+                if (m_isProgramDead)
+                    throw e;
+                responseError = e;
+            }
+            // Time spent waiting for the previous responses is not
+            // included in the latency of this command
+            long time = System.nanoTime();
+            m_metrics.add(lines[i], time - Math.max(times[i], lastTime));
+            lastTime = time;
+            if (m_responseId >= 0 && m_responseId != firstId + i
+                && idError == null)
+            {
+                idError = new GtpError("Invalid response id "
+                                       + m_responseId + " (expected "
+                                       + (firstId + i) + ")");
+                idError.setCommand(lines[i]);
+                last = numberSent;
+            }
+            if (responseError != null && error == null)
+                error = responseError;
+            responses.add(m_response);
+        }
+        if (idError != null)
+            throw idError;
+        if (error != null)
+            throw error;
+        return responses;
     }
 
     public void sendPlay(Move move, long timeout,
@@ -544,6 +671,12 @@ public final class GtpClient
         private final Reader m_in;
     }
 
+    /** Maximum number of commands sent ahead of the responses in
+        sendPipelined().
+        Must not be larger than the capacity of the response queue, such
+        that the input thread never blocks while the commands are written. */
+    private static final int MAX_PIPELINED = 64;
+
     private InvalidResponseCallback m_invalidResponseCallback;
 
     private boolean m_autoNumber;
@@ -558,6 +691,11 @@ public final class GtpClient
 
     private int m_commandNumber;
 
+    private final GtpMetrics m_metrics = new GtpMetrics();
+
+    /** Id of the last response or -1, if the response had no id. */
+    private int m_responseId;
+
     private IOCallback m_callback;
 
     private PrintWriter m_out;
@@ -584,7 +722,7 @@ public final class GtpClient
     {
         m_out = new PrintWriter(out);
         m_isProgramDead = false;
-        m_queue = new ArrayBlockingQueue<Message>(10);
+        m_queue = new ArrayBlockingQueue<Message>(MAX_PIPELINED);
         m_inputThread = new InputThread(in, m_queue);
         if (err != null)
         {
@@ -615,6 +753,18 @@ public final class GtpClient
         System.err.println(msg);
     }
 
+    private static int parseId(String s)
+    {
+        try
+        {
+            return Integer.parseInt(s);
+        }
+        catch (NumberFormatException e)
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+
     /** Print information about occurence of InterruptedException.
         An InterruptedException should never happen, because we don't call
         Thread.interrupt */
@@ -641,18 +791,37 @@ public final class GtpClient
             if (m_callback != null)
                 m_callback.receivedResponse(error, m_fullResponse);
             assert response.length() >= 3;
-            int index = response.indexOf(' ');
             int length = response.length();
-            if (index < 0)
-                m_response = response.substring(1, length - 2);
+            int index = 1;
+            while (index < length - 2
+                   && Character.isDigit(response.charAt(index)))
+                ++index;
+            if (index > 1)
+                m_responseId = parseId(response.substring(1, index));
             else
-                m_response = response.substring(index + 1, length - 2);
+                m_responseId = -1;
+            if (response.charAt(index) == ' ')
+                ++index;
+            m_response = response.substring(index, length - 2);
             if (error)
                 throw new GtpError(m_response);
             return m_response;
         }
     }
 
+    /** Write a command without flushing the output stream.
+        @return The command line as written including the id. */
+    private String writeCommand(String command, boolean number)
+    {
+        ++m_commandNumber;
+        if (number)
+            command = Integer.toString(m_commandNumber) + " " + command;
+        if (m_log)
+            logOut(command);
+        m_out.println(command);
+        return command;
+    }
+
     private void throwProgramDied() throws GtpError
     {
         m_isProgramDead = true;
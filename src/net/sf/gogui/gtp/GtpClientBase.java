@@ -4,6 +4,7 @@ package net.sf.gogui.gtp;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
@@ -120,6 +121,13 @@ public abstract class GtpClientBase
         }
     }
 
+    /** Get latency metrics of the commands sent.
+        Returns null, but can be reimplemented in a subclass. */
+    public GtpMetrics getMetrics()
+    {
+        return null;
+    }
+
     /** Get program name or "Unknown Program" if unknown.
         If queryName() was not called or the name command failed, the
         string "Unknown Program" is returned. */
@@ -298,6 +306,38 @@ public abstract class GtpClientBase
         @throws GtpError containing the response if the command fails. */
     public abstract String send(String command) throws GtpError;
 
+    /** Send a sequence of commands.
+        All commands are executed, even if some of them fail. This
+        implementation sends the commands one after another; subclasses that
+        communicate through streams can send the commands without waiting
+        for the responses of the previous commands.
+        @return The response texts of the commands.
+        @throws GtpError The error of the first failed command. */
+    public ArrayList<String> sendPipelined(List<String> commands)
+        throws GtpError
+    {
+        ArrayList<String> responses = new ArrayList<String>(commands.size());
+        GtpError error = null;
+        for (String command : commands)
+        {
+            try
+            {
+                responses.add(send(command));
+            }
+            catch (GtpError e)
+            {
+                if (isProgramDead())
+                    throw e;
+                if (error == null)
+                    error = e;
+                responses.add(e.getMessage());
+            }
+        }
+        if (error != null)
+            throw error;
+        return responses;
+    }
+
     /** Send comment.
         @param comment comment line (must start with '#'). */
     public abstract void sendComment(String comment);
@@ -0,0 +1,175 @@
+// GtpMetrics.java
+
+package net.sf.gogui.gtp;
+
+import java.text.NumberFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import net.sf.gogui.util.LatencyHistogram;
+import net.sf.gogui.util.StringUtil;
+
+/** Wall-clock latencies of GTP commands.
+    Keeps a LatencyHistogram per command name. The methods of this class
+    are thread-safe. */
+public final class GtpMetrics
+{
+    /** Add the latency of a command.
+        @param command The command line (with or without id and
+        arguments).
+        @param nanos The latency in nanoseconds. */
+    public void add(String command, long nanos)
+    {
+        String name = getCommandName(command);
+        synchronized (this)
+        {
+            LatencyHistogram histogram = m_histograms.get(name);
+            if (histogram == null)
+            {
+                histogram = new LatencyHistogram();
+                m_histograms.put(name, histogram);
+            }
+            histogram.add(nanos);
+        }
+    }
+
+    /** Add all latencies of other metrics. */
+    public void add(GtpMetrics metrics)
+    {
+        for (Map.Entry<String,LatencyHistogram> entry
+                 : metrics.getSnapshot().entrySet())
+        {
+            synchronized (this)
+            {
+                LatencyHistogram histogram = m_histograms.get(entry.getKey());
+                if (histogram == null)
+                    m_histograms.put(entry.getKey(), entry.getValue());
+                else
+                    histogram.add(entry.getValue());
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        m_histograms.clear();
+    }
+
+    /** Format the metrics as a table.
+        Contains a line per command with the number of commands and the
+        mean, 50th, 90th and 99th percentile and maximum latency in
+        milliseconds. */
+    public String format()
+    {
+        NumberFormat format = StringUtil.getNumberFormat(1);
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("#Command\tCount\tMean\tP50\tP90\tP99\tMax\n");
+        for (Map.Entry<String,LatencyHistogram> entry
+                 : getSnapshot().entrySet())
+        {
+            LatencyHistogram histogram = entry.getValue();
+            buffer.append(entry.getKey());
+            buffer.append('\t');
+            buffer.append(histogram.getCount());
+            buffer.append('\t');
+            buffer.append(format.format(histogram.getMean() / 1e6));
+            for (double percent : PERCENTILES)
+            {
+                buffer.append('\t');
+                buffer.append(formatMillis(format,
+                                           histogram.getPercentile(percent)));
+            }
+            buffer.append('\t');
+            buffer.append(formatMillis(format, histogram.getMax()));
+            buffer.append('\n');
+        }
+        return buffer.toString();
+    }
+
+    /** Format a short summary of a histogram.
+        Contains the number of commands and the mean, 90th percentile and
+        maximum latency in milliseconds. */
+    public static String formatSummary(LatencyHistogram histogram)
+    {
+        NumberFormat format = StringUtil.getNumberFormat(1);
+        return histogram.getCount() + " commands, mean "
+            + format.format(histogram.getMean() / 1e6) + " ms, P90 "
+            + formatMillis(format, histogram.getPercentile(90))
+            + " ms, max " + formatMillis(format, histogram.getMax())
+            + " ms";
+    }
+
+    /** Format a latency in milliseconds. */
+    public static String formatMillis(NumberFormat format, long nanos)
+    {
+        return format.format(nanos / 1e6);
+    }
+
+    /** Get a copy of the histogram of a command.
+        @param name The command name.
+        @return The histogram or null, if no such command was recorded. */
+    public synchronized LatencyHistogram get(String name)
+    {
+        LatencyHistogram histogram = m_histograms.get(name);
+        if (histogram == null)
+            return null;
+        return new LatencyHistogram(histogram);
+    }
+
+    /** Get the command name of a command line.
+        Strips the id and the arguments. */
+    public static String getCommandName(String command)
+    {
+        int begin = skipSpace(command, 0);
+        int end = skipWord(command, begin);
+        boolean isId = (end > begin);
+        for (int i = begin; i < end && isId; ++i)
+            isId = Character.isDigit(command.charAt(i));
+        if (isId)
+        {
+            begin = skipSpace(command, end);
+            end = skipWord(command, begin);
+        }
+        return command.substring(begin, end);
+    }
+
+    /** Get copies of the histograms of all commands.
+        @return Map from command name to histogram, sorted by name. */
+    public synchronized TreeMap<String,LatencyHistogram> getSnapshot()
+    {
+        TreeMap<String,LatencyHistogram> result =
+            new TreeMap<String,LatencyHistogram>();
+        for (Map.Entry<String,LatencyHistogram> entry
+                 : m_histograms.entrySet())
+            result.put(entry.getKey(),
+                       new LatencyHistogram(entry.getValue()));
+        return result;
+    }
+
+    /** Get a histogram of the latencies of all commands. */
+    public synchronized LatencyHistogram getTotal()
+    {
+        LatencyHistogram result = new LatencyHistogram();
+        for (LatencyHistogram histogram : m_histograms.values())
+            result.add(histogram);
+        return result;
+    }
+
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    private final TreeMap<String,LatencyHistogram> m_histograms =
+        new TreeMap<String,LatencyHistogram>();
+
+    private static int skipSpace(String s, int i)
+    {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i)))
+            ++i;
+        return i;
+    }
+
+    private static int skipWord(String s, int i)
+    {
+        while (i < s.length() && ! Character.isWhitespace(s.charAt(i)))
+            ++i;
+        return i;
+    }
+}
@@ -307,13 +307,37 @@ public class GtpSynchronizer
             for (int i = 0; i < moves.size(); ++i)
                 m_engineState.play(moves.get(i));
         }
-        else
+        else if (moves.size() > 1)
         {
+            ArrayList<String> commands = new ArrayList<String>(moves.size());
             for (int i = 0; i < moves.size(); ++i)
-            {
-                play(moves.get(i));
-                updateListener();
-            }
+                commands.add(m_gtp.getCommandPlay(moves.get(i)));
+            sendPipelined(commands);
+            for (int i = 0; i < moves.size(); ++i)
+                m_engineState.play(moves.get(i));
+            updateListener();
+        }
+        else
+        {
+            play(moves.get(0));
+            updateListener();
+        }
+    }
+
+    /** Send commands that change the engine state pipelined.
+        If one of the commands fails, the following commands are still
+        executed by the engine, so the engine state is unknown and a full
+        initialization is needed at the next synchronization. */
+    private void sendPipelined(ArrayList<String> commands) throws GtpError
+    {
+        try
+        {
+            m_gtp.sendPipelined(commands);
+        }
+        catch (GtpError e)
+        {
+            m_engineState = null;
+            throw e;
         }
     }
 
@@ -402,15 +426,22 @@ public class GtpSynchronizer
             m_gtp.send("gg-undo " + n);
             m_engineState.undo(n);
         }
-        else
+        else if (n > 1)
         {
             assert m_isSupportedUndo;
+            ArrayList<String> commands = new ArrayList<String>(n);
             for (int i = 0; i < n; ++i)
-            {
-                m_gtp.send("undo");
-                m_engineState.undo();
-                updateListener();
-            }
+                commands.add("undo");
+            sendPipelined(commands);
+            m_engineState.undo(n);
+            updateListener();
+        }
+        else
+        {
+            assert m_isSupportedUndo;
+            m_gtp.send("undo");
+            m_engineState.undo();
+            updateListener();
         }
     }
 
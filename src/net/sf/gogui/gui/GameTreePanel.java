@@ -3,10 +3,10 @@
 package net.sf.gogui.gui;
 
 import java.awt.Color;
-import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -14,29 +14,40 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionAdapter;
-import java.util.HashMap;
+import java.awt.font.LineMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
-import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.Scrollable;
-import javax.swing.SpringLayout;
 import javax.swing.SwingConstants;
+import javax.swing.ToolTipManager;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.NodeUtil;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
+import net.sf.gogui.go.Move;
 import net.sf.gogui.gogui.GoGuiActions;
 
 import static net.sf.gogui.gui.I18n.i18n;
 
-/** Panel displaying a game tree. */
+/** Panel displaying a game tree.
+    The panel does not use a component per node. The layout of the visible
+    nodes is computed into arrays indexed by the position of the node in
+    the preorder traversal of the visible nodes, and only the nodes in the
+    clip region are painted. Each row of the layout contains a node and
+    its chain of first children, so the rows are non-decreasing in
+    preorder and the nodes in a region can be found with a binary
+    search. */
 public class GameTreePanel
     extends JPanel
     implements Scrollable
@@ -67,7 +78,7 @@ public class GameTreePanel
                          Label labelMode, Size sizeMode,
                          MessageDialogs messageDialogs, GoGuiActions m_actions)
     {
-        super(new SpringLayout());
+        super(null);
         m_messageDialogs = messageDialogs;
         m_owner = owner;
         setBackground(BACKGROUND);
@@ -79,42 +90,32 @@ public class GameTreePanel
         setAutoscrolls(true);
         addMouseMotionListener(new GameTreePanel.MouseMotionListener());
         m_listener = listener;
-        m_mouseListener = new MouseAdapter()
+        addMouseListener(new MouseAdapter()
             {
                 public void mouseClicked(MouseEvent event)
                 {
                     //Left click
                     if (event.getButton() != MouseEvent.BUTTON1)
                         return;
-                    GameTreeNode gameNode = (GameTreeNode)event.getSource();
-                    gotoNode(gameNode.getNode());
+                    int index = getIndexAt(event.getX(), event.getY());
+                    if (index >= 0)
+                        gotoNode(m_nodes[index]);
                 }
 
                 public void mousePressed(MouseEvent event)
                 {
                     if (event.isPopupTrigger())
-                    {
-                        GameTreeNode gameNode
-                            = (GameTreeNode)event.getSource();
-                        int x = event.getX();
-                        int y = event.getY();
-                        showPopup(x, y, gameNode, m_actions);
-                    }
+                        showPopup(event, m_actions);
                 }
 
                 public void mouseReleased(MouseEvent event)
                 {
                 	//Right click
                     if (event.isPopupTrigger())
-                    {
-                        GameTreeNode gameNode
-                            = (GameTreeNode)event.getSource();
-                        int x = event.getX();
-                        int y = event.getY();
-                        showPopup(x, y, gameNode, m_actions);
-                    }
+                        showPopup(event, m_actions);
                 }
-            };
+            });
+        ToolTipManager.sharedInstance().registerComponent(this);
     }
 
     public ConstNode getCurrentNode()
@@ -137,6 +138,14 @@ public class GameTreePanel
         return m_nodeSize;
     }
 
+    public String getToolTipText(MouseEvent event)
+    {
+        int index = getIndexAt(event.getX(), event.getY());
+        if (index < 0)
+            return null;
+        return getToolTip(m_nodes[index], m_moveNumber[index]);
+    }
+
     public Dimension getPreferredScrollableViewportSize()
     {
         return new Dimension(m_nodeFullSize * 10, m_nodeFullSize * 3);
@@ -200,12 +209,38 @@ public class GameTreePanel
     {
         GuiUtil.setAntiAlias(graphics);
         super.paintComponent(graphics);
+        if (m_numberNodes == 0)
+            return;
+        graphics.setFont(m_font);
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        int rowTop = Math.max((clip.y - MARGIN) / m_nodeFullSize - 1, 0);
+        int rowBottom = (clip.y + clip.height - MARGIN) / m_nodeFullSize + 1;
+        int columnLeft = (clip.x - MARGIN) / m_nodeFullSize - 1;
+        int columnRight =
+            (clip.x + clip.width - MARGIN) / m_nodeFullSize + 1;
+        int begin = findRow(rowTop);
+        int end = findRow(rowBottom + 1);
+        // Junction lines of ancestors that start above the clip region
+        for (int i = begin - 1; i >= 0; i = m_father[i])
+            if (m_lastChildRow[i] >= rowTop
+                && m_column[i] >= columnLeft && m_column[i] <= columnRight)
+                drawJunction(graphics, i);
+        for (int i = begin; i < end; ++i)
+        {
+            int column = m_column[i];
+            if (column > columnRight)
+                continue;
+            if (column < columnLeft && m_subtreeSize[i] == 0)
+                continue;
+            drawNode(graphics, i);
+        }
     }
 
     public void redrawCurrentNode()
     {
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        gameNode.repaint();
+        repaintNode(m_currentIndex);
     }
 
     public void scrollToCurrent()
@@ -265,30 +300,60 @@ public class GameTreePanel
         }
     }
 
-    /** Faster than update if a new node was added as the first child. */
+    /** Faster than update if a new node was added as the first child.
+        Inserts the node into the layout without computing the layout of
+        the other nodes again. */
     public void addNewSingleChild(ConstNode node)
     {
         assert ! node.hasChildren();
         ConstNode father = node.getFatherConst();
         assert father != null;
         assert father.getNumberChildren() == 1;
-        GameTreeNode fatherGameNode = getGameTreeNode(father);
-        if (fatherGameNode == null)
+        int fatherIndex = getIndex(father);
+        if (fatherIndex < 0)
         {
             assert false;
             return;
         }
-        int moveNumber = NodeUtil.getMoveNumber(node);
-        GameTreeNode gameNode = createNode(node, moveNumber);
-        m_map.put(node, gameNode);
-        add(gameNode);
-        putConstraint(fatherGameNode, gameNode, m_nodeFullSize, 0);
-        gameNode.setLocation(fatherGameNode.getX() + m_nodeFullSize,
-                             fatherGameNode.getY());
-        gameNode.setSize(m_nodeFullSize, m_nodeFullSize);
-        m_maxX = Math.max(fatherGameNode.getX() + 2 * m_nodeFullSize, m_maxX);
+        // Father had no children, so the node is the next node in preorder
+        // and is in the same row as its father
+        m_isExpanded.add(father);
+        int index = fatherIndex + 1;
+        ensureCapacity(m_numberNodes + 1);
+        int numberMoved = m_numberNodes - index;
+        if (numberMoved > 0)
+        {
+            System.arraycopy(m_nodes, index, m_nodes, index + 1, numberMoved);
+            System.arraycopy(m_column, index, m_column, index + 1,
+                             numberMoved);
+            System.arraycopy(m_row, index, m_row, index + 1, numberMoved);
+            System.arraycopy(m_moveNumber, index, m_moveNumber, index + 1,
+                             numberMoved);
+            System.arraycopy(m_father, index, m_father, index + 1,
+                             numberMoved);
+            System.arraycopy(m_end, index, m_end, index + 1, numberMoved);
+            System.arraycopy(m_lastChildRow, index, m_lastChildRow,
+                             index + 1, numberMoved);
+            System.arraycopy(m_subtreeSize, index, m_subtreeSize, index + 1,
+                             numberMoved);
+        }
+        ++m_numberNodes;
+        for (int i = 0; i < m_numberNodes; ++i)
+        {
+            if (m_father[i] > fatherIndex)
+                ++m_father[i];
+            if (m_end[i] > fatherIndex)
+                ++m_end[i];
+        }
+        if (m_currentIndex >= index)
+            ++m_currentIndex;
+        setNode(index, node, fatherIndex, m_row[fatherIndex]);
+        m_end[index] = index + 1;
         setPreferredSize(new Dimension(m_maxX + m_nodeFullSize + MARGIN,
                                        m_maxY + m_nodeFullSize + MARGIN));
+        revalidate();
+        repaintNode(fatherIndex);
+        repaintNode(index);
     }
 
     public void showPopup(GoGuiActions m_actions)
@@ -296,11 +361,11 @@ public class GameTreePanel
         if (m_currentNode == null)
             return;
         scrollToCurrent();
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        if (gameNode == null)
+        int index = getIndex(m_currentNode);
+        if (index < 0)
             return;
-        showPopup(gameNode.getWidth() / 2, gameNode.getHeight() / 2,
-                  gameNode, m_actions);
+        showPopup(getNodeX(index) + m_nodeFullSize / 2,
+                  getNodeY(index) + m_nodeFullSize / 2, index, m_actions);
     }
 
     public void update(ConstGameTree tree, ConstNode currentNode,
@@ -316,30 +381,17 @@ public class GameTreePanel
         ensureVisible(currentNode);
         m_tree = tree;
         m_currentNode = currentNode;
-        removeAll();
-        m_map.clear();
         m_maxX = minWidth;
         m_maxY = minHeight;
-        try
-        {
-            ConstNode root = m_tree.getRootConst();
-            createNodes(this, root, 0, 0, MARGIN, MARGIN, 0);
-            if (gameTreeChanged
-                && ! NodeUtil.subtreeGreaterThan(root, 10000))
-                showSubtree(root);
-        }
-        catch (OutOfMemoryError e)
-        {
-            m_isExpanded.clear();
-            removeAll();
-            m_messageDialogs.showError(m_owner,
-                                       i18n("MSG_TREE_OUTOFMEM"),
-                                       i18n("MSG_TREE_OUTOFMEM_2"));
-            update(tree, currentNode, minWidth, minHeight);
-        }
+        ConstNode root = m_tree.getRootConst();
+        createLayout(root);
+        if (gameTreeChanged
+            && ! NodeUtil.subtreeGreaterThan(root, LARGE_SUBTREE))
+            showSubtree(root);
         setPreferredSize(new Dimension(m_maxX + m_nodeFullSize + MARGIN,
                                        m_maxY + m_nodeFullSize + MARGIN));
         revalidate();
+        repaint();
         scrollToCurrent();
         if (m_scrollPane != null)
             m_scrollPane.requestFocusInWindow();
@@ -354,8 +406,8 @@ public class GameTreePanel
             update(m_tree, currentNode, minWidth, minHeight);
             return;
         }
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        if (gameNode == null)
+        if (m_currentIndex < 0 || m_currentIndex >= m_numberNodes
+            || m_nodes[m_currentIndex] != m_currentNode)
         {
             // The following warning was previously an assert false.
             // But it can can happen, because GoGui does sometimes defer a full
@@ -370,19 +422,15 @@ public class GameTreePanel
             System.err.println("GameTreePanel: current node not found");
             return;
         }
-        gameNode.repaint();
-        gameNode = getGameTreeNode(currentNode);
-        if (gameNode == null)
+        repaintNode(m_currentIndex);
+        int index = getIndex(currentNode);
+        if (index < 0)
         {
             update(m_tree, currentNode, minWidth, minHeight);
             return;
         }
-        Point location = gameNode.getLocation();
-        m_currentNodeX = location.x;
-        m_currentNodeY = location.y;
-        gameNode.repaint();
-        gameNode.updateToolTip();
-        m_currentNode = currentNode;
+        setCurrent(index);
+        repaintNode(index);
         scrollToCurrent();
         if (m_scrollPane != null)
             m_scrollPane.requestFocusInWindow();
@@ -403,6 +451,8 @@ public class GameTreePanel
 
     private boolean m_showSubtreeSizes;
 
+    private int m_currentIndex = -1;
+
     private int m_currentNodeX;
 
     private int m_currentNodeY;
@@ -421,11 +471,45 @@ public class GameTreePanel
 
     private static final int MARGIN = 15;
 
+    /** Subtrees with more nodes are not expanded automatically. */
+    private static final int LARGE_SUBTREE = 1000000;
+
+    private static final Color COLOR_LIGHT_BLUE = new Color(103, 122, 164);
+
+    private static final Color COLOR_CURSOR = new Color(142, 168, 226);
+
+    private static final Color COLOR_GRID = new Color(148, 148, 148);
+
     private int m_maxX;
 
     private int m_maxY;
 
-    private Dimension m_preferredNodeSize;
+    /** Number of visible nodes in the layout. */
+    private int m_numberNodes;
+
+    /** Visible nodes in preorder. */
+    private ConstNode[] m_nodes = new ConstNode[0];
+
+    /** Column of the node in the layout (the depth of the node). */
+    private int[] m_column = new int[0];
+
+    /** Row of the node in the layout. */
+    private int[] m_row = new int[0];
+
+    private int[] m_moveNumber = new int[0];
+
+    /** Index of the father or -1 for the root. */
+    private int[] m_father = new int[0];
+
+    /** Index after the last node of the visible subtree of the node. */
+    private int[] m_end = new int[0];
+
+    /** Row of the last child, if the node is expanded and has more than one
+        child, -1 otherwise. */
+    private int[] m_lastChildRow = new int[0];
+
+    /** Size of the hidden subtree shown next to a collapsed node or 0. */
+    private int[] m_subtreeSize = new int[0];
 
     private Font m_font;
 
@@ -442,14 +526,9 @@ public class GameTreePanel
 
     private ConstNode m_popupNode;
 
-    private final HashMap<ConstNode,GameTreeNode> m_map =
-        new HashMap<ConstNode,GameTreeNode>(500, 0.8f);
-
     private final HashSet<ConstNode> m_isExpanded
         = new HashSet<ConstNode>(200);
 
-    private final MouseListener m_mouseListener;
-
     private Point m_popupLocation;
 
     private ImageIcon m_iconBlack;
@@ -507,76 +586,57 @@ public class GameTreePanel
 
 
         m_font = new Font("Dialog", Font.PLAIN, (int)(0.4 * m_nodeSize));
-        m_preferredNodeSize = new Dimension(m_nodeFullSize, m_nodeFullSize);
     }
 
-    private GameTreeNode createNode(ConstNode node, int moveNumber)
+    /** Compute the layout of the visible nodes.
+        Traverses the tree without recursion, because the main variation
+        can be very long. */
+    private void createLayout(ConstNode root)
     {
-        return new GameTreeNode(node, moveNumber, this, m_mouseListener,
-                                m_font, m_iconBlack.getImage(),
-                                m_iconWhite.getImage(),
-                                m_iconSetup.getImage(),
-                                m_preferredNodeSize);
-    }
-
-    private int createNodes(Component father, ConstNode node, int x, int y,
-                            int dx, int dy, int moveNumber)
-    {
-        m_maxX = Math.max(x, m_maxX);
-        m_maxY = Math.max(y, m_maxY);
-        if (node.getMove() != null)
-            ++moveNumber;
-        GameTreeNode gameNode = createNode(node, moveNumber);
-        m_map.put(node, gameNode);
-        add(gameNode);
-        putConstraint(father, gameNode, dx, dy);
-        int numberChildren = node.getNumberChildren();
-        dx = m_nodeFullSize;
-        dy = 0;
-        boolean isExpanded = isExpanded(node);
-        if (isExpanded)
-        {
-            int[] childrenDy = new int[numberChildren];
-            for (int i = 0; i < numberChildren; ++i)
-            {
-                childrenDy[i] = dy;
-                dy += createNodes(gameNode, node.getChildConst(i),
-                                  x + dx, y + dy, dx, dy, moveNumber);
-                if (i < numberChildren - 1)
-                    dy += m_nodeFullSize;
-            }
-            if (numberChildren > 1)
-            {
-                GameTreeJunction junction =
-                    new GameTreeJunction(childrenDy, this);
-                add(junction);
-                putConstraint(gameNode, junction, 0, m_nodeFullSize);
-            }
-        }
-        else
+        int oldNumberNodes = m_numberNodes;
+        m_numberNodes = 0;
+        m_currentIndex = -1;
+        ensureCapacity(1);
+        setNode(0, root, -1, 0);
+        m_numberNodes = 1;
+        int maxRow = 0;
+        // Index of the next child to visit by column
+        int[] nextChild = new int[64];
+        int index = 0;
+        while (index >= 0)
         {
-            if (m_showSubtreeSizes && node.hasChildren())
+            ConstNode node = m_nodes[index];
+            int column = m_column[index];
+            int i = nextChild[column];
+            int numberChildren = node.getNumberChildren();
+            if (i >= numberChildren || ! isExpanded(node))
             {
-                int subtreeSize = NodeUtil.subtreeSize(node) - 1;
-                String text = Integer.toString(subtreeSize);
-                // Use upper limit for textWidth
-                int textWidth = text.length() + m_font.getSize();
-                int textHeight = m_font.getSize();
-                int pad = GuiUtil.SMALL_PAD;
-                m_maxX = Math.max(x + textWidth + pad, m_maxX);
-                JLabel label = new JLabel(text);
-                label.setFont(m_font);
-                add(label);
-                putConstraint(gameNode, label, dx + pad,
-                              (m_nodeSize - textHeight) / 2);
+                index = m_father[index];
+                continue;
             }
+            nextChild[column] = i + 1;
+            // The first child is in the row of the father, the other children
+            // below the subtree of the previous child
+            int row = (i == 0 ? m_row[index] : maxRow + 1);
+            maxRow = Math.max(row, maxRow);
+            if (i > 0 && i == numberChildren - 1)
+                m_lastChildRow[index] = row;
+            ensureCapacity(m_numberNodes + 1);
+            int childIndex = m_numberNodes++;
+            setNode(childIndex, node.getChildConst(i), index, row);
+            if (column + 1 >= nextChild.length)
+                nextChild = Arrays.copyOf(nextChild, 2 * nextChild.length);
+            nextChild[column + 1] = 0;
+            index = childIndex;
         }
-        if (node == m_currentNode)
-        {
-            m_currentNodeX = x;
-            m_currentNodeY = y;
-        }
-        return dy;
+        // Descendants have higher indices than their ancestors
+        for (int i = 0; i < m_numberNodes; ++i)
+            m_end[i] = i + 1;
+        for (int i = m_numberNodes - 1; i > 0; --i)
+            m_end[m_father[i]] = Math.max(m_end[m_father[i]], m_end[i]);
+        if (oldNumberNodes > m_numberNodes)
+            // Don't keep nodes of an old tree
+            Arrays.fill(m_nodes, m_numberNodes, oldNumberNodes, null);
     }
 
     private void createPopup(GoGuiActions m_actions)
@@ -664,9 +724,264 @@ public class GameTreePanel
         m_popup.add(item);
     }
 
-    private GameTreeNode getGameTreeNode(ConstNode node)
+    private void drawJunction(Graphics graphics, int index)
+    {
+        int halfSize = m_nodeSize / 2;
+        int x = getNodeX(index) + halfSize;
+        int y = getNodeY(index);
+        graphics.setColor(COLOR_GRID);
+        graphics.drawLine(x, y + m_nodeSize, x,
+                          MARGIN + m_lastChildRow[index] * m_nodeFullSize);
+    }
+
+    private void drawNode(Graphics graphics, int index)
+    {
+        ConstNode node = m_nodes[index];
+        int size = m_nodeSize;
+        int fullSize = m_nodeFullSize;
+        int halfSize = size / 2;
+        int x = getNodeX(index);
+        int y = getNodeY(index);
+        int father = m_father[index];
+        if (father >= 0 && father != index - 1)
+        {
+            // Not the first child, the vertical line is drawn by the father
+            int fatherX = getNodeX(father);
+            graphics.setColor(COLOR_GRID);
+            graphics.drawLine(fatherX + halfSize, y, fatherX + size,
+                              y + halfSize);
+            graphics.drawLine(fatherX + size, y + halfSize, x, y + halfSize);
+        }
+        if (m_lastChildRow[index] >= 0)
+            drawJunction(graphics, index);
+        if (index == m_currentIndex)
+        {
+            graphics.setColor(COLOR_CURSOR);
+            graphics.fillRect(x, y, size, size > 10 ? size : fullSize - 1);
+        }
+        graphics.setColor(COLOR_GRID);
+        if (node.hasChildren())
+            graphics.drawLine(x + size, y + halfSize, x + fullSize,
+                              y + halfSize);
+        Move move = node.getMove();
+        if (node.hasSetup())
+            graphics.drawImage(m_iconSetup.getImage(), x, y, null);
+        else if (move == null)
+        {
+            int[] xPoints = { x + halfSize, x + size, x + halfSize, x };
+            int[] yPoints = { y, y + halfSize, y + size, y + halfSize };
+            graphics.fillPolygon(xPoints, yPoints, 4);
+        }
+        else
+        {
+            if (move.getColor() == BLACK)
+                graphics.drawImage(m_iconBlack.getImage(), x, y, null);
+            else
+                graphics.drawImage(m_iconWhite.getImage(), x, y, null);
+            drawText(graphics, index, x, y);
+        }
+        if (node.hasComment())
+        {
+            graphics.setColor(COLOR_LIGHT_BLUE);
+            int yLine = y + size + (fullSize - size) / 4;
+            int d = size / 5;
+            graphics.drawLine(x + d, yLine, x + size - d, yLine);
+        }
+        if (m_subtreeSize[index] > 0)
+        {
+            String text = Integer.toString(m_subtreeSize[index]);
+            FontMetrics fontMetrics = graphics.getFontMetrics();
+            int textHeight = m_font.getSize();
+            graphics.setColor(Color.black);
+            graphics.drawString(text, x + fullSize + GuiUtil.SMALL_PAD,
+                                y + (size - textHeight) / 2
+                                + fontMetrics.getAscent());
+        }
+    }
+
+    private void drawText(Graphics graphics, int index, int x, int y)
     {
-        return m_map.get(node);
+        if (m_labelMode == Label.NONE)
+            return;
+        Move move = m_nodes[index].getMove();
+        int size = m_nodeSize;
+        String text;
+        if (m_labelMode == Label.MOVE)
+        {
+            if (move.getPoint() == null)
+                return;
+            text = move.getPoint().toString();
+        }
+        else
+            text = Integer.toString(m_moveNumber[index]);
+        FontMetrics fontMetrics = graphics.getFontMetrics();
+        LineMetrics lineMetrics = fontMetrics.getLineMetrics(text, graphics);
+        int textWidth = fontMetrics.stringWidth(text);
+        int ascent = (int)lineMetrics.getAscent();
+        int xText = x + (size - textWidth) / 2;
+        int yText = y + (ascent + size) / 2;
+        if (move.getColor() == BLACK)
+            graphics.setColor(Color.white);
+        else
+            graphics.setColor(Color.black);
+        graphics.drawString(text, xText, yText);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= m_nodes.length)
+            return;
+        int n = Math.max(capacity, Math.max(2 * m_nodes.length, 256));
+        m_nodes = Arrays.copyOf(m_nodes, n);
+        m_column = Arrays.copyOf(m_column, n);
+        m_row = Arrays.copyOf(m_row, n);
+        m_moveNumber = Arrays.copyOf(m_moveNumber, n);
+        m_father = Arrays.copyOf(m_father, n);
+        m_end = Arrays.copyOf(m_end, n);
+        m_lastChildRow = Arrays.copyOf(m_lastChildRow, n);
+        m_subtreeSize = Arrays.copyOf(m_subtreeSize, n);
+    }
+
+    /** Find the index of the first node in a row or a later row.
+        @return The index or m_numberNodes, if there is no such node. */
+    private int findRow(int row)
+    {
+        int low = 0;
+        int high = m_numberNodes;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (m_row[mid] < row)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** Get the index of a node in the layout.
+        @return The index or -1, if the node is not visible. */
+    private int getIndex(ConstNode node)
+    {
+        if (m_numberNodes == 0)
+            return -1;
+        int current = m_currentIndex;
+        if (current >= 0 && current < m_numberNodes)
+        {
+            // Fast path for moving to a neighbor of the current node
+            if (m_nodes[current] == node)
+                return current;
+            if (current + 1 < m_numberNodes && m_nodes[current + 1] == node)
+                return current + 1;
+            if (m_father[current] >= 0 && m_nodes[m_father[current]] == node)
+                return m_father[current];
+        }
+        ArrayList<ConstNode> path = new ArrayList<ConstNode>();
+        for (ConstNode n = node; n != null; n = n.getFatherConst())
+            path.add(n);
+        int index = 0;
+        if (m_nodes[0] != path.get(path.size() - 1))
+            return -1;
+        for (int i = path.size() - 2; i >= 0; --i)
+        {
+            ConstNode child = path.get(i);
+            int childIndex = index + 1;
+            while (childIndex < m_end[index] && m_nodes[childIndex] != child)
+                childIndex = m_end[childIndex];
+            if (childIndex >= m_end[index])
+                return -1;
+            index = childIndex;
+        }
+        return index;
+    }
+
+    /** Get the index of the node at a location.
+        @return The index or -1, if there is no node at the location. */
+    private int getIndexAt(int x, int y)
+    {
+        if (x < MARGIN || y < MARGIN)
+            return -1;
+        int row = (y - MARGIN) / m_nodeFullSize;
+        int column = (x - MARGIN) / m_nodeFullSize;
+        int first = findRow(row);
+        if (first == m_numberNodes || m_row[first] != row)
+            return -1;
+        // A row contains a node and the chain of its first children
+        int index = first + column - m_column[first];
+        if (index < first || index >= m_numberNodes || m_row[index] != row)
+            return -1;
+        return index;
+    }
+
+    private int getNodeX(int index)
+    {
+        return MARGIN + m_column[index] * m_nodeFullSize;
+    }
+
+    private int getNodeY(int index)
+    {
+        return MARGIN + m_row[index] * m_nodeFullSize;
+    }
+
+    private static String getToolTip(ConstNode node, int moveNumber)
+    {
+        StringBuilder toolTip = new StringBuilder(128);
+        Move move = node.getMove();
+        GoColor player = node.getPlayer();
+        if (move != null)
+        {
+            toolTip.append(moveNumber);
+            toolTip.append(' ');
+            toolTip.append(move);
+        }
+        else if (node.hasSetup() || player != null)
+        {
+            toolTip.append(i18n("TT_NODE_SETUP"));
+            toolTip.append(" (");
+            boolean anyStones = false;
+            for (GoColor c : BLACK_WHITE_EMPTY)
+            {
+                int n = node.getSetup(c).size();
+                if (n == 0)
+                    continue;
+                if (anyStones)
+                    toolTip.append(", ");
+                anyStones = true;
+                toolTip.append(c.getUppercaseLetter());
+                toolTip.append(' ');
+                toolTip.append(n);
+            }
+            if (player != null)
+            {
+                if (anyStones)
+                    toolTip.append(", ");
+                toolTip.append(i18n("TT_NODE_PLAYER"));
+                toolTip.append(' ');
+                toolTip.append(player.getUppercaseLetter());
+            }
+            toolTip.append(')');
+        }
+        String comment = NodeUtil.getCommentStart(node, false, 80);
+        if (comment != null)
+        {
+            comment = comment.replaceAll("\n *\n", "\n");
+            comment = comment.replaceAll("\n", "<br>");
+            if (comment.length() > 50)
+            {
+                toolTip.append("<p width=\"250\">");
+                toolTip.append(comment);
+                toolTip.append("</p>");
+            }
+            else
+            {
+                toolTip.append("<p>");
+                toolTip.append(comment);
+                toolTip.append("</p>");
+            }
+        }
+        if (toolTip.length() == 0)
+            return null;
+        return "<html>" + toolTip.toString() + "</html>";
     }
 
     private boolean ensureVisible(ConstNode node)
@@ -675,9 +990,10 @@ public class GameTreePanel
         while (node != null)
         {
             ConstNode father = node.getFatherConst();
-            if (father != null)
-                if (m_isExpanded.add(father))
-                    changed = true;
+            // The fathers of expanded nodes are always expanded
+            if (father == null || ! m_isExpanded.add(father))
+                break;
+            changed = true;
             node = father;
         }
         return changed;
@@ -694,7 +1010,6 @@ public class GameTreePanel
     {
         boolean changed = false;
         boolean currentChanged = false;
-        int depth = NodeUtil.getDepth(root);
         ConstNode node = root;
         while (node != null)
         {
@@ -706,7 +1021,7 @@ public class GameTreePanel
             }
             if (m_isExpanded.remove(node))
                 changed = true;
-            node = NodeUtil.nextNode(node, depth);
+            node = NodeUtil.nextNode(node, root);
         }
         if (currentChanged)
         {
@@ -730,33 +1045,82 @@ public class GameTreePanel
         textViewer.setVisible(true);
     }
 
-    private void putConstraint(Component father, Component son,
-                               int west, int north)
+    private void repaintNode(int index)
     {
-        SpringLayout layout = (SpringLayout)getLayout();
-        layout.putConstraint(SpringLayout.WEST, son, west,
-                             SpringLayout.WEST, father);
-        layout.putConstraint(SpringLayout.NORTH, son, north,
-                             SpringLayout.NORTH, father);
+        if (index < 0 || index >= m_numberNodes)
+            return;
+        // Include the line to the father and the subtree size label
+        repaint(getNodeX(index) - m_nodeFullSize, getNodeY(index),
+                3 * m_nodeFullSize, m_nodeFullSize);
     }
 
     private void scrollTo(ConstNode node)
     {
         if (node == null)
             return;
-        GameTreeNode gameNode = getGameTreeNode(node);
+        int index = getIndex(node);
+        if (index < 0)
+            return;
         Rectangle rectangle = new Rectangle();
-        rectangle.x = gameNode.getLocation().x;
-        rectangle.y = gameNode.getLocation().y;
+        rectangle.x = getNodeX(index);
+        rectangle.y = getNodeY(index);
         // Make rectangle large so that children are visible
         rectangle.width = 3 * m_nodeFullSize;
         rectangle.height = 3 * m_nodeFullSize;
         scrollRectToVisible(rectangle);
     }
 
-    private void showPopup(int x, int y, GameTreeNode gameNode, GoGuiActions m_actions)
+    /** Set the current node and its location. */
+    private void setCurrent(int index)
     {
-        ConstNode node = gameNode.getNode();
+        m_currentIndex = index;
+        m_currentNode = m_nodes[index];
+        m_currentNodeX = getNodeX(index);
+        m_currentNodeY = getNodeY(index);
+    }
+
+    /** Set the layout of a node.
+        Also updates the size of the layout. */
+    private void setNode(int index, ConstNode node, int father, int row)
+    {
+        m_nodes[index] = node;
+        m_father[index] = father;
+        m_row[index] = row;
+        m_column[index] = (father < 0 ? 0 : m_column[father] + 1);
+        int moveNumber = (father < 0 ? 0 : m_moveNumber[father]);
+        if (node.getMove() != null)
+            ++moveNumber;
+        m_moveNumber[index] = moveNumber;
+        m_lastChildRow[index] = -1;
+        m_subtreeSize[index] = 0;
+        int x = m_column[index] * m_nodeFullSize;
+        if (m_showSubtreeSizes && node.hasChildren() && ! isExpanded(node))
+        {
+            int subtreeSize = NodeUtil.subtreeSize(node) - 1;
+            m_subtreeSize[index] = subtreeSize;
+            FontMetrics fontMetrics = getFontMetrics(m_font);
+            int textWidth =
+                fontMetrics.stringWidth(Integer.toString(subtreeSize));
+            x += GuiUtil.SMALL_PAD + textWidth;
+        }
+        m_maxX = Math.max(x, m_maxX);
+        m_maxY = Math.max(row * m_nodeFullSize, m_maxY);
+        if (node == m_currentNode)
+            setCurrent(index);
+    }
+
+    private void showPopup(MouseEvent event, GoGuiActions m_actions)
+    {
+        int x = event.getX();
+        int y = event.getY();
+        int index = getIndexAt(x, y);
+        if (index >= 0)
+            showPopup(x, y, index, m_actions);
+    }
+
+    private void showPopup(int x, int y, int index, GoGuiActions m_actions)
+    {
+        ConstNode node = m_nodes[index];
         m_popupNode = node;
         if (m_popup == null)
             createPopup(m_actions);
@@ -766,13 +1130,13 @@ public class GameTreePanel
         m_itemHideSubtree.setEnabled(hasChildren);
         m_itemShowSubtree.setEnabled(hasChildren);
         m_itemShowChildren.setEnabled(hasChildren);
-        m_popup.show(gameNode, x, y);
+        m_popup.show(this, x, y);
         m_popupLocation = m_popup.getLocationOnScreen();
     }
 
     private void showSubtree(ConstNode root)
     {
-        if (NodeUtil.subtreeGreaterThan(root, 10000))
+        if (NodeUtil.subtreeGreaterThan(root, LARGE_SUBTREE))
         {
             String mainMessage = i18n("MSG_TREE_EXPAND_LARGE");
             String optionalMessage = i18n("MSG_TREE_EXPAND_LARGE_2");
@@ -784,23 +1148,15 @@ public class GameTreePanel
         }
         boolean changed = false;
         ConstNode node = root;
-        int depth = NodeUtil.getDepth(node);
         while (node != null)
         {
             if (m_isExpanded.add(node))
                 changed = true;
-            node = NodeUtil.nextNode(node, depth);
+            node = NodeUtil.nextNode(node, root);
         }
         if (changed)
         {
             update(m_tree, m_currentNode, m_minWidth, m_minHeight);
-            // Game node could have disappeared, because after out of memory
-            // error all nodes are hidden but main variation
-            if (getGameTreeNode(root) == null)
-            {
-                ensureVisible(root);
-                update(m_tree, m_currentNode, m_minWidth, m_minHeight);
-            }
             scrollTo(root);
         }
     }
@@ -4,22 +4,26 @@ package net.sf.gogui.gui;
 
 import java.awt.Component;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.SwingUtilities;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.gtp.GtpAsyncClient;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpSynchronizer;
 import static net.sf.gogui.gui.I18n.i18n;
 
 /** Wrapper around gtp.GtpClient to be used in a GUI environment.
     Allows to send fast commands with the GtpClientBase.send() function
-    immediately in the event dispatch thread and potentially slow commands in
-    a separate thread with a callback in the event thread after the command
-    finished.
+    immediately in the event dispatch thread and potentially slow commands
+    through a GtpAsyncClient with a callback in the event thread after the
+    command finished.
     Fast commands are ones that the Go engine is supposed to answer quickly
     (like boardsize, play and undo), however they have a timeout to
     prevent the GUI to hang, if the program does not respond.
@@ -37,43 +41,12 @@ public class GuiGtpClient
         m_owner = owner;
         m_messageDialogs = messageDialogs;
         m_gtpSynchronizer = new GtpSynchronizer(this, listener, false);
-        Thread thread = new Thread() {
-                public void run() {
-                    synchronized (m_mutex)
-                    {
-                        boolean firstWait = true;
-                        while (true)
-                        {
-                            try
-                            {
-                                if (m_command == null || ! firstWait)
-                                    m_mutex.wait();
-                            }
-                            catch (InterruptedException e)
-                            {
-                                System.err.println("Interrupted");
-                            }
-                            firstWait = false;
-                            m_response = null;
-                            m_exception = null;
-                            try
-                            {
-                                m_response = m_gtp.send(m_command);
-                            }
-                            catch (GtpError e)
-                            {
-                                m_exception = e;
-                            }
-                            SwingUtilities.invokeLater(m_callback);
-                        }
-                    }
-                }
-            };
-        thread.start();
+        m_asyncGtp = new GtpAsyncClient(gtp);
     }
 
     public void close()
     {
+        m_asyncGtp.shutdown();
         if (! isProgramDead())
         {
             m_gtp.close();
@@ -105,6 +78,11 @@ public class GuiGtpClient
         }
     }
 
+    public GtpMetrics getMetrics()
+    {
+        return m_gtp.getMetrics();
+    }
+
     public String getProgramCommand()
     {
         return m_gtp.getProgramCommand();
@@ -146,18 +124,30 @@ public class GuiGtpClient
         return m_gtp.isProgramDead();
     }
 
-    /** Send asynchronous command. */
-    public void send(String command, Runnable callback)
+    /** Send asynchronous command.
+        The callback is invoked in the event dispatch thread after the
+        command finished. */
+    public void send(String command, final Runnable callback)
     {
         assert SwingUtilities.isEventDispatchThread();
         assert ! m_commandInProgress;
         synchronized (m_mutex)
         {
-            m_command = command;
-            m_callback = callback;
+            m_response = null;
+            m_exception = null;
             m_commandInProgress = true;
-            m_mutex.notifyAll();
         }
+        m_asyncGtp.send(command).whenComplete((response, e) -> {
+                synchronized (m_mutex)
+                {
+                    m_response = response;
+                    if (e instanceof GtpError)
+                        m_exception = (GtpError)e;
+                    else if (e != null)
+                        m_exception = new GtpError(e.toString());
+                }
+                SwingUtilities.invokeLater(callback);
+            });
     }
 
     public void sendComment(String comment)
@@ -174,6 +164,16 @@ public class GuiGtpClient
         return m_gtp.send(command, TIMEOUT, timeoutCallback);
     }
 
+    /** Send commands pipelined in event dispatch thread. */
+    public ArrayList<String> sendPipelined(List<String> commands)
+        throws GtpError
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        assert ! m_commandInProgress;
+        TimeoutCallback timeoutCallback = new TimeoutCallback(null);
+        return m_gtp.sendPipelined(commands, TIMEOUT, timeoutCallback);
+    }
+
     public void setAutoNumber(boolean enable)
     {
         m_gtp.setAutoNumber(enable);
@@ -264,11 +264,9 @@ public class GuiGtpClient
 
     private final MessageDialogs m_messageDialogs;
 
-    private final Object m_mutex = new Object();
-
-    private Runnable m_callback;
+    private final GtpAsyncClient m_asyncGtp;
 
-    private String m_command;
+    private final Object m_mutex = new Object();
 
     private String m_response;
 }
@@ -0,0 +1,115 @@
+// SgfCollectionReader.java
+
+package net.sf.gogui.sgf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import net.sf.gogui.game.GameTree;
+
+/** Reader for SGF files containing a collection of games.
+    Reads the games one after another, such that the memory usage does
+    not depend on the number of games in the file. Optionally, variations
+    and comments can be skipped while reading, which is faster and needs
+    less memory if only the main variations of the games are used.
+    Each game is read like a file with a single game by SgfReader; the
+    charset property is respected for each game separately. */
+public final class SgfCollectionReader
+{
+    /** Constructor.
+        Does not read anything yet.
+        @param in Stream to read from.
+        @param file File name used in error messages (can be null)
+        @param skipVariations Read only the main variation of each game.
+        @param skipComments Don't read the comments of the nodes. */
+    public SgfCollectionReader(InputStream in, File file,
+                               boolean skipVariations, boolean skipComments)
+    {
+        m_in = in;
+        m_reader = new SgfReader(new SgfLexer(in), file, skipVariations,
+                                 skipComments);
+    }
+
+    /** Close the stream. */
+    public void close()
+    {
+        try
+        {
+            m_in.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not close SGF stream");
+        }
+    }
+
+    /** Get the number of games read so far. */
+    public int getNumberGames()
+    {
+        return m_numberGames;
+    }
+
+    /** Get warnings that occurred while reading the last game.
+        @return String with warning messages or null if no warnings. */
+    public String getWarnings()
+    {
+        return m_reader.getWarnings();
+    }
+
+    /** Read the next game.
+        After an error, reading cannot be continued.
+        @return The game tree or null, if there are no more games.
+        @throws SgfError If reading fails. */
+    public GameTree readNext() throws SgfError
+    {
+        GameTree tree;
+        try
+        {
+            tree = m_reader.readGame();
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+        catch (OutOfMemoryError e)
+        {
+            throw new SgfError("Out of memory");
+        }
+        if (tree != null)
+            ++m_numberGames;
+        return tree;
+    }
+
+    /** Read the next game and report it to a handler.
+        Does not create a game tree, which is faster and needs less memory
+        if only some properties of the games are needed.
+        After an error, reading cannot be continued.
+        @return false, if there are no more games.
+        @throws SgfError If reading fails or the handler throws an
+        error. */
+    public boolean readNext(SgfHandler handler) throws SgfError
+    {
+        boolean result;
+        try
+        {
+            result = m_reader.readGame(handler);
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+        catch (OutOfMemoryError e)
+        {
+            throw new SgfError("Out of memory");
+        }
+        if (result)
+            ++m_numberGames;
+        return result;
+    }
+
+    private int m_numberGames;
+
+    private final InputStream m_in;
+
+    private final SgfReader m_reader;
+}
@@ -0,0 +1,34 @@
+// SgfHandler.java
+
+package net.sf.gogui.sgf;
+
+import java.util.List;
+
+/** Callback for event-based reading of SGF files.
+    Used by SgfCollectionReader.readNext(SgfHandler) for processing games
+    without creating a game tree. The events are reported in the order of
+    the file, with the exception of the properties of a node, which are
+    reported in alphabetical order of their identifiers after the complete
+    node was read. A handler can abort reading by throwing an SgfError. */
+public interface SgfHandler
+{
+    /** Start of a game tree or variation (opening parenthesis). */
+    void startTree() throws SgfError;
+
+    /** End of a game tree or variation (closing parenthesis).
+        Also called for unclosed trees at the end of the input. */
+    void endTree() throws SgfError;
+
+    /** Start of a node. */
+    void startNode() throws SgfError;
+
+    /** Property of the current node.
+        @param identifier The identifier in upper case with obsolete long
+        names replaced by the standard short names.
+        @param values The values of the property. The list is reused by the
+        reader and valid only during the call. */
+    void property(String identifier, List<String> values) throws SgfError;
+
+    /** End of a node. */
+    void endNode() throws SgfError;
+}
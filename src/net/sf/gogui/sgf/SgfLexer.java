@@ -0,0 +1,537 @@
+// SgfLexer.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/** Tokenizer for SGF files.
+    Reads the input in chunks into a buffer, such that the memory usage
+    does not depend on the size of the input and collections with many games
+    can be read game by game. Property values are unescaped on the byte level
+    and decoded into strings with the current charset, which can be changed
+    at any time without reading the input again. This works for all charsets
+    that encode the ASCII characters as single bytes, which never occur as
+    part of a multi-byte character (e.g. UTF-8 or ISO-8859-1). The remaining
+    input is transcoded to UTF-8 if setCharset() is called with a charset that
+    does not have this property (e.g. Shift_JIS).
+    Property identifiers are returned as interned upper-case strings
+    without creating a new string for each token. */
+final class SgfLexer
+{
+    /** Token type for end of input. */
+    public static final int EOF = -1;
+
+    /** Token type for a property identifier.
+        @see #getIdentifier() */
+    public static final int IDENTIFIER = -2;
+
+    /** Token type for any other character or word.
+        Returned for characters that cannot occur outside property values in
+        valid SGF files. */
+    public static final int OTHER = -3;
+
+    /** Constructor.
+        The stream is read on demand and not closed.
+        @param in The stream to read. */
+    public SgfLexer(InputStream in)
+    {
+        m_in = in;
+        m_charset = s_defaultCharset;
+    }
+
+    /** Forget the position stored with mark(). */
+    public void clearMark()
+    {
+        m_mark = -1;
+    }
+
+    /** Get the charset used for decoding property values.
+        If the input was transcoded, this is the charset of the original
+        input. */
+    public Charset getCharset()
+    {
+        if (m_sourceCharset != null)
+            return m_sourceCharset;
+        return m_charset;
+    }
+
+    /** Get the identifier of the last IDENTIFIER token.
+        Obsolete long names of standard properties (as used in some old SGF
+        files) are replaced by their short names.
+        @return The identifier in upper case (interned) */
+    public String getIdentifier()
+    {
+        return m_identifier;
+    }
+
+    /** Remember the current position.
+        The input after this position is kept in memory until clearMark() is
+        called, such that it can be read again after reset(). */
+    public void mark()
+    {
+        m_mark = m_position;
+    }
+
+    /** Read the next token.
+        Skips whitespace.
+        @return The character '(', ')', ';' or '[' or one of EOF, IDENTIFIER
+        or OTHER. */
+    public int nextToken() throws IOException
+    {
+        if (m_pushedBack)
+        {
+            m_pushedBack = false;
+            return m_token;
+        }
+        m_token = readToken();
+        return m_token;
+    }
+
+    /** Return the last token again at the next call to nextToken(). */
+    public void pushBack()
+    {
+        m_pushedBack = true;
+    }
+
+    /** Read a property value after the '[' token.
+        Escaped characters are unescaped and all linebreaks allowed in SGF
+        (LF, CR, LFCR, CRLF) are transformed to a single '\n'. Escaped
+        linebreaks (soft linebreaks) are removed.
+        @return The value or null, if the end of input was reached before
+        the closing ']'. */
+    public String readValue() throws IOException
+    {
+        // Fast path for values without escapes and linebreaks, which are
+        // decoded directly from the input buffer. The index is relative to
+        // m_position, which is moved to the start of the buffer by fill()
+        int n = 0;
+        while (m_position + n < m_length || fill())
+        {
+            byte b = m_bytes[m_position + n];
+            if (b == ']')
+            {
+                String value = decode(m_bytes, m_position, n);
+                m_position += n + 1;
+                return value;
+            }
+            if (b == '\\' || b == '\n' || b == '\r')
+                break;
+            ++n;
+        }
+        m_valueLength = 0;
+        appendValue(m_bytes, m_position, n);
+        m_position += n;
+        boolean quoted = false;
+        byte last = 0;
+        while (m_position < m_length || fill())
+        {
+            byte b = m_bytes[m_position++];
+            if (quoted)
+            {
+                if (b != '\n' && b != '\r')
+                    appendValue(b);
+                last = b;
+                quoted = false;
+            }
+            else if (b == ']')
+                return decode(m_value, 0, m_valueLength);
+            else if (b == '\\')
+                quoted = true;
+            else if (b == '\n' || b == '\r')
+            {
+                boolean lastLinebreak = (last == '\n' || last == '\r');
+                if (lastLinebreak && b != last)
+                    // Second character of a two-character linebreak
+                    last = 0;
+                else
+                {
+                    appendValue((byte)'\n');
+                    last = b;
+                }
+            }
+            else
+            {
+                appendValue(b);
+                last = b;
+            }
+        }
+        return null;
+    }
+
+    /** Go back to the position stored with mark(). */
+    public void reset()
+    {
+        assert m_mark >= 0;
+        m_position = m_mark;
+        m_pushedBack = false;
+    }
+
+    /** Change the charset used for decoding property values.
+        If the charset is not ASCII-compatible, the remaining input is
+        transcoded to UTF-8. This can be done only once, because the
+        original bytes are no longer available after that.
+        @return false, if the charset could not be changed, because the
+        input was already transcoded from a different charset. */
+    public boolean setCharset(Charset charset)
+    {
+        if (charset.equals(getCharset()))
+            return true;
+        if (m_sourceCharset != null)
+            return false;
+        if (isAsciiCompatible(charset))
+        {
+            m_charset = charset;
+            return true;
+        }
+        InputStream buffered =
+            new ByteArrayInputStream(m_bytes, m_position,
+                                     m_length - m_position);
+        Reader reader =
+            new InputStreamReader(new SequenceInputStream(buffered, m_in),
+                                  charset);
+        m_in = new Utf8InputStream(reader);
+        m_eof = false;
+        m_bytes = new byte[BUFFER_SIZE];
+        m_length = 0;
+        m_position = 0;
+        if (m_mark >= 0)
+            m_mark = 0;
+        m_sourceCharset = charset;
+        m_charset = s_utf8;
+        return true;
+    }
+
+    /** Skip a property value after the '[' token.
+        Like readValue(), but does not decode the value.
+        @return false, if the end of input was reached before the closing
+        ']'. */
+    public boolean skipValue() throws IOException
+    {
+        boolean quoted = false;
+        while (m_position < m_length || fill())
+        {
+            byte b = m_bytes[m_position++];
+            if (quoted)
+                quoted = false;
+            else if (b == ']')
+                return true;
+            else if (b == '\\')
+                quoted = true;
+        }
+        return false;
+    }
+
+    /** Initial size of the input buffer.
+        The buffer grows only for values that are longer and if a large part
+        of the input is kept because of mark(). */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** Maximum size of the cache for long identifiers.
+        Avoids unlimited growth of the cache when reading broken files. */
+    private static final int MAX_LONG_IDENTIFIERS = 1000;
+
+    /** Cache for property identifiers of more than two letters. */
+    private static final HashMap<String,String> s_longIdentifiers =
+        new HashMap<String,String>();
+
+    /** Property identifiers with one or two letters.
+        Indexed by (c1 - 'A' + 1) * 27 + (c2 - 'A' + 1) with c2 = 'A' - 1 for
+        identifiers with one letter. */
+    private static final String[] s_shortIdentifiers = new String[27 * 27];
+
+    private static final Charset s_defaultCharset =
+        // SGF FF 4 standard defines ISO-8859-1 as default
+        Charset.forName("ISO-8859-1");
+
+    private static final Charset s_utf8 = Charset.forName("UTF-8");
+
+    static
+    {
+        for (char c1 = 'A'; c1 <= 'Z'; ++c1)
+        {
+            s_shortIdentifiers[(c1 - 'A' + 1) * 27] =
+                String.valueOf(c1).intern();
+            for (char c2 = 'A'; c2 <= 'Z'; ++c2)
+                s_shortIdentifiers[(c1 - 'A' + 1) * 27 + (c2 - 'A' + 1)] =
+                    (String.valueOf(c1) + c2).intern();
+        }
+        String[][] obsolete = {
+            { "ADDBLACK", "AB" },
+            { "ADDEMPTY", "AE" },
+            { "ADDWHITE", "AW" },
+            { "BLACK", "B" },
+            { "BLACKRANK", "BR" },
+            { "COMMENT", "C" },
+            { "COPYRIGHT", "CP" },
+            { "DATE", "DT" },
+            { "EVENT", "EV" },
+            { "GAME", "GM" },
+            { "HANDICAP", "HA" },
+            { "KOMI", "KM" },
+            { "PLACE", "PC" },
+            { "PLAYERBLACK", "PB" },
+            { "PLAYERWHITE", "PW" },
+            { "PLAYER", "PL" },
+            { "RESULT", "RE" },
+            { "ROUND", "RO" },
+            { "RULES", "RU" },
+            { "SIZE", "SZ" },
+            { "WHITE", "W" },
+            { "WHITERANK", "WR" }
+        };
+        for (String[] entry : obsolete)
+            s_longIdentifiers.put(entry[0], entry[1].intern());
+    }
+
+    private boolean m_eof;
+
+    private boolean m_pushedBack;
+
+    /** Number of valid bytes in m_bytes. */
+    private int m_length;
+
+    /** Position stored with mark() as index in m_bytes or -1. */
+    private int m_mark = -1;
+
+    /** Current position as index in m_bytes. */
+    private int m_position;
+
+    private int m_token;
+
+    private int m_valueLength;
+
+    private byte[] m_bytes = new byte[BUFFER_SIZE];
+
+    /** Buffer for unescaped property values. */
+    private byte[] m_value = new byte[512];
+
+    private Charset m_charset;
+
+    /** Charset of the original input, if the input was transcoded. */
+    private Charset m_sourceCharset;
+
+    private InputStream m_in;
+
+    private String m_identifier;
+
+    private void appendValue(byte b)
+    {
+        if (m_valueLength == m_value.length)
+            growValue(m_valueLength + 1);
+        m_value[m_valueLength++] = b;
+    }
+
+    private void appendValue(byte[] bytes, int offset, int length)
+    {
+        if (m_valueLength + length > m_value.length)
+            growValue(m_valueLength + length);
+        System.arraycopy(bytes, offset, m_value, m_valueLength, length);
+        m_valueLength += length;
+    }
+
+    private String decode(byte[] bytes, int offset, int length)
+    {
+        if (length == 0)
+            return "";
+        return new String(bytes, offset, length, m_charset);
+    }
+
+    /** Read more input into the buffer.
+        Moves the bytes starting at the current position (or at the
+        position stored with mark()) to the start of the buffer. The buffer
+        grows, if it is still full after that.
+        @return false, if the end of input was reached. */
+    private boolean fill() throws IOException
+    {
+        if (m_eof)
+            return false;
+        int keep = m_position;
+        if (m_mark >= 0 && m_mark < keep)
+            keep = m_mark;
+        if (keep > 0)
+        {
+            System.arraycopy(m_bytes, keep, m_bytes, 0, m_length - keep);
+            m_length -= keep;
+            m_position -= keep;
+            if (m_mark >= 0)
+                m_mark -= keep;
+        }
+        if (m_length == m_bytes.length)
+            m_bytes = Arrays.copyOf(m_bytes, 2 * m_bytes.length);
+        int n;
+        do
+        {
+            n = m_in.read(m_bytes, m_length, m_bytes.length - m_length);
+        }
+        while (n == 0);
+        if (n < 0)
+        {
+            m_eof = true;
+            return false;
+        }
+        m_length += n;
+        return true;
+    }
+
+    private void growValue(int minLength)
+    {
+        byte[] value = new byte[Math.max(2 * m_value.length, minLength)];
+        System.arraycopy(m_value, 0, value, 0, m_valueLength);
+        m_value = value;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset)
+    {
+        String name = charset.name();
+        return name.equals("UTF-8") || name.equals("US-ASCII")
+            || name.startsWith("ISO-8859-") || name.startsWith("windows-125")
+            || name.startsWith("KOI8-") || name.startsWith("EUC-")
+            || name.equals("GB2312");
+    }
+
+    private static boolean isLetter(int b)
+    {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+    private static boolean isWhitespace(int b)
+    {
+        return b >= 0 && b <= ' ';
+    }
+
+    private void readIdentifier() throws IOException
+    {
+        int n = 1;
+        while ((m_position + n < m_length || fill())
+               && isLetter(m_bytes[m_position + n]))
+            ++n;
+        int begin = m_position;
+        m_position += n;
+        if (n <= 2)
+        {
+            int c1 = Character.toUpperCase((char)m_bytes[begin]) - 'A' + 1;
+            int c2 = 0;
+            if (n == 2)
+                c2 = Character.toUpperCase((char)m_bytes[begin + 1]) - 'A'
+                    + 1;
+            m_identifier = s_shortIdentifiers[c1 * 27 + c2];
+            return;
+        }
+        String identifier =
+            new String(m_bytes, begin, n, s_defaultCharset)
+            .toUpperCase(Locale.ENGLISH);
+        synchronized (s_longIdentifiers)
+        {
+            String result = s_longIdentifiers.get(identifier);
+            if (result == null)
+            {
+                result = identifier.intern();
+                if (s_longIdentifiers.size() < MAX_LONG_IDENTIFIERS)
+                    s_longIdentifiers.put(result, result);
+            }
+            m_identifier = result;
+        }
+    }
+
+    private int readToken() throws IOException
+    {
+        while (true)
+        {
+            if (m_position == m_length && ! fill())
+                return EOF;
+            if (! isWhitespace(m_bytes[m_position]))
+                break;
+            ++m_position;
+        }
+        byte b = m_bytes[m_position];
+        if (b == '(' || b == ')' || b == ';' || b == '[')
+        {
+            ++m_position;
+            return b;
+        }
+        if (isLetter(b))
+        {
+            readIdentifier();
+            return IDENTIFIER;
+        }
+        ++m_position;
+        return OTHER;
+    }
+
+    /** Input stream that encodes the characters of a reader in UTF-8. */
+    private static final class Utf8InputStream
+        extends InputStream
+    {
+        public Utf8InputStream(Reader reader)
+        {
+            m_reader = reader;
+            m_encoder = s_utf8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            m_chars.flip();
+            m_bytes.flip();
+        }
+
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            if (read(b, 0, 1) < 0)
+                return -1;
+            return b[0] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            while (! m_bytes.hasRemaining())
+            {
+                if (m_eof)
+                    return -1;
+                encode();
+            }
+            int n = Math.min(len, m_bytes.remaining());
+            m_bytes.get(b, off, n);
+            return n;
+        }
+
+        private boolean m_eof;
+
+        private final ByteBuffer m_bytes = ByteBuffer.allocate(16384);
+
+        private final CharBuffer m_chars = CharBuffer.allocate(4096);
+
+        private final CharsetEncoder m_encoder;
+
+        private final Reader m_reader;
+
+        private void encode() throws IOException
+        {
+            // Keep an unencoded high surrogate from the last call
+            m_chars.compact();
+            int n = m_reader.read(m_chars);
+            m_chars.flip();
+            m_bytes.clear();
+            if (n < 0)
+            {
+                m_eof = true;
+                m_encoder.encode(m_chars, m_bytes, true);
+                m_encoder.flush(m_bytes);
+            }
+            else
+                m_encoder.encode(m_chars, m_bytes, false);
+            m_bytes.flip();
+        }
+    }
+}
@@ -2,15 +2,10 @@
 
 package net.sf.gogui.sgf;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.TreeMap;
@@ -45,13 +40,10 @@ public final class SgfReader
 {
     /** Read SGF file from stream.
         Default charset is ISO-8859-1 according to the SGF version 4 standard.
-        The charset property is only respected if the stream is a
-        FileInputStream, because it has to be reopened with a different
-        encoding.
+        The charset property in the root node is respected.
         The stream is closed after reading.
         @param in Stream to read from.
-        @param file File name if input stream is a FileInputStream to allow
-        reopening the stream after a charset change
+        @param file File name used in error messages (can be null)
         @param progressShow Callback to show progress, can be null
         @param size Size of stream if progressShow != null
         @throws SgfError If reading fails. */
@@ -62,34 +54,17 @@ public final class SgfReader
         m_file = file;
         m_progressShow = progressShow;
         m_size = size;
-        m_isFile = (in instanceof FileInputStream && file != null);
+        m_skipVariations = false;
+        m_skipComments = false;
         if (progressShow != null)
+        {
             progressShow.showProgress(0);
+            m_byteCountInputStream = new ByteCountInputStream(in);
+            in = m_byteCountInputStream;
+        }
         try
         {
-            // SGF FF 4 standard defines ISO-8859-1 as default
-            readSgf(in, "ISO-8859-1");
-        }
-        catch (SgfCharsetChanged e1)
-        {
-            try
-            {
-                in.close();
-                in = new FileInputStream(file);
-            }
-            catch (IOException e2)
-            {
-                throw new SgfError("Could not reset SGF stream after"
-                                   + " charset change.");
-            }
-            try
-            {
-                readSgf(in, m_newCharset);
-            }
-            catch (SgfCharsetChanged e3)
-            {
-                assert false;
-            }
+            readSgf(in);
         }
         finally
         {
@@ -104,6 +79,23 @@ public final class SgfReader
         }
     }
 
+    /** Constructor for reading the games of a collection.
+        Does not read anything, the games are read with readGame().
+        @param lexer The lexer for the input.
+        @param file File name used in error messages (can be null)
+        @param skipVariations Read only the main variation of each game.
+        @param skipComments Don't read the comment properties. */
+    SgfReader(SgfLexer lexer, File file, boolean skipVariations,
+              boolean skipComments)
+    {
+        m_lexer = lexer;
+        m_file = file;
+        m_progressShow = null;
+        m_size = 0;
+        m_skipVariations = skipVariations;
+        m_skipComments = skipComments;
+    }
+
     /** Get game tree of loaded SGF file.
         @return The game tree. */
     public GameTree getTree()
@@ -112,6 +104,8 @@ public final class SgfReader
     }
 
     /** Get warnings that occurred during loading SGF file.
+        If the reader is used for reading a collection, the warnings of the
+        last game read are returned.
         @return String with warning messages or null if no warnings. */
     public String getWarnings()
     {
@@ -126,31 +120,26 @@ public final class SgfReader
         return result.toString();
     }
 
-    private static class SgfCharsetChanged
-        extends Exception
-    {
-    }
-
-    private final boolean m_isFile;
-
     /** Has current node inconsistent FF3 overtime settings properties. */
     private boolean m_ignoreOvertime;
 
+    private final boolean m_skipComments;
+
+    private final boolean m_skipVariations;
+
     private int m_lastPercent;
 
     private int m_boardSize;
 
     private int m_byoyomiMoves;
 
-    private final long m_size;
-
     private long m_byoyomi;
 
     private long m_preByoyomi;
 
-    private ByteCountInputStream m_byteCountInputStream;
+    private final long m_size;
 
-    private java.io.Reader m_reader;
+    private ByteCountInputStream m_byteCountInputStream;
 
     private GameTree m_tree;
 
@@ -159,14 +148,13 @@ public final class SgfReader
     /** Contains strings with warnings. */
     private final Set<String> m_warnings = new TreeSet<String>();
 
-    private StreamTokenizer m_tokenizer;
-
-    private final File m_file;
+    private static final Charset s_defaultCharset =
+        // SGF FF 4 standard defines ISO-8859-1 as default
+        Charset.forName("ISO-8859-1");
 
-    private String m_newCharset;
+    private SgfLexer m_lexer;
 
-    /** Pre-allocated temporary buffer for use within functions. */
-    private final StringBuilder m_buffer = new StringBuilder(512);
+    private final File m_file;
 
     private final PointList m_pointList = new PointList();
 
@@ -174,6 +162,12 @@ public final class SgfReader
     private final Map<String,ArrayList<String>> m_props =
         new TreeMap<String,ArrayList<String>>();
 
+    /** Unused value lists for m_props.
+        The lists are reused for the next node to avoid allocating a new
+        list for each property. */
+    private final ArrayList<ArrayList<String>> m_freeValueLists =
+        new ArrayList<ArrayList<String>>();
+
     /** Apply some fixes for broken SGF files. */
     private void applyFixes()
     {
@@ -207,81 +201,43 @@ public final class SgfReader
         }
     }
 
-    private void checkEndOfFile() throws SgfError, IOException
+    private void checkEndOfFile() throws IOException, SgfError
     {
-        while (true)
-        {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
-            if (t == '(')
-                throw getError("Multiple SGF trees not supported");
-            else if (t == StreamTokenizer.TT_EOF)
-                return;
-            else if (t != ' ' && t != '\t' && t != '\n' && t != '\r')
-            {
-                setWarning("Extra text after SGF tree");
-                return;
-            }
-        }
+        int t = m_lexer.nextToken();
+        if (t == '(')
+            throw getError("Multiple SGF trees not supported");
+        else if (t != SgfLexer.EOF)
+            setWarning("Extra text after SGF tree");
     }
 
-    /** Check for obsolete long names for standard properties.
-        These are still used in some old SGF files.
-        @param property Property name
-        @return Short standard version of the property or original property */
-    private String checkForObsoleteLongProps(String property)
-    {
-        if (property.length() <= 2)
-            return property;
-        property = property.intern();
-        String shortName = null;
-        if (property == "ADDBLACK")
-            shortName = "AB";
-        else if (property == "ADDEMPTY")
-            shortName = "AE";
-        else if (property == "ADDWHITE")
-            shortName = "AW";
-        else if (property == "BLACK")
-            shortName = "B";
-        else if (property == "BLACKRANK")
-            shortName = "BR";
-        else if (property == "COMMENT")
-            shortName = "C";
-        else if (property == "COPYRIGHT")
-            shortName = "CP";
-        else if (property == "DATE")
-            shortName = "DT";
-        else if (property == "EVENT")
-            shortName = "EV";
-        else if (property == "GAME")
-            shortName = "GM";
-        else if (property == "HANDICAP")
-            shortName = "HA";
-        else if (property == "KOMI")
-            shortName = "KM";
-        else if (property == "PLACE")
-            shortName = "PC";
-        else if (property == "PLAYERBLACK")
-            shortName = "PB";
-        else if (property == "PLAYERWHITE")
-            shortName = "PW";
-        else if (property == "PLAYER")
-            shortName = "PL";
-        else if (property == "RESULT")
-            shortName = "RE";
-        else if (property == "ROUND")
-            shortName = "RO";
-        else if (property == "RULES")
-            shortName = "RU";
-        else if (property == "SIZE")
-            shortName = "SZ";
-        else if (property == "WHITE")
-            shortName = "W";
-        else if (property == "WHITERANK")
-            shortName = "WR";
-        if (shortName != null)
-            return shortName;
-        return property;
+    /** Change the charset to the one given by the CA property.
+        Uses the default charset, if the root node has no CA property (the
+        charset can be different from the default charset if the previous
+        game of a collection had a CA property). The properties of the root
+        node are read again with the new charset, which starts at the
+        position stored with SgfLexer.mark().
+        @return true, if the charset was changed. */
+    private boolean checkCharset() throws IOException, SgfError
+    {
+        ArrayList<String> values = m_props.get("CA");
+        Charset charset = s_defaultCharset;
+        if (values != null)
+            charset = getCharset(values.get(0));
+        if (charset == null || charset.equals(m_lexer.getCharset()))
+            return false;
+        m_lexer.reset();
+        boolean changed = m_lexer.setCharset(charset);
+        if (! changed)
+            setWarning("Cannot change character set in collection");
+        clearProps();
+        while (readProp());
+        return changed;
+    }
+
+    private void clearProps()
+    {
+        m_freeValueLists.addAll(m_props.values());
+        m_props.clear();
     }
 
     private GameInfo createGameInfo(Node node)
@@ -289,32 +245,46 @@ public final class SgfReader
         return node.createGameInfo();
     }
 
-    private void findRoot() throws SgfError, IOException
+    /** Find the start of the next game tree.
+        @return false, if the end of input was reached. */
+    private boolean findRoot() throws IOException
     {
         while (true)
         {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
+            int t = m_lexer.nextToken();
             if (t == '(')
             {
                 // Better make sure that ( is followed by a node
-                m_tokenizer.nextToken();
-                t = m_tokenizer.ttype;
+                t = m_lexer.nextToken();
                 if (t == ';')
                 {
-                    m_tokenizer.pushBack();
-                    return;
+                    m_lexer.pushBack();
+                    return true;
                 }
                 else
                     setWarning("Extra text before SGF tree");
             }
-            else if (t == StreamTokenizer.TT_EOF)
-                throw getError("No root tree found");
+            else if (t == SgfLexer.EOF)
+                return false;
             else
                 setWarning("Extra text before SGF tree");
         }
     }
 
+    /** Get charset for the value of a CA property.
+        @return The charset or null, if the charset is not supported. */
+    private static Charset getCharset(String name)
+    {
+        try
+        {
+            return Charset.forName(name.trim());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
     private int getBoardSize()
     {
         if (m_boardSize == -1)
@@ -324,28 +294,22 @@ public final class SgfReader
 
     private SgfError getError(String message)
     {
-        // Line numbers in error messages is currently disabled because
-        // StreamTokenizer.lineno() does not work as expected with Windows-style
-        // line endings (it seems to count CRLF as two line endings; last with
-        // Java 1.7).
-        /*
-        int lineNumber = m_tokenizer.lineno();
-        if (m_file == null)
-            return new SgfError(lineNumber + ": " + message);
-        else
-        {
-            String s = m_file.getName() + ":" + lineNumber + ": " + message;
-            return new SgfError(s);
-        }
-        */
         if (m_file == null)
             return new SgfError(message);
         else
             return new SgfError(m_file.getName() + ": " + message);
     }
 
+    private SgfError getInvalidPointError(SgfUtil.ParseStatus status)
+    {
+        if (status.m_outsideBoard)
+            return getError("Coordinates \"" + status.m_value
+                            + "\" outside board size " + getBoardSize());
+        return getError("Invalid coordinates \"" + status.m_value + "\"");
+    }
+
     private void handleProps(Node node, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+        throws SgfError
     {
         // Handle SZ property first to be able to parse points
         if (m_props.containsKey("SZ"))
@@ -414,15 +378,10 @@ public final class SgfReader
                 node.setComment(v);
             else if (p == "CA")
             {
-                if (isRoot && m_isFile && m_newCharset == null)
-                {
-                    m_newCharset = v.trim();
-                    if (Charset.isSupported(m_newCharset))
-                        throw new SgfCharsetChanged();
-                    else
-                        setWarning("Unknown character set \"" + m_newCharset
-                                   + "\"");
-                }
+                // Supported charsets were already handled in readNext()
+                if (isRoot && getCharset(v) == null)
+                    setWarning("Unknown character set \"" + v.trim()
+                               + "\"");
             }
             else if (p == "CP")
                 set(node, StringInfo.COPYRIGHT, v);
@@ -665,90 +624,37 @@ public final class SgfReader
         }
     }
 
-    private static int parseCoordinate(char c)
-    {
-        if (c >= 'a' && c <= 'z')
-            return c - 'a';
-        else if (c >= 'A' && c <= 'Z')
-            return 26 + c - 'A';
-        else
-            return 0;
-    }
-
     /** Parse point value.
         @return Point or null, if pass move
         @throw SgfError On invalid value */
     private GoPoint parsePoint(String s) throws SgfError
     {
-        s = s.trim();
-        if (s.equals(""))
-            return null;
-        if (s.length() > 2
-            || (s.length() == 2 && (s.charAt(1) >= '0' && s.charAt(1) <= '9')))
+        SgfUtil.ParseStatus status = new SgfUtil.ParseStatus();
+        try
         {
-            // Try human-readable encoding as used by SmartGo
-            try
-            {
-                return GoPoint.parsePoint(s, GoPoint.MAX_SIZE);
-            }
-            catch (InvalidPointException e)
-            {
-                throwInvalidCoordinates(s);
-            }
+            GoPoint point = SgfUtil.parsePoint(s, getBoardSize(), status);
+            setWarnings(status);
+            return point;
         }
-        else if (s.length() != 2)
-            throwInvalidCoordinates(s);
-        int boardSize = getBoardSize();
-        if (s.equals("tt") && boardSize <= 19)
-            return null;
-        int x = parseCoordinate(s.charAt(0));
-        int y = boardSize - parseCoordinate(s.charAt(1)) - 1;
-        if (x < 0 || x >= boardSize || y < 0 || y >= boardSize)
+        catch (InvalidPointException e)
         {
-            if (x == boardSize && y == -1)
-            {
-                // Some programs encode pass moves, e.g. as jj for boardsize 9
-                setWarning("Non-standard pass move encoding");
-                return null;
-            }
-            throw getError("Coordinates \"" + s + "\" outside board size "
-                           + boardSize);
+            throw getInvalidPointError(status);
         }
-        return GoPoint.get(x, y);
     }
 
     private void parsePointList(ArrayList<String> values) throws SgfError
     {
         m_pointList.clear();
-        for (int i = 0; i < values.size(); ++i)
+        SgfUtil.ParseStatus status = new SgfUtil.ParseStatus();
+        try
         {
-            String value = values.get(i);
-            int pos = value.indexOf(':');
-            if (pos < 0)
-            {
-                GoPoint point = parsePoint(value);
-                if (point == null)
-                    setWarning("Point list argument contains PASS");
-                else
-                    m_pointList.add(point);
-            }
-            else
-            {
-                GoPoint point1 = parsePoint(value.substring(0, pos));
-                GoPoint point2 = parsePoint(value.substring(pos + 1));
-                if (point1 == null || point2 == null)
-                {
-                    setWarning("Compressed point list contains PASS");
-                    continue;
-                }
-                int xMin = Math.min(point1.getX(), point2.getX());
-                int xMax = Math.max(point1.getX(), point2.getX());
-                int yMin = Math.min(point1.getY(), point2.getY());
-                int yMax = Math.max(point1.getY(), point2.getY());
-                for (int x = xMin; x <= xMax; ++x)
-                    for (int y = yMin; y <= yMax; ++y)
-                        m_pointList.add(GoPoint.get(x, y));
-            }
+            SgfUtil.parsePointList(values, getBoardSize(), m_pointList,
+                                   status);
+            setWarnings(status);
+        }
+        catch (InvalidPointException e)
+        {
+            throw getInvalidPointError(status);
         }
     }
 
@@ -771,8 +677,88 @@ public final class SgfReader
             m_preByoyomi = preByoyomi;
     }
 
+    /** Read the next game tree from the input.
+        @return The game tree or null, if there are no more game trees. */
+    GameTree readGame() throws IOException, SgfError
+    {
+        m_warnings.clear();
+        m_tree = null;
+        if (! findRoot())
+            return null;
+        m_boardSize = -1;
+        Node root = readNext(null, true);
+        Node node = root;
+        while (node != null)
+            node = readNext(node, false);
+        getBoardSize(); // Set to default value if still unknown
+        m_tree = new GameTree(m_boardSize, root);
+        applyFixes();
+        return m_tree;
+    }
+
+    /** Read the next game tree from the input and report it to a handler.
+        Handles the charset like readGame(), but does not interpret the
+        properties.
+        @return false, if there are no more game trees. */
+    boolean readGame(SgfHandler handler) throws IOException, SgfError
+    {
+        m_warnings.clear();
+        m_tree = null;
+        if (! findRoot())
+            return false;
+        handler.startTree();
+        int depth = 1;
+        boolean isRoot = true;
+        boolean afterTree = false;
+        while (depth > 0)
+        {
+            int ttype = m_lexer.nextToken();
+            if (ttype == '(')
+            {
+                // A tree following a tree is not the first variation
+                if (m_skipVariations && afterTree)
+                    skipTree();
+                else
+                {
+                    handler.startTree();
+                    ++depth;
+                }
+            }
+            else if (ttype == ')')
+            {
+                handler.endTree();
+                --depth;
+                afterTree = true;
+            }
+            else if (ttype == ';')
+            {
+                handler.startNode();
+                clearProps();
+                if (isRoot)
+                    readRootProps();
+                else
+                    while (readProp());
+                isRoot = false;
+                for (Map.Entry<String,ArrayList<String>> entry
+                         : m_props.entrySet())
+                    handler.property(entry.getKey(), entry.getValue());
+                handler.endNode();
+                afterTree = false;
+            }
+            else if (ttype == SgfLexer.EOF)
+            {
+                setWarning("Game tree not closed");
+                for ( ; depth > 0; --depth)
+                    handler.endTree();
+            }
+            else
+                throw getError("Next node expected");
+        }
+        return true;
+    }
+
     private Node readNext(Node father, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+        throws IOException, SgfError
     {
         if (m_progressShow != null)
         {
@@ -788,10 +774,14 @@ public final class SgfReader
                 m_progressShow.showProgress(percent);
             m_lastPercent = percent;
         }
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
+        int ttype = m_lexer.nextToken();
         if (ttype == '(')
         {
+            if (m_skipVariations && father != null && father.hasChildren())
+            {
+                skipTree();
+                return father;
+            }
             Node node = father;
             while (node != null)
                 node = readNext(node, false);
@@ -799,7 +789,7 @@ public final class SgfReader
         }
         if (ttype == ')')
             return null;
-        if (ttype == StreamTokenizer.TT_EOF)
+        if (ttype == SgfLexer.EOF)
         {
             setWarning("Game tree not closed");
             return null;
@@ -813,8 +803,11 @@ public final class SgfReader
         m_byoyomiMoves = -1;
         m_byoyomi = -1;
         m_preByoyomi = -1;
-        m_props.clear();
-        while (readProp());
+        clearProps();
+        if (isRoot)
+            readRootProps();
+        else
+            while (readProp());
         handleProps(son, isRoot);
         setTimeSettings(son);
         return son;
@@ -822,22 +815,36 @@ public final class SgfReader
 
     private boolean readProp() throws IOException, SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == StreamTokenizer.TT_WORD)
+        int ttype = m_lexer.nextToken();
+        if (ttype == SgfLexer.IDENTIFIER)
         {
-            // Use intern() to allow fast comparsion with ==
-            String p = m_tokenizer.sval.toUpperCase(Locale.ENGLISH).intern();
-            ArrayList<String> values = new ArrayList<String>();
+            // Identifiers are interned to allow fast comparsion with ==
+            String p = m_lexer.getIdentifier();
+            if (p == "C" && m_skipComments)
+            {
+                while (m_lexer.nextToken() == '[')
+                    if (! m_lexer.skipValue())
+                        throw getError("Property value incomplete");
+                m_lexer.pushBack();
+                return true;
+            }
+            ArrayList<String> values;
+            if (m_freeValueLists.isEmpty())
+                values = new ArrayList<String>();
+            else
+            {
+                values = m_freeValueLists.remove(m_freeValueLists.size() - 1);
+                values.clear();
+            }
             String s;
             while ((s = readValue()) != null)
                 values.add(s);
             if (values.isEmpty())
             {
                 setWarning("Property \"" + p + "\" has no value");
+                m_freeValueLists.add(values);
                 return true;
             }
-            p = checkForObsoleteLongProps(p);
             if (m_props.containsKey(p))
                 // Silently accept duplicate properties, as long as they have
                 // the same value (only check for single value properties)
@@ -847,49 +854,39 @@ public final class SgfReader
             m_props.put(p, values);
             return true;
         }
-        if (ttype != '\n')
-            // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-            m_tokenizer.pushBack();
+        m_lexer.pushBack();
         return false;
     }
 
-    private void readSgf(InputStream in, String charset)
-        throws SgfError, SgfCharsetChanged
+    private void readRootProps() throws IOException, SgfError
     {
+        m_lexer.mark();
         try
         {
-            m_boardSize = -1;
-            if (m_progressShow != null)
-            {
-                m_byteCountInputStream = new ByteCountInputStream(in);
-                in = m_byteCountInputStream;
-            }
-            InputStreamReader reader;
-            try
-            {
-                reader = new InputStreamReader(in, charset);
-            }
-            catch (UnsupportedEncodingException e)
-            {
-                // Should actually not happen, because this function is only
-                // called with charset ISO-8859-1 (should be supported on every
-                // Java platform according to Charset documentation) or with a
-                // CA property value, which was already checked with
-                // Charset.isSupported()
-                setWarning("Character set \"" + charset + "\" not supported");
-                reader = new InputStreamReader(in);
-            }
-            m_reader = new BufferedReader(reader);
-            m_tokenizer = new StreamTokenizer(m_reader);
-            findRoot();
-            Node root = readNext(null, true);
-            Node node = root;
-            while (node != null)
-                node = readNext(node, false);
+            while (readProp());
+        }
+        catch (SgfError e)
+        {
+            // With the default charset, a value containing multi-byte
+            // characters with the byte of ']' or backslash can be read
+            // incorrectly, retry with the charset if CA was already read
+            if (! checkCharset())
+                throw e;
+            m_lexer.clearMark();
+            return;
+        }
+        checkCharset();
+        m_lexer.clearMark();
+    }
+
+    private void readSgf(InputStream in) throws SgfError
+    {
+        try
+        {
+            m_lexer = new SgfLexer(in);
+            if (readGame() == null)
+                throw getError("No root tree found");
             checkEndOfFile();
-            getBoardSize(); // Set to default value if still unknown
-            m_tree = new GameTree(m_boardSize, root);
-            applyFixes();
         }
         catch (FileNotFoundException e)
         {
@@ -907,59 +904,15 @@ public final class SgfReader
 
     private String readValue() throws IOException, SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype != '[')
+        if (m_lexer.nextToken() != '[')
         {
-            if (ttype != '\n')
-                // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-                m_tokenizer.pushBack();
+            m_lexer.pushBack();
             return null;
         }
-        m_buffer.setLength(0);
-        boolean quoted = false;
-        Character last = null;
-        while (true)
-        {
-            int c = m_reader.read();
-            if (c < 0)
-                throw getError("Property value incomplete");
-            if (quoted)
-            {
-                if (c != '\n' && c != '\r')
-                    m_buffer.append((char)c);
-                last = Character.valueOf((char)c);
-                quoted = false;
-            }
-            else
-            {
-                if (c == ']')
-                    break;
-                quoted = (c == '\\');
-                if (! quoted)
-                {
-                    // Transform all linebreaks allowed in SGF (LF, CR, LFCR,
-                    // CRLF) to a single '\n'
-                    boolean isLinebreak = (c == '\n' || c == '\r');
-                    boolean lastLinebreak =
-                        (last != null && (last.charValue() == '\n'
-                                          || last.charValue() == '\r'));
-                    boolean filterSecondLinebreak =
-                        (isLinebreak && lastLinebreak && c != last.charValue());
-                    if (filterSecondLinebreak)
-                        last = null;
-                    else
-                    {
-                        if (isLinebreak)
-                            m_buffer.append('\n');
-                        else
-                            m_buffer.append((char)c);
-                        last = Character.valueOf((char)c);
-                    }
-                }
-            }
-        }
-        return m_buffer.toString();
+        String value = m_lexer.readValue();
+        if (value == null)
+            throw getError("Property value incomplete");
+        return value;
     }
 
     private void set(Node node, StringInfo type, String value)
@@ -991,13 +944,42 @@ public final class SgfReader
             node.createGameInfo().setTimeSettings(s);
     }
 
+    /** Skip a subtree after the '(' token. */
+    private void skipTree() throws IOException, SgfError
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            int ttype = m_lexer.nextToken();
+            if (ttype == '(')
+                ++depth;
+            else if (ttype == ')')
+                --depth;
+            else if (ttype == '[')
+            {
+                if (! m_lexer.skipValue())
+                    throw getError("Property value incomplete");
+            }
+            else if (ttype == SgfLexer.EOF)
+            {
+                setWarning("Game tree not closed");
+                return;
+            }
+        }
+    }
+
     private void setWarning(String message)
     {
         m_warnings.add(message);
     }
 
-    private void throwInvalidCoordinates(String s) throws SgfError
+    private void setWarnings(SgfUtil.ParseStatus status)
     {
-        throw getError("Invalid coordinates \"" + s + "\"");
+        if (status.m_nonStandardPass)
+            setWarning("Non-standard pass move encoding");
+        if (status.m_passInList)
+            setWarning("Point list argument contains PASS");
+        if (status.m_passInCompressedList)
+            setWarning("Compressed point list contains PASS");
     }
 }
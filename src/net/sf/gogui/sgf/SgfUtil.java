@@ -2,9 +2,13 @@
 
 package net.sf.gogui.sgf;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.sf.gogui.game.TimeSettings;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.go.PointList;
 
 public final class SgfUtil
 {
@@ -70,6 +74,33 @@ public final class SgfUtil
         return result;
     }
 
+    /** Parse a point value of a move or setup property.
+        Accepts the encodings that are also accepted by SgfReader: the
+        standard encoding, "tt" (for sizes up to 19) or the point after the
+        last column and row (e.g. "jj" for size 9) for pass moves and the
+        human-readable encoding used by SmartGo (e.g. "C3").
+        Useful for SgfHandler implementations.
+        @param value The property value.
+        @param boardSize The board size of the game.
+        @return The point or null for a pass move. */
+    public static GoPoint parsePoint(String value, int boardSize)
+        throws InvalidPointException
+    {
+        return parsePoint(value, boardSize, new ParseStatus());
+    }
+
+    /** Parse the values of a point list property.
+        Compressed point lists are expanded, pass moves are ignored.
+        @see #parsePoint(String,int) */
+    public static PointList parsePointList(List<String> values,
+                                           int boardSize)
+        throws InvalidPointException
+    {
+        PointList result = new PointList();
+        parsePointList(values, boardSize, result, new ParseStatus());
+        return result;
+    }
+
     /** Parse value of TM property.
         According to FF4, TM needs to be a real value, but older SGF versions
         allow a string with unspecified content. We try to parse a few known
@@ -136,6 +167,109 @@ public final class SgfUtil
         return -1;
     }
 
+    static int parseCoordinate(char c)
+    {
+        if (c >= 'a' && c <= 'z')
+            return c - 'a';
+        else if (c >= 'A' && c <= 'Z')
+            return 26 + c - 'A';
+        else
+            return 0;
+    }
+
+    /** Details about the input of parsePoint() and parsePointList().
+        Used by SgfReader for creating warnings and error messages. */
+    static final class ParseStatus
+    {
+        /** A pass move was encoded as the point after the last column and
+            row. */
+        public boolean m_nonStandardPass;
+
+        /** A point list contained a pass move. */
+        public boolean m_passInList;
+
+        /** A compressed point list contained a pass move. */
+        public boolean m_passInCompressedList;
+
+        /** The last parsed point value.
+            Contains the invalid value if an InvalidPointException was
+            thrown. */
+        public String m_value;
+
+        /** The last InvalidPointException was thrown, because the point
+            was outside the board. */
+        public boolean m_outsideBoard;
+    }
+
+    static GoPoint parsePoint(String value, int boardSize,
+                              ParseStatus status)
+        throws InvalidPointException
+    {
+        String s = value.trim();
+        if (s.equals(""))
+            return null;
+        status.m_value = s;
+        if (s.length() > 2
+            || (s.length() == 2 && (s.charAt(1) >= '0' && s.charAt(1) <= '9')))
+            // Human-readable encoding as used by SmartGo
+            return GoPoint.parsePoint(s, GoPoint.MAX_SIZE);
+        if (s.length() != 2)
+            throw new InvalidPointException(s);
+        if (s.equals("tt") && boardSize <= 19)
+            return null;
+        int x = parseCoordinate(s.charAt(0));
+        int y = boardSize - parseCoordinate(s.charAt(1)) - 1;
+        if (x == boardSize && y == -1)
+        {
+            // Some programs encode pass moves, e.g. as jj for boardsize 9
+            status.m_nonStandardPass = true;
+            return null;
+        }
+        if (x < 0 || x >= boardSize || y < 0 || y >= boardSize)
+        {
+            status.m_outsideBoard = true;
+            throw new InvalidPointException(s);
+        }
+        return GoPoint.get(x, y);
+    }
+
+    /** Parse the values of a point list property and add the points to a
+        list. */
+    static void parsePointList(List<String> values, int boardSize,
+                               PointList result, ParseStatus status)
+        throws InvalidPointException
+    {
+        for (String value : values)
+        {
+            int pos = value.indexOf(':');
+            if (pos < 0)
+            {
+                GoPoint point = parsePoint(value, boardSize, status);
+                if (point == null)
+                    status.m_passInList = true;
+                else
+                    result.add(point);
+                continue;
+            }
+            GoPoint point1 =
+                parsePoint(value.substring(0, pos), boardSize, status);
+            GoPoint point2 =
+                parsePoint(value.substring(pos + 1), boardSize, status);
+            if (point1 == null || point2 == null)
+            {
+                status.m_passInCompressedList = true;
+                continue;
+            }
+            int xMin = Math.min(point1.getX(), point2.getX());
+            int xMax = Math.max(point1.getX(), point2.getX());
+            int yMin = Math.min(point1.getY(), point2.getY());
+            int yMax = Math.max(point1.getY(), point2.getY());
+            for (int x = xMin; x <= xMax; ++x)
+                for (int y = yMin; y <= yMax; ++y)
+                    result.add(GoPoint.get(x, y));
+        }
+    }
+
     /** Make constructor unavailable; class is for namespace only. */
     private SgfUtil()
     {
@@ -23,6 +23,7 @@ import static net.sf.gogui.go.GoColor.EMPTY;
 
 import net.sf.gogui.gtp.*;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.StringCache;
 
 /** GTP adapter for logging or protocol translations. */
 public class Adapter
@@ -77,6 +78,8 @@ public class Adapter
     {
         m_gtp.close();
         m_gtp.waitForExit();
+        if (m_cache != null)
+            m_cache.close();
     }
 
     public void cmdBlack(GtpCommand cmd) throws GtpError
@@ -105,6 +108,19 @@ public class Adapter
         send(cmd.getLine(), cmd.getResponse());
     }
 
+    public void cmdForwardCached(GtpCommand cmd) throws GtpError
+    {
+        String key = BoardUtil.getPositionKey(m_board, m_komi,
+                                              cmd.getLine());
+        String response = m_cache.get(key);
+        if (response == null)
+        {
+            response = send(cmd.getLine());
+            m_cache.put(key, response);
+        }
+        cmd.setResponse(response);
+    }
+
     public void cmdGenmove(GtpCommand cmd) throws GtpError
     {
         GoColor c = cmd.getColorArg();
@@ -141,7 +157,8 @@ public class Adapter
     {
         cmd.checkArgNone();
         String response =
-            "string/Adapter ShowBoard/gogui-adapter-showboard\n";
+            "string/Adapter ShowBoard/gogui-adapter-showboard\n" +
+            "string/Adapter Metrics/gogui-adapter-metrics\n";
         String command = null;
         if (m_gtp.isSupported("gogui-analyze_commands"))
             command = "gogui-analyze_commands";
@@ -152,6 +169,16 @@ public class Adapter
         cmd.setResponse(response);
     }
 
+    public void cmdAdapterMetrics(GtpCommand cmd) throws GtpError
+    {
+        cmd.checkArgNone();
+        GtpMetrics metrics = m_gtp.getMetrics();
+        if (metrics == null)
+            throw new GtpError("no metrics available");
+        cmd.getResponse().append("\n");
+        cmd.getResponse().append(metrics.format());
+    }
+
     public void cmdAdapterShowBoard(GtpCommand cmd) throws GtpError
     {
         cmd.getResponse().append("\n");
@@ -316,6 +343,32 @@ public class Adapter
         }
     }
 
+    /** Enable caching of responses.
+        Caches the responses to genmove and to the analyze commands of the
+        program (as returned by gogui-analyze_commands) per position. This is
+        only useful for deterministic programs. Analyze commands of type
+        param, none or eplist can have side effects and are always sent to
+        the program.
+        @param cache The cache. */
+    public void setCache(StringCache cache) throws GtpError
+    {
+        m_cache = cache;
+        if (! m_gtp.isSupported("gogui-analyze_commands"))
+            return;
+        for (String line : send("gogui-analyze_commands").split("\n"))
+        {
+            String[] fields = line.split("/");
+            if (fields.length < 3 || fields[2].trim().equals(""))
+                continue;
+            AnalyzeType type = new AnalyzeDefinition(line).getType();
+            String command = fields[2].trim().split("\\s+")[0];
+            if (isQueryType(type)
+                && ! GtpUtil.isStateChangingCommand(command)
+                && m_gtp.isSupported(command))
+                register(command, m_callbackForwardCached);
+        }
+    }
+
     public void setName(String name)
     {
         if (name == null)
@@ -345,10 +398,16 @@ public class Adapter
 
     private Board m_board;
 
+    private StringCache m_cache;
+
     private final GtpCallback m_callbackForward = new GtpCallback() {
             public void run(GtpCommand cmd) throws GtpError {
                 cmdForward(cmd); } };
 
+    private final GtpCallback m_callbackForwardCached = new GtpCallback() {
+            public void run(GtpCommand cmd) throws GtpError {
+                cmdForwardCached(cmd); } };
+
     private final GtpClientBase m_gtp;
 
     private final GtpSynchronizer m_synchronizer;
@@ -360,7 +419,20 @@ public class Adapter
     private void cmdGenmove(GoColor color, GtpCommand cmd, String command)
         throws GtpError
     {
-        String response = send(command);
+        String key = null;
+        String response = null;
+        if (m_cache != null)
+        {
+            key = BoardUtil.getPositionKey(m_board, m_komi, command);
+            response = m_cache.get(key);
+        }
+        boolean isCached = (response != null);
+        if (! isCached)
+        {
+            response = send(command);
+            if (m_cache != null)
+                m_cache.put(key, response);
+        }
         if (response.toLowerCase(Locale.ENGLISH).trim().equals("resign"))
         {
             cmd.setResponse("resign");
@@ -370,7 +442,11 @@ public class Adapter
         {
             GoPoint point = GtpUtil.parsePoint(response, m_board.getSize());
             m_board.play(color, point);
-            m_synchronizer.updateAfterGenmove(m_board);
+            // The program does not know a move from the cache
+            if (isCached)
+                synchronize();
+            else
+                m_synchronizer.updateAfterGenmove(m_board);
             cmd.setResponse(response);
         }
         catch (GtpResponseFormatError e)
@@ -394,6 +470,20 @@ public class Adapter
         synchronize();
     }
 
+    /** Check if analyze commands of a type only query the program. */
+    private static boolean isQueryType(AnalyzeType type)
+    {
+        switch (type)
+        {
+        case PARAM:
+        case NONE:
+        case EPLIST:
+            return false;
+        default:
+            return true;
+        }
+    }
+
     private void play(GoColor color, GoPoint point) throws GtpError
     {
         Move move = Move.get(color, point);
@@ -420,6 +510,9 @@ public class Adapter
         register("gogui-analyze_commands", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdGoGuiAnalyzeCommands(cmd); } });
+        register("gogui-adapter-metrics", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdAdapterMetrics(cmd); } });
         register("gogui-adapter-showboard", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdAdapterShowBoard(cmd); } });
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Options;
+import net.sf.gogui.util.StringCache;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
 
@@ -20,6 +21,8 @@ public final class Main
         try
         {
             String options[] = {
+                "cache:",
+                "cachefile:",
                 "config:",
                 "fillpasses",
                 "gtpfile:",
@@ -56,6 +59,10 @@ public final class Main
             String gtpFile = opt.get("gtpfile", null);
             ArrayList<String> arguments = opt.getArguments();
             int size = opt.getInteger("size", 19, 1, GoPoint.MAX_SIZE);
+            int cacheSize = opt.getInteger("cache", 0, 0);
+            if (opt.contains("cachefile") && cacheSize == 0)
+                throw new ErrorMessage("Option -cachefile needs option"
+                                       + " -cache");
             if (arguments.size() != 1)
             {
                 printUsage(System.err);
@@ -73,6 +80,13 @@ public final class Main
                                           lowerCase, size);
             if (name != null)
                 adapter.setName(name);
+            if (cacheSize > 0)
+            {
+                File cacheFile = null;
+                if (opt.contains("cachefile"))
+                    cacheFile = new File(opt.get("cachefile"));
+                adapter.setCache(new StringCache(cacheSize, cacheFile));
+            }
             adapter.mainLoop(System.in, System.out);
             adapter.close();
             if (log != null)
@@ -95,6 +109,8 @@ public final class Main
         String helpText =
             "Usage: gogui-adapter program\n" +
             "\n" +
+            "-cache n      cache up to n responses\n" +
+            "-cachefile    file for storing cached responses\n" +
             "-config       config file\n" +
             "-fillpasses   fill non-alternating moves with pass moves\n" +
             "-gtpfile      file with GTP commands to send at startup\n" +
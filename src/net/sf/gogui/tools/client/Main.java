@@ -2,22 +2,26 @@
 
 package net.sf.gogui.tools.client;
 
+import net.sf.gogui.util.ChannelCopy;
 import net.sf.gogui.util.Options;
-import net.sf.gogui.util.StreamCopy;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
-import java.io.InputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.ConnectException;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 
 /** Connects to a remote Go program supporting GTP. */
 public final class Main
 {
-    private static Socket connect(String hostname, int port, int timeout)
+    private static SocketChannel connect(String hostname, int port,
+                                         int timeout)
         throws IOException
     {
         int totalTime = 0;
@@ -25,7 +29,8 @@ public final class Main
         {
             try
             {
-                return new Socket(hostname, port);
+                return SocketChannel.open(new InetSocketAddress(hostname,
+                                                                port));
             }
             catch (ConnectException connectException)
             {
@@ -47,11 +52,12 @@ public final class Main
 
     public Main(String hostname, int port, int timeout) throws Exception
     {
-        Socket socket = connect(hostname, port, timeout);
-        Thread fromNet =
-            new Thread(new StreamCopy(false, socket.getInputStream(),
-                                      System.out, false));
-        SocketOutputCopy toNet = new SocketOutputCopy(socket);
+        SocketChannel socket = connect(hostname, port, timeout);
+        FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+        FileChannel out =
+            new FileOutputStream(FileDescriptor.out).getChannel();
+        Thread fromNet = new Thread(new ChannelCopy(null, socket, out, false));
+        Thread toNet = new Thread(new ChannelCopy(null, in, socket, true));
         fromNet.start();
         toNet.start();
         fromNet.join();
@@ -122,39 +128,3 @@ public final class Main
         out.print(text);
     }
 }
-
-class SocketOutputCopy
-    extends Thread
-{
-    public SocketOutputCopy(Socket socket)
-    {
-        m_socket = socket;
-    }
-
-    public void run()
-    {
-        try
-        {
-            InputStream src = System.in;
-            OutputStream dest = m_socket.getOutputStream();
-            byte buffer[] = new byte[1024];
-            while (true)
-            {
-                int n = src.read(buffer);
-                if (n < 0)
-                {
-                    m_socket.shutdownOutput();
-                    break;
-                }
-                dest.write(buffer, 0, n);
-                dest.flush();
-            }
-        }
-        catch (Throwable e)
-        {
-            StringUtil.printException(e);
-        }
-    }
-
-    private final Socket m_socket;
-}
@@ -5,9 +5,13 @@ package net.sf.gogui.tools.dummy;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Locale;
 import java.util.Random;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.GoColor;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.PointList;
+import net.sf.gogui.gtp.BoardParameters;
 import net.sf.gogui.gtp.GtpCallback;
 import net.sf.gogui.gtp.GtpCommand;
 import net.sf.gogui.gtp.GtpEngine;
@@ -35,6 +39,38 @@ public class Dummy
         initSize(GoPoint.DEFAULT_SIZE);
     }
 
+    /** Enable the benchmark mode.
+        In benchmark mode, the program keeps track of the position and
+        genmove plays random legal moves that do not fill single-point eyes
+        of the own color.
+        @param latency Latency of genmove or null for no latency.
+        @param gfxLines Number of live graphics updates written to stderr
+        during genmove.
+        @param stderrBytes Number of bytes of log output written to stderr
+        during genmove.
+        @param responseSize Minimum size of the response to
+        gogui-dummy-bench_gfx in bytes. */
+    public void setBenchmark(LatencyDistribution latency, int gfxLines,
+                             int stderrBytes, int responseSize)
+    {
+        m_board = new Board(new BoardParameters(m_size));
+        m_latency = latency;
+        m_gfxLines = gfxLines;
+        m_stderrBytes = stderrBytes;
+        m_responseSize = responseSize;
+    }
+
+    public void cmdBenchGfx(GtpCommand cmd) throws GtpError
+    {
+        cmd.checkArgNone();
+        StringBuilder response = cmd.getResponse();
+        appendInfluence(response);
+        response.append("TEXT ");
+        while (response.length() < m_responseSize)
+            response.append('x');
+        response.append('\n');
+    }
+
     public void cmdBWBoard(GtpCommand cmd)
     {
         cmd.getResponse().append('\n');
@@ -147,6 +183,7 @@ public class Dummy
     {
         cmd.checkArgNone();
         String response =
+            "gfx/Bench Gfx/gogui-dummy-bench_gfx\n" +
             "bwboard/BWBoard/gogui-dummy-bwboard\n" +
             "none/Crash/gogui-dummy-crash\n" +
             "none/Delay/gogui-dummy-delay %o\n" +
@@ -165,14 +202,20 @@ public class Dummy
         cmd.setResponse(response);
     }
 
-    public void cmdGenmove(GtpCommand cmd)
+    public void cmdGenmove(GtpCommand cmd) throws GtpError
     {
         ++m_numberGenmove;
+        writeBenchmarkOutput();
         if (m_numberGenmove == m_resign)
         {
             cmd.setResponse("resign");
             return;
         }
+        if (m_board != null)
+        {
+            genmoveLegal(cmd.getColorArg(), cmd);
+            return;
+        }
         int numberPossibleMoves = 0;
         for (int x = 0; x < m_size; ++x)
             for (int y = 0; y < m_size; ++y)
@@ -268,6 +311,8 @@ public class Dummy
         GoPoint point = cmd.getPointArg(1, m_size);
         if (point != null)
             m_alreadyPlayed[point.getX()][point.getY()] = true;
+        if (m_board != null)
+            m_board.play(cmd.getColorArg(0), point);
     }
 
     public void cmdSBoard(GtpCommand cmd)
@@ -336,6 +381,17 @@ public class Dummy
 
     private boolean m_nextResponseFixed;
 
+    private int m_gfxLines;
+
+    private int m_responseSize;
+
+    private int m_stderrBytes;
+
+    /** Position in benchmark mode, null otherwise. */
+    private Board m_board;
+
+    private LatencyDistribution m_latency;
+
     private boolean m_nextStatus;
 
     /** Delay every command (seconds) */
@@ -356,11 +412,51 @@ public class Dummy
     /** Editable point list for gogui-dummy-eplist command. */
     private PointList m_ePList = new PointList();
 
+    private void appendInfluence(StringBuilder buffer)
+    {
+        buffer.append("INFLUENCE");
+        for (int x = 0; x < m_size; ++x)
+            for (int y = 0; y < m_size; ++y)
+            {
+                buffer.append(' ');
+                buffer.append(GoPoint.get(x, y));
+                buffer.append(String.format(Locale.ENGLISH, " %.2f",
+                                            2 * m_random.nextDouble() - 1));
+            }
+        buffer.append('\n');
+    }
+
+    private void genmoveLegal(GoColor color, GtpCommand cmd)
+    {
+        PointList moves = new PointList();
+        for (GoPoint p : m_board)
+            if (m_board.getColor(p) == GoColor.EMPTY
+                && ! isEye(p, color)
+                && ! m_board.isSuicide(color, p)
+                && ! (color == m_board.getToMove() && m_board.isKo(p)))
+                moves.add(p);
+        GoPoint point = null;
+        if (moves.size() > 0)
+            point = moves.get(m_random.nextInt(moves.size()));
+        m_board.play(color, point);
+        cmd.setResponse(GoPoint.toString(point));
+    }
+
     private void initSize(int size)
     {
         m_alreadyPlayed = new boolean[size][size];
         m_size = size;
         m_numberGenmove = 0;
+        if (m_board != null)
+            m_board.init(new BoardParameters(size));
+    }
+
+    private boolean isEye(GoPoint p, GoColor color)
+    {
+        for (GoPoint adj : m_board.getAdjacent(p))
+            if (m_board.getColor(adj) != color)
+                return false;
+        return true;
     }
 
     private void nextResponseFixed(GtpCommand cmd, boolean nextStatus)
@@ -372,6 +468,9 @@ public class Dummy
 
     private void registerCommands()
     {
+        register("gogui-dummy-bench_gfx", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdBenchGfx(cmd); } });
         register("boardsize", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdBoardsize(cmd); } });
@@ -450,4 +549,53 @@ public class Dummy
         {
         }
     }
+
+    private void sleepNanos(long nanos)
+    {
+        if (nanos <= 0)
+            return;
+        try
+        {
+            Thread.sleep(nanos / 1000000, (int)(nanos % 1000000));
+        }
+        catch (InterruptedException e)
+        {
+        }
+    }
+
+    /** Write the stderr and live graphics output and wait for the latency
+        of a genmove in benchmark mode.
+        The live graphics updates are distributed over the latency. */
+    private void writeBenchmarkOutput()
+    {
+        long latency = 0;
+        if (m_latency != null)
+            latency = m_latency.sample(m_random);
+        if (m_stderrBytes > 0)
+        {
+            StringBuilder buffer = new StringBuilder(m_stderrBytes + 80);
+            while (buffer.length() < m_stderrBytes)
+                buffer.append("gogui-dummy: benchmark output"
+                              + " ..................................."
+                              + "..............\n");
+            System.err.print(buffer);
+        }
+        for (int i = 0; i < m_gfxLines; ++i)
+        {
+            StringBuilder buffer = new StringBuilder(4096);
+            buffer.append("gogui-gfx:\n");
+            appendInfluence(buffer);
+            buffer.append("TEXT ");
+            buffer.append(i + 1);
+            buffer.append('/');
+            buffer.append(m_gfxLines);
+            buffer.append('\n');
+            System.err.println(buffer);
+            sleepNanos(latency / m_gfxLines);
+        }
+        if (m_gfxLines > 0)
+            System.err.println("gogui-gfx: CLEAR");
+        else
+            sleepNanos(latency);
+    }
 }
@@ -0,0 +1,75 @@
+// LatencyDistribution.java
+
+package net.sf.gogui.tools.dummy;
+
+import java.util.Random;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Random distribution of simulated command latencies. */
+public final class LatencyDistribution
+{
+    /** Parse a distribution.
+        @param spec A constant time in milliseconds (e.g. "5"), a uniform
+        distribution between a minimum and maximum time (e.g. "1-10"), or an
+        exponential distribution with a given mean time (e.g. "exp:5").
+        @throws ErrorMessage If the specification is invalid. */
+    public static LatencyDistribution parse(String spec) throws ErrorMessage
+    {
+        try
+        {
+            if (spec.startsWith("exp:"))
+                return new LatencyDistribution(true, 0,
+                                               parseTime(spec.substring(4)));
+            int index = spec.indexOf('-');
+            if (index < 0)
+            {
+                double time = parseTime(spec);
+                return new LatencyDistribution(false, time, time);
+            }
+            double min = parseTime(spec.substring(0, index));
+            double max = parseTime(spec.substring(index + 1));
+            if (max >= min)
+                return new LatencyDistribution(false, min, max);
+        }
+        catch (NumberFormatException e)
+        {
+        }
+        throw new ErrorMessage("Invalid latency: " + spec);
+    }
+
+    /** Get a random latency.
+        @return The latency in nanoseconds. */
+    public long sample(Random random)
+    {
+        double millis;
+        if (m_exponential)
+            millis = -m_max * Math.log(1 - random.nextDouble());
+        else
+            millis = m_min + (m_max - m_min) * random.nextDouble();
+        return (long)(millis * 1e6);
+    }
+
+    /** Exponential instead of uniform distribution. */
+    private final boolean m_exponential;
+
+    private final double m_min;
+
+    /** Maximum time, or mean time for exponential distribution, in
+        milliseconds. */
+    private final double m_max;
+
+    private LatencyDistribution(boolean exponential, double min, double max)
+    {
+        m_exponential = exponential;
+        m_min = min;
+        m_max = max;
+    }
+
+    private static double parseTime(String s)
+    {
+        double time = Double.parseDouble(s.trim());
+        if (time < 0 || Double.isNaN(time) || Double.isInfinite(time))
+            throw new NumberFormatException();
+        return time;
+    }
+}
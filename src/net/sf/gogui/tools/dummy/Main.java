@@ -17,11 +17,16 @@ public final class Main
         try
         {
             String options[] = {
+                "bench",
                 "config:",
+                "gfx:",
                 "help",
+                "latency:",
                 "log:",
                 "resign:",
+                "responsesize:",
                 "srand:",
+                "stderr:",
                 "version"
             };
             Options opt = Options.parse(args, options);
@@ -30,11 +35,16 @@ public final class Main
                 String helpText =
                     "Usage: gogui-dummy [options]\n" +
                     "\n" +
+                    "-bench     benchmark mode (legal random moves)\n" +
                     "-config    config file\n" +
+                    "-gfx n     live gfx updates per genmove\n" +
                     "-help      display this help and exit\n" +
+                    "-latency t genmove latency in ms (t, min-max, exp:t)\n" +
                     "-log file  log GTP stream to file\n" +
                     "-resign n  resign at n'th genmove\n" +
+                    "-responsesize n  size of bench_gfx response\n" +
                     "-srand n   random seed\n" +
+                    "-stderr n  bytes written to stderr per genmove\n" +
                     "-version   print version and exit\n";
                 System.out.print(helpText);
                 return;
@@ -59,6 +69,17 @@ public final class Main
             }
             int resign = opt.getInteger("resign", -1);
             Dummy dummy = new Dummy(log, useRandomSeed, randomSeed, resign);
+            if (opt.contains("bench") || opt.contains("gfx")
+                || opt.contains("latency") || opt.contains("responsesize")
+                || opt.contains("stderr"))
+            {
+                LatencyDistribution latency = null;
+                if (opt.contains("latency"))
+                    latency = LatencyDistribution.parse(opt.get("latency"));
+                dummy.setBenchmark(latency, opt.getInteger("gfx", 0, 0),
+                                   opt.getInteger("stderr", 0, 0),
+                                   opt.getInteger("responsesize", 0, 0));
+            }
             dummy.mainLoop(System.in, System.out);
             if (log != null)
                 log.close();
@@ -20,6 +20,7 @@ import net.sf.gogui.gtp.GtpUtil;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
 import net.sf.gogui.util.HtmlUtil;
+import net.sf.gogui.util.LatencyHistogram;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
 
@@ -158,6 +159,9 @@ public class Regress
 
         public double m_cpuTime;
 
+        /** Latencies of the commands in the test file. */
+        public LatencyHistogram m_latency = new LatencyHistogram();
+
         public int getNumberPasses()
         {
             return m_expectedPasses + m_unexpectedPasses;
@@ -301,13 +305,15 @@ public class Regress
         }
     }
 
-    private TestSummary getTestSummary(long timeMillis, double cpuTime)
+    private TestSummary getTestSummary(long timeMillis, double cpuTime,
+                                       LatencyHistogram latency)
     {
         TestSummary summary = new TestSummary();
         summary.m_file = m_testFile;
         summary.m_outName = m_outName;
         summary.m_timeMillis = timeMillis;
         summary.m_cpuTime = cpuTime;
+        summary.m_latency = latency;
         summary.m_otherErrors = m_otherErrors;
         for (int i = 0; i < m_tests.size(); ++i)
         {
@@ -689,6 +695,12 @@ public class Regress
         }
     }
 
+    /** Format a latency with millisecond resolution. */
+    private String getLatencyString(double seconds)
+    {
+        return StringUtil.getNumberFormat(3).format(seconds);
+    }
+
     private String getTimeString(double seconds)
     {
         NumberFormat format1 = StringUtil.getNumberFormat(1);
@@ -714,6 +726,7 @@ public class Regress
             total.m_unexpectedPasses += summary.m_unexpectedPasses;
             total.m_timeMillis += summary.m_timeMillis;
             total.m_cpuTime += summary.m_cpuTime;
+            total.m_latency.add(summary.m_latency);
         }
         return total;
     }
@@ -762,6 +775,8 @@ public class Regress
             queryNameAndVersion();
             double cpuTime = getCpuTime();
             long timeMillis = System.currentTimeMillis();
+            // Only the commands of the test file are used for the latency
+            m_gtp.getMetrics().clear();
             printOutSeparator();
             String line;
             while (true)
@@ -772,6 +787,7 @@ public class Regress
                 handleLine(line);
             }
             timeMillis = System.currentTimeMillis() - timeMillis;
+            LatencyHistogram latency = m_gtp.getMetrics().getTotal();
             if (m_lastFullResponse != null)
             {
                 handleLastResponse();
@@ -791,7 +807,8 @@ public class Regress
             }
             m_gtp.waitForExit();
             finishOutFile();
-            TestSummary testSummary = getTestSummary(timeMillis, cpuTime);
+            TestSummary testSummary =
+                getTestSummary(timeMillis, cpuTime, latency);
             m_testSummaries.add(testSummary);
             writeTestSummary(testSummary);
         }
@@ -888,9 +905,11 @@ public class Regress
         File file = new File(m_prefix + "summary.dat");
         PrintStream out = new PrintStream(file);
         NumberFormat format1 = StringUtil.getNumberFormat(1);
+        NumberFormat format3 = StringUtil.getNumberFormat(3);
         TestSummary s = getTotalSummary();
         double time = ((double)s.m_timeMillis) / 1000F;
-        out.print("#Tests\tFAIL\tfail\tPASS\tpass\tError\tTime\tCpuTime\n" +
+        out.print("#Tests\tFAIL\tfail\tPASS\tpass\tError\tTime\tCpuTime"
+                  + "\tLatencyP90\tLatencyMax\n" +
                   + s.m_numberTests + "\t"
                   + s.m_unexpectedFails + "\t"
                   + s.m_expectedFails + "\t"
@@ -899,6 +918,8 @@ public class Regress
                   + s.m_otherErrors + "\t"
                   + format1.format(time) + "\t"
                   + format1.format(s.m_cpuTime) + "\t"
+                  + format3.format(s.m_latency.getPercentile(90) / 1e9) + "\t"
+                  + format3.format(s.m_latency.getMax() / 1e9) + "\t"
                   + "\n");
         out.close();
     }
@@ -934,14 +955,16 @@ public class Regress
                   + "cellspacing=\"1\">\n" +
                   "<colgroup>\n" +
                   "<col width=\"20%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
-                  "<col width=\"10%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
+                  "<col width=\"8%\">\n" +
                   "</colgroup>\n" +
                   "<thead align=\"center\">\n" +
                   "<tr bgcolor = \"" + COLOR_HEADER + "\">\n" +
@@ -954,6 +977,8 @@ public class Regress
                   "<th>Error</th>\n" +
                   "<th>Time</th>\n" +
                   "<th>CpuTime</th>\n" +
+                  "<th>LatencyP90</th>\n" +
+                  "<th>LatencyMax</th>\n" +
                   "</tr>\n" +
                   "</thead>\n");
         for (int i = 0; i < m_testSummaries.size(); ++i)
@@ -991,6 +1016,8 @@ public class Regress
                           "\">" + file + "</a></td>");
         }
         double time = ((double)summary.m_timeMillis) / 1000F;
+        double latencyP90 = summary.m_latency.getPercentile(90) / 1e9;
+        double latencyMax = summary.m_latency.getMax() / 1e9;
         String colorAttrUnexpectedFails = "";
         if (summary.m_unexpectedFails > 0)
             colorAttrUnexpectedFails = " bgcolor=\"" + COLOR_RED + "\"";
@@ -1012,6 +1039,10 @@ public class Regress
                   "<td align=\"right\">" + getTimeString(time) + "</td>\n" +
                   "<td align=\"right\">" + getTimeString(summary.m_cpuTime) +
                   "</td>\n" +
+                  "<td align=\"right\">" + getLatencyString(latencyP90) +
+                  "</td>\n" +
+                  "<td align=\"right\">" + getLatencyString(latencyMax) +
+                  "</td>\n" +
                   "</tr>\n");
         if (foot)
             out.print("</tfoot>\n");
@@ -1060,14 +1091,16 @@ public class Regress
                   "<table width=\"100%\" border=\"0\" cellpadding=\"0\""
                   + " cellspacing=\"1\">\n" +
                   "<colgroup>\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
-                  "<col width=\"12%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
+                  "<col width=\"10%\">\n" +
                   "</colgroup>\n" +
                   "<thead align=\"center\">\n" +
                   "<tr bgcolor=\"" + COLOR_HEADER + "\">\n" +
@@ -1079,6 +1112,8 @@ public class Regress
                   "<th>Error</th>\n" +
                   "<th>Time</th>\n" +
                   "<th>CpuTime</th>\n" +
+                  "<th>LatencyP90</th>\n" +
+                  "<th>LatencyMax</th>\n" +
                   "</tr>\n" +
                   "</thead>\n");
         writeSummaryRow(out, summary, false, false);
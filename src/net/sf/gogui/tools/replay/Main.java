@@ -0,0 +1,117 @@
+// Main.java
+
+package net.sf.gogui.tools.replay;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpClient;
+import net.sf.gogui.gtp.GtpMetrics;
+import net.sf.gogui.util.Options;
+import net.sf.gogui.util.StringUtil;
+import net.sf.gogui.version.Version;
+
+/** Replay main function. */
+public final class Main
+{
+    public static void main(String[] args)
+    {
+        try
+        {
+            String options[] = {
+                "config:",
+                "help",
+                "pace",
+                "record:",
+                "verbose",
+                "version"
+            };
+            Options opt = Options.parse(args, options);
+            if (opt.contains("help"))
+            {
+                printUsage(System.out);
+                return;
+            }
+            if (opt.contains("version"))
+            {
+                System.out.println("gogui-replay " + Version.get());
+                return;
+            }
+            boolean verbose = opt.contains("verbose");
+            ArrayList<String> arguments = opt.getArguments();
+            if (opt.contains("record"))
+            {
+                if (arguments.size() != 1)
+                {
+                    printUsage(System.err);
+                    System.exit(2);
+                }
+                File file = new File(opt.get("record"));
+                Recorder recorder =
+                    new Recorder(arguments.get(0), file, verbose);
+                recorder.mainLoop(System.in, System.out);
+                recorder.close();
+                return;
+            }
+            if (arguments.size() != 2)
+            {
+                printUsage(System.err);
+                System.exit(2);
+            }
+            Transcript transcript =
+                new Transcript(new File(arguments.get(0)));
+            GtpClient gtp =
+                new GtpClient(arguments.get(1), null, verbose, null);
+            Replay replay = new Replay(gtp, transcript, opt.contains("pace"),
+                                       System.out);
+            try
+            {
+                replay.run();
+            }
+            finally
+            {
+                gtp.close();
+                gtp.waitForExit();
+            }
+            printReport(System.out, transcript, replay);
+            System.exit(replay.getNumberDifferences() == 0 ? 0 : 1);
+        }
+        catch (Throwable t)
+        {
+            StringUtil.printException(t);
+            System.exit(2);
+        }
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private Main()
+    {
+    }
+
+    private static void printReport(PrintStream out, Transcript transcript,
+                                    Replay replay)
+    {
+        GtpMetrics metrics = replay.getMetrics();
+        out.println("Commands: " + replay.getNumberSent());
+        out.println("Differences: " + replay.getNumberDifferences());
+        out.println("Recorded: " + GtpMetrics.formatSummary(
+                        transcript.getMetrics().getTotal()));
+        out.println("Replayed: " + GtpMetrics.formatSummary(
+                        metrics.getTotal()));
+        out.println();
+        out.print(metrics.format());
+    }
+
+    private static void printUsage(PrintStream out)
+    {
+        out.print("Usage: gogui-replay [options] transcript program\n" +
+                  "       gogui-replay -record transcript program\n" +
+                  "\n" +
+                  "-config       Config file\n" +
+                  "-help         Display this help and exit\n" +
+                  "-pace         Keep recorded time between commands\n" +
+                  "-record       Record transcript\n" +
+                  "-verbose      Log GTP stream to stderr\n" +
+                  "-version      Print version and exit\n");
+    }
+}
@@ -0,0 +1,61 @@
+// Recorder.java
+
+package net.sf.gogui.tools.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import net.sf.gogui.gtp.GtpClient;
+import net.sf.gogui.gtp.GtpCommand;
+import net.sf.gogui.gtp.GtpEngine;
+import net.sf.gogui.gtp.GtpError;
+
+/** GTP engine that forwards all commands to a program and records the
+    session in a transcript. */
+public class Recorder
+    extends GtpEngine
+{
+    public Recorder(String program, File transcript, boolean verbose)
+        throws FileNotFoundException, GtpClient.ExecFailed
+    {
+        super(null);
+        m_out = new PrintStream(new BufferedOutputStream(
+                                   new FileOutputStream(transcript)));
+        m_gtp = new GtpClient(program, null, verbose,
+                              new TranscriptWriter(m_out));
+    }
+
+    public void close()
+    {
+        m_gtp.close();
+        m_gtp.waitForExit();
+        m_out.close();
+    }
+
+    public void handleCommand(GtpCommand cmd) throws GtpError
+    {
+        String response = m_gtp.send(cmd.getLine());
+        if (cmd.isQuit())
+            setQuit();
+        cmd.setResponse(response);
+    }
+
+    public void interruptCommand()
+    {
+        try
+        {
+            if (m_gtp.isInterruptSupported())
+                m_gtp.sendInterrupt();
+        }
+        catch (GtpError e)
+        {
+            System.err.println(e);
+        }
+    }
+
+    private final GtpClient m_gtp;
+
+    private final PrintStream m_out;
+}
@@ -0,0 +1,142 @@
+// Replay.java
+
+package net.sf.gogui.tools.replay;
+
+import java.io.PrintStream;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
+
+/** Sends the commands of a transcript to a Go program.
+    Measures the latencies of the commands and compares the responses with
+    the recorded responses. */
+public final class Replay
+{
+    /** Constructor.
+        @param gtp The program.
+        @param transcript The transcript.
+        @param pace Keep the recorded time between receiving a response and
+        sending the next command. If false, the commands are sent as fast as
+        possible.
+        @param out Stream for printing the differences or null. */
+    public Replay(GtpClientBase gtp, Transcript transcript, boolean pace,
+                  PrintStream out)
+    {
+        m_gtp = gtp;
+        m_transcript = transcript;
+        m_pace = pace;
+        m_out = out;
+    }
+
+    /** Get the latencies of the replayed commands. */
+    public GtpMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
+    /** Get the number of responses that differ from the recorded ones.
+        Includes a changed status (success or failure). */
+    public int getNumberDifferences()
+    {
+        return m_numberDifferences;
+    }
+
+    /** Get the number of commands sent. */
+    public int getNumberSent()
+    {
+        return m_numberSent;
+    }
+
+    /** Send all commands of the transcript.
+        @throws GtpError If the program died. */
+    public void run() throws GtpError
+    {
+        long lastResponseTime = System.nanoTime();
+        for (int i = 0; i < m_transcript.size(); ++i)
+        {
+            Transcript.Entry entry = m_transcript.get(i);
+            if (m_pace && i > 0)
+                sleep(lastResponseTime + getThinkTime(i));
+            String command = entry.getCommand();
+            boolean isError = false;
+            String response;
+            long time = System.nanoTime();
+            try
+            {
+                response = m_gtp.send(command);
+            }
+            catch (GtpError e)
+            {
+                if (m_gtp.isProgramDead())
+                    throw e;
+                isError = true;
+                response = e.getMessage();
+            }
+            lastResponseTime = System.nanoTime();
+            m_metrics.add(command, lastResponseTime - time);
+            ++m_numberSent;
+            if (entry.getResponse() != null
+                && (isError != entry.isError()
+                    || ! response.trim().equals(entry.getResponse())))
+            {
+                ++m_numberDifferences;
+                if (m_out != null)
+                    printDifference(i, entry, isError, response.trim());
+            }
+            if (command.equals("quit"))
+                break;
+        }
+    }
+
+    private final boolean m_pace;
+
+    private int m_numberDifferences;
+
+    private int m_numberSent;
+
+    private final GtpClientBase m_gtp;
+
+    private final GtpMetrics m_metrics = new GtpMetrics();
+
+    private final PrintStream m_out;
+
+    private final Transcript m_transcript;
+
+    /** Get the recorded time between the previous response and a command.
+        If the previous command has no response, the time between sending
+        the commands is used. */
+    private long getThinkTime(int i)
+    {
+        Transcript.Entry previous = m_transcript.get(i - 1);
+        long time;
+        if (previous.getResponse() != null)
+            time = previous.getResponseTime();
+        else
+            time = previous.getSendTime();
+        return Math.max(0, m_transcript.get(i).getSendTime() - time);
+    }
+
+    private void printDifference(int i, Transcript.Entry entry,
+                                 boolean isError, String response)
+    {
+        m_out.println("Command " + (i + 1) + ": " + entry.getCommand());
+        m_out.println("Recorded: " + (entry.isError() ? "? " : "= ")
+                      + entry.getResponse());
+        m_out.println("Replayed: " + (isError ? "? " : "= ") + response);
+    }
+
+    private static void sleep(long until)
+    {
+        long nanos = until - System.nanoTime();
+        if (nanos <= 0)
+            return;
+        try
+        {
+            Thread.sleep(nanos / 1000000, (int)(nanos % 1000000));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
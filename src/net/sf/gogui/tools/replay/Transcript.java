@@ -0,0 +1,222 @@
+// Transcript.java
+
+package net.sf.gogui.tools.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import net.sf.gogui.gtp.GtpMetrics;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Timestamped GTP session as written by TranscriptWriter.
+    A command line starts with '>', followed by the time in milliseconds
+    since the start of the session and the command. A response starts
+    with a line containing '<' followed by the time, then the response
+    as received from the program, which is terminated by an empty line.
+    Responses are assigned to the commands in the order of the commands,
+    so transcripts of pipelined commands are supported. Lines starting with
+    '#' are comments. */
+public final class Transcript
+{
+    /** Command of a transcript with the recorded response. */
+    public static final class Entry
+    {
+        public Entry(String command, long sendTime)
+        {
+            m_command = command;
+            m_sendTime = sendTime;
+        }
+
+        /** Get the command without id. */
+        public String getCommand()
+        {
+            return m_command;
+        }
+
+        /** Get the response text without status and id.
+            @return The response or null, if the transcript contains no
+            response for the command. */
+        public String getResponse()
+        {
+            return m_response;
+        }
+
+        /** Get the time the response was received in nanoseconds.
+            Only defined if getResponse() is not null. */
+        public long getResponseTime()
+        {
+            return m_responseTime;
+        }
+
+        /** Get the time the command was sent in nanoseconds. */
+        public long getSendTime()
+        {
+            return m_sendTime;
+        }
+
+        public boolean isError()
+        {
+            return m_isError;
+        }
+
+        private boolean m_isError;
+
+        private long m_responseTime;
+
+        private final long m_sendTime;
+
+        private final String m_command;
+
+        private String m_response;
+    }
+
+    /** Read a transcript from a file.
+        @throws ErrorMessage If the file has an invalid format. */
+    public Transcript(File file) throws IOException, ErrorMessage
+    {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            read(reader, file.toString());
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /** Read a transcript.
+        @param reader The reader.
+        @param name The name used in error messages.
+        @throws ErrorMessage If the input has an invalid format. */
+    public Transcript(Reader reader, String name)
+        throws IOException, ErrorMessage
+    {
+        read(new BufferedReader(reader), name);
+    }
+
+    public Entry get(int i)
+    {
+        return m_entries.get(i);
+    }
+
+    /** Get the latencies of the recorded commands.
+        Commands without response are ignored. */
+    public GtpMetrics getMetrics()
+    {
+        GtpMetrics metrics = new GtpMetrics();
+        for (Entry entry : m_entries)
+            if (entry.m_response != null)
+                metrics.add(entry.m_command,
+                            entry.m_responseTime - entry.m_sendTime);
+        return metrics;
+    }
+
+    /** Parse a response into status and text.
+        @param response The response as received including the terminating
+        empty line.
+        @param text Buffer for the response text without status and id.
+        @return true, if the response is an error response. */
+    public static boolean parseResponse(String response, StringBuilder text)
+    {
+        int index = 1;
+        while (index < response.length()
+               && Character.isDigit(response.charAt(index)))
+            ++index;
+        text.append(response.substring(index).trim());
+        return (response.charAt(0) != '=');
+    }
+
+    /** Remove the id from a command. */
+    public static String removeId(String command)
+    {
+        command = command.trim();
+        int index = 0;
+        while (index < command.length()
+               && Character.isDigit(command.charAt(index)))
+            ++index;
+        if (index == command.length()
+            || ! Character.isWhitespace(command.charAt(index)))
+            return command;
+        return command.substring(index).trim();
+    }
+
+    public int size()
+    {
+        return m_entries.size();
+    }
+
+    private final ArrayList<Entry> m_entries = new ArrayList<Entry>();
+
+    private static long parseTime(String line, String name, int lineNumber)
+        throws ErrorMessage
+    {
+        try
+        {
+            return Math.round(Double.parseDouble(line) * 1e6);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ErrorMessage(name + ":" + lineNumber
+                                   + ": Invalid time");
+        }
+    }
+
+    private void read(BufferedReader reader, String name)
+        throws IOException, ErrorMessage
+    {
+        LinkedList<Entry> pending = new LinkedList<Entry>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            ++lineNumber;
+            if (line.startsWith(">"))
+            {
+                int index = line.indexOf(' ');
+                if (index < 0)
+                    throw new ErrorMessage(name + ":" + lineNumber
+                                           + ": Missing command");
+                long time =
+                    parseTime(line.substring(1, index), name, lineNumber);
+                Entry entry = new Entry(removeId(line.substring(index)),
+                                        time);
+                m_entries.add(entry);
+                pending.add(entry);
+            }
+            else if (line.startsWith("<"))
+            {
+                long time = parseTime(line.substring(1).trim(), name,
+                                      lineNumber);
+                StringBuilder response = new StringBuilder();
+                while ((line = reader.readLine()) != null)
+                {
+                    ++lineNumber;
+                    if (line.equals(""))
+                        break;
+                    response.append(line);
+                    response.append('\n');
+                }
+                if (response.length() == 0
+                    || "=?".indexOf(response.charAt(0)) < 0)
+                    throw new ErrorMessage(name + ":" + lineNumber
+                                           + ": Invalid response");
+                if (pending.isEmpty())
+                    throw new ErrorMessage(name + ":" + lineNumber
+                                           + ": Response without command");
+                Entry entry = pending.removeFirst();
+                StringBuilder text = new StringBuilder();
+                entry.m_isError = parseResponse(response.toString(), text);
+                entry.m_response = text.toString();
+                entry.m_responseTime = time;
+            }
+            else if (! line.startsWith("#") && ! line.trim().equals(""))
+                throw new ErrorMessage(name + ":" + lineNumber
+                                       + ": Invalid line");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// TranscriptWriter.java
+
+package net.sf.gogui.tools.replay;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import net.sf.gogui.gtp.GtpClient;
+
+/** Writes a transcript of the GTP streams of a GtpClient.
+    Can be used as the IO callback of any GtpClient. The output stream is
+    not flushed after each command to keep the overhead small.
+    @see Transcript */
+public final class TranscriptWriter
+    implements GtpClient.IOCallback
+{
+    public TranscriptWriter(PrintStream out)
+    {
+        m_out = out;
+        m_startTime = System.nanoTime();
+        m_out.println("# gogui-replay transcript");
+    }
+
+    public synchronized void receivedInvalidResponse(String s)
+    {
+    }
+
+    public synchronized void receivedResponse(boolean error, String s)
+    {
+        m_out.print("<" + getTime() + "\n" + s);
+    }
+
+    public synchronized void receivedStdErr(String s)
+    {
+    }
+
+    public synchronized void sentCommand(String s)
+    {
+        if (s.trim().startsWith("#"))
+            return;
+        m_out.println(">" + getTime() + " " + s.trim());
+    }
+
+    private final long m_startTime;
+
+    private final PrintStream m_out;
+
+    private String getTime()
+    {
+        double millis = (System.nanoTime() - m_startTime) / 1e6;
+        return String.format(Locale.ENGLISH, "%.3f", millis);
+    }
+}
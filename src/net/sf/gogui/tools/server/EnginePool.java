@@ -0,0 +1,169 @@
+// EnginePool.java
+
+package net.sf.gogui.tools.server;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import net.sf.gogui.gtp.GtpClient;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Bounded pool of running Go programs.
+    All programs are started in the constructor, so that sessions get a
+    program that has already finished its initialization. The programs are
+    recycled with clear_board after a session. Programs, whose board size,
+    komi or time settings were changed in a session, are restarted instead,
+    because GTP cannot query the initial values of these settings. */
+public final class EnginePool
+{
+    /** Creates the programs of the pool. */
+    public interface Factory
+    {
+        GtpClientBase create() throws GtpError;
+    }
+
+    /** Constructor.
+        @param program Command line for Go program
+        @param size Number of programs
+        @param verbose Log GTP streams to stderr */
+    public EnginePool(final String program, int size, final boolean verbose)
+        throws GtpError
+    {
+        this(new Factory() {
+                public GtpClientBase create() throws GtpError
+                {
+                    return new GtpClient(program, null, verbose, null);
+                }
+            }, size, RESTART_DELAY);
+    }
+
+    /** Constructor.
+        @param factory Factory for the programs
+        @param size Number of programs
+        @param restartDelay Delay between attempts to restart a program in
+        milliseconds */
+    public EnginePool(Factory factory, int size, long restartDelay)
+        throws GtpError
+    {
+        m_factory = factory;
+        m_restartDelay = restartDelay;
+        m_idle = new ArrayBlockingQueue<GtpClientBase>(size);
+        for (int i = 0; i < size; ++i)
+            m_idle.add(factory.create());
+    }
+
+    /** Get an idle program.
+        Waits until a program is available.
+        @throws ErrorMessage If a program could not be restarted. */
+    public GtpClientBase acquire() throws ErrorMessage, InterruptedException
+    {
+        while (true)
+        {
+            checkError();
+            GtpClientBase gtp = m_idle.poll(1, TimeUnit.SECONDS);
+            if (gtp != null)
+                return gtp;
+        }
+    }
+
+    /** Throw an error, if a program could not be restarted.
+        The pool is then unusable, because it lost one of its programs. */
+    public synchronized void checkError() throws ErrorMessage
+    {
+        if (m_error != null)
+            throw m_error;
+    }
+
+    /** Close all idle programs. */
+    public void close()
+    {
+        ArrayList<GtpClientBase> engines = new ArrayList<GtpClientBase>();
+        m_idle.drainTo(engines);
+        for (GtpClientBase gtp : engines)
+            close(gtp);
+    }
+
+    /** Return a program to the pool after a session.
+        Sends clear_board to the program. If the program died, the command
+        fails or the settings of the program were changed in the session,
+        the program is replaced by a new instance. If the new instance
+        cannot be started after several attempts, the pool fails.
+        @param gtp The program.
+        @param isSetupChanged If the board size, komi or time settings were
+        changed in the session. */
+    public void release(GtpClientBase gtp, boolean isSetupChanged)
+    {
+        if (! gtp.isProgramDead() && ! isSetupChanged)
+        {
+            try
+            {
+                gtp.send("clear_board");
+                m_idle.add(gtp);
+                return;
+            }
+            catch (GtpError e)
+            {
+                System.err.println("gogui-server: Restarting program: "
+                                   + e.getMessage());
+            }
+        }
+        close(gtp);
+        for (int i = 0; ; ++i)
+        {
+            try
+            {
+                m_idle.add(m_factory.create());
+                return;
+            }
+            catch (GtpError e)
+            {
+                System.err.println("gogui-server: " + e.getMessage());
+                if (i == MAX_RESTART_ATTEMPTS - 1)
+                {
+                    setError(new ErrorMessage("Could not restart program: "
+                                              + e.getMessage()));
+                    return;
+                }
+            }
+            try
+            {
+                Thread.sleep(m_restartDelay);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                setError(new ErrorMessage("Interrupted while restarting"
+                                          + " program"));
+                return;
+            }
+        }
+    }
+
+    private static final int MAX_RESTART_ATTEMPTS = 3;
+
+    /** Default delay between attempts to restart a program in
+        milliseconds. */
+    private static final long RESTART_DELAY = 1000;
+
+    private final long m_restartDelay;
+
+    private final Factory m_factory;
+
+    private final ArrayBlockingQueue<GtpClientBase> m_idle;
+
+    private ErrorMessage m_error;
+
+    private static void close(GtpClientBase gtp)
+    {
+        gtp.close();
+        gtp.waitForExit();
+    }
+
+    private synchronized void setError(ErrorMessage error)
+    {
+        if (m_error == null)
+            m_error = error;
+    }
+}
@@ -2,18 +2,24 @@
 
 package net.sf.gogui.tools.server;
 
+import net.sf.gogui.util.ChannelCopy;
 import net.sf.gogui.util.Options;
 import net.sf.gogui.util.ProcessUtil;
-import net.sf.gogui.util.StreamCopy;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 
 /** Connects a Go program supporting GTP to a socket. */
@@ -29,24 +35,37 @@ public final class Server
         name.
         @param port Port number at remote host
         @param userFile file containing login information that is sent to the
+        remote host. Only used if remoteHost is set.
         @param timeout Timeout in seconds, zero for no timeout.
-        remote host. Only used if remoteHost is set. */
+        @param poolSize If greater than zero, start this number of programs
+        and serve multiple connections concurrently (only for incoming
+        connections). */
     public Server(boolean verbose, boolean loop, String program,
                   String remoteHost, int port, String userFile,
-                  int timeout)
+                  int timeout, int poolSize)
         throws Exception
     {
+        if (poolSize > 0)
+        {
+            assert remoteHost == null;
+            runPool(verbose, program, port, timeout, poolSize);
+            return;
+        }
         Runtime runtime = Runtime.getRuntime();
-        ServerSocket serverSocket = null;
+        ServerSocketChannel serverSocket = null;
         if (remoteHost == null)
-            serverSocket = new ServerSocket(port, 1);
+        {
+            serverSocket = ServerSocketChannel.open();
+            serverSocket.socket().bind(new InetSocketAddress(port), 1);
+        }
+        PrintStream log = (verbose ? System.err : null);
         while (true)
         {
             Process process
                 = runtime.exec(StringUtil.splitArguments(program));
             Thread stdErrThread = new ProcessUtil.StdErrThread(process);
             stdErrThread.start();
-            Socket socket;
+            SocketChannel socket;
             if (serverSocket == null)
                 socket = connectToRemote(remoteHost, port, userFile);
             else
@@ -57,15 +76,23 @@ public final class Server
             }
             if (verbose)
                 System.err.println("gogui-server: Connected with "
-                                   + socket.getInetAddress());
-            if (timeout >= 0)
-                socket.setSoTimeout(timeout * 1000);
+                                   + socket.socket().getInetAddress());
+            ReadableByteChannel fromSocket = socket;
+            if (timeout > 0)
+            {
+                // Reads from socket channels ignore the socket timeout
+                socket.socket().setSoTimeout(timeout * 1000);
+                fromSocket =
+                    Channels.newChannel(socket.socket().getInputStream());
+            }
+            WritableByteChannel toProcess =
+                ChannelCopy.newFlushingChannel(process.getOutputStream());
+            ReadableByteChannel fromProcess =
+                Channels.newChannel(process.getInputStream());
             Thread fromNet =
-                new Thread(new StreamCopy(verbose, socket.getInputStream(),
-                                          process.getOutputStream(), true));
+                new Thread(new ChannelCopy(log, fromSocket, toProcess, true));
             Thread toNet =
-                new Thread(new StreamCopy(verbose, process.getInputStream(),
-                                          socket.getOutputStream(), false));
+                new Thread(new ChannelCopy(log, fromProcess, socket, false));
             fromNet.start();
             toNet.start();
             toNet.join();
@@ -88,6 +115,7 @@ public final class Server
                 "config:",
                 "help",
                 "loop",
+                "pool:",
                 "port:",
                 "remote:",
                 "timeout:",
@@ -103,6 +131,11 @@ public final class Server
                 System.err.println("Option -loop can't be used with -remote");
                 System.exit(1);
             }
+            if (opt.contains("pool") && opt.contains("remote"))
+            {
+                System.err.println("Option -pool can't be used with -remote");
+                System.exit(1);
+            }
             if (opt.contains("help"))
             {
                 printUsage(System.out);
@@ -122,6 +155,7 @@ public final class Server
             String remoteHost = opt.get("remote", null);
             String userFile = opt.get("user", null);
             int timeout = opt.getInteger("timeout", 0, 0);
+            int poolSize = opt.getInteger("pool", 0, 0);
             if (userFile != null && remoteHost == null)
             {
                 System.err.println("Option -user only valid with -remote");
@@ -135,7 +169,7 @@ public final class Server
             }
             String program = arguments.get(0);
             new Server(verbose, loop, program, remoteHost, port, userFile,
-                       timeout);
+                       timeout, poolSize);
         }
         catch (Throwable t)
         {
@@ -144,37 +178,76 @@ public final class Server
         }
     }
 
-    private static Socket connectToRemote(String remoteHost, int port,
-                                          String userFile) throws Exception
+    private static SocketChannel connectToRemote(String remoteHost,
+                                                 int port, String userFile)
+        throws Exception
     {
         System.err.println("Connecting to " + remoteHost + " " + port);
-        Socket socket = new Socket(remoteHost, port);
+        SocketChannel socket =
+            SocketChannel.open(new InetSocketAddress(remoteHost, port));
         if (userFile != null)
         {
             System.err.println("Sending login information from file "
                                + userFile);
-            InputStream inputStream = new FileInputStream(new File(userFile));
+            FileChannel channel =
+                new FileInputStream(new File(userFile)).getChannel();
             try
             {
-                OutputStream outputStream = socket.getOutputStream();
-                byte buffer[] = new byte[1024];
-                while (true)
-                {
-                    int n = inputStream.read(buffer);
-                    if (n < 0)
-                        break;
-                    outputStream.write(buffer, 0, n);
-                }
+                long size = channel.size();
+                long position = 0;
+                while (position < size)
+                    position +=
+                        channel.transferTo(position, size - position, socket);
             }
             finally
             {
-                inputStream.close();
+                channel.close();
             }
         }
         System.err.println("Connected");
         return socket;
     }
 
+    /** Accept connections and run each session in its own thread with a
+        program from an EnginePool. Connections wait for an idle program if
+        all programs are in use. Fails if a program of the pool could not
+        be restarted. */
+    private static void runPool(boolean verbose, String program, int port,
+                                int timeout, int poolSize)
+        throws Exception
+    {
+        EnginePool pool = new EnginePool(program, poolSize, verbose);
+        ServerSocket serverSocket = new ServerSocket(port);
+        // Check the pool regularly while waiting for connections
+        serverSocket.setSoTimeout(1000);
+        try
+        {
+            while (true)
+            {
+                pool.checkError();
+                Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketTimeoutException e)
+                {
+                    continue;
+                }
+                if (verbose)
+                    System.err.println("gogui-server: Connected with "
+                                       + socket.getInetAddress());
+                socket.setSoTimeout(timeout * 1000);
+                new Thread(new Session(pool, socket)).start();
+            }
+        }
+        finally
+        {
+            serverSocket.close();
+            pool.close();
+        }
+    }
+
     private static void printUsage(PrintStream out)
     {
         out.print("Usage: gogui-server [options] program\n" +
@@ -182,6 +255,7 @@ public final class Server
                   "-config  config file\n" +
                   "-help    display this help and exit\n" +
                   "-loop    restart after connection finished\n" +
+                  "-pool    number of programs for concurrent connections\n" +
                   "-port    port of network connection\n" +
                   "-remote  connect to remote host\n" +
                   "-timeout timeout seconds for closing idle connections\n" +
@@ -0,0 +1,157 @@
+// Session.java
+
+package net.sf.gogui.tools.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpCommand;
+import net.sf.gogui.gtp.GtpEngine;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.StringUtil;
+
+/** Connection of a client with a program from an EnginePool.
+    Forwards all commands to the program, apart from quit, which only ends
+    the session, so that the program can be used for the next session. */
+public final class Session
+    extends GtpEngine
+    implements Runnable
+{
+    public Session(EnginePool pool, Socket socket)
+    {
+        super(null);
+        m_pool = pool;
+        m_socket = socket;
+    }
+
+    public void handleCommand(GtpCommand cmd) throws GtpError
+    {
+        if (cmd.isQuit())
+        {
+            setQuit();
+            return;
+        }
+        if (isSetupCommand(cmd.getCommand()))
+            m_isSetupChanged = true;
+        try
+        {
+            cmd.setResponse(m_gtp.send(cmd.getLine()));
+        }
+        catch (GtpError e)
+        {
+            if (m_gtp.isProgramDead())
+                setQuit();
+            throw e;
+        }
+    }
+
+    public void interruptCommand()
+    {
+        GtpClientBase gtp = m_gtp;
+        try
+        {
+            if (gtp != null && gtp.isInterruptSupported())
+                gtp.sendInterrupt();
+        }
+        catch (GtpError e)
+        {
+            System.err.println(e);
+        }
+    }
+
+    /** Run the session.
+        Waits for an idle program and returns it to the pool after the
+        connection was closed. */
+    public void run()
+    {
+        try
+        {
+            m_gtp = m_pool.acquire();
+            mainLoop(new SocketInputStream(m_socket.getInputStream()),
+                     m_socket.getOutputStream());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ErrorMessage e)
+        {
+            System.err.println("gogui-server: " + e.getMessage());
+        }
+        catch (IOException e)
+        {
+            StringUtil.printException(e);
+        }
+        finally
+        {
+            try
+            {
+                m_socket.close();
+            }
+            catch (IOException e)
+            {
+                StringUtil.printException(e);
+            }
+            if (m_gtp != null)
+                m_pool.release(m_gtp, m_isSetupChanged);
+        }
+    }
+
+    /** Input stream that reports read errors as end of input.
+        GtpEngine.mainLoop() waits forever if its input stream throws, so
+        a read timeout or a reset connection would never end the session
+        and never return the program to the pool. */
+    private static class SocketInputStream
+        extends FilterInputStream
+    {
+        public SocketInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        public int read()
+        {
+            try
+            {
+                return super.read();
+            }
+            catch (IOException e)
+            {
+                StringUtil.printException(e);
+                return -1;
+            }
+        }
+
+        public int read(byte[] b, int off, int len)
+        {
+            try
+            {
+                return super.read(b, off, len);
+            }
+            catch (IOException e)
+            {
+                StringUtil.printException(e);
+                return -1;
+            }
+        }
+    }
+
+    /** Whether the board size, komi or time settings were changed. */
+    private boolean m_isSetupChanged;
+
+    private volatile GtpClientBase m_gtp;
+
+    private final EnginePool m_pool;
+
+    private final Socket m_socket;
+
+    private static boolean isSetupCommand(String command)
+    {
+        return (command.equals("boardsize") || command.equals("komi")
+                || command.equals("time_settings")
+                || command.equals("kgs-time_settings"));
+    }
+}
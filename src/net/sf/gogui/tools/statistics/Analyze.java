@@ -3,13 +3,29 @@
 package net.sf.gogui.tools.statistics;
 
 import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.text.DecimalFormat;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -17,6 +33,7 @@ import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.StringInfo;
 import net.sf.gogui.game.StringInfoColor;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
@@ -26,12 +43,34 @@ import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
 import net.sf.gogui.util.TableUtil;
 
-/** Produce HTML reports from the table generated by Statistics. */
+/** Produce HTML reports from the table generated by Statistics.
+    The pages of the games and commands with their plots are written in
+    parallel by a pool of threads, while the summary page is written.
+    A manifest file stores a digest of the inputs of each of these pages;
+    pages are skipped, if their inputs did not change since the last run
+    and their files still exist. */
 public class Analyze
 {
+    /** Constructor.
+        Uses one thread per available processor. */
     public Analyze(String fileName, String output, int precision)
         throws Exception
     {
+        this(fileName, output, precision,
+             Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor.
+        @param fileName The result table.
+        @param output Directory or file name prefix of the report files or
+        empty for the file name of the table without extension.
+        @param precision The floating point precision.
+        @param numberThreads The number of threads for writing pages. */
+    public Analyze(String fileName, String output, int precision,
+                   int numberThreads)
+        throws Exception
+    {
+        assert numberThreads > 0;
         if (output.equals(""))
             m_output = FileUtil.removeExtension(new File(fileName), "dat");
         else if (new File(output).isDirectory())
@@ -55,78 +94,20 @@ public class Analyze
         m_commandStatistics =
             new ArrayList<CommandStatistics>(m_commands.size());
         File file = new File(m_output + ".html");
+        m_tableStatistics = new TableStatistics(m_table);
         initGameData();
         findGameGlobalCommands();
-        PrintStream out = new PrintStream(file);
-        startHtml(out, "Statistics Summary");
-        startInfo(out, "Statistics Summary");
-        writeInfo(out);
-        endInfo(out);
-        out.print("<table border=\"0\">\n" +
-                  "<tr><td>\n");
-        writePlot(out, "<small>positions</small>",
-                  getCountFile().getName(),
-                  "<a href=\"" + getCountDataFile().getName()
-                  + "\"><small>data</small></a>");
-        out.print("</td></tr>\n");
-        for (int i = 0; i < m_commands.size(); ++i)
+        readManifest();
+        m_pool = Executors.newFixedThreadPool(numberThreads);
+        try
         {
-            CommandStatistics commandStatistics = computeCommandStatistics(i);
-            m_commandStatistics.add(commandStatistics);
-            if (commandStatistics.getCount() > 0
-                && ! commandStatistics.m_isBeginCommand)
-            {
-                String command = getCommand(i);
-                Table table = commandStatistics.m_tableAtMove;
-                Plot plot = generatePlotMove(getImgWidth(m_maxMove),
-                                             getColor(command));
-                plot.setFormatY(commandStatistics.m_format);
-                File pngFile = getAvgPlotFile(i);
-                File dataFile = getAvgDataFile(i);
-                plot.setPlotStyleNoLines();
-                plot.plot(pngFile, table, "Move", "Mean", "Error");
-                FileWriter writer = new FileWriter(dataFile);
-                try
-                {
-                    table.save(writer, false);
-                }
-                finally
-                {
-                    writer.close();
-                }
-                out.print("<tr><td>\n");
-                writePlot(out, getCommandLink(i), pngFile.getName(),
-                          "<a href=\"" + dataFile.getName()
-                          + "\"><small>data</small></a>");
-                out.print("</td></tr>\n");
-            }
+            writeSummary(file);
+            writeManifest();
         }
-        out.print("</table>\n" +
-                  "<hr>\n" +
-                  "<table border=\"0\" cellpadding=\"0\">\n" +
-                  "<tr>\n");
-        int n = 0;
-        for (int i = 0; i < m_commands.size(); ++i)
+        finally
         {
-            CommandStatistics commandStatistics = getCommandStatistics(i);
-            if (commandStatistics.getCount() == 0)
-                continue;
-            out.print("<td valign=\"bottom\" bgcolor=\"" + COLOR_HEADER
-                      + "\">\n");
-            writePlot(out, getCommandLink(i), getHistoFile(i).getName(), "");
-            out.print("</td>\n");
-            ++n;
-            if (n % 5 == 0)
-                out.print("</tr><tr>\n");
+            m_pool.shutdownNow();
         }
-        out.print("</tr>\n" +
-                  "</table>\n" +
-                  "<hr>\n");
-        writeCommandsTable(out);
-        out.print("<hr>\n");
-        writeGameTable(out);
-        finishHtml(out);
-        out.close();
     }
 
     private static final Color[] PLOT_COLOR = {
@@ -189,11 +170,50 @@ public class Analyze
 
         public String m_name;
 
+        /** Index of the first row of the game in the table. */
+        public int m_firstRow;
+
         public int m_finalPosition;
 
         public int m_numberPositions;
     }
 
+    /** Task writing a page of the report.
+        The page is not written again, if the digest of its inputs matches
+        the digest in the manifest and all its files exist. */
+    private abstract class PageTask
+        implements Callable<String>
+    {
+        public PageTask(File file)
+        {
+            m_file = file;
+        }
+
+        /** Write the page, if needed.
+            @return The digest of the inputs of the page. */
+        public String call() throws Exception
+        {
+            String digest = getDigest();
+            if (! isUpToDate(m_file, digest, getFiles()))
+                write();
+            return digest;
+        }
+
+        public File getFile()
+        {
+            return m_file;
+        }
+
+        protected abstract String getDigest() throws Exception;
+
+        /** Get all files written by the page. */
+        protected abstract ArrayList<File> getFiles();
+
+        protected abstract void write() throws Exception;
+
+        private final File m_file;
+    }
+
     private static final int IMAGE_HEIGHT = 100;
 
     private int m_maxMove;
@@ -210,7 +230,7 @@ public class Analyze
 
     private final Table m_table;
 
-    private Table m_tableFinal;
+    private TableStatistics m_tableStatistics;
 
     private final ArrayList<CommandStatistics> m_commandStatistics;
 
@@ -220,6 +240,39 @@ public class Analyze
 
     private ArrayList<GameData> m_gameData;
 
+    /** Digest of the inputs of all pages. */
+    private String m_reportDigest;
+
+    /** Digest of the inputs of all pages and of the whole table. */
+    private String m_tableDigest;
+
+    /** Digests of the pages from the last run. */
+    private HashMap<String,String> m_manifest;
+
+    private ExecutorService m_pool;
+
+    private final ArrayList<PageTask> m_tasks = new ArrayList<PageTask>();
+
+    private final ArrayList<Future<String>> m_futures =
+        new ArrayList<Future<String>>();
+
+    private static PrintStream createPrintStream(File file)
+        throws FileNotFoundException
+    {
+        return new PrintStream(new BufferedOutputStream(
+                                   new FileOutputStream(file)));
+    }
+
+    /** Create a digest for the inputs of a page. */
+    private static MessageDigest createDigest(String... values)
+        throws NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        for (String value : values)
+            update(digest, value);
+        return digest;
+    }
+
     private void endInfo(PrintStream out)
     {
         out.print("</table></td></tr>\n" +
@@ -227,40 +280,34 @@ public class Analyze
                   "<hr>\n");
     }
 
-    private void findGameGlobalCommands() throws Table.InvalidLocation
+    private void findGameGlobalCommands()
     {
         m_gameGlobalCommands = new ArrayList<GameGlobalCommand>();
         for (int i = 0; i < m_commands.size(); ++i)
         {
-            String command = getCommand(i);
-            boolean isGameGlobal = true;
-            ArrayList<String> gameResult = new ArrayList<String>();
-            for (int j = 0; j < m_gameData.size(); ++j)
-            {
-                GameData data = m_gameData.get(j);
-                Table table = TableUtil.select(m_table, "File", data.m_file,
-                                               command);
-                ArrayList<String> notEmpty
-                    = TableUtil.getColumnNotEmpty(table, command);
-                if (notEmpty.size() > 1)
-                {
-                    isGameGlobal = false;
-                    break;
-                }
-                else if (notEmpty.size() == 1)
-                    gameResult.add(notEmpty.get(0));
-                else
-                    gameResult.add("");
-            }
-            if (isGameGlobal)
+            ArrayList<String> gameResults =
+                m_tableStatistics.getGameResults(i);
+            if (gameResults != null)
             {
                 GameGlobalCommand gameGlobalCommand
-                    = new GameGlobalCommand(command, gameResult);
+                    = new GameGlobalCommand(getCommand(i), gameResults);
                 m_gameGlobalCommands.add(gameGlobalCommand);
             }
         }
     }
 
+    private static String finishDigest(MessageDigest digest)
+    {
+        byte[] bytes = digest.digest();
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            buffer.append(Integer.toHexString((bytes[i] >> 4) & 0x0F));
+            buffer.append(Integer.toHexString(bytes[i] & 0x0F));
+        }
+        return buffer.toString();
+    }
+
     private void finishHtml(PrintStream out)
     {
         out.print(HtmlUtil.getFooter("gogui-statistics") +
@@ -293,6 +340,19 @@ public class Analyze
         return m_commandStatistics.get(commandIndex);
     }
 
+    /** Get all files written by the page of a command. */
+    private ArrayList<File> getCommandPageFiles(int commandIndex)
+    {
+        CommandStatistics commandStatistics
+            = getCommandStatistics(commandIndex);
+        ArrayList<File> files = new ArrayList<File>();
+        files.add(getCommandFile(commandIndex));
+        for (int i = 0; i < m_maxMove; i += m_movePrintInterval)
+            if (commandStatistics.getStatistics(i).getCount() > 0)
+                files.add(getHistoFile(commandIndex, i));
+        return files;
+    }
+
     private File getCountFile()
     {
         return new File(m_output + ".count.png");
@@ -308,6 +368,41 @@ public class Analyze
         return new File(m_output + ".game-" + gameIndex + ".html");
     }
 
+    /** Get the digest of the inputs of the page of a game.
+        The inputs are the inputs of all pages, the rows of the game and
+        the game file, which is linked and read for the game information. */
+    private String getGameDigest(int gameIndex) throws Exception
+    {
+        GameData data = m_gameData.get(gameIndex);
+        File gameFile = new File(data.m_file);
+        MessageDigest digest =
+            createDigest(m_reportDigest, Integer.toString(gameIndex),
+                         Boolean.toString(gameFile.exists()),
+                         Long.toString(gameFile.length()),
+                         Long.toString(gameFile.lastModified()));
+        int numberColumns = m_table.getNumberColumns();
+        int end = data.m_firstRow + data.m_numberPositions;
+        for (int row = data.m_firstRow; row < end; ++row)
+            for (int column = 0; column < numberColumns; ++column)
+                update(digest, m_table.get(column, row));
+        return finishDigest(digest);
+    }
+
+    /** Get all files written by the page of a game. */
+    private ArrayList<File> getGamePageFiles(int gameIndex)
+    {
+        ArrayList<File> files = new ArrayList<File>();
+        files.add(getGameFile(gameIndex));
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            CommandStatistics commandStatistics = getCommandStatistics(i);
+            if (commandStatistics.getCount() > 0
+                && ! commandStatistics.m_isBeginCommand)
+                files.add(getPlotFile(gameIndex, i));
+        }
+        return files;
+    }
+
     private GameGlobalCommand getGameGlobalCommand(int index)
     {
         return m_gameGlobalCommands.get(index);
@@ -329,6 +424,11 @@ public class Analyze
         return new File(m_output + ".command-" + commandIndex + ".final.png");
     }
 
+    private File getManifestFile()
+    {
+        return new File(m_output + ".manifest");
+    }
+
     private File getPlotFile(int gameIndex, int commandIndex)
     {
         return new File(m_output + ".game-" + gameIndex + ".command-"
@@ -349,7 +449,7 @@ public class Analyze
         throws Exception
     {
         String command = getCommand(index);
-        return new CommandStatistics(command, m_table, m_tableFinal,
+        return new CommandStatistics(command, m_tableStatistics, index,
                                      getHistoFile(index),
                                      getHistoFinalFile(index),
                                      getColor(command), m_precision);
@@ -367,11 +467,10 @@ public class Analyze
     }
 
     private void generatePlot(int commandIndex, DecimalFormat format,
-                              int gameIndex, String gameFile) throws Exception
+                              int gameIndex) throws Exception
     {
         String command = getCommand(commandIndex);
-        Table table = TableUtil.select(m_table, "File", gameFile,
-                                       "Move", command);
+        Table table = selectGame(gameIndex, "Move", command);
         File file = getPlotFile(gameIndex, commandIndex);
         Plot plot = generatePlotMove(getImgWidth(m_maxMove),
                                      getColor(command));
@@ -402,6 +501,43 @@ public class Analyze
         return Math.max(10, Math.min(numberMoves * 9, 1040));
     }
 
+    /** Compute the digests of the inputs of all pages.
+        The inputs of all pages are the table properties and values shown
+        on the pages, the precision, the size of the plots and the
+        statistics of the commands, which determine the plots and links. */
+    private void initDigests() throws Exception
+    {
+        MessageDigest digest =
+            createDigest(m_table.getProperty("Name"),
+                         m_table.getProperty("Version"),
+                         m_table.getProperty("Date"),
+                         m_table.getProperty("Host"),
+                         m_table.getProperty("Program"),
+                         Integer.toString(m_precision),
+                         Integer.toString(m_maxMove),
+                         Integer.toString(m_table.getNumberRows()),
+                         Integer.toString(m_gameData.size()));
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            CommandStatistics commandStatistics = getCommandStatistics(i);
+            update(digest, getCommand(i));
+            update(digest, Integer.toString(commandStatistics.getCount()));
+            update(digest,
+                   Boolean.toString(commandStatistics.m_isBeginCommand));
+            update(digest, commandStatistics.getFormat().toPattern());
+        }
+        m_reportDigest = finishDigest(digest);
+        digest = createDigest(m_reportDigest);
+        int numberColumns = m_table.getNumberColumns();
+        for (int row = 0; row < m_table.getNumberRows(); ++row)
+            for (int column = 0; column < numberColumns; ++column)
+                update(digest, m_table.get(column, row));
+        // Command pages link to the game files that exist
+        for (GameData data : m_gameData)
+            update(digest, Boolean.toString(new File(data.m_file).exists()));
+        m_tableDigest = finishDigest(digest);
+    }
+
     private void initGameData() throws Table.InvalidLocation, IOException
     {
         m_gameData = new ArrayList<GameData>();
@@ -428,6 +564,7 @@ public class Analyze
                     m_gameData.add(data);
                 data = new GameData();
                 data.m_file = file;
+                data.m_firstRow = row;
                 data.m_name = new File(file).getName();
             }
             ++data.m_numberPositions;
@@ -443,16 +580,6 @@ public class Analyze
             m_movePrintInterval *= 2;
         }
         m_gameData.add(data);
-        m_tableFinal = new Table(m_table.getColumnTitles());
-        for (int i = 0; i < m_gameData.size(); ++i)
-        {
-            data = m_gameData.get(i);
-            String file = data.m_file;
-            String finalPosition = Integer.toString(data.m_finalPosition);
-            int row = TableUtil.findRow(m_table, "File", file, "Move",
-                                        finalPosition);
-            TableUtil.appendRow(m_tableFinal, m_table, row);
-        }
         ArrayList<String> columnTitles = new ArrayList<String>();
         columnTitles.add("Move");
         columnTitles.add("Count");
@@ -468,7 +595,8 @@ public class Analyze
         Plot plot = generatePlotMove(getImgWidth(m_maxMove), Color.DARK_GRAY);
         plot.setNoPlotYZero();
         plot.plot(getCountFile(), table, "Move", "Count", null);
-        FileWriter writer = new FileWriter(getCountDataFile());
+        Writer writer =
+            new BufferedWriter(new FileWriter(getCountDataFile()));
         try
         {
             table.save(writer, false);
@@ -479,6 +607,23 @@ public class Analyze
         }
     }
 
+    /** Check if a page can be skipped.
+        @param file The page.
+        @param digest The digest of the inputs of the page.
+        @param files All files written by the page.
+        @return true, if the digest matches the digest from the last run
+        and all files exist. */
+    private boolean isUpToDate(File file, String digest,
+                               ArrayList<File> files)
+    {
+        if (! digest.equals(m_manifest.get(file.getName())))
+            return false;
+        for (File f : files)
+            if (! f.exists())
+                return false;
+        return true;
+    }
+
     private boolean isGameGlobalCommand(String command)
     {
         for (int i = 0; i < m_gameGlobalCommands.size(); ++i)
@@ -487,6 +632,122 @@ public class Analyze
         return false;
     }
 
+    /** Read the manifest of the last run.
+        The manifest is deleted, because pages may be written again, and
+        is only written after all pages were written successfully. */
+    private void readManifest() throws IOException
+    {
+        m_manifest = new HashMap<String,String>();
+        File file = getManifestFile();
+        if (! file.exists())
+            return;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                int index = line.indexOf('\t');
+                if (index >= 0)
+                    m_manifest.put(line.substring(0, index),
+                                   line.substring(index + 1));
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        if (! file.delete())
+            throw new IOException("Could not delete " + file);
+    }
+
+    /** Get the rows of a game.
+        Uses the row range of the game instead of searching the table. */
+    private Table selectGame(int gameIndex)
+    {
+        GameData data = m_gameData.get(gameIndex);
+        int end = data.m_firstRow + data.m_numberPositions;
+        Table result = new Table(m_table.getColumnTitles());
+        for (int row = data.m_firstRow; row < end; ++row)
+            TableUtil.appendRow(result, m_table, row);
+        return result;
+    }
+
+    /** Get two columns of the rows of a game. */
+    private Table selectGame(int gameIndex, String column1, String column2)
+        throws Table.InvalidLocation
+    {
+        GameData data = m_gameData.get(gameIndex);
+        int end = data.m_firstRow + data.m_numberPositions;
+        ArrayList<String> columnTitles = new ArrayList<String>(2);
+        columnTitles.add(column1);
+        columnTitles.add(column2);
+        Table result = new Table(columnTitles);
+        int index1 = m_table.getColumnIndex(column1);
+        int index2 = m_table.getColumnIndex(column2);
+        for (int row = data.m_firstRow; row < end; ++row)
+        {
+            result.startRow();
+            result.set(0, m_table.get(index1, row));
+            result.set(1, m_table.get(index2, row));
+        }
+        return result;
+    }
+
+    /** Submit the task for writing the page of a command.
+        The page depends on the whole table, because it links to the plots
+        and files of all games. */
+    private void submitCommandPage(final int commandIndex)
+    {
+        submitPage(new PageTask(getCommandFile(commandIndex))
+            {
+                protected String getDigest() throws Exception
+                {
+                    return finishDigest(
+                        createDigest(m_tableDigest,
+                                     Integer.toString(commandIndex)));
+                }
+
+                protected ArrayList<File> getFiles()
+                {
+                    return getCommandPageFiles(commandIndex);
+                }
+
+                protected void write() throws Exception
+                {
+                    writeCommandPage(commandIndex);
+                }
+            });
+    }
+
+    private void submitGamePage(final int gameIndex)
+    {
+        submitPage(new PageTask(getGameFile(gameIndex))
+            {
+                protected String getDigest() throws Exception
+                {
+                    return getGameDigest(gameIndex);
+                }
+
+                protected ArrayList<File> getFiles()
+                {
+                    return getGamePageFiles(gameIndex);
+                }
+
+                protected void write() throws Exception
+                {
+                    GameData data = m_gameData.get(gameIndex);
+                    writeGamePage(data.m_file, data.m_name, gameIndex);
+                }
+            });
+    }
+
+    private void submitPage(PageTask task)
+    {
+        m_tasks.add(task);
+        m_futures.add(m_pool.submit(task));
+    }
+
     private void startHtml(PrintStream out, String title)
     {
         String charset = StringUtil.getDefaultEncoding();
@@ -526,6 +787,18 @@ public class Analyze
                   + " cellpadding=\"0\">\n");
     }
 
+    /** Add a value to a digest.
+        Values are terminated by a zero byte; null values are distinguished
+        from empty values. */
+    private static void update(MessageDigest digest, String value)
+    {
+        if (value == null)
+            digest.update((byte)1);
+        else
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
     private void writeCommandPage(int commandIndex)
         throws Exception
     {
@@ -533,7 +806,7 @@ public class Analyze
         CommandStatistics commandStatistics
             = getCommandStatistics(commandIndex);
         File file = getCommandFile(commandIndex);
-        PrintStream out = new PrintStream(file);
+        PrintStream out = createPrintStream(file);
         startHtml(out, command);
         startInfo(out, command);
         writeInfoBasics(out);
@@ -600,7 +873,7 @@ public class Analyze
         out.print("<th>Move</th>");
         writeStatisticsTableHeader(out);
         out.print("</tr>\n");
-        DecimalFormat format = commandStatistics.m_format;
+        DecimalFormat format = commandStatistics.getFormat();
         for (int i = 0; i < m_maxMove; i += m_movePrintInterval)
         {
             PositionStatistics statisticsAtMove
@@ -634,13 +907,13 @@ public class Analyze
             CommandStatistics commandStatistics = getCommandStatistics(i);
             int count = commandStatistics.getCount();
             if (count > 0 && ! commandStatistics.m_isBeginCommand)
-                writeCommandPage(i);
+                submitCommandPage(i);
             PositionStatistics statisticsAll
                 = commandStatistics.m_statisticsAll;
             out.print("<tr><td style=\"background-color:" + COLOR_HEADER
                       + "\">" + getCommandLink(i) + "</td>");
             writeStatisticsTableData(out, statisticsAll,
-                                     commandStatistics.m_format,
+                                     commandStatistics.getFormat(),
                                      ! isGameGlobalCommand(getCommand(i)));
             out.print("</tr>\n");
         }
@@ -651,7 +924,7 @@ public class Analyze
         throws Exception
     {
         File file = getGameFile(gameNumber);
-        PrintStream out = new PrintStream(file);
+        PrintStream out = createPrintStream(file);
         String title = "Game " + (gameNumber + 1) + " (" + name + ")";
         startHtml(out, title);
         startInfo(out, title);
@@ -690,7 +963,7 @@ public class Analyze
             if (commandStatistics.getCount() > 0
                 && ! commandStatistics.m_isBeginCommand)
             {
-                generatePlot(i, commandStatistics.m_format, gameNumber, game);
+                generatePlot(i, commandStatistics.getFormat(), gameNumber);
                 out.print("<tr><td align=\"center\">" + getCommandLink(i)
                           + "<br><img src=\""
                           + getPlotFile(gameNumber, i).getName()
@@ -699,7 +972,7 @@ public class Analyze
         }
         out.print("</table>\n" +
                   "<hr>\n");
-        Table table = TableUtil.select(m_table, "File", game);
+        Table table = selectGame(gameNumber);
         out.print("<table class=\"smalltable\">\n" +
                   "<thead><tr>");
         for (int i = 1; i < table.getNumberColumns(); ++i)
@@ -769,7 +1042,7 @@ public class Analyze
                     out.print("<td>" + getGameGlobalCommand(j).getResult(i)
                               + "</td>");
             out.print("</tr>\n");
-            writeGamePage(data.m_file, data.m_name, i);
+            submitGamePage(i);
         }
         out.print("</table>\n");
     }
@@ -803,6 +1076,52 @@ public class Analyze
         writeTableProperty(out, "Games");
         writeHtmlRow(out, "Positions", m_table.getNumberRows());
         writeTableProperty(out, "Backward");
+        // Latency properties exist only in tables of newer versions
+        ArrayList<String> names = new ArrayList<String>();
+        for (String command : m_commands)
+        {
+            String name = GtpMetrics.getCommandName(command);
+            String key = "Latency " + name;
+            if (! names.contains(name) && m_table.hasProperty(key))
+            {
+                names.add(name);
+                writeTableProperty(out, key);
+            }
+        }
+    }
+
+    /** Wait for the tasks of the pages and write the manifest.
+        Rethrows the first exception of a task. */
+    private void writeManifest() throws Exception
+    {
+        PrintStream out = createPrintStream(getManifestFile());
+        try
+        {
+            for (int i = 0; i < m_tasks.size(); ++i)
+            {
+                String digest;
+                try
+                {
+                    digest = m_futures.get(i).get();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception)
+                        throw (Exception)cause;
+                    throw e;
+                }
+                out.print(m_tasks.get(i).getFile().getName() + "\t" + digest
+                          + "\n");
+            }
+        }
+        catch (Exception e)
+        {
+            out.close();
+            getManifestFile().delete();
+            throw e;
+        }
+        out.close();
     }
 
     private void writePlot(PrintStream out, String title, String file,
@@ -891,6 +1210,84 @@ public class Analyze
                   + "<th>Unknown</th>");
     }
 
+    /** Write the summary page.
+        Submits the tasks for the command and game pages. */
+    private void writeSummary(File file) throws Exception
+    {
+        PrintStream out = createPrintStream(file);
+        startHtml(out, "Statistics Summary");
+        startInfo(out, "Statistics Summary");
+        writeInfo(out);
+        endInfo(out);
+        out.print("<table border=\"0\">\n" +
+                  "<tr><td>\n");
+        writePlot(out, "<small>positions</small>",
+                  getCountFile().getName(),
+                  "<a href=\"" + getCountDataFile().getName()
+                  + "\"><small>data</small></a>");
+        out.print("</td></tr>\n");
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            CommandStatistics commandStatistics = computeCommandStatistics(i);
+            m_commandStatistics.add(commandStatistics);
+            if (commandStatistics.getCount() > 0
+                && ! commandStatistics.m_isBeginCommand)
+            {
+                String command = getCommand(i);
+                Table table = commandStatistics.m_tableAtMove;
+                Plot plot = generatePlotMove(getImgWidth(m_maxMove),
+                                             getColor(command));
+                plot.setFormatY(commandStatistics.getFormat());
+                File pngFile = getAvgPlotFile(i);
+                File dataFile = getAvgDataFile(i);
+                plot.setPlotStyleNoLines();
+                plot.plot(pngFile, table, "Move", "Mean", "Error");
+                Writer writer =
+                    new BufferedWriter(new FileWriter(dataFile));
+                try
+                {
+                    table.save(writer, false);
+                }
+                finally
+                {
+                    writer.close();
+                }
+                out.print("<tr><td>\n");
+                writePlot(out, getCommandLink(i), pngFile.getName(),
+                          "<a href=\"" + dataFile.getName()
+                          + "\"><small>data</small></a>");
+                out.print("</td></tr>\n");
+            }
+        }
+        out.print("</table>\n" +
+                  "<hr>\n" +
+                  "<table border=\"0\" cellpadding=\"0\">\n" +
+                  "<tr>\n");
+        int n = 0;
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            CommandStatistics commandStatistics = getCommandStatistics(i);
+            if (commandStatistics.getCount() == 0)
+                continue;
+            out.print("<td valign=\"bottom\" bgcolor=\"" + COLOR_HEADER
+                      + "\">\n");
+            writePlot(out, getCommandLink(i), getHistoFile(i).getName(), "");
+            out.print("</td>\n");
+            ++n;
+            if (n % 5 == 0)
+                out.print("</tr><tr>\n");
+        }
+        out.print("</tr>\n" +
+                  "</table>\n" +
+                  "<hr>\n");
+        initDigests();
+        writeCommandsTable(out);
+        out.print("<hr>\n");
+        writeGameTable(out);
+        finishHtml(out);
+        out.close();
+    }
+
     private void writeTableProperty(PrintStream out, String key)
         throws Exception
     {
@@ -17,8 +17,6 @@ public final class CommandStatistics
 
     public final int m_maxMove;
 
-    public final DecimalFormat m_format;
-
     public final PositionStatistics m_statisticsAll;
 
     public final PositionStatistics m_statisticsFinal;
@@ -27,32 +25,36 @@ public final class CommandStatistics
 
     public final Table m_tableAtMove;
 
-    public CommandStatistics(String command, Table table, Table tableFinal,
-                             File histoFile, File histoFileFinal,
-                             Color color, int precision)
+    /** Constructor.
+        @param command The command.
+        @param tableStatistics The statistics of the result table.
+        @param commandIndex The index of the command in tableStatistics.
+        @param histoFile The file for the histogram of all positions.
+        @param histoFileFinal The file for the histogram of the final
+        positions.
+        @param color The color of the plots.
+        @param precision The floating point precision. */
+    public CommandStatistics(String command, TableStatistics tableStatistics,
+                             int commandIndex, File histoFile,
+                             File histoFileFinal, Color color, int precision)
         throws Exception
     {
-        m_statisticsAll = new PositionStatistics(command, table, false, 0, 0);
+        m_statisticsAll = tableStatistics.getStatisticsAll(commandIndex);
         double min = m_statisticsAll.getMin();
         double max = m_statisticsAll.getMax();
-        m_statisticsFinal
-            = new PositionStatistics(command, tableFinal, true, min, max);
+        m_statisticsFinal = tableStatistics.getStatisticsFinal(commandIndex);
         m_statisticsAtMove = new ArrayList<PositionStatistics>();
         ArrayList<String> columnTitles = new ArrayList<String>();
         columnTitles.add("Move");
         columnTitles.add("Mean");
         columnTitles.add("Error");
         m_tableAtMove = new Table(columnTitles);
-        Table tableAtMove;
-        m_maxMove = (int)(TableUtil.getMax(table, "Move") + 1);
+        m_maxMove = tableStatistics.getMaxMove() + 1;
         boolean isBeginCommand = true;
         for (int move = 1; move <= m_maxMove; ++move)
         {
-            tableAtMove = TableUtil.selectIntRange(table, "Move", move,
-                                                    move);
             PositionStatistics statisticsAtMove
-                = new PositionStatistics(command, tableAtMove, true, min,
-                                         max);
+                = tableStatistics.getStatisticsAtMove(commandIndex, move);
             m_statisticsAtMove.add(statisticsAtMove);
             int count = statisticsAtMove.getCount();
             if (count > 0)
@@ -90,6 +92,13 @@ public final class CommandStatistics
         return m_statisticsAll.getCount();
     }
 
+    /** Get the number format for the values of the command.
+        Returns a copy, because formats are not thread-safe. */
+    public DecimalFormat getFormat()
+    {
+        return (DecimalFormat)m_format.clone();
+    }
+
     public PositionStatistics getStatistics(int moveInterval)
     {
         return (PositionStatistics)m_statisticsAtMove.get(moveInterval);
@@ -115,10 +124,13 @@ public final class CommandStatistics
         {
             plot.setXMin(histogram.getMin() - step / 2);
             plot.setXMax(histogram.getMax() + step / 2);
-            plot.setFormatX(m_format);
+            plot.setFormatX(getFormat());
         }
     }
 
+    /** Format for the values; only used for creating copies. */
+    private final DecimalFormat m_format;
+
     private static DecimalFormat getFormat(int precision, double min,
                                            double max)
     {
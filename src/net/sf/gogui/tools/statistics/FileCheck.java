@@ -13,7 +13,7 @@ import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.Move;
-import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.sgf.SgfCollectionReader;
 import net.sf.gogui.util.ErrorMessage;
 
 /** Check that SGF files meet the requirements for a Statistics run. */
@@ -48,8 +48,19 @@ public class FileCheck
         {
             throwError("file not found");
         }
-        SgfReader reader = new SgfReader(in, m_file, null, 0);
-        GameTree tree = reader.getTree();
+        SgfCollectionReader reader =
+            new SgfCollectionReader(in, m_file, true, true);
+        GameTree tree;
+        try
+        {
+            tree = reader.readNext();
+        }
+        finally
+        {
+            reader.close();
+        }
+        if (tree == null)
+            throwError("no game found");
         if (tree.getBoardSize() != m_size)
             throwError("size is not " + m_size);
         ConstNode root = tree.getRoot();
@@ -0,0 +1,238 @@
+// Journal.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.Table;
+
+/** Journal of the processed files of a Statistics run.
+    The rows of each processed file are appended to the journal together
+    with a line that marks the file as completed. Both are written with a
+    single write and synced to the disk, so that a run that was terminated
+    can be continued with the files that were not completed.
+    The journal starts with a header, which describes the columns and
+    options of the run; a journal of a run with different columns or
+    options cannot be continued. Like in the text format of tables, null
+    elements are stored as empty elements.
+    Each line of the journal starts with its type:
+    <pre>
+    header  [tab-separated header]
+    row     [tab-separated elements]
+    done    [file index] [file name]
+    </pre> */
+final class Journal
+{
+    /** Open a journal.
+        Reads the completed files, if the journal exists. Rows of files
+        that were not completed are removed from the journal.
+        @param file The journal file.
+        @param header The columns and options of the run.
+        @param columnTitles The column titles of the table.
+        @param sgfFiles The files of the run.
+        @throws ErrorMessage If the journal cannot be read or written or
+        belongs to a different run. */
+    public Journal(File file, ArrayList<String> header,
+                   ArrayList<String> columnTitles, ArrayList<String> sgfFiles)
+        throws ErrorMessage
+    {
+        m_file = file;
+        m_columnTitles = columnTitles;
+        m_rows = new Table[sgfFiles.size()];
+        String headerLine = "header\t" + join(header) + "\n";
+        try
+        {
+            if (file.exists())
+            {
+                long length = read(headerLine, sgfFiles);
+                RandomAccessFile randomAccessFile =
+                    new RandomAccessFile(file, "rw");
+                try
+                {
+                    randomAccessFile.setLength(length);
+                }
+                finally
+                {
+                    randomAccessFile.close();
+                }
+            }
+            m_out = new FileOutputStream(file, true);
+            if (file.length() == 0)
+                write(headerLine);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + file);
+        }
+    }
+
+    /** Append the rows of a completed file. */
+    public synchronized void append(int index, String name, Table rows)
+        throws ErrorMessage
+    {
+        StringBuilder buffer = new StringBuilder();
+        int numberColumns = rows.getNumberColumns();
+        for (int row = 0; row < rows.getNumberRows(); ++row)
+        {
+            buffer.append("row");
+            for (int column = 0; column < numberColumns; ++column)
+            {
+                buffer.append('\t');
+                String value = rows.get(column, row);
+                if (value != null)
+                    buffer.append(value);
+            }
+            buffer.append('\n');
+        }
+        buffer.append("done\t" + index + "\t" + name + "\n");
+        try
+        {
+            write(buffer.toString());
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_file);
+        }
+    }
+
+    public synchronized void close()
+    {
+        try
+        {
+            m_out.close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+
+    /** Get the number of completed files in the existing journal. */
+    public int getNumberCompleted()
+    {
+        int n = 0;
+        for (Table rows : m_rows)
+            if (rows != null)
+                ++n;
+        return n;
+    }
+
+    /** Get the rows of a file that was completed in the existing journal.
+        @return The rows or null, if the file was not completed. */
+    public Table getRows(int index)
+    {
+        return m_rows[index];
+    }
+
+    private final File m_file;
+
+    private final ArrayList<String> m_columnTitles;
+
+    /** Rows of the completed files in the existing journal. */
+    private final Table[] m_rows;
+
+    private FileOutputStream m_out;
+
+    private static String join(ArrayList<String> values)
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < values.size(); ++i)
+        {
+            if (i > 0)
+                buffer.append('\t');
+            buffer.append(values.get(i));
+        }
+        return buffer.toString();
+    }
+
+    /** Read the existing journal.
+        @return The length in bytes of the part of the journal up to the
+        last completed file. */
+    private long read(String headerLine, ArrayList<String> sgfFiles)
+        throws ErrorMessage, IOException
+    {
+        byte[] bytes = readBytes();
+        String content = new String(bytes, "UTF-8");
+        if (! content.startsWith(headerLine))
+        {
+            if (headerLine.startsWith(content))
+                // Terminated while writing the header
+                return 0;
+            throw new ErrorMessage("Journal " + m_file + " belongs to a run"
+                                   + " with other commands or options");
+        }
+        int numberColumns = m_columnTitles.size();
+        Table rows = new Table(m_columnTitles);
+        int end = headerLine.length();
+        int begin = end;
+        int lineEnd;
+        while ((lineEnd = content.indexOf('\n', begin)) >= 0)
+        {
+            String[] values =
+                content.substring(begin, lineEnd).split("\t", -1);
+            begin = lineEnd + 1;
+            if (values[0].equals("row")
+                && values.length == numberColumns + 1)
+            {
+                rows.startRow();
+                for (int i = 0; i < numberColumns; ++i)
+                    if (! values[i + 1].equals(""))
+                        rows.set(i, values[i + 1]);
+                continue;
+            }
+            int index = -1;
+            if (values[0].equals("done") && values.length == 3)
+            {
+                try
+                {
+                    index = Integer.parseInt(values[1]);
+                }
+                catch (NumberFormatException e)
+                {
+                }
+            }
+            if (index < 0)
+                throw new ErrorMessage("Invalid line in " + m_file);
+            if (index >= sgfFiles.size()
+                || ! sgfFiles.get(index).equals(values[2]))
+                throw new ErrorMessage("Journal " + m_file + " belongs to a"
+                                       + " run with other files");
+            m_rows[index] = rows;
+            rows = new Table(m_columnTitles);
+            end = begin;
+        }
+        return content.substring(0, end).getBytes("UTF-8").length;
+    }
+
+    private byte[] readBytes() throws IOException
+    {
+        InputStream in = new FileInputStream(m_file);
+        try
+        {
+            byte[] bytes = new byte[(int)m_file.length()];
+            int length = 0;
+            int n;
+            while (length < bytes.length
+                   && (n = in.read(bytes, length, bytes.length - length)) > 0)
+                length += n;
+            if (length < bytes.length)
+                throw new IOException("Unexpected end of file");
+            return bytes;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private void write(String s) throws IOException
+    {
+        m_out.write(s.getBytes("UTF-8"));
+        m_out.getFD().sync();
+    }
+}
@@ -22,6 +22,9 @@ public final class Main
                 "analyze:",
                 "backward",
                 "begin:",
+                "binary",
+                "cache:",
+                "cachefile:",
                 "commands:",
                 "config:",
                 "final:",
@@ -36,8 +39,10 @@ public final class Main
                 "random",
                 "setup",
                 "size:",
+                "symmetry",
                 "verbose",
-                "version"
+                "version",
+                "workers:"
             };
             Options opt = Options.parse(args, options);
             if (opt.contains("help"))
@@ -70,6 +75,14 @@ public final class Main
             int min = opt.getInteger("min", 0, 0);
             int max = opt.getInteger("max", Integer.MAX_VALUE, 0);
             int precision = opt.getInteger("precision", 3, 0);
+            int workers = opt.getInteger("workers", 1, 1);
+            int cacheSize = opt.getInteger("cache", 0, 0);
+            if (opt.contains("cachefile") && cacheSize == 0)
+                throw new ErrorMessage("Option -cachefile needs option"
+                                       + " -cache");
+            if (opt.contains("symmetry") && cacheSize == 0)
+                throw new ErrorMessage("Option -symmetry needs option"
+                                       + " -cache");
             int boardSize = opt.getInteger("size", GoPoint.DEFAULT_SIZE, 1,
                                            GoPoint.MAX_SIZE);
             ArrayList<String> commands = parseCommands(opt, "commands");
@@ -86,7 +99,13 @@ public final class Main
                 }
                 String fileName = opt.get("analyze");
                 String output = opt.get("output");
-                new Analyze(fileName, output, precision);
+                int numberThreads =
+                    opt.getInteger("workers",
+                                   Runtime.getRuntime().availableProcessors(),
+                                   1);
+                // Plots are drawn into images without a display
+                System.setProperty("java.awt.headless", "true");
+                new Analyze(fileName, output, precision, numberThreads);
             }
             else
             {
@@ -103,14 +122,39 @@ public final class Main
                 if (output.exists() && ! force)
                     throw new ErrorMessage("File \"" + output +
                                            "\" already exists");
+                File journal = new File(output.getPath() + ".journal");
+                if (force && journal.exists() && ! journal.delete())
+                    throw new ErrorMessage("Could not delete file \""
+                                           + journal + "\"");
                 Statistics statistics = new Statistics();
+                statistics.setJournal(journal);
                 statistics.setMin(min);
                 statistics.setMax(max);
                 statistics.setQuiet(quiet);
-                statistics.run(program, arguments, boardSize, commands,
-                               beginCommands, finalCommands, verbose,
-                               allowSetup, backward, random);
-                statistics.saveTable(output);
+                statistics.setWorkers(workers);
+                PositionCache cache = null;
+                if (cacheSize > 0)
+                {
+                    File cacheFile = null;
+                    if (opt.contains("cachefile"))
+                        cacheFile = new File(opt.get("cachefile"));
+                    cache = new PositionCache(cacheSize, cacheFile,
+                                              opt.contains("symmetry"));
+                    statistics.setCache(cache);
+                }
+                try
+                {
+                    statistics.run(program, arguments, boardSize, commands,
+                                   beginCommands, finalCommands, verbose,
+                                   allowSetup, backward, random);
+                }
+                finally
+                {
+                    if (cache != null)
+                        cache.close();
+                }
+                statistics.saveTable(output, opt.contains("binary"));
+                journal.delete();
             }
         }
         catch (Throwable t)
@@ -148,6 +192,9 @@ public final class Main
                   "-analyze      Create HTML file from result file\n" +
                   "-backward     Iterate backward from end position\n" +
                   "-begin        GTP commands to run on begin positions\n" +
+                  "-binary       Save result table in binary format\n" +
+                  "-cache n      Cache up to n responses\n" +
+                  "-cachefile    File for storing cached responses\n" +
                   "-commands     GTP commands to run (comma separated)\n" +
                   "-config       Config file\n" +
                   "-final        GTP commands to run on final positions\n" +
@@ -160,7 +207,10 @@ public final class Main
                   "-quiet        Don't write logging messages\n" +
                   "-setup        Allow setup stones in root position\n" +
                   "-size         Board size of games\n" +
+                  "-symmetry     Share cache of symmetric positions\n" +
                   "-verbose      Log GTP stream to stderr\n" +
-                  "-version      Display this help and exit\n");
+                  "-version      Display this help and exit\n" +
+                  "-workers      Number of program instances to run\n" +
+                  "              or threads for -analyze\n");
     }
 }
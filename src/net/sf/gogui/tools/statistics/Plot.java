@@ -18,7 +18,8 @@ import net.sf.gogui.gui.GuiUtil;
 import net.sf.gogui.util.Table;
 import net.sf.gogui.util.TableUtil;
 
-/** Produce a PNG plot from table data. */
+/** Produce a PNG plot from table data.
+    Different plots can be produced concurrently in different threads. */
 public class Plot
 {
     public Plot(int imgWidth, int imgHeight, Color color, int precision)
@@ -33,9 +34,7 @@ public class Plot
                      String errorColumn)
         throws IOException
     {
-        int type = BufferedImage.TYPE_INT_RGB;
-        BufferedImage image
-            = new BufferedImage(m_imgWidth, m_imgHeight, type);
+        BufferedImage image = getImage(m_imgWidth, m_imgHeight);
         m_graphics2D = image.createGraphics();
         GuiUtil.setAntiAlias(m_graphics2D);
         Font font = m_graphics2D.getFont();
@@ -259,6 +258,12 @@ public class Plot
 
     private final Color m_color;
 
+    /** Image of the last plot of the current thread.
+        Reused by the next plot of the thread with the same size; the
+        background is drawn over the whole image. */
+    private static final ThreadLocal<BufferedImage> s_image =
+        new ThreadLocal<BufferedImage>();
+
     private DecimalFormat m_formatX;
 
     private DecimalFormat m_formatY;
@@ -458,6 +463,19 @@ public class Plot
         return format;
     }
 
+    private static BufferedImage getImage(int width, int height)
+    {
+        BufferedImage image = s_image.get();
+        if (image == null || image.getWidth() != width
+            || image.getHeight() != height)
+        {
+            image = new BufferedImage(width, height,
+                                      BufferedImage.TYPE_INT_RGB);
+            s_image.set(image);
+        }
+        return image;
+    }
+
     private Point getPoint(double x, double y)
     {
         int intX = (int)(m_left + (x - m_minX) / m_xRange * m_width);
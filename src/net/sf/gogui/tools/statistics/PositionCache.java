@@ -0,0 +1,166 @@
+// PositionCache.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.BoardUtil;
+import net.sf.gogui.go.ConstBoard;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.util.StringCache;
+
+/** Cache for responses of commands in positions of game collections.
+    Positions that occur in several games, like opening positions, are
+    identified by the stones on the board, the color to move, the ko point
+    and the komi. Optionally, the eight symmetric positions share their
+    entries; responses consisting of a single point are then stored in the
+    orientation of the canonical position and transformed back, other
+    responses must not depend on the orientation of the board.
+    The entries are stored in a StringCache. */
+public final class PositionCache
+{
+    /** Constructor.
+        @param maxSize Maximum number of entries in memory.
+        @param file File for storing the entries or null.
+        @param symmetry Share the entries of symmetric positions. */
+    public PositionCache(int maxSize, File file, boolean symmetry)
+        throws IOException
+    {
+        m_symmetry = symmetry;
+        m_cache = new StringCache(maxSize, file);
+    }
+
+    public void close()
+    {
+        m_cache.close();
+    }
+
+    /** Get a cached response.
+        @return The response or null, if not in the cache. */
+    public String get(ConstBoard board, Komi komi, String command)
+    {
+        int rotation = getRotation(board);
+        String response = m_cache.get(getKey(board, rotation, komi, command));
+        if (response == null)
+            return null;
+        return rotateResponse(getInverseRotation(rotation), response,
+                              board.getSize());
+    }
+
+    public int getHits()
+    {
+        return m_cache.getHits();
+    }
+
+    public int getMisses()
+    {
+        return m_cache.getMisses();
+    }
+
+    /** Add a response.
+        Also appends it to the file, if the cache has a file. */
+    public void put(ConstBoard board, Komi komi, String command,
+                    String response)
+    {
+        int rotation = getRotation(board);
+        String key = getKey(board, rotation, komi, command);
+        response = rotateResponse(rotation, response, board.getSize());
+        m_cache.put(key, response);
+    }
+
+    public int size()
+    {
+        return m_cache.size();
+    }
+
+    private final boolean m_symmetry;
+
+    private final StringCache m_cache;
+
+    /** Get the hash code of a rotated position.
+        @see Board#getHash() */
+    private static long getHash(ConstBoard board, int rotation)
+    {
+        if (rotation == 0)
+            return board.getHash();
+        int size = board.getSize();
+        long hash = 0;
+        for (GoPoint p : board)
+        {
+            GoColor c = board.getColor(p);
+            if (c.isBlackWhite())
+                hash ^= Board.getHash(BoardUtil.rotate(rotation, p, size), c);
+        }
+        return hash;
+    }
+
+    /** Get the rotation that undoes a rotation.
+        All rotation modes of BoardUtil.rotate() are their own inverse
+        apart from the rotations by 90 and 270 degrees. */
+    private static int getInverseRotation(int rotation)
+    {
+        if (rotation == 4)
+            return 5;
+        if (rotation == 5)
+            return 4;
+        return rotation;
+    }
+
+    private static String getKey(ConstBoard board, int rotation, Komi komi,
+                                 String command)
+    {
+        int size = board.getSize();
+        GoPoint koPoint =
+            BoardUtil.rotate(rotation, board.getKoPoint(), size);
+        return BoardUtil.getPositionKey(getHash(board, rotation), size,
+                                        board.getToMove(), koPoint, komi,
+                                        command);
+    }
+
+    /** Get the rotation of the canonical position.
+        The canonical position is the rotated position with the smallest
+        hash code. */
+    private int getRotation(ConstBoard board)
+    {
+        if (! m_symmetry)
+            return 0;
+        int rotation = 0;
+        long minHash = board.getHash();
+        for (int i = 1; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+        {
+            long hash = getHash(board, i);
+            if (hash < minHash)
+            {
+                minHash = hash;
+                rotation = i;
+            }
+        }
+        return rotation;
+    }
+
+    /** Rotate a response consisting of a single point.
+        Other responses are returned unchanged. */
+    private static String rotateResponse(int rotation, String response,
+                                         int size)
+    {
+        if (rotation == 0)
+            return response;
+        GoPoint p;
+        try
+        {
+            p = GoPoint.parsePoint(response, size);
+        }
+        catch (InvalidPointException e)
+        {
+            return response;
+        }
+        // Responses like "B+3" are accepted by GoPoint.parsePoint()
+        if (p == null || ! p.toString().equalsIgnoreCase(response.trim()))
+            return response;
+        return BoardUtil.rotate(rotation, p, size).toString();
+    }
+}
@@ -70,22 +70,12 @@ public final class PositionStatistics
         m_onlyBoolValues = onlyBoolValues;
         m_onlyIntValues = onlyIntValues;
         m_numberNoResult = numberNoResult;
-        double min = m_statistics.getMin();
-        double max = m_statistics.getMax();
         if (! noAutoScaleHisto)
         {
-            histoMin = min;
-            histoMax = max;
+            histoMin = m_statistics.getMin();
+            histoMax = m_statistics.getMax();
         }
-        double diff = histoMax - histoMin;
-        int maxBins = 20;
-        if (onlyIntValues)
-        {
-            int step = Math.max(1, (int)(diff / maxBins + 1));
-            m_histogram = new Histogram(histoMin, histoMax, step);
-        }
-        else
-            m_histogram = new Histogram(histoMin, histoMax, diff / maxBins);
+        m_histogram = createHistogram(onlyIntValues, histoMin, histoMax);
         for (int i = 0; i < table.getNumberRows(); ++i)
         {
             String value = table.get(command, i);
@@ -103,6 +93,35 @@ public final class PositionStatistics
         m_histoTable = TableUtil.fromHistogram(m_histogram, command);
     }
 
+    /** Construct from already accumulated values.
+        @see TableStatistics */
+    PositionStatistics(String command, Statistics statistics,
+                       Histogram histogram, boolean onlyBoolValues,
+                       boolean onlyIntValues, int numberNoResult)
+    {
+        m_statistics = statistics;
+        m_histogram = histogram;
+        m_onlyBoolValues = onlyBoolValues;
+        m_onlyIntValues = onlyIntValues;
+        m_numberNoResult = numberNoResult;
+        m_histoTable = TableUtil.fromHistogram(m_histogram, command);
+    }
+
+    /** Create histogram with at most 20 bins.
+        Uses integer bin sizes for integer values. */
+    public static Histogram createHistogram(boolean onlyIntValues,
+                                            double histoMin, double histoMax)
+    {
+        double diff = histoMax - histoMin;
+        int maxBins = 20;
+        if (onlyIntValues)
+        {
+            int step = Math.max(1, (int)(diff / maxBins + 1));
+            return new Histogram(histoMin, histoMax, step);
+        }
+        return new Histogram(histoMin, histoMax, diff / maxBins);
+    }
+
     public int getCount()
     {
         return m_statistics.getCount();
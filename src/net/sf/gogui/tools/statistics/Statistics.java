@@ -15,20 +15,25 @@ import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.Game;
+import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.NodeUtil;
+import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpSynchronizer;
 import net.sf.gogui.sgf.SgfError;
-import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.sgf.SgfCollectionReader;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.LatencyHistogram;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
@@ -43,12 +48,14 @@ public class Statistics
                     boolean allowSetup, boolean backward, boolean random)
         throws ErrorMessage, GtpError, IOException
     {
-        run(new GtpClient(program, null, verbose, null), program, sgfFiles,
-            size, commands, beginCommands, finalCommands, allowSetup,
-            backward, random);
+        ArrayList<GtpClientBase> gtps = new ArrayList<GtpClientBase>();
+        for (int i = 0; i < m_numberWorkers; ++i)
+            gtps.add(new GtpClient(program, null, verbose, null));
+        run(gtps, program, sgfFiles, size, commands, beginCommands,
+            finalCommands, allowSetup, backward, random);
     }
 
-    /** Construct with existing GTP engine.
+    /** Run with existing GTP engine.
         @param gtp The GTP engine
         @param program Program command (null, if gtp is not an instance of
         GtpClient)
@@ -74,6 +81,28 @@ public class Statistics
                     boolean backward, boolean random)
         throws ErrorMessage, IOException
     {
+        ArrayList<GtpClientBase> gtps = new ArrayList<GtpClientBase>();
+        gtps.add(gtp);
+        run(gtps, program, sgfFiles, size, commands, beginCommands,
+            finalCommands, allowSetup, backward, random);
+    }
+
+    /** Run with several existing GTP engines.
+        The files are distributed to the engines, which run in parallel.
+        The rows of the result table are in the same order as with a single
+        engine. The engines should be instances of the same program; the
+        name and version of the first engine are stored in the table.
+        @see #run(GtpClientBase,String,ArrayList,int,ArrayList,ArrayList,
+        ArrayList,boolean,boolean,boolean) */
+    public void run(ArrayList<GtpClientBase> gtps, String program,
+                    ArrayList<String> sgfFiles, int size,
+                    ArrayList<String> commands,
+                    ArrayList<String> beginCommands,
+                    ArrayList<String> finalCommands, boolean allowSetup,
+                    boolean backward, boolean random)
+        throws ErrorMessage, IOException
+    {
+        assert ! gtps.isEmpty();
         new FileCheck(sgfFiles, size, allowSetup);
         m_size = size;
         m_allowSetup = allowSetup;
@@ -87,25 +116,59 @@ public class Statistics
             columnHeaders.add(getCommand(i).m_columnTitle);
         m_table = new Table(columnHeaders);
         m_table.setProperty("Size", Integer.toString(size));
-        m_gtp = gtp;
-        m_synchronizer = new GtpSynchronizer(m_gtp);
-        m_gtp.queryProtocolVersion();
-        m_gtp.queryName();
+        ArrayList<Worker> workers = new ArrayList<Worker>(gtps.size());
+        for (GtpClientBase gtp : gtps)
+        {
+            gtp.queryProtocolVersion();
+            gtp.queryName();
+            workers.add(new Worker(gtp));
+        }
+        GtpClientBase first = gtps.get(0);
         if (program != null)
             m_table.setProperty("Program", program);
-        m_table.setProperty("Name", m_gtp.getLabel());
-        m_table.setProperty("Version", m_gtp.queryVersion());
+        m_table.setProperty("Name", first.getLabel());
+        m_table.setProperty("Version", first.queryVersion());
         String host = Platform.getHostInfo();
         m_table.setProperty("Host", host);
         m_table.setProperty("Date", StringUtil.getDate());
-        for (int i = 0; i < sgfFiles.size(); ++i)
-            handleFile(sgfFiles.get(i));
-        m_gtp.send("quit");
-        m_gtp.close();
-        m_gtp.waitForExit();
+        if (gtps.size() > 1)
+            m_table.setProperty("Workers", Integer.toString(gtps.size()));
+        m_sgfFiles = sgfFiles;
+        m_nextFile = 0;
+        m_numberMerged = 0;
+        m_results = new Table[sgfFiles.size()];
+        m_error = null;
+        if (m_journalFile != null)
+            openJournal();
+        try
+        {
+            runWorkers(workers);
+        }
+        finally
+        {
+            if (m_journal != null)
+            {
+                m_journal.close();
+                m_journal = null;
+            }
+        }
+        setLatencyProperties(gtps);
+        for (GtpClientBase gtp : gtps)
+        {
+            gtp.send("quit");
+            gtp.close();
+            gtp.waitForExit();
+        }
         m_table.setProperty("Games", Integer.toString(m_numberGames));
         m_table.setProperty("Backward", backward ? "yes" : "no");
         m_table.setProperty("Random", random ? "yes" : "no");
+        if (m_cache != null)
+        {
+            m_table.setProperty("Cache hits",
+                                Integer.toString(m_cache.getHits()));
+            m_table.setProperty("Cache misses",
+                                Integer.toString(m_cache.getMisses()));
+        }
     }
 
     /** Set maximum move number for positions to run the commands on.
@@ -129,9 +192,51 @@ public class Statistics
         m_quiet = enable;
     }
 
+    /** Set number of engines to start in
+        run(String,ArrayList,int,ArrayList,ArrayList,ArrayList,boolean,
+        boolean,boolean,boolean).
+        Default is one. */
+    public void setWorkers(int n)
+    {
+        assert n > 0;
+        m_numberWorkers = n;
+    }
+
+    /** Set a cache for the responses of the commands.
+        Commands in positions that are already in the cache are not sent to
+        the program, apart from cputime. Default is no cache. */
+    public void setCache(PositionCache cache)
+    {
+        m_cache = cache;
+    }
+
+    /** Store the rows of each processed file in a journal.
+        If the journal exists, the files that were completed in a previous
+        run with the same files, commands and options are not processed
+        again, and their rows are taken from the journal. The journal is
+        not deleted after the run. Default is no journal. */
+    public void setJournal(File file)
+    {
+        m_journalFile = file;
+    }
+
     /** Save result table of last run. */
     public void saveTable(File output) throws IOException
     {
+        saveTable(output, false);
+    }
+
+    /** Save result table of last run.
+        @param output The file.
+        @param binary Use the binary table format.
+        @see Table#saveBinary(File) */
+    public void saveTable(File output, boolean binary) throws IOException
+    {
+        if (binary)
+        {
+            m_table.saveBinary(output);
+            return;
+        }
         FileWriter writer = new FileWriter(output);
         try
         {
@@ -154,6 +259,338 @@ public class Statistics
         public String m_columnTitle;
     }
 
+    /** Runs the commands of the files with one GTP engine.
+        Takes the next unprocessed file until all files are processed or
+        another worker failed. The rows of each file are stored in a
+        separate table, which is merged into the result table. */
+    private class Worker
+        implements Runnable
+    {
+        public Worker(GtpClientBase gtp)
+        {
+            m_gtp = gtp;
+            m_synchronizer = new GtpSynchronizer(gtp);
+        }
+
+        public void run()
+        {
+            try
+            {
+                int index;
+                while ((index = getNextFile()) >= 0)
+                {
+                    m_rows = new Table(m_table.getColumnTitles());
+                    handleFile(m_sgfFiles.get(index));
+                    addResult(index, m_rows);
+                }
+            }
+            catch (Throwable t)
+            {
+                setError(t);
+            }
+        }
+
+        private double m_lastCpuTime = 0;
+
+        /** Number formats of the worker; formats are not thread-safe. */
+        private final NumberFormat m_format1 = StringUtil.getNumberFormat(1);
+
+        private final NumberFormat m_format2 = StringUtil.getNumberFormat(2);
+
+        private final GtpClientBase m_gtp;
+
+        private final GtpSynchronizer m_synchronizer;
+
+        private Table m_rows;
+
+        private String convertResponse(String command, String response,
+                                       GoColor toMove, Move move)
+            throws GtpError
+        {
+            response = response.trim();
+            response = response.replaceAll("\t", " ");
+            response = response.replaceAll("\n", " ");
+            if (command.equals("cputime"))
+            {
+                try
+                {
+                    double cpuTime = Double.parseDouble(response);
+                    double diff = cpuTime - m_lastCpuTime;
+                    m_lastCpuTime = cpuTime;
+                    return m_format2.format(diff);
+                }
+                catch (NumberFormatException e)
+                {
+                    return response;
+                }
+            }
+            else if (command.equals("estimate_score"))
+            {
+                String arg[] = StringUtil.splitArguments(response);
+                if (arg.length == 0)
+                    return response;
+                return convertScore(arg[0]);
+            }
+            else if (command.equals("final_score"))
+            {
+                return convertScore(response);
+            }
+            else if (command.equals("reg_genmove"))
+            {
+                if (move == null)
+                    return "";
+                try
+                {
+                    GoPoint point = GoPoint.parsePoint(response, m_size);
+                    return Move.get(toMove, point) == move ? "1" : "0";
+                }
+                catch (InvalidPointException e)
+                {
+                    throw new GtpError("Program sent invalid move: "
+                                       + response);
+                }
+            }
+            return response;
+        }
+
+        /** Tries to convert score into number.
+            @return Score string or original string, if conversion fails. */
+        private String convertScore(String string)
+        {
+            String score = string.trim();
+            double sign = 1;
+            if (score.startsWith("W+"))
+            {
+                score = score.substring(2);
+                sign = -1;
+            }
+            else if (score.startsWith("B+"))
+                score = score.substring(2);
+            try
+            {
+                return m_format1.format(sign * Double.parseDouble(score));
+            }
+            catch (NumberFormatException e)
+            {
+                return string;
+            }
+        }
+
+        private void handleFile(String name)
+            throws ErrorMessage, FileNotFoundException, GtpError,
+                   SgfError
+        {
+            File file = new File(name);
+            InputStream in = new FileInputStream(file);
+            // Only the main variation is used
+            SgfCollectionReader reader =
+                new SgfCollectionReader(in, file, true, true);
+            GameTree tree;
+            try
+            {
+                tree = reader.readNext();
+            }
+            finally
+            {
+                reader.close();
+            }
+            if (tree == null)
+                throw new SgfError(name + ": No root tree found");
+            Game game = new Game(tree);
+            checkGame(game.getTree(), name);
+            if (m_random)
+                iteratePositionsRandom(game, name);
+            else if (m_backward)
+                iteratePositionsBackward(game, name);
+            else
+                iteratePositions(game, name);
+        }
+
+        private void handlePosition(ConstGame game, String name,
+                                    GoColor toMove, Move move, int number,
+                                    boolean beginCommands,
+                                    boolean regularCommands,
+                                    boolean finalCommands)
+            throws GtpError
+        {
+            if (! m_quiet)
+                System.err.println(name + ":" + number);
+            // The commands of a position are sent pipelined, they don't depend
+            // on each other's responses
+            ArrayList<Command> commands = new ArrayList<Command>();
+            for (int i = 0; i < m_commands.size(); ++i)
+            {
+                Command command = getCommand(i);
+                if (command.m_begin && beginCommands)
+                    commands.add(command);
+            }
+            for (int i = 0; i < m_commands.size(); ++i)
+            {
+                Command command = getCommand(i);
+                if (! command.m_begin && ! command.m_final && regularCommands)
+                    commands.add(command);
+            }
+            for (int i = 0; i < m_commands.size(); ++i)
+            {
+                Command command = getCommand(i);
+                if (command.m_final && finalCommands)
+                    commands.add(command);
+            }
+            ArrayList<String> lines = new ArrayList<String>(commands.size());
+            for (Command command : commands)
+                lines.add(convertCommand(command.m_command, toMove));
+            ArrayList<String> responses = send(game, lines);
+            m_rows.startRow();
+            try
+            {
+                m_rows.set("File", name);
+                m_rows.set("Move", number);
+                for (int i = 0; i < commands.size(); ++i)
+                {
+                    Command command = commands.get(i);
+                    String response =
+                        convertResponse(command.m_command, responses.get(i),
+                                        toMove, move);
+                    m_rows.set(command.m_columnTitle, response);
+                }
+            }
+            catch (Table.InvalidLocation e)
+            {
+                System.err.println(e.getMessage());
+                // Table was created by this class in correct format
+                assert false;
+            }
+        }
+
+        private void iteratePositions(Game game, String name)
+            throws GtpError
+        {
+            int number = 0;
+            for (ConstNode node = game.getRoot(); node != null;
+                 node = node.getChildConst())
+            {
+                game.gotoNode(node, null);
+                synchronize(game);
+                Move move = node.getMove();
+                boolean beginCommands = ! node.hasFather();
+                boolean regularCommands =
+                    ((move != null || node.hasSetup() || ! node.hasFather())
+                     && number >= m_min && number <= m_max);
+                boolean finalCommands = ! node.hasChildren();
+                if (beginCommands || regularCommands || finalCommands)
+                    handlePosition(game, name, node.getToMove(), move,
+                                   number, beginCommands, regularCommands,
+                                   finalCommands);
+                ++number;
+            }
+        }
+
+        private void iteratePositionsBackward(Game game, String name)
+            throws GtpError
+        {
+            int number = 0;
+            for (ConstNode node = NodeUtil.getLast(game.getRoot());
+                 node != null; node = node.getFatherConst())
+            {
+                game.gotoNode(node, null);
+                synchronize(game);
+                Move move = node.getMove();
+                boolean beginCommands = ! node.hasChildren();
+                boolean regularCommands =
+                    ((move != null || node.hasSetup() || ! node.hasFather())
+                     && number >= m_min && number <= m_max);
+                boolean finalCommands = ! node.hasFather();
+                if (beginCommands || regularCommands || finalCommands)
+                    handlePosition(game, name, node.getToMove(), move,
+                                   number, beginCommands, regularCommands,
+                                   finalCommands);
+                ++number;
+            }
+        }
+
+        private void iteratePositionsRandom(Game game, String name)
+            throws GtpError
+        {
+            int minDepth;
+            int maxDepth;
+            if (m_backward)
+            {
+                int depth =
+                    NodeUtil.getDepth(NodeUtil.getLast(game.getRoot()));
+                minDepth = depth - m_max;
+                maxDepth = depth - m_min;
+            }
+            else
+            {
+                minDepth = m_min;
+                maxDepth = m_max;
+            }
+            ConstNode node = NodeUtil.selectRandom(game.getRoot(), minDepth,
+                                                   maxDepth);
+            if (node == null)
+                return;
+            int number = NodeUtil.getDepth(node);
+            game.gotoNode(node, null);
+            synchronize(game);
+            Move move = node.getMove();
+            boolean beginCommands = ! node.hasChildren();
+            boolean regularCommands =
+                (move != null || node.hasSetup() || ! node.hasFather());
+            boolean finalCommands = ! node.hasFather();
+            if (beginCommands || regularCommands || finalCommands)
+                handlePosition(game, name, node.getToMove(), move, number,
+                               beginCommands, regularCommands, finalCommands);
+        }
+
+        /** Send the commands of a position.
+            Responses in the position cache are not sent to the program;
+            the remaining commands are sent pipelined. */
+        private ArrayList<String> send(ConstGame game,
+                                       ArrayList<String> lines)
+            throws GtpError
+        {
+            if (m_cache == null)
+                return m_gtp.sendPipelined(lines);
+            ConstBoard board = game.getBoard();
+            Komi komi = game.getGameInfo(game.getGameInfoNode()).getKomi();
+            ArrayList<String> responses = new ArrayList<String>(lines.size());
+            ArrayList<String> missing = new ArrayList<String>();
+            for (String line : lines)
+            {
+                String response = null;
+                // The response to cputime is the accumulated time
+                if (! line.equals("cputime"))
+                    response = m_cache.get(board, komi, line);
+                responses.add(response);
+                if (response == null)
+                    missing.add(line);
+            }
+            if (missing.isEmpty())
+                return responses;
+            ArrayList<String> missingResponses =
+                m_gtp.sendPipelined(missing);
+            int index = 0;
+            for (int i = 0; i < lines.size(); ++i)
+                if (responses.get(i) == null)
+                {
+                    String line = lines.get(i);
+                    String response = missingResponses.get(index++);
+                    if (! line.equals("cputime"))
+                        m_cache.put(board, komi, line, response);
+                    responses.set(i, response);
+                }
+            return responses;
+        }
+
+        private void synchronize(ConstGame game) throws GtpError
+        {
+            ConstNode node = game.getGameInfoNode();
+            ConstGameInfo info = game.getGameInfo(node);
+            m_synchronizer.synchronize(game.getBoard(), info.getKomi(),
+                                       info.getTimeSettings());
+        }
+    }
+
     private boolean m_allowSetup;
 
     private boolean m_backward;
@@ -166,23 +603,33 @@ public class Statistics
 
     private int m_min = 0;
 
+    private int m_nextFile;
+
     private int m_numberGames;
 
+    private int m_numberMerged;
+
+    private int m_numberWorkers = 1;
+
     private int m_size;
 
-    private double m_lastCpuTime = 0;
+    private PositionCache m_cache;
 
-    private GtpClientBase m_gtp;
+    private File m_journalFile;
 
-    private static final NumberFormat FORMAT1 = StringUtil.getNumberFormat(1);
+    private Journal m_journal;
 
-    private static final NumberFormat FORMAT2 = StringUtil.getNumberFormat(2);
+    /** First error of a worker. */
+    private Throwable m_error;
 
     private Table m_table;
 
+    /** Rows of processed files that are not yet merged into m_table. */
+    private Table[] m_results;
+
     private ArrayList<Command> m_commands;
 
-    private GtpSynchronizer m_synchronizer;
+    private ArrayList<String> m_sgfFiles;
 
     private void addCommand(String commandLine, boolean isBegin,
                             boolean isFinal) throws ErrorMessage
@@ -214,6 +661,40 @@ public class Statistics
         m_commands.add(command);
     }
 
+    /** Add the rows of a processed file.
+        The rows are appended to the journal, if there is one, and merged
+        into the result table. */
+    private synchronized void addResult(int index, Table rows)
+        throws ErrorMessage
+    {
+        if (m_journal != null)
+            m_journal.append(index, m_sgfFiles.get(index), rows);
+        m_results[index] = rows;
+        mergeResults();
+    }
+
+    /** Merge the rows of the files into the result table.
+        The rows are merged in the order of the files, so the rows of a file
+        are kept until the rows of all previous files are merged. */
+    private synchronized void mergeResults()
+    {
+        int numberColumns = m_table.getNumberColumns();
+        while (m_numberMerged < m_results.length
+               && m_results[m_numberMerged] != null)
+        {
+            Table result = m_results[m_numberMerged];
+            for (int row = 0; row < result.getNumberRows(); ++row)
+            {
+                m_table.startRow();
+                for (int column = 0; column < numberColumns; ++column)
+                    m_table.set(column, result.get(column, row));
+            }
+            m_results[m_numberMerged] = null;
+            ++m_numberMerged;
+            ++m_numberGames;
+        }
+    }
+
     private void addCommands(ArrayList<String> commands, boolean isBegin,
                              boolean isFinal) throws ErrorMessage
     {
@@ -263,74 +744,6 @@ public class Statistics
         return command;
     }
 
-    private String convertResponse(String command, String response,
-                                   GoColor toMove, Move move) throws GtpError
-    {
-        if (command.equals("cputime"))
-        {
-            try
-            {
-                double cpuTime = Double.parseDouble(response);
-                double diff = cpuTime - m_lastCpuTime;
-                m_lastCpuTime = cpuTime;
-                return FORMAT2.format(diff);
-            }
-            catch (NumberFormatException e)
-            {
-                return response;
-            }
-        }
-        else if (command.equals("estimate_score"))
-        {
-            String arg[] = StringUtil.splitArguments(response);
-            if (arg.length == 0)
-                return response;
-            return convertScore(arg[0]);
-        }
-        else if (command.equals("final_score"))
-        {
-            return convertScore(response);
-        }
-        else if (command.equals("reg_genmove"))
-        {
-            if (move == null)
-                return "";
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(response, m_size);
-                return Move.get(toMove, point) == move ? "1" : "0";
-            }
-            catch (InvalidPointException e)
-            {
-                throw new GtpError("Program sent invalid move: " + response);
-            }
-        }
-        return response;
-    }
-
-    /** Tries to convert score into number.
-        @return Score string or original string, if conversion fails. */
-    private String convertScore(String string)
-    {
-        String score = string.trim();
-        double sign = 1;
-        if (score.startsWith("W+"))
-        {
-            score = score.substring(2);
-            sign = -1;
-        }
-        else if (score.startsWith("B+"))
-            score = score.substring(2);
-        try
-        {
-            return FORMAT1.format(sign * Double.parseDouble(score));
-        }
-        catch (NumberFormatException e)
-        {
-            return string;
-        }
-    }
-
     private void initCommands(ArrayList<String> commands,
                               ArrayList<String> beginCommands,
                               ArrayList<String> finalCommands)
@@ -352,164 +765,127 @@ public class Statistics
         return m_commands.get(index);
     }
 
-    private void handleFile(String name)
-        throws ErrorMessage, FileNotFoundException, GtpError,
-               SgfError
+    /** Get the index of the next file to process.
+        @return The index or -1, if all files are taken or a worker failed. */
+    private synchronized int getNextFile()
     {
-        File file = new File(name);
-        InputStream in = new FileInputStream(file);
-        SgfReader reader = new SgfReader(in, file, null, 0);
-        ++m_numberGames;
-        Game game = new Game(reader.getTree());
-        checkGame(game.getTree(), name);
-        if (m_random)
-            iteratePositionsRandom(game, name);
-        else if (m_backward)
-            iteratePositionsBackward(game, name);
-        else
-            iteratePositions(game, name);
+        while (m_journal != null && m_nextFile < m_sgfFiles.size()
+               && m_journal.getRows(m_nextFile) != null)
+            ++m_nextFile;
+        if (m_error != null || m_nextFile >= m_sgfFiles.size())
+            return -1;
+        return m_nextFile++;
     }
 
-    private void handlePosition(String name, GoColor toMove, Move move,
-                                int number, boolean beginCommands,
-                                boolean regularCommands,
-                                boolean finalCommands)
-        throws GtpError
+    /** Open the journal and merge the rows of the completed files. */
+    private void openJournal() throws ErrorMessage
     {
+        ArrayList<String> header = new ArrayList<String>();
+        header.add("size " + m_size);
+        header.add("min " + m_min);
+        header.add("max " + m_max);
+        header.add("setup " + (m_allowSetup ? "yes" : "no"));
+        header.add("backward " + (m_backward ? "yes" : "no"));
+        header.add("random " + (m_random ? "yes" : "no"));
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            Command command = getCommand(i);
+            String type = "regular";
+            if (command.m_begin)
+                type = "begin";
+            else if (command.m_final)
+                type = "final";
+            header.add(type + " " + command.m_command);
+        }
+        m_journal = new Journal(m_journalFile, header,
+                                m_table.getColumnTitles(), m_sgfFiles);
+        int numberCompleted = m_journal.getNumberCompleted();
+        if (numberCompleted == 0)
+            return;
         if (! m_quiet)
-            System.err.println(name + ":" + number);
-        m_table.startRow();
-        try
+            System.err.println("Continuing with " + numberCompleted
+                               + " completed files from " + m_journalFile);
+        for (int i = 0; i < m_sgfFiles.size(); ++i)
+            m_results[i] = m_journal.getRows(i);
+        mergeResults();
+    }
+
+    /** Run the workers and rethrow the first error of a worker.
+        A single worker runs in the current thread. */
+    private void runWorkers(ArrayList<Worker> workers)
+        throws ErrorMessage, IOException
+    {
+        if (workers.size() == 1)
+            workers.get(0).run();
+        else
         {
-            m_table.set("File", name);
-            m_table.set("Move", number);
-            for (int i = 0; i < m_commands.size(); ++i)
+            ArrayList<Thread> threads = new ArrayList<Thread>();
+            for (Worker worker : workers)
             {
-                Command command = getCommand(i);
-                if (command.m_begin && beginCommands)
-                {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
-                }
+                Thread thread = new Thread(worker);
+                thread.start();
+                threads.add(thread);
             }
-            for (int i = 0; i < m_commands.size(); ++i)
+            for (Thread thread : threads)
             {
-                Command command = getCommand(i);
-                if (! command.m_begin && ! command.m_final && regularCommands)
+                try
                 {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
+                    thread.join();
                 }
-            }
-            for (int i = 0; i < m_commands.size(); ++i)
-            {
-                Command command = getCommand(i);
-                if (command.m_final && finalCommands)
+                catch (InterruptedException e)
                 {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
+                    throw new ErrorMessage("Interrupted");
                 }
             }
         }
-        catch (Table.InvalidLocation e)
-        {
-            System.err.println(e.getMessage());
-            // Table was created by this class in correct format
-            assert false;
-        }
+        Throwable error = getError();
+        if (error == null)
+            return;
+        if (error instanceof ErrorMessage)
+            throw (ErrorMessage)error;
+        if (error instanceof IOException)
+            throw (IOException)error;
+        if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        throw (Error)error;
     }
 
-    private void iteratePositions(Game game, String name) throws GtpError
+    private synchronized Throwable getError()
     {
-        int number = 0;
-        for (ConstNode node = game.getRoot(); node != null;
-             node = node.getChildConst())
-        {
-            game.gotoNode(node, null);
-            synchronize(game);
-            Move move = node.getMove();
-            boolean beginCommands = ! node.hasFather();
-            boolean regularCommands =
-                ((move != null || node.hasSetup() || ! node.hasFather())
-                 && number >= m_min && number <= m_max);
-            boolean finalCommands = ! node.hasChildren();
-            if (beginCommands || regularCommands || finalCommands)
-                handlePosition(name, node.getToMove(), move, number,
-                               beginCommands, regularCommands, finalCommands);
-            ++number;
-        }
+        return m_error;
     }
 
-    private void iteratePositionsBackward(Game game, String name)
-        throws GtpError
+    private synchronized void setError(Throwable error)
     {
-        int number = 0;
-        for (ConstNode node = NodeUtil.getLast(game.getRoot()); node != null;
-             node = node.getFatherConst())
-        {
-            game.gotoNode(node, null);
-            synchronize(game);
-            Move move = node.getMove();
-            boolean beginCommands = ! node.hasChildren();
-            boolean regularCommands =
-                ((move != null || node.hasSetup() || ! node.hasFather())
-                 && number >= m_min && number <= m_max);
-            boolean finalCommands = ! node.hasFather();
-            if (beginCommands || regularCommands || finalCommands)
-                handlePosition(name, node.getToMove(), move, number,
-                               beginCommands, regularCommands, finalCommands);
-            ++number;
-        }
+        if (m_error == null)
+            m_error = error;
     }
 
-    private void iteratePositionsRandom(Game game, String name)
-        throws GtpError
+    /** Store the latencies of the commands in the table properties.
+        Uses a property "Latency name" for each command name. Properties
+        are used, because all columns except File and Move are interpreted
+        as commands. The latencies of several engines are merged. */
+    private void setLatencyProperties(ArrayList<GtpClientBase> gtps)
     {
-        int minDepth;
-        int maxDepth;
-        if (m_backward)
+        GtpMetrics metrics = null;
+        for (GtpClientBase gtp : gtps)
         {
-            int depth = NodeUtil.getDepth(NodeUtil.getLast(game.getRoot()));
-            minDepth = depth - m_max;
-            maxDepth = depth - m_min;
+            GtpMetrics gtpMetrics = gtp.getMetrics();
+            if (gtpMetrics == null)
+                continue;
+            if (metrics == null)
+                metrics = new GtpMetrics();
+            metrics.add(gtpMetrics);
         }
-        else
+        if (metrics == null)
+            return;
+        for (Command command : m_commands)
         {
-            minDepth = m_min;
-            maxDepth = m_max;
+            String name = GtpMetrics.getCommandName(command.m_command);
+            LatencyHistogram histogram = metrics.get(name);
+            if (histogram != null)
+                m_table.setProperty("Latency " + name,
+                                    GtpMetrics.formatSummary(histogram));
         }
-        ConstNode node = NodeUtil.selectRandom(game.getRoot(), minDepth,
-                                               maxDepth);
-        if (node == null)
-            return;
-        int number = NodeUtil.getDepth(node);
-        game.gotoNode(node, null);
-        synchronize(game);
-        Move move = node.getMove();
-        boolean beginCommands = ! node.hasChildren();
-        boolean regularCommands =
-            (move != null || node.hasSetup() || ! node.hasFather());
-        boolean finalCommands = ! node.hasFather();
-        if (beginCommands || regularCommands || finalCommands)
-            handlePosition(name, node.getToMove(), move, number,
-                           beginCommands, regularCommands, finalCommands);
-    }
-
-    private String send(String command, GoColor toMove, Move move)
-        throws GtpError
-    {
-        String cmd = convertCommand(command, toMove);
-        String response = m_gtp.send(cmd).trim();
-        response = response.replaceAll("\t", " ");
-        response = response.replaceAll("\n", " ");
-        return convertResponse(command, response, toMove, move);
-    }
-
-    private void synchronize(ConstGame game) throws GtpError
-    {
-        ConstNode node = game.getGameInfoNode();
-        ConstGameInfo info = game.getGameInfo(node);
-        m_synchronizer.synchronize(game.getBoard(), info.getKomi(),
-                                   info.getTimeSettings());
     }
 }
@@ -0,0 +1,281 @@
+// TableStatistics.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.Histogram;
+import net.sf.gogui.util.ObjectUtil;
+import net.sf.gogui.util.Statistics;
+import net.sf.gogui.util.StringUtil;
+import net.sf.gogui.util.Table;
+import net.sf.gogui.util.TableUtil;
+
+/** Statistics of all commands in a result table.
+    The table is parsed in a single pass, which accumulates the statistics
+    of all positions, of the final positions and of the positions at each
+    move number for all commands, and the results of commands with at most
+    one result per game. The histograms, which need the range of all values
+    of a command, are filled in a second pass over the parsed values.
+    The rows of a game must be consecutive in the table; the last row of a
+    game is its final position. */
+public final class TableStatistics
+{
+    /** Constructor.
+        @param table The table with the columns File, Move and one column
+        per command.
+        @throws ErrorMessage If the table contains an invalid move. */
+    public TableStatistics(Table table) throws ErrorMessage
+    {
+        int numberRows = table.getNumberRows();
+        m_numberCommands = table.getNumberColumns() - 2;
+        int[] moves = new int[numberRows];
+        BitSet isFinal = new BitSet(numberRows);
+        for (int row = 0; row < numberRows; ++row)
+        {
+            moves[row] = parseMove(table.get(1, row));
+            m_maxMove = Math.max(m_maxMove, moves[row]);
+            if (row == numberRows - 1
+                || ! ObjectUtil.equals(table.get(0, row),
+                                       table.get(0, row + 1)))
+                isFinal.set(row);
+        }
+        m_commands = new Command[m_numberCommands];
+        for (int i = 0; i < m_numberCommands; ++i)
+            m_commands[i] = new Command(numberRows, m_maxMove);
+        for (int row = 0; row < numberRows; ++row)
+        {
+            int move = moves[row];
+            boolean isFinalRow = isFinal.get(row);
+            for (int i = 0; i < m_numberCommands; ++i)
+                m_commands[i].add(table, i + 2, row, move, isFinalRow);
+        }
+        for (int i = 0; i < m_numberCommands; ++i)
+        {
+            m_commands[i].fillHistograms(moves, isFinal);
+            String title = table.getColumnTitle(i + 2);
+            m_commands[i].createStatistics(title);
+        }
+    }
+
+    /** Get the results of a command with at most one result per game.
+        @return The results per game or null, if the command has more than
+        one non-empty result in a game. */
+    public ArrayList<String> getGameResults(int commandIndex)
+    {
+        return m_commands[commandIndex].m_gameResults;
+    }
+
+    /** Get the maximum move number in the table. */
+    public int getMaxMove()
+    {
+        return m_maxMove;
+    }
+
+    public int getNumberCommands()
+    {
+        return m_numberCommands;
+    }
+
+    public PositionStatistics getStatisticsAll(int commandIndex)
+    {
+        return m_commands[commandIndex].m_statisticsAll;
+    }
+
+    /** Get the statistics of the positions with a move number.
+        @param commandIndex The command.
+        @param move The move number; greater than getMaxMove() is allowed
+        and returns empty statistics. */
+    public PositionStatistics getStatisticsAtMove(int commandIndex, int move)
+    {
+        return m_commands[commandIndex].m_statisticsAtMove[move];
+    }
+
+    public PositionStatistics getStatisticsFinal(int commandIndex)
+    {
+        return m_commands[commandIndex].m_statisticsFinal;
+    }
+
+    /** Values of a set of positions. */
+    private static class Accumulator
+    {
+        public boolean m_onlyBoolValues = true;
+
+        public boolean m_onlyIntValues = true;
+
+        public int m_numberNoResult;
+
+        public final Statistics m_statistics = new Statistics();
+
+        public Histogram m_histogram;
+
+        public void add(double value, boolean isBool, boolean isInt)
+        {
+            if (! isBool)
+                m_onlyBoolValues = false;
+            if (! isInt)
+                m_onlyIntValues = false;
+            m_statistics.add(value);
+        }
+
+        public PositionStatistics createStatistics(String command)
+        {
+            return new PositionStatistics(command, m_statistics,
+                                          m_histogram, m_onlyBoolValues,
+                                          m_onlyIntValues, m_numberNoResult);
+        }
+
+        public void createHistogram(double histoMin, double histoMax)
+        {
+            m_histogram = PositionStatistics.createHistogram(m_onlyIntValues,
+                                                             histoMin,
+                                                             histoMax);
+        }
+    }
+
+    private static class Command
+    {
+        public Command(int numberRows, int maxMove)
+        {
+            m_values = new double[numberRows];
+            m_hasValue = new BitSet(numberRows);
+            m_atMove = new Accumulator[maxMove + 2];
+            for (int i = 0; i < m_atMove.length; ++i)
+                m_atMove[i] = new Accumulator();
+        }
+
+        public ArrayList<String> m_gameResults = new ArrayList<String>();
+
+        public PositionStatistics m_statisticsAll;
+
+        public PositionStatistics m_statisticsFinal;
+
+        public PositionStatistics[] m_statisticsAtMove;
+
+        public void add(Table table, int column, int row, int move,
+                        boolean isFinal)
+        {
+            if (m_gameResults != null)
+            {
+                String value = table.get(column, row);
+                if (! StringUtil.isEmpty(value))
+                {
+                    if (m_gameResult == null)
+                        m_gameResult = value;
+                    else
+                        m_gameResults = null;
+                }
+                if (isFinal && m_gameResults != null)
+                {
+                    m_gameResults.add(m_gameResult == null ? ""
+                                      : m_gameResult);
+                    m_gameResult = null;
+                }
+            }
+            Accumulator atMove = (move >= 1 ? m_atMove[move] : null);
+            if (! table.isNumber(column, row))
+            {
+                ++m_all.m_numberNoResult;
+                if (isFinal)
+                    ++m_final.m_numberNoResult;
+                if (atMove != null)
+                    ++atMove.m_numberNoResult;
+                return;
+            }
+            double doubleValue;
+            try
+            {
+                doubleValue = table.getDouble(column, row);
+            }
+            catch (ErrorMessage e)
+            {
+                // Cannot happen, element is a number
+                assert false;
+                return;
+            }
+            boolean isInt = table.isInt(column, row);
+            boolean isBool =
+                (isInt && (doubleValue == 0 || doubleValue == 1)
+                 && TableUtil.isBoolValue(table.get(column, row)));
+            m_values[row] = doubleValue;
+            m_hasValue.set(row);
+            m_all.add(doubleValue, isBool, isInt);
+            if (isFinal)
+                m_final.add(doubleValue, isBool, isInt);
+            if (atMove != null)
+                atMove.add(doubleValue, isBool, isInt);
+        }
+
+        public void createStatistics(String command)
+        {
+            m_statisticsAll = m_all.createStatistics(command);
+            m_statisticsFinal = m_final.createStatistics(command);
+            m_statisticsAtMove = new PositionStatistics[m_atMove.length];
+            for (int i = 0; i < m_atMove.length; ++i)
+                m_statisticsAtMove[i] = m_atMove[i].createStatistics(command);
+            m_values = null;
+            m_hasValue = null;
+        }
+
+        /** Fill the histograms.
+            The histograms of the final positions and the positions at a
+            move number use the range of all values, so that they can be
+            compared. */
+        public void fillHistograms(int[] moves, BitSet isFinal)
+        {
+            double min = m_all.m_statistics.getMin();
+            double max = m_all.m_statistics.getMax();
+            m_all.createHistogram(min, max);
+            m_final.createHistogram(min, max);
+            for (Accumulator atMove : m_atMove)
+                atMove.createHistogram(min, max);
+            for (int row = m_hasValue.nextSetBit(0); row >= 0;
+                 row = m_hasValue.nextSetBit(row + 1))
+            {
+                double value = m_values[row];
+                m_all.m_histogram.add(value);
+                if (isFinal.get(row))
+                    m_final.m_histogram.add(value);
+                if (moves[row] >= 1)
+                    m_atMove[moves[row]].m_histogram.add(value);
+            }
+        }
+
+        private final Accumulator m_all = new Accumulator();
+
+        private final Accumulator m_final = new Accumulator();
+
+        /** Accumulators indexed by move number. */
+        private final Accumulator[] m_atMove;
+
+        private BitSet m_hasValue;
+
+        private double[] m_values;
+
+        /** Result of the current game. */
+        private String m_gameResult;
+    }
+
+    private int m_maxMove;
+
+    private final int m_numberCommands;
+
+    private final Command[] m_commands;
+
+    private static int parseMove(String value) throws ErrorMessage
+    {
+        int move;
+        try
+        {
+            move = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ErrorMessage("Invalid move in table");
+        }
+        if (move < 0)
+            throw new ErrorMessage("Invalid move in table");
+        return move;
+    }
+}
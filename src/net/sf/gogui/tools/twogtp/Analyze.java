@@ -2,7 +2,10 @@
 
 package net.sf.gogui.tools.twogtp;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -110,6 +113,13 @@ public class Analyze
         }
     }
 
+    private static PrintStream createPrintStream(File file)
+        throws FileNotFoundException
+    {
+        return new PrintStream(new BufferedOutputStream(
+                                   new FileOutputStream(file)));
+    }
+
     private void parseResult(String result, ResultStatistics statistics)
     {
         boolean hasResult = false;
@@ -237,7 +247,7 @@ public class Analyze
             String name = file.getName();
             gamePrefix = name.substring(0, name.length() - 5);
         }
-        PrintStream out = new PrintStream(file);
+        PrintStream out = createPrintStream(file);
         NumberFormat format = StringUtil.getNumberFormat(1);
         String black;
         if (m_table.hasProperty("BlackLabel"))
@@ -453,7 +463,7 @@ public class Analyze
 
     private void writeData(File file) throws Exception
     {
-        PrintStream out = new PrintStream(file);
+        PrintStream out = createPrintStream(file);
         NumberFormat format1 = StringUtil.getNumberFormat(1);
         NumberFormat format2 = StringUtil.getNumberFormat(3);
         Histogram histoBlack = m_statisticsBlack.m_histo;
@@ -4,18 +4,26 @@ package net.sf.gogui.tools.twogtp;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import net.sf.gogui.game.ConstNode;
-import net.sf.gogui.game.GameTree;
 import net.sf.gogui.go.*;
 
 import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
 
-import net.sf.gogui.gtp.BoardParameters;
-import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.sgf.SgfCollectionReader;
+import net.sf.gogui.sgf.SgfError;
+import net.sf.gogui.sgf.SgfHandler;
+import net.sf.gogui.sgf.SgfUtil;
+import net.sf.gogui.util.ProgressShow;
 
 /** Find duplicates in games. */
 public final class Compare
@@ -56,7 +64,8 @@ public final class Compare
         @return String containing number of first identical game in
         collection or "-" if no duplicate was found. If a nearly identical
         game is found (&lt;= 20% identical moves comparing moves by number),
-        the game number is returned with a question mark appended. */
+        the game number is returned with a question mark appended.
+        @see DuplicateIndex */
     public static String checkDuplicate(ConstBoard board,
                                       ArrayList<Placement> moves,
                                       Map<Integer, ArrayList<Placement>> games,
@@ -110,28 +119,75 @@ public final class Compare
         @throws Exception If reading one of the files fails. */
     public static void compare(ArrayList<String> filenames) throws Exception
     {
-        Board board = null;
-        Map<Integer, ArrayList<Placement>> games =
-            new TreeMap<Integer, ArrayList<Placement>>();
-        for (int gameNumber = 0; gameNumber < filenames.size(); ++gameNumber)
-        {
-            String filename = filenames.get(gameNumber);
-            File file = new File(filename);
-            FileInputStream fileStream = new FileInputStream(file);
-            SgfReader reader = new SgfReader(fileStream, file, null, 0);
-            GameTree tree = reader.getTree();
-            int size = tree.getBoardSize();
-            if (board == null)
-                board = new Board(new BoardParameters(size));
-            else if (size != board.getParameters().size())
-                throw new Exception("Board size in " + filename +
-                                    " does not match other games");
-            ArrayList<Placement> moves = getPlacements(tree.getRoot());
-            String duplicate =
-                checkDuplicate(board, moves, games, false, false);
-            System.out.println(Integer.toString(gameNumber) + " " +
-                               filename + " " + duplicate);
-            games.put(gameNumber, moves);
+        compare(filenames, 1, null);
+    }
+
+    /** Compare a set of SGF files using multiple threads.
+        The files are read and parsed in parallel. The duplicate check is
+        done in the order of the files, so the output is the same as with
+        a single thread.
+        @param filenames List of filenames
+        @param numberThreads Number of threads for reading files.
+        @param progressShow Callback for showing the percentage of compared
+        files (may be null).
+        @throws Exception If reading one of the files fails. */
+    public static void compare(ArrayList<String> filenames,
+                               int numberThreads, ProgressShow progressShow)
+        throws Exception
+    {
+        assert numberThreads > 0;
+        int numberFiles = filenames.size();
+        // Limit the number of parsed games waiting for the duplicate check
+        int maxPending = READ_AHEAD * numberThreads;
+        ExecutorService pool = Executors.newFixedThreadPool(numberThreads);
+        try
+        {
+            ArrayDeque<Future<ReadResult>> pending =
+                new ArrayDeque<Future<ReadResult>>();
+            int numberSubmitted = 0;
+            int boardSize = 0;
+            DuplicateIndex index = null;
+            int percent = -1;
+            for (int gameNumber = 0; gameNumber < numberFiles; ++gameNumber)
+            {
+                while (numberSubmitted < numberFiles
+                       && pending.size() < maxPending)
+                {
+                    final String filename = filenames.get(numberSubmitted++);
+                    pending.add(pool.submit(new Callable<ReadResult>()
+                        {
+                            public ReadResult call() throws Exception
+                            {
+                                return read(filename);
+                            }
+                        }));
+                }
+                ReadResult result = get(pending.remove());
+                String filename = filenames.get(gameNumber);
+                if (index == null)
+                {
+                    boardSize = result.m_size;
+                    index = new DuplicateIndex(boardSize);
+                }
+                else if (result.m_size != boardSize)
+                    throw new Exception("Board size in " + filename +
+                                        " does not match other games");
+                String duplicate =
+                    index.checkDuplicate(result.m_moves, false, false);
+                System.out.println(Integer.toString(gameNumber) + " " +
+                                   filename + " " + duplicate);
+                index.add(gameNumber, result.m_moves);
+                if (progressShow != null
+                    && (gameNumber + 1) * 100 / numberFiles != percent)
+                {
+                    percent = (gameNumber + 1) * 100 / numberFiles;
+                    progressShow.showProgress(percent);
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
         }
     }
 
@@ -155,8 +211,183 @@ public final class Compare
         return result;
     }
 
+    /** Maximum number of files read ahead per thread in compare(). */
+    private static final int READ_AHEAD = 16;
+
+    /** Handler that collects the placements of the main variation.
+        Creates the same placements as getPlacements() without creating a
+        game tree. */
+    private static final class PlacementHandler
+        implements SgfHandler
+    {
+        public int m_size = 19;
+
+        /** The file contained an invalid size property. */
+        public boolean m_isInvalidSize;
+
+        public final ArrayList<Placement> m_moves =
+            new ArrayList<Placement>(512);
+
+        public void startTree()
+        {
+        }
+
+        public void endTree()
+        {
+        }
+
+        public void startNode()
+        {
+            ++m_numberNodes;
+            m_setupBlack = null;
+            m_setupWhite = null;
+            m_setupEmpty = null;
+            m_move = null;
+        }
+
+        public void property(String identifier, List<String> values)
+            throws SgfError
+        {
+            // Points are parsed in endNode(), because the size property
+            // is reported after the setup properties
+            if (identifier == "SZ" && m_numberNodes == 1)
+            {
+                // Invalid sizes are ignored like in SgfReader, the default
+                // size is used
+                try
+                {
+                    int size = Integer.parseInt(values.get(0).trim());
+                    if (size > 0 && size <= GoPoint.MAX_SIZE)
+                        m_size = size;
+                    else
+                        m_isInvalidSize = true;
+                }
+                catch (NumberFormatException e)
+                {
+                    m_isInvalidSize = true;
+                }
+            }
+            else if (identifier == "AB")
+                m_setupBlack = new ArrayList<String>(values);
+            else if (identifier == "AW")
+                m_setupWhite = new ArrayList<String>(values);
+            else if (identifier == "AE")
+                m_setupEmpty = new ArrayList<String>(values);
+            else if (identifier == "B")
+            {
+                m_moveColor = GoColor.BLACK;
+                m_move = values.get(0);
+            }
+            else if (identifier == "W")
+            {
+                // W is reported after B, so W is used if a node has both
+                // like in SgfReader
+                m_moveColor = GoColor.WHITE;
+                m_move = values.get(0);
+            }
+        }
+
+        public void endNode() throws SgfError
+        {
+            try
+            {
+                addSetup(GoColor.BLACK, m_setupBlack);
+                addSetup(GoColor.WHITE, m_setupWhite);
+                addSetup(GoColor.EMPTY, m_setupEmpty);
+                if (m_move != null)
+                    m_moves.add(new Placement(false, m_moveColor,
+                                              SgfUtil.parsePoint(m_move,
+                                                                 m_size)));
+            }
+            catch (InvalidPointException e)
+            {
+                throw new SgfError(e.getMessage());
+            }
+        }
+
+        private int m_numberNodes;
+
+        private GoColor m_moveColor;
+
+        private String m_move;
+
+        private List<String> m_setupBlack;
+
+        private List<String> m_setupWhite;
+
+        private List<String> m_setupEmpty;
+
+        private void addSetup(GoColor c, List<String> values)
+            throws InvalidPointException
+        {
+            if (values == null)
+                return;
+            PointList list = SgfUtil.parsePointList(values, m_size);
+            Collections.sort(list);
+            for (GoPoint p : list)
+                m_moves.add(new Placement(true, c, p));
+        }
+    }
+
+    /** Board size and moves of a game file read by compare(). */
+    static final class ReadResult
+    {
+        public final int m_size;
+
+        public final ArrayList<Placement> m_moves;
+
+        public ReadResult(int size, ArrayList<Placement> moves)
+        {
+            m_size = size;
+            m_moves = moves;
+        }
+    }
+
     /** Make constructor unavailable; class is for namespace only. */
     private Compare()
     {
     }
+
+    /** Wait for the result of a read task.
+        Rethrows exceptions of the task. */
+    private static ReadResult get(Future<ReadResult> future) throws Exception
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception)cause;
+            throw e;
+        }
+    }
+
+    /** Read the board size and the placements of the main variation of the
+        first game in a file.
+        Uses a PlacementHandler instead of creating a game tree. */
+    static ReadResult read(String filename) throws Exception
+    {
+        File file = new File(filename);
+        FileInputStream fileStream = new FileInputStream(file);
+        // Only the moves of the main variation are used
+        SgfCollectionReader reader =
+            new SgfCollectionReader(fileStream, file, true, true);
+        PlacementHandler handler = new PlacementHandler();
+        try
+        {
+            if (! reader.readNext(handler))
+                throw new SgfError(file.getName() + ": No root tree found");
+            if (handler.m_isInvalidSize)
+                System.err.println(file.getName()
+                                   + ": Invalid board size value");
+            return new ReadResult(handler.m_size, handler.m_moves);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
 }
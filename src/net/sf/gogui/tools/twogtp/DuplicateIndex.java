@@ -0,0 +1,354 @@
+// DuplicateIndex.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import net.sf.gogui.go.BoardUtil;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+
+/** Index of games for finding duplicates.
+    Finds the same duplicates as Compare.checkDuplicate without comparing a
+    game to all games in the collection. Exact duplicates (also rotated
+    ones) are found with a hash table using a rotation-invariant hash code
+    of the move sequence. Nearly identical games are found with
+    locality-sensitive buckets: each game is stored in one bucket per
+    block of BLOCK_SIZE consecutive moves, keyed by the block number and
+    the moves in the block. A game with less than 20% different moves
+    (the criterion of Compare.checkDuplicate) always shares at least one
+    block with the game to check. Only the first MAX_BUCKET_CANDIDATES
+    games of a bucket are compared, such that blocks that are contained in
+    many games (like common opening moves) do not make the check linear in
+    the number of games again; a nearly identical game that shares only
+    such blocks is not found.
+    All games must have the same board size. */
+public final class DuplicateIndex
+{
+    /** Constructor.
+        @param size The board size of the games. */
+    public DuplicateIndex(int size)
+    {
+        m_size = size;
+    }
+
+    /** Add a game to the index.
+        @param gameNumber The game number.
+        @param moves The moves of the game. */
+    public void add(int gameNumber, ArrayList<Compare.Placement> moves)
+    {
+        int[] codes = encode(moves, 0);
+        int id = m_numberGames.size();
+        m_codes.add(codes);
+        m_numberGames.add(gameNumber);
+        m_exact.add(getCanonicalHash(moves), id);
+        for (int block = 0; (block + 1) * BLOCK_SIZE <= codes.length; ++block)
+            m_blocks.add(getBlockHash(codes, block), id);
+    }
+
+    /** Check if a game already exists in the index.
+        @param moves Moves of game to check.
+        @param useAlternate If true, assume that players are exchanged every
+        second game. Only check games where player played the same color.
+        @param isAlternated If useAlternate, indicate if game to check
+        had players exchanged.
+        @return The same as Compare.checkDuplicate: string containing number
+        of first identical game or "-" if no duplicate was found. If a
+        nearly identical game is found, the game number is returned with a
+        question mark appended. */
+    public String checkDuplicate(ArrayList<Compare.Placement> moves,
+                                 boolean useAlternate, boolean isAlternated)
+    {
+        int[][] codes = new int[BoardUtil.NUMBER_ROTATIONS][];
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            codes[rot] = encode(moves, rot);
+        int numberMoves = moves.size();
+        int exact = -1;
+        for (int i = m_exact.first(getCanonicalHash(codes)); i >= 0;
+             i = m_exact.next(i))
+        {
+            int id = m_exact.getValue(i);
+            int gameNumber = m_numberGames.get(id);
+            if (exact >= 0 && gameNumber >= exact)
+                continue;
+            if (! isCandidate(gameNumber, useAlternate, isAlternated))
+                continue;
+            if (getMinDifferent(codes, m_codes.get(id), 0) == 0)
+                exact = gameNumber;
+        }
+        if (exact >= 0)
+            return Integer.toString(exact);
+        int maxDifferent = numberMoves / 5;
+        if (maxDifferent == 0)
+            return "-";
+        ++m_stamp;
+        if (m_checked.length < m_numberGames.size())
+            m_checked = Arrays.copyOf(m_checked,
+                                      Math.max(2 * m_checked.length,
+                                               m_numberGames.size()));
+        int near = -1;
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            for (int block = 0; (block + 1) * BLOCK_SIZE <= numberMoves;
+                 ++block)
+            {
+                long hash = getBlockHash(codes[rot], block);
+                int numberCandidates = 0;
+                for (int i = m_blocks.first(hash);
+                     i >= 0 && numberCandidates < MAX_BUCKET_CANDIDATES;
+                     i = m_blocks.next(i), ++numberCandidates)
+                {
+                    int id = m_blocks.getValue(i);
+                    if (m_checked[id] == m_stamp)
+                        continue;
+                    m_checked[id] = m_stamp;
+                    int gameNumber = m_numberGames.get(id);
+                    if (near >= 0 && gameNumber >= near)
+                        continue;
+                    if (! isCandidate(gameNumber, useAlternate,
+                                      isAlternated))
+                        continue;
+                    if (getMinDifferent(codes, m_codes.get(id),
+                                        maxDifferent) < maxDifferent)
+                        near = gameNumber;
+                }
+            }
+        if (near >= 0)
+            return Integer.toString(near) + "?";
+        return "-";
+    }
+
+    /** Number of moves per block used for finding nearly identical games.
+        Must be at most 5, such that a game with less than 20% different
+        moves shares at least one block with the game to check. */
+    private static final int BLOCK_SIZE = 5;
+
+    /** Maximum number of games compared per block bucket. */
+    private static final int MAX_BUCKET_CANDIDATES = 256;
+
+    private final int m_size;
+
+    /** Current value for marking games in m_checked. */
+    private int m_stamp;
+
+    /** Marks games already compared in the current checkDuplicate. */
+    private int[] m_checked = new int[0];
+
+    /** Encoded moves (not rotated) by internal game ID. */
+    private final ArrayList<int[]> m_codes = new ArrayList<int[]>();
+
+    /** Game numbers by internal game ID. */
+    private final ArrayList<Integer> m_numberGames = new ArrayList<Integer>();
+
+    private final LongIntMultiMap m_exact = new LongIntMultiMap();
+
+    private final LongIntMultiMap m_blocks = new LongIntMultiMap();
+
+    /** Hash table from long keys to lists of int values.
+        Uses primitive arrays to keep the memory usage low for a large
+        number of games. */
+    private static final class LongIntMultiMap
+    {
+        public LongIntMultiMap()
+        {
+            allocate(64);
+        }
+
+        public void add(long key, int value)
+        {
+            if (m_numberEntries == m_values.length)
+            {
+                m_values = Arrays.copyOf(m_values, 2 * m_values.length);
+                m_next = Arrays.copyOf(m_next, 2 * m_next.length);
+            }
+            int i = find(key);
+            if (m_head[i] < 0)
+            {
+                if (2 * (m_numberKeys + 1) > m_keys.length)
+                {
+                    rehash();
+                    i = find(key);
+                }
+                m_keys[i] = key;
+                ++m_numberKeys;
+                m_last[i] = -1;
+            }
+            int entry = m_numberEntries++;
+            m_values[entry] = value;
+            m_next[entry] = -1;
+            // Append to keep the entries in insertion order
+            if (m_last[i] < 0)
+                m_head[i] = entry;
+            else
+                m_next[m_last[i]] = entry;
+            m_last[i] = entry;
+        }
+
+        /** Get first entry for a key.
+            @return The entry or -1, if key does not exist. */
+        public int first(long key)
+        {
+            return m_head[find(key)];
+        }
+
+        public int getValue(int entry)
+        {
+            return m_values[entry];
+        }
+
+        /** Get next entry with the same key.
+            @return The entry or -1, if there are no more entries. */
+        public int next(int entry)
+        {
+            return m_next[entry];
+        }
+
+        private int m_numberEntries;
+
+        private int m_numberKeys;
+
+        private int[] m_head;
+
+        private int[] m_last;
+
+        private int[] m_next = new int[64];
+
+        private int[] m_values = new int[64];
+
+        private long[] m_keys;
+
+        private void allocate(int capacity)
+        {
+            m_head = new int[capacity];
+            Arrays.fill(m_head, -1);
+            m_last = new int[capacity];
+            m_keys = new long[capacity];
+            m_numberKeys = 0;
+        }
+
+        /** Find slot of a key or the empty slot where it would be
+            inserted. */
+        private int find(long key)
+        {
+            int mask = m_keys.length - 1;
+            int i = (int)(key ^ (key >>> 32)) & mask;
+            while (m_head[i] >= 0 && m_keys[i] != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        private void rehash()
+        {
+            int[] head = m_head;
+            int[] last = m_last;
+            long[] keys = m_keys;
+            allocate(2 * keys.length);
+            for (int i = 0; i < keys.length; ++i)
+                if (head[i] >= 0)
+                {
+                    int j = find(keys[i]);
+                    m_head[j] = head[i];
+                    m_last[j] = last[i];
+                    m_keys[j] = keys[i];
+                    ++m_numberKeys;
+                }
+        }
+    }
+
+    private int[] encode(ArrayList<Compare.Placement> moves, int rot)
+    {
+        int[] result = new int[moves.size()];
+        for (int i = 0; i < result.length; ++i)
+        {
+            Compare.Placement move = moves.get(i);
+            GoPoint point = BoardUtil.rotate(rot, move.m_point, m_size);
+            int code = (point == null ? 0 : point.getIndex() + 1);
+            code = code * 3 + getColorCode(move.m_color);
+            code = code * 2 + (move.m_isSetup ? 1 : 0);
+            result[i] = code;
+        }
+        return result;
+    }
+
+    private static long getBlockHash(int[] codes, int block)
+    {
+        long hash = mix(block + 1);
+        for (int i = block * BLOCK_SIZE; i < (block + 1) * BLOCK_SIZE; ++i)
+            hash = mix(hash ^ codes[i]);
+        return hash;
+    }
+
+    /** Get the hash code of a move sequence that does not depend on the
+        rotation of the game. */
+    private long getCanonicalHash(ArrayList<Compare.Placement> moves)
+    {
+        int[][] codes = new int[BoardUtil.NUMBER_ROTATIONS][];
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            codes[rot] = encode(moves, rot);
+        return getCanonicalHash(codes);
+    }
+
+    private static long getCanonicalHash(int[][] codes)
+    {
+        long result = Long.MAX_VALUE;
+        for (int[] rotated : codes)
+        {
+            long hash = mix(rotated.length);
+            for (int code : rotated)
+                hash = mix(hash ^ code);
+            result = Math.min(result, hash);
+        }
+        return result;
+    }
+
+    private static int getColorCode(GoColor color)
+    {
+        if (color == GoColor.BLACK)
+            return 0;
+        if (color == GoColor.WHITE)
+            return 1;
+        return 2;
+    }
+
+    /** Get the minimum number of different moves over all rotations.
+        Counts differences like Compare.checkDuplicate.
+        @param codes The encoded moves of the game to check in all
+        rotations.
+        @param gameCodes The encoded moves of a game in the index.
+        @param maxDifferent Stop counting for a rotation if this number is
+        exceeded.
+        @return The minimum number of different moves (or a number greater
+        than maxDifferent) */
+    private static int getMinDifferent(int[][] codes, int[] gameCodes,
+                                       int maxDifferent)
+    {
+        int result = Integer.MAX_VALUE;
+        for (int[] rotated : codes)
+        {
+            int numberDifferent = Math.abs(gameCodes.length - rotated.length);
+            int numberMoves = Math.min(gameCodes.length, rotated.length);
+            for (int i = 0;
+                 numberDifferent <= maxDifferent && i < numberMoves; ++i)
+                if (rotated[i] != gameCodes[i])
+                    ++numberDifferent;
+            result = Math.min(result, numberDifferent);
+        }
+        return result;
+    }
+
+    private static boolean isCandidate(int gameNumber, boolean useAlternate,
+                                       boolean isAlternated)
+    {
+        return ! useAlternate || ((gameNumber % 2 != 0) == isAlternated);
+    }
+
+    private static long mix(long value)
+    {
+        // Finalizer of the MurmurHash3 64-bit hash function
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb53fe62a9ce3L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -3,12 +3,16 @@
 package net.sf.gogui.tools.twogtp;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.KoRule;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.FileUtil;
 import net.sf.gogui.util.Options;
+import net.sf.gogui.util.ProgressShow;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
 
@@ -37,18 +41,21 @@ public final class Main
                 "maxmoves:",
                 "observer:",
                 "openings:",
+                "pairing:",
+                "processes:",
                 "referee:",
                 "sgffile:",
                 "size:",
+                "superko:",
                 "threads:",
                 "time:",
+                "tournament:",
                 "verbose",
                 "version",
                 "white:",
                 "xml"
             };
             Options opt = Options.parse(args, options);
-            opt.checkNoArguments();
             if (opt.contains("help"))
             {
                 String helpText =
@@ -69,11 +76,15 @@ public final class Main
                    "-maxmoves       move limit\n" +
                    "-observer       command for observer program\n" +
                    "-openings       directory with opening sgf files\n" +
+                   "-pairing        tournament pairing (roundrobin|gauntlet)\n" +
+                   "-processes n    max. number of processes in tournament\n" +
                    "-referee        command for referee program\n" +
                    "-sgffile        filename prefix\n" +
                    "-size           board size for autoplay (default 19)\n" +
+                   "-superko rule   forbid repetitions (positional|situational)\n" +
                    "-threads n      number of threads\n" +
                    "-time spec      set time limits (min[+min/moves])\n" +
+                   "-tournament file file with program commands\n" +
                    "-verbose        log GTP streams to stderr\n" +
                    "-version        print version and exit\n" +
                    "-white          command for white program\n" +
@@ -84,9 +95,21 @@ public final class Main
             boolean compare = opt.contains("compare");
             if (compare)
             {
-                Compare.compare(opt.getArguments());
+                int numberThreads = opt.getInteger("threads", 1, 1);
+                Compare.compare(opt.getArguments(), numberThreads,
+                                new ProgressShow()
+                                {
+                                    public void showProgress(int percent)
+                                    {
+                                        System.err.print("\r" + percent
+                                                         + "%");
+                                        if (percent == 100)
+                                            System.err.println();
+                                    }
+                                });
                 System.exit(0);
             }
+            opt.checkNoArguments();
             if (opt.contains("version"))
             {
                 System.out.println("gogui-twogtp " + Version.get());
@@ -103,12 +126,6 @@ public final class Main
             boolean auto = opt.contains("auto");
             boolean debugToComment = opt.contains("debugtocomment");
             boolean verbose = opt.contains("verbose");
-            String black = opt.get("black", "");
-            if (black.equals(""))
-                throw new ErrorMessage("No black program set");
-            String white = opt.get("white", "");
-            if (white.equals(""))
-                throw new ErrorMessage("No white program set");
             String referee = opt.get("referee", "");
             String observer = opt.get("observer", "");
             int size = opt.getInteger("size", GoPoint.DEFAULT_SIZE, 1,
@@ -118,13 +135,22 @@ public final class Main
                 komi = Komi.parseKomi(opt.get("komi"));
             int handicap = opt.getInteger("handicap", 0, 0, 9);
             int maxMoves = opt.getInteger("maxmoves", 1000, -1);
+            KoRule koRule = KoRule.SIMPLE;
+            if (opt.contains("superko"))
+            {
+                koRule = KoRule.parse(opt.get("superko"));
+                if (koRule == null || koRule == KoRule.SIMPLE)
+                    throw new ErrorMessage("Invalid superko rule: "
+                                           + opt.get("superko"));
+            }
             TimeSettings timeSettings = null;
             if (opt.contains("time"))
                 timeSettings = TimeSettings.parse(opt.get("time"));
             int defaultGames = (auto ? 1 : 0);
             int numberGames = opt.getInteger("games", defaultGames, 0);
             int numberThreads = opt.getInteger("threads", 1, 1);
-            if (numberThreads > 1 && ! auto)
+            boolean tournament = opt.contains("tournament");
+            if (numberThreads > 1 && ! auto && ! tournament)
                 throw new ErrorMessage("Option -threads needs option -auto");
             String sgfFile = opt.get("sgffile", "");
             if (opt.contains("games") && sgfFile.equals(""))
@@ -133,6 +159,47 @@ public final class Main
             if (opt.contains("openings"))
                 openings = new Openings(new File(opt.get("openings")));
             boolean useXml = opt.contains("xml");
+            if (tournament)
+            {
+                if (sgfFile.equals(""))
+                    throw new ErrorMessage("Use option -sgffile with"
+                                           + " -tournament");
+                File file = new File(opt.get("tournament"));
+                ArrayList<String> commands;
+                try
+                {
+                    commands = FileUtil.readStringListFromFile(file);
+                }
+                catch (IOException e)
+                {
+                    throw new ErrorMessage("Could not read " + file + ": "
+                                           + e.getMessage());
+                }
+                String pairing = opt.get("pairing", "roundrobin");
+                if (! pairing.equals("roundrobin")
+                    && ! pairing.equals("gauntlet"))
+                    throw new ErrorMessage("Invalid pairing: " + pairing);
+                int programsPerGame = (referee.equals("") ? 2 : 3);
+                int maxProcesses =
+                    opt.getInteger("processes",
+                                   programsPerGame * numberThreads, 1);
+                File openingsDir = null;
+                if (opt.contains("openings"))
+                    openingsDir = new File(opt.get("openings"));
+                System.in.close();
+                new Tournament(commands, referee, pairing.equals("gauntlet"),
+                               numberGames, size, komi, handicap, maxMoves,
+                               koRule, alternate, sgfFile, force, verbose,
+                               openingsDir, timeSettings, useXml,
+                               numberThreads, maxProcesses).run();
+                return;
+            }
+            String black = opt.get("black", "");
+            if (black.equals(""))
+                throw new ErrorMessage("No black program set");
+            String white = opt.get("white", "");
+            if (white.equals(""))
+                throw new ErrorMessage("No white program set");
             if (auto)
                 System.in.close();
 
@@ -173,6 +240,7 @@ public final class Main
                                        verbose, openings, timeSettings,
                                        resultFile);
                 twoGtp[i].setMaxMoves(maxMoves);
+                twoGtp[i].setKoRule(koRule);
                 if (debugToComment)
                     twoGtp[i].setDebugToComment(true);
                 if (auto)
@@ -0,0 +1,228 @@
+// ProgramPool.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpError;
+
+/** Pool of running Go programs used by Tournament.
+    Keeps idle programs running between games, such that the next game of
+    the same program does not need to start a new process. The total
+    number of processes is bounded; if a program is needed and the limit
+    is reached, an idle process of another program is terminated. */
+class ProgramPool
+{
+    /** Constructor.
+        @param commands The commands for starting the programs. Programs
+        are identified by their index in this list.
+        @param maxProcesses The maximum number of running processes.
+        @param verbose Log GTP streams to stderr. */
+    public ProgramPool(ArrayList<String> commands, int maxProcesses,
+                       boolean verbose)
+    {
+        assert maxProcesses > 0;
+        m_commands = commands;
+        m_maxProcesses = maxProcesses;
+        m_verbose = verbose;
+        for (int i = 0; i < commands.size(); ++i)
+            m_idle.add(new ArrayList<Program>());
+    }
+
+    /** Get running programs for a game.
+        Waits until enough processes are available. The programs must be
+        given back with release() after the game.
+        @param programs The indices of the programs (must not contain
+        duplicates).
+        @return The programs in the same order. */
+    public Program[] acquire(int... programs)
+        throws GtpError, InterruptedException
+    {
+        assert programs.length <= m_maxProcesses;
+        Program[] result = new Program[programs.length];
+        ArrayList<Program> evicted = new ArrayList<Program>();
+        synchronized (this)
+        {
+            while (! isAvailable(programs))
+                wait();
+            for (int i = 0; i < programs.length; ++i)
+            {
+                ArrayList<Program> idle = m_idle.get(programs[i]);
+                if (! idle.isEmpty())
+                    result[i] = idle.remove(idle.size() - 1);
+                else
+                {
+                    if (m_numberProcesses == m_maxProcesses)
+                    {
+                        evicted.add(removeIdle(programs));
+                        --m_numberProcesses;
+                    }
+                    // Reserve the process, it is started below without
+                    // holding the lock
+                    ++m_numberProcesses;
+                }
+            }
+        }
+        for (Program program : evicted)
+            program.close();
+        try
+        {
+            for (int i = 0; i < programs.length; ++i)
+                if (result[i] == null)
+                    result[i] = start(programs[i]);
+        }
+        catch (GtpError e)
+        {
+            for (int i = 0; i < programs.length; ++i)
+                if (result[i] == null)
+                    discard(null);
+                else
+                    release(programs[i], result[i]);
+            throw e;
+        }
+        return result;
+    }
+
+    /** Add a program that was started with start() as an idle program.
+        If the maximum number of processes is reached, the program is
+        terminated. */
+    public void add(int index, Program program)
+    {
+        synchronized (this)
+        {
+            if (m_numberProcesses < m_maxProcesses)
+            {
+                ++m_numberProcesses;
+                m_idle.get(index).add(program);
+                notifyAll();
+                return;
+            }
+        }
+        program.close();
+    }
+
+    /** Terminate all idle programs. */
+    public void close()
+    {
+        ArrayList<Program> programs = new ArrayList<Program>();
+        synchronized (this)
+        {
+            for (ArrayList<Program> idle : m_idle)
+            {
+                programs.addAll(idle);
+                m_numberProcesses -= idle.size();
+                idle.clear();
+            }
+            notifyAll();
+        }
+        for (Program program : programs)
+            program.close();
+    }
+
+    /** Get a name for a program that does not respond to the name
+        command. */
+    public static String getDefaultName(int index)
+    {
+        return "Program" + (index + 1);
+    }
+
+    /** Get the number of idle programs with a given index. */
+    public synchronized int getNumberIdle(int index)
+    {
+        return m_idle.get(index).size();
+    }
+
+    /** Give back a program after a game.
+        Programs that died are removed from the pool.
+        @param index The index of the program.
+        @param program The program as returned by acquire(). */
+    public void release(int index, Program program)
+    {
+        if (program.isProgramDead())
+        {
+            discard(program);
+            return;
+        }
+        synchronized (this)
+        {
+            m_idle.get(index).add(program);
+            notifyAll();
+        }
+    }
+
+    /** Start a program without using a pool slot.
+        Used by Tournament for querying the names and versions of the
+        programs at the beginning of a tournament. The program can be
+        added to the pool with add(). */
+    public Program start(int index) throws GtpError
+    {
+        return new Program(m_commands.get(index), getDefaultName(index),
+                           "E" + (index + 1), m_verbose);
+    }
+
+    private final boolean m_verbose;
+
+    private final int m_maxProcesses;
+
+    /** Number of running processes, including reserved ones that are
+        still starting. */
+    private int m_numberProcesses;
+
+    private final ArrayList<String> m_commands;
+
+    /** Idle programs by index of the program.
+        The last element is the most recently used one. */
+    private final ArrayList<ArrayList<Program>> m_idle =
+        new ArrayList<ArrayList<Program>>();
+
+    private void discard(Program program)
+    {
+        synchronized (this)
+        {
+            --m_numberProcesses;
+            notifyAll();
+        }
+        if (program != null)
+            program.close();
+    }
+
+    /** Check if all programs can be provided now.
+        Must be called with the lock held. */
+    private boolean isAvailable(int[] programs)
+    {
+        int missing = 0;
+        for (int index : programs)
+            if (m_idle.get(index).isEmpty())
+                ++missing;
+        int evictable = 0;
+        for (int i = 0; i < m_idle.size(); ++i)
+            if (! contains(programs, i))
+                evictable += m_idle.get(i).size();
+        return missing <= m_maxProcesses - m_numberProcesses + evictable;
+    }
+
+    private static boolean contains(int[] array, int value)
+    {
+        for (int element : array)
+            if (element == value)
+                return true;
+        return false;
+    }
+
+    /** Remove an idle program that is not needed for the current request.
+        Prefers programs with the most idle processes.
+        Must be called with the lock held. */
+    private Program removeIdle(int[] programs)
+    {
+        int best = -1;
+        for (int i = 0; i < m_idle.size(); ++i)
+        {
+            if (contains(programs, i) || m_idle.get(i).isEmpty())
+                continue;
+            if (best < 0 || m_idle.get(i).size() > m_idle.get(best).size())
+                best = i;
+        }
+        assert best >= 0;
+        // Remove least recently used process of this program
+        return m_idle.get(best).remove(0);
+    }
+}
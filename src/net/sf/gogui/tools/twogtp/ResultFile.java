@@ -6,14 +6,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.io.Reader;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGame;
@@ -22,12 +23,20 @@ import net.sf.gogui.sgf.SgfError;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.LatencyHistogram;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
 import net.sf.gogui.xml.XmlWriter;
 import net.sf.gogui.version.Version;
 
+/** Result file of TwoGtp.
+    The results are stored in a table file <i>prefix.dat</i>. To avoid
+    rewriting the whole table after each game, new results are appended to
+    a journal file <i>prefix.journal</i>, which is merged into the table
+    file (compacted) periodically and when the result file is closed. If
+    TwoGtp was terminated before the journal was compacted, the journal
+    is merged into the table when the result file is opened again. */
 public class ResultFile
 {
     public ResultFile(boolean force, Program black, Program white,
@@ -39,19 +48,28 @@ public class ResultFile
         m_alternate = alternate;
         m_numberGames = numberGames;
         m_useXml = useXml;
-        m_numberThreads = numberThreads;
+        m_duplicateIndex = new DuplicateIndex(size);
         m_lockFile = new File(filePrefix + ".lock");
         acquireLock();
         m_tableFile = new File(filePrefix + ".dat");
+        m_journalFile = new File(filePrefix + ".journal");
         if (force)
         {
             if (m_tableFile.exists() && ! m_tableFile.delete())
                 throw new ErrorMessage("Could not delete file '"
                                        + m_tableFile + "'");
+            if (m_journalFile.exists() && ! m_journalFile.delete())
+                throw new ErrorMessage("Could not delete file '"
+                                       + m_journalFile + "'");
         }
         if (m_tableFile.exists())
         {
-            m_table = readTable(m_tableFile, numberGames, m_gameExists);
+            m_table = readTable(m_tableFile, m_journalFile, m_gameExists);
+            int numberRows = m_table.getNumberRows();
+            if (numberGames > 0 && numberRows >= numberGames)
+                throw new ErrorMessage("File " + m_tableFile
+                                       + " already contains " + numberRows
+                                       + " games");
             m_nextGameIndex = 0;
             while (m_gameExists.contains(m_nextGameIndex))
             {
@@ -66,9 +84,12 @@ public class ResultFile
         }
         else
         {
+            // A journal without table file cannot be used, because the
+            // table file is written before the first result is added
             m_table = createTable(black, white, referee, size, komi, openings);
             m_nextGameIndex = 0;
         }
+        compact();
     }
 
     public synchronized void addResult(int gameIndex, ConstGame game,
@@ -78,14 +99,15 @@ public class ResultFile
                                        boolean error, String errorMessage,
                                        double timeBlack, double timeWhite,
                                        double cpuTimeBlack,
-                                       double cpuTimeWhite)
+                                       double cpuTimeWhite,
+                                       LatencyHistogram latencyBlack,
+                                       LatencyHistogram latencyWhite)
         throws ErrorMessage
     {
         ArrayList<Compare.Placement> moves
             = Compare.getPlacements(game.getTree().getRootConst());
         String duplicate =
-            Compare.checkDuplicate(game.getBoard(), moves, m_games,
-                                   m_alternate, alternated);
+            m_duplicateIndex.checkDuplicate(moves, m_alternate, alternated);
         NumberFormat format = StringUtil.getNumberFormat(1);
         m_table.startRow();
         m_table.set("GAME", Integer.toString(gameIndex));
@@ -101,33 +123,25 @@ public class ResultFile
         m_table.set("CPU_W", format.format(cpuTimeWhite));
         m_table.set("ERR", error ? "1" : "0");
         m_table.set("ERR_MSG", errorMessage);
-
-        // The code does not rely on the table being sorted by game number,
-        // but it looks nicer for the user.
-        int rowEnd = m_table.getNumberRows();
-        int rowBegin = rowEnd - m_numberThreads;
-        if (rowBegin < 0)
-            rowBegin = 0;
-        // If the run was terminated and continued with a different number
-        // of threads, there could be a gap between gameIndex and
-        // getNumberRows() larger than m_numberThreads
-        if (gameIndex < rowBegin)
-            rowBegin = gameIndex;
-        m_table.sortByIntColumn("GAME", rowBegin, rowEnd);
-
-        File tmpFile = new File(m_tableFile.getAbsolutePath() + ".new");
-        try
+        // Tables of older versions don't have the latency columns
+        if (m_table.hasColumn("GENMOVE_P90_B"))
         {
-            m_table.save(tmpFile);
-            if (Platform.isWindows())
-                // File.renameTo() fails on Windows if target exists
-                m_tableFile.delete();
-            tmpFile.renameTo(m_tableFile);
-        }
-        catch (IOException e)
-        {
-            throw new ErrorMessage("Could not write to: " + m_tableFile);
+            NumberFormat format3 = StringUtil.getNumberFormat(3);
+            m_table.set("GENMOVE_P90_B",
+                        formatSeconds(format3,
+                                      latencyBlack.getPercentile(90)));
+            m_table.set("GENMOVE_P90_W",
+                        formatSeconds(format3,
+                                      latencyWhite.getPercentile(90)));
+            m_table.set("GENMOVE_MAX_B",
+                        formatSeconds(format3, latencyBlack.getMax()));
+            m_table.set("GENMOVE_MAX_W",
+                        formatSeconds(format3, latencyWhite.getMax()));
         }
+        appendJournal(m_table.getNumberRows() - 1);
+        if (m_journalRows >= Math.max(MIN_COMPACT_ROWS,
+                                      m_table.getNumberRows() / 8))
+            compact();
         File file = getFile(gameIndex);
         try
         {
@@ -138,7 +152,7 @@ public class ResultFile
             else
                 new SgfWriter(out, game.getTree(),
                               "gogui-twogtp", Version.get());
-            m_games.put(gameIndex, moves);
+            m_duplicateIndex.add(gameIndex, moves);
         }
         catch (FileNotFoundException e)
         {
@@ -147,8 +161,16 @@ public class ResultFile
         }
     }
 
-    public void close()
+    public synchronized void close()
     {
+        try
+        {
+            compact();
+        }
+        catch (ErrorMessage e)
+        {
+            System.err.println(e.getMessage());
+        }
         try
         {
             m_lockFileChannel.close();
@@ -161,6 +183,22 @@ public class ResultFile
             System.err.println("Could not delete '" + m_lockFile + "'");
     }
 
+    /** Check if an existing result file already contains all games.
+        @param filePrefix The file prefix as used in the constructor.
+        @param numberGames The number of games (0 for unlimited).
+        @return true, if the result file exists and contains numberGames
+        or more games. */
+    public static boolean isFinished(String filePrefix, int numberGames)
+        throws ErrorMessage
+    {
+        File file = new File(filePrefix + ".dat");
+        if (numberGames <= 0 || ! file.exists())
+            return false;
+        Table table = readTable(file, new File(filePrefix + ".journal"),
+                                new TreeSet<Integer>());
+        return table.getNumberRows() >= numberGames;
+    }
+
     public synchronized int getNextGameIndex()
     {
         if (m_nextGameIndex != -1)
@@ -178,6 +216,12 @@ public class ResultFile
         return m_nextGameIndex;
     }
 
+    /** Minimum number of journal rows before the journal is compacted.
+        The journal is also not compacted before it contains 1/8 of the
+        rows of the table, such that the total cost of rewriting the table
+        stays linear in the number of games. */
+    private static final int MIN_COMPACT_ROWS = 100;
+
     private final boolean m_alternate;
 
     private final boolean m_useXml;
@@ -188,20 +232,25 @@ public class ResultFile
 
     private final int m_numberGames;
 
-    private final int m_numberThreads;
+    /** Number of rows in the journal that are not yet in the table file. */
+    private int m_journalRows;
 
     private final String m_filePrefix;
 
     private final File m_tableFile;
 
+    private final File m_journalFile;
+
     private final File m_lockFile;
 
+    /** Output stream of the journal; null if journal is not open. */
+    private FileOutputStream m_journal;
+
     private FileChannel m_lockFileChannel;
 
     private final Table m_table;
 
-    private final TreeMap<Integer, ArrayList<Compare.Placement>> m_games
-        = new TreeMap<Integer, ArrayList<Compare.Placement>>();
+    private final DuplicateIndex m_duplicateIndex;
 
     private void acquireLock() throws ErrorMessage
     {
@@ -223,6 +272,73 @@ public class ResultFile
         }
     }
 
+    /** Append a row of the table to the journal.
+        The row is written with a single write and synced to the disk
+        before the function returns. */
+    private void appendJournal(int row) throws ErrorMessage
+    {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < m_table.getNumberColumns(); ++i)
+        {
+            if (i > 0)
+                line.append('\t');
+            String value = m_table.get(i, row);
+            if (value != null)
+                line.append(value);
+        }
+        line.append('\n');
+        try
+        {
+            if (m_journal == null)
+                m_journal = new FileOutputStream(m_journalFile, true);
+            m_journal.write(line.toString().getBytes());
+            m_journal.getFD().sync();
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_journalFile);
+        }
+        ++m_journalRows;
+    }
+
+    /** Write the table file and delete the journal.
+        The journal is deleted only after the new table file was
+        successfully renamed, and rows of the journal that already exist in
+        the table are ignored when the journal is read, so a crash at any
+        point does not lose or duplicate results. */
+    private void compact() throws ErrorMessage
+    {
+        if (m_journalRows == 0 && m_tableFile.exists()
+            && ! m_journalFile.exists())
+            return;
+        // The code does not rely on the table being sorted by game number,
+        // but it looks nicer for the user.
+        m_table.sortByIntColumn("GAME", 0, m_table.getNumberRows());
+        File tmpFile = new File(m_tableFile.getAbsolutePath() + ".new");
+        try
+        {
+            m_table.save(tmpFile);
+            if (Platform.isWindows())
+                // File.renameTo() fails on Windows if target exists
+                m_tableFile.delete();
+            if (! tmpFile.renameTo(m_tableFile))
+                throw new ErrorMessage("Could not rename " + tmpFile);
+            if (m_journal != null)
+            {
+                m_journal.close();
+                m_journal = null;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_tableFile);
+        }
+        if (m_journalFile.exists() && ! m_journalFile.delete())
+            throw new ErrorMessage("Could not delete file '" + m_journalFile
+                                   + "'");
+        m_journalRows = 0;
+    }
+
     private Table createTable(Program black, Program white, Program referee,
                               int size, Komi komi, Openings openings)
     {
@@ -240,13 +356,17 @@ public class ResultFile
         columns.add("CPU_W");
         columns.add("ERR");
         columns.add("ERR_MSG");
+        columns.add("GENMOVE_P90_B");
+        columns.add("GENMOVE_P90_W");
+        columns.add("GENMOVE_MAX_B");
+        columns.add("GENMOVE_MAX_W");
         Table table = new Table(columns);
-        black.setTableProperties(table);
-        white.setTableProperties(table);
+        black.setTableProperties(table, "Black");
+        white.setTableProperties(table, "White");
         if (referee == null)
             table.setProperty("Referee", "-");
         else
-            referee.setTableProperties(table);
+            referee.setTableProperties(table, "Referee");
         table.setProperty("Size", Integer.toString(size));
         table.setProperty("Komi", komi.toString());
         if (openings != null)
@@ -259,6 +379,11 @@ public class ResultFile
         return table;
     }
 
+    private static String formatSeconds(NumberFormat format, long nanos)
+    {
+        return format.format(nanos / 1e9);
+    }
+
     private File getFile(int gameIndex)
     {
         if (m_useXml)
@@ -286,7 +411,7 @@ public class ResultFile
                 FileInputStream fileStream = new FileInputStream(file);
                 SgfReader reader = new SgfReader(fileStream, file, null, 0);
                 ConstNode root = reader.getTree().getRoot();
-                m_games.put(n, Compare.getPlacements(root));
+                m_duplicateIndex.add(n, Compare.getPlacements(root));
             }
             catch (SgfError e)
             {
@@ -301,7 +426,68 @@ public class ResultFile
         }
     }
 
-    private static Table readTable(File file, int numberGames,
+    /** Read the rows of a journal into the table.
+        Incomplete lines at the end of the journal (from a crash during a
+        write) and rows of games that already exist in the table are
+        ignored. */
+    private static void readJournal(File file, Table table,
+                                    TreeSet<Integer> gameExists)
+        throws ErrorMessage
+    {
+        StringBuilder buffer = new StringBuilder();
+        try
+        {
+            Reader reader = new FileReader(file);
+            try
+            {
+                char[] chars = new char[8192];
+                int n;
+                while ((n = reader.read(chars)) > 0)
+                    buffer.append(chars, 0, n);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Read error: " + file);
+        }
+        int numberColumns = table.getNumberColumns();
+        int gameColumn = table.getColumnIndex("GAME");
+        int begin = 0;
+        int end;
+        while ((end = buffer.indexOf("\n", begin)) >= 0)
+        {
+            String line = buffer.substring(begin, end);
+            begin = end + 1;
+            String[] values = line.split("\t", -1);
+            if (values.length != numberColumns)
+            {
+                System.err.println("Invalid line in " + file + ": " + line);
+                continue;
+            }
+            int gameIndex;
+            try
+            {
+                gameIndex = Integer.parseInt(values[gameColumn]);
+            }
+            catch (NumberFormatException e)
+            {
+                System.err.println("Invalid line in " + file + ": " + line);
+                continue;
+            }
+            if (gameIndex < 0 || gameExists.contains(gameIndex))
+                continue;
+            gameExists.add(gameIndex);
+            table.startRow();
+            for (int i = 0; i < numberColumns; ++i)
+                table.set(i, values[i]);
+        }
+    }
+
+    private static Table readTable(File file, File journalFile,
                                    TreeSet<Integer> gameExists)
         throws ErrorMessage
     {
@@ -310,9 +496,6 @@ public class ResultFile
         {
             table.read(file);
             int numberRows = table.getNumberRows();
-            if (numberGames > 0 && numberRows >= numberGames)
-                throw new ErrorMessage("File " + file + " already contains "
-                                       + numberRows + " games");
             for (int i = 0; i < numberRows; ++i)
             {
                 int gameIndex = Integer.parseInt(table.get("GAME", i));
@@ -333,6 +516,8 @@ public class ResultFile
         {
             throw new ErrorMessage("Read error: " + file);
         }
+        if (journalFile.exists())
+            readJournal(journalFile, table, gameExists);
         return table;
     }
 }
@@ -0,0 +1,344 @@
+// Tournament.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.File;
+import java.util.ArrayList;
+import net.sf.gogui.game.TimeSettings;
+import net.sf.gogui.go.KoRule;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Tournament between several Go programs.
+    Plays the games of all pairings of a round-robin or gauntlet tournament
+    with a number of threads that play games in parallel. The programs are
+    taken from a ProgramPool, such that running processes are reused for
+    the next game instead of being restarted. Each pairing has its own
+    result file <i>prefix-i-j.dat</i> (<i>i</i> and <i>j</i> are the
+    numbers of the programs starting with 1), which is updated after each
+    game, and can be continued like the result file of a normal TwoGtp
+    run. */
+public class Tournament
+{
+    /** Constructor.
+        @param commands The commands of the programs.
+        @param referee The command of the referee program or an empty
+        string.
+        @param gauntlet If true, the first program plays against all other
+        programs; otherwise every program plays against every other
+        program.
+        @param numberGames The number of games per pairing (0 for
+        unlimited).
+        @param numberThreads The number of games played in parallel.
+        @param maxProcesses The maximum number of running program
+        processes. Must be at least the number of programs per game times
+        numberThreads. */
+    public Tournament(ArrayList<String> commands, String referee,
+                      boolean gauntlet, int numberGames, int size, Komi komi,
+                      int handicap, int maxMoves, KoRule koRule,
+                      boolean alternate, String filePrefix, boolean force,
+                      boolean verbose, File openings,
+                      TimeSettings timeSettings, boolean useXml,
+                      int numberThreads, int maxProcesses)
+        throws ErrorMessage
+    {
+        if (commands.size() < 2)
+            throw new ErrorMessage("Tournament needs at least two programs");
+        m_numberPrograms = commands.size();
+        m_hasReferee = ! referee.equals("");
+        int programsPerGame = (m_hasReferee ? 3 : 2);
+        if (maxProcesses < programsPerGame * numberThreads)
+            throw new ErrorMessage("Number of processes must be at least "
+                                   + programsPerGame * numberThreads);
+        m_gauntlet = gauntlet;
+        m_numberGames = numberGames;
+        m_size = size;
+        m_komi = komi;
+        m_handicap = handicap;
+        m_maxMoves = maxMoves;
+        m_koRule = koRule;
+        m_alternate = alternate;
+        m_filePrefix = filePrefix;
+        m_force = force;
+        m_verbose = verbose;
+        m_openings = openings;
+        m_timeSettings = timeSettings;
+        m_useXml = useXml;
+        m_numberThreads = numberThreads;
+        ArrayList<String> poolCommands = new ArrayList<String>(commands);
+        if (m_hasReferee)
+            poolCommands.add(referee);
+        m_pool = new ProgramPool(poolCommands, maxProcesses, verbose);
+    }
+
+    /** Play all games of the tournament.
+        Returns after all games were played or if an error occurred. */
+    public void run() throws Exception
+    {
+        createMatches();
+        WorkerThread[] threads = new WorkerThread[m_numberThreads];
+        for (int i = 0; i < m_numberThreads; ++i)
+        {
+            threads[i] = new WorkerThread(this);
+            threads[i].start();
+        }
+        Exception exception = null;
+        for (int i = 0; i < m_numberThreads; ++i)
+        {
+            threads[i].join();
+            if (threads[i].getException() != null && exception == null)
+                exception = threads[i].getException();
+        }
+        m_pool.close();
+        for (Match match : m_matches)
+            match.m_resultFile.close();
+        if (exception != null)
+            throw exception;
+    }
+
+    /** A pairing of two programs. */
+    private static final class Match
+    {
+        public final int m_black;
+
+        public final int m_white;
+
+        public final String m_filePrefix;
+
+        public final ResultFile m_resultFile;
+
+        public boolean m_isFinished;
+
+        public Match(int black, int white, String filePrefix,
+                     ResultFile resultFile)
+        {
+            m_black = black;
+            m_white = white;
+            m_filePrefix = filePrefix;
+            m_resultFile = resultFile;
+        }
+    }
+
+    private static final class WorkerThread
+        extends Thread
+    {
+        public WorkerThread(Tournament tournament)
+        {
+            m_tournament = tournament;
+        }
+
+        public Exception getException()
+        {
+            return m_exception;
+        }
+
+        public void run()
+        {
+            try
+            {
+                m_tournament.playGames();
+            }
+            catch (Exception e)
+            {
+                m_exception = e;
+                // Let the other threads finish their current game
+                m_tournament.stop();
+            }
+        }
+
+        private Exception m_exception;
+
+        private final Tournament m_tournament;
+    }
+
+    private final boolean m_alternate;
+
+    private final boolean m_force;
+
+    private final boolean m_gauntlet;
+
+    private final boolean m_hasReferee;
+
+    /** Set if a thread terminated with an error.
+        Access only through synchronized functions. */
+    private boolean m_stop;
+
+    private final boolean m_useXml;
+
+    private final boolean m_verbose;
+
+    private final int m_handicap;
+
+    private final int m_maxMoves;
+
+    /** Index of the match to be considered first for the next game.
+        Access only through synchronized functions. */
+    private int m_nextMatch;
+
+    private final int m_numberGames;
+
+    private final int m_numberPrograms;
+
+    private final int m_numberThreads;
+
+    private final int m_size;
+
+    private final File m_openings;
+
+    private final KoRule m_koRule;
+
+    private final Komi m_komi;
+
+    private final ProgramPool m_pool;
+
+    private final String m_filePrefix;
+
+    private final TimeSettings m_timeSettings;
+
+    private final ArrayList<Match> m_matches = new ArrayList<Match>();
+
+    private void addMatch(int black, int white, ArrayList<Program> programs,
+                          Program referee, Openings openings)
+        throws ErrorMessage
+    {
+        String filePrefix = m_filePrefix + "-" + (black + 1) + "-"
+            + (white + 1);
+        if (! m_force && ResultFile.isFinished(filePrefix, m_numberGames))
+        {
+            System.err.println("All games of " + filePrefix
+                               + " already played");
+            return;
+        }
+        ResultFile resultFile =
+            new ResultFile(m_force, programs.get(black), programs.get(white),
+                           referee, m_numberGames, m_size, m_komi,
+                           filePrefix, openings, m_alternate, m_useXml,
+                           m_numberThreads);
+        m_matches.add(new Match(black, white, filePrefix, resultFile));
+    }
+
+    /** Create the matches and their result files.
+        Starts one process of each program for querying the names and
+        versions that are stored in the result files. The processes are
+        added to the pool. */
+    private void createMatches() throws Exception
+    {
+        ArrayList<Program> programs = new ArrayList<Program>();
+        ArrayList<Program> labelPrograms = new ArrayList<Program>();
+        for (int i = 0; i < m_numberPrograms; ++i)
+            programs.add(m_pool.start(i));
+        labelPrograms.addAll(programs);
+        Program referee = null;
+        if (m_hasReferee)
+        {
+            referee = m_pool.start(m_numberPrograms);
+            labelPrograms.add(referee);
+        }
+        for (Program program : labelPrograms)
+            program.setLabel(labelPrograms);
+        Openings openings = null;
+        if (m_openings != null)
+            openings = new Openings(m_openings);
+        try
+        {
+            if (m_gauntlet)
+                for (int i = 1; i < m_numberPrograms; ++i)
+                    addMatch(0, i, programs, referee, openings);
+            else
+                for (int i = 0; i < m_numberPrograms; ++i)
+                    for (int j = i + 1; j < m_numberPrograms; ++j)
+                        addMatch(i, j, programs, referee, openings);
+        }
+        catch (ErrorMessage e)
+        {
+            for (Match match : m_matches)
+                match.m_resultFile.close();
+            throw e;
+        }
+        finally
+        {
+            for (int i = 0; i < m_numberPrograms; ++i)
+                m_pool.add(i, programs.get(i));
+            if (referee != null)
+                m_pool.add(m_numberPrograms, referee);
+        }
+    }
+
+    /** Choose a match for the next game and reserve a game index.
+        Prefers matches whose programs have idle processes in the pool.
+        @return The match or null, if all games were played. The reserved
+        game index is stored in gameIndex[0]. */
+    private synchronized Match nextMatch(int[] gameIndex)
+    {
+        while (! m_stop)
+        {
+            Match result = null;
+            int n = m_matches.size();
+            for (int k = 0; k < n; ++k)
+            {
+                Match match = m_matches.get((m_nextMatch + k) % n);
+                if (match.m_isFinished)
+                    continue;
+                if (result == null)
+                    result = match;
+                if (m_pool.getNumberIdle(match.m_black) > 0
+                    && m_pool.getNumberIdle(match.m_white) > 0)
+                {
+                    result = match;
+                    break;
+                }
+            }
+            if (result == null)
+                return null;
+            m_nextMatch = (m_matches.indexOf(result) + 1) % n;
+            gameIndex[0] = result.m_resultFile.getNextGameIndex();
+            if (gameIndex[0] >= 0)
+                return result;
+            result.m_isFinished = true;
+        }
+        return null;
+    }
+
+    private void playGames() throws Exception
+    {
+        Openings openings = null;
+        if (m_openings != null)
+            openings = new Openings(m_openings);
+        int[] gameIndex = new int[1];
+        while (true)
+        {
+            Match match = nextMatch(gameIndex);
+            if (match == null)
+                return;
+            int[] indices;
+            if (m_hasReferee)
+                indices = new int[] { match.m_black, match.m_white,
+                                      m_numberPrograms };
+            else
+                indices = new int[] { match.m_black, match.m_white };
+            Program[] programs = m_pool.acquire(indices);
+            try
+            {
+                Program referee = (m_hasReferee ? programs[2] : null);
+                TwoGtp twoGtp =
+                    new TwoGtp(programs[0], programs[1], referee, "", m_size,
+                               m_komi, m_handicap, m_numberGames,
+                               m_alternate, match.m_filePrefix, m_verbose,
+                               openings, m_timeSettings, match.m_resultFile);
+                twoGtp.setMaxMoves(m_maxMoves);
+                twoGtp.setKoRule(m_koRule);
+                twoGtp.playGame(gameIndex[0]);
+            }
+            finally
+            {
+                for (int i = 0; i < indices.length; ++i)
+                    m_pool.release(indices[i], programs[i]);
+            }
+        }
+    }
+
+    private synchronized void stop()
+    {
+        m_stop = true;
+    }
+}
@@ -15,6 +15,7 @@ import static net.sf.gogui.go.GoColor.WHITE;
 
 import net.sf.gogui.gtp.*;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.LatencyHistogram;
 import net.sf.gogui.util.ObjectUtil;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
@@ -101,6 +102,30 @@ public class TwoGtp
             program.close();
     }
 
+    /** Play a single game in autoplay mode.
+        Used by Tournament, which assigns the game indices itself and
+        reuses the programs for other games. The result is added to the
+        result file.
+        @param gameIndex The index of the game. */
+    public void playGame(int gameIndex) throws ErrorMessage
+    {
+        assert gameIndex >= 0;
+        StringBuilder response = new StringBuilder(256);
+        try
+        {
+            startGame(new BoardParameters(m_size), gameIndex);
+            while (! gameOver())
+            {
+                response.setLength(0);
+                sendGenmove(getToMove(), response);
+            }
+        }
+        catch (GtpError e)
+        {
+            handleEndOfGame(true, e.getMessage());
+        }
+    }
+
     public void handleCommand(GtpCommand cmd) throws GtpError
     {
         String command = cmd.getCommand();
@@ -251,6 +276,16 @@ public class TwoGtp
         }
     }
 
+    /** Set the rule for forbidding repetitions.
+        Moves generated by the programs that violate a superko rule
+        terminate the game with an error.
+        @param koRule The ko rule. */
+    public void setKoRule(KoRule koRule)
+    {
+        m_koRule = koRule;
+        m_game.setKoRule(koRule);
+    }
+
     /** Limit number of moves.
         @param maxMoves Maximum number of moves after which genmove will fail,
         -1 for no limit. */
@@ -267,6 +302,8 @@ public class TwoGtp
 
     private int m_maxMoves = -1;
 
+    private KoRule m_koRule = KoRule.SIMPLE;
+
     private int m_gameIndex;
 
     private boolean m_resigned;
@@ -301,6 +338,11 @@ public class TwoGtp
     private final BlackWhiteSet<Double> m_realTime =
         new BlackWhiteSet<Double>(0., 0.);
 
+    /** Latencies of the genmove commands in the current game. */
+    private final BlackWhiteSet<LatencyHistogram> m_latency =
+        new BlackWhiteSet<LatencyHistogram>(new LatencyHistogram(),
+                                            new LatencyHistogram());
+
     private String m_openingFile;
 
     private final String m_filePrefix;
@@ -371,6 +413,8 @@ public class TwoGtp
         checkInconsistentState();
         GoColor color = cmd.getColorArg(0);
         GoPoint point = cmd.getPointArg(1, m_size);
+        if (getBoard().isRepetition(color, point))
+            throw new GtpError("illegal move (superko)");
         Move move = Move.get(color, point);
         m_game.play(move);
         synchronize();
@@ -485,6 +529,8 @@ public class TwoGtp
         double cpuTimeWhite = m_white.getAndClearCpuTime();
         double realTimeBlack = m_realTime.get(BLACK);
         double realTimeWhite = m_realTime.get(WHITE);
+        LatencyHistogram latencyBlack = m_latency.get(BLACK);
+        LatencyHistogram latencyWhite = m_latency.get(WHITE);
         // If a program is dead we wait for a few seconds, because it
         // could be because the TwoGtp process was killed and we don't
         // want to write a result in this case.
@@ -558,6 +604,8 @@ public class TwoGtp
             resultReferee = inverseResult(resultReferee);
             realTimeBlack = m_realTime.get(WHITE);
             realTimeWhite = m_realTime.get(BLACK);
+            latencyBlack = m_latency.get(WHITE);
+            latencyWhite = m_latency.get(BLACK);
         }
         int moveNumber = NodeUtil.getMoveNumber(getCurrentNode());
         if (m_resultFile != null)
@@ -565,14 +613,17 @@ public class TwoGtp
                                    resultWhite, resultReferee, isAlternated(),
                                    moveNumber, error, errorMessage,
                                    realTimeBlack, realTimeWhite, cpuTimeBlack,
-                                   cpuTimeWhite);
+                                   cpuTimeWhite, latencyBlack, latencyWhite);
     }
 
     private void initGame(BoardParameters parameters) throws GtpError
     {
         m_game = new Game(parameters, m_komi, Board.getHandicapStones(parameters.size(), m_handicap), null, null); // TODO: GetHandicapStones should take width & height as parameters
+        m_game.setKoRule(m_koRule);
         m_realTime.set(BLACK, 0.);
         m_realTime.set(WHITE, 0.);
+        m_latency.get(BLACK).clear();
+        m_latency.get(WHITE).clear();
         // Clock is not needed
         m_game.haltClock();
         m_resigned = false;
@@ -658,14 +709,22 @@ public class TwoGtp
 
     private void newGame(BoardParameters parameters) throws GtpError
     {
+        int gameIndex;
         if (m_resultFile != null)
-            m_gameIndex = m_resultFile.getNextGameIndex();
+            gameIndex = m_resultFile.getNextGameIndex();
         else
         {
-            ++m_gameIndex;
-            if (m_numberGames > 0 && m_gameIndex > m_numberGames)
-                m_gameIndex = -1;
+            gameIndex = m_gameIndex + 1;
+            if (m_numberGames > 0 && gameIndex > m_numberGames)
+                gameIndex = -1;
         }
+        startGame(parameters, gameIndex);
+    }
+
+    private void startGame(BoardParameters parameters, int gameIndex)
+        throws GtpError
+    {
+        m_gameIndex = gameIndex;
         if (m_gameIndex == -1)
             throw new GtpError("maximum number of games reached");
         if (m_verbose)
@@ -716,10 +775,11 @@ public class TwoGtp
         else
             program = m_black;
         clearDebugToCommentBuffers();
-        long timeMillis = System.currentTimeMillis();
+        long timeNanos = System.nanoTime();
         String responseGenmove = program.sendCommandGenmove(color);
-        double time = (System.currentTimeMillis() - timeMillis) / 1000.;
-        m_realTime.set(color, m_realTime.get(color) + time);
+        timeNanos = System.nanoTime() - timeNanos;
+        m_realTime.set(color, m_realTime.get(color) + timeNanos / 1e9);
+        m_latency.get(color).add(timeNanos);
         if (responseGenmove.equalsIgnoreCase("resign"))
         {
             response.append("resign");
@@ -740,6 +800,10 @@ public class TwoGtp
                                    + " played invalid move: "
                                    + responseGenmove);
             }
+            if (board.isRepetition(color, point))
+                throw new GtpError(program.getLabel()
+                                   + " played illegal move (superko): "
+                                   + responseGenmove);
             Move move = Move.get(color, point);
             m_game.play(move);
             program.updateAfterGenmove(board);
@@ -0,0 +1,162 @@
+// ChannelCopy.java
+
+package net.sf.gogui.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+/** Thread copying the data of one channel to another channel.
+    Channel version of StreamCopy. Uses a direct buffer, so that no copy
+    to the Java heap is needed for socket and file channels, and
+    FileChannel.transferTo if the source is a file channel and the data is
+    not logged. Channels created with Channels.newChannel from streams, like
+    the streams of a process, still copy through a buffer on the Java
+    heap. */
+public class ChannelCopy
+    implements Runnable
+{
+    /** Constructor.
+        @param log Stream to copy everything to (e.g. System.err) or null
+        @param src Source channel
+        @param dest Destination channel
+        @param close Close destination after end of source. Socket channels
+        are only shut down for output. */
+    public ChannelCopy(PrintStream log, ReadableByteChannel src,
+                       WritableByteChannel dest, boolean close)
+    {
+        m_log = log;
+        m_src = src;
+        m_dest = dest;
+        m_close = close;
+    }
+
+    /** Create a channel that flushes the stream after each write.
+        Channels.newChannel does not flush, which is needed for buffered
+        streams like the input stream of a process. The data is copied to
+        a buffer on the Java heap before it is written to the stream. */
+    public static WritableByteChannel newFlushingChannel(OutputStream out)
+    {
+        final OutputStream stream = out;
+        final WritableByteChannel channel = Channels.newChannel(out);
+        return new WritableByteChannel()
+            {
+                public int write(ByteBuffer buffer) throws IOException
+                {
+                    int n = channel.write(buffer);
+                    stream.flush();
+                    return n;
+                }
+
+                public boolean isOpen()
+                {
+                    return channel.isOpen();
+                }
+
+                public void close() throws IOException
+                {
+                    channel.close();
+                }
+            };
+    }
+
+    /** Run method.
+        Exceptions caught are written to stderr. */
+    public void run()
+    {
+        try
+        {
+            if (m_log == null && m_src instanceof FileChannel
+                && isSeekable((FileChannel)m_src))
+                transfer((FileChannel)m_src);
+            else
+                copy();
+        }
+        catch (Throwable e)
+        {
+            StringUtil.printException(e);
+        }
+        finally
+        {
+            if (m_close)
+            {
+                try
+                {
+                    if (m_dest instanceof SocketChannel)
+                        ((SocketChannel)m_dest).shutdownOutput();
+                    else
+                        m_dest.close();
+                }
+                catch (IOException e)
+                {
+                    StringUtil.printException(e);
+                }
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final boolean m_close;
+
+    private final PrintStream m_log;
+
+    private final ReadableByteChannel m_src;
+
+    private final WritableByteChannel m_dest;
+
+    private void copy() throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        byte[] logBuffer = null;
+        if (m_log != null)
+            logBuffer = new byte[BUFFER_SIZE];
+        while (m_src.read(buffer) >= 0)
+        {
+            buffer.flip();
+            if (m_log != null)
+            {
+                int n = buffer.remaining();
+                buffer.get(logBuffer, 0, n);
+                m_log.write(logBuffer, 0, n);
+                buffer.rewind();
+            }
+            while (buffer.hasRemaining())
+                m_dest.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /** Check if a file channel is a regular file.
+        Pipes and terminals (e.g. standard input) do not support positions,
+        which are needed for FileChannel.transferTo. */
+    private static boolean isSeekable(FileChannel channel)
+    {
+        try
+        {
+            channel.position();
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /** Copy with FileChannel.transferTo.
+        Copies from the current position to the end of the file. Like
+        reading a file stream, the copy ends when the end of the file is
+        reached; data appended to the file later is not copied. */
+    private void transfer(FileChannel src) throws IOException
+    {
+        long position = src.position();
+        while (position < src.size())
+            position += src.transferTo(position, BUFFER_SIZE, m_dest);
+    }
+}
@@ -0,0 +1,136 @@
+// LatencyHistogram.java
+
+package net.sf.gogui.util;
+
+/** Histogram of durations with logarithmic intervals.
+    The durations are stored in nanoseconds. Each power of two is divided
+    into eight intervals, so percentiles have a relative error of at most
+    12.5 percent, independent of the range of the durations. Histograms
+    can be merged, e.g. to combine the results of several runs. */
+public final class LatencyHistogram
+{
+    public LatencyHistogram()
+    {
+    }
+
+    /** Copy constructor. */
+    public LatencyHistogram(LatencyHistogram histogram)
+    {
+        add(histogram);
+    }
+
+    /** Add a duration.
+        @param nanos The duration in nanoseconds. Negative values are
+        treated as zero. */
+    public void add(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+        ++m_counts[getIndex(nanos)];
+        ++m_count;
+        m_sum += nanos;
+        m_max = Math.max(m_max, nanos);
+    }
+
+    /** Add all durations of another histogram. */
+    public void add(LatencyHistogram histogram)
+    {
+        for (int i = 0; i < SIZE; ++i)
+            m_counts[i] += histogram.m_counts[i];
+        m_count += histogram.m_count;
+        m_sum += histogram.m_sum;
+        m_max = Math.max(m_max, histogram.m_max);
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < SIZE; ++i)
+            m_counts[i] = 0;
+        m_count = 0;
+        m_sum = 0;
+        m_max = 0;
+    }
+
+    /** Get number of durations added. */
+    public long getCount()
+    {
+        return m_count;
+    }
+
+    /** Get maximum duration in nanoseconds.
+        @return The maximum or 0, if no durations were added. */
+    public long getMax()
+    {
+        return m_max;
+    }
+
+    /** Get mean duration in nanoseconds.
+        @return The mean or 0, if no durations were added. */
+    public double getMean()
+    {
+        if (m_count == 0)
+            return 0;
+        return (double)m_sum / m_count;
+    }
+
+    /** Get a percentile in nanoseconds.
+        Returns the upper limit of the interval containing the percentile,
+        but not more than the maximum duration.
+        @param percent The percentile in [0..100].
+        @return The percentile or 0, if no durations were added. */
+    public long getPercentile(double percent)
+    {
+        assert percent >= 0 && percent <= 100;
+        if (m_count == 0)
+            return 0;
+        long rank = Math.max(1, (long)Math.ceil(percent / 100 * m_count));
+        long sum = 0;
+        for (int i = 0; i < SIZE; ++i)
+        {
+            sum += m_counts[i];
+            if (sum >= rank)
+                return Math.min(getUpperLimit(i), m_max);
+        }
+        return m_max;
+    }
+
+    /** Get sum of all durations in nanoseconds. */
+    public long getSum()
+    {
+        return m_sum;
+    }
+
+    /** Number of bits for dividing a power of two into intervals. */
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_SIZE = 1 << SUB_BITS;
+
+    private static final int SIZE = (64 - SUB_BITS) * SUB_SIZE;
+
+    private long m_count;
+
+    private long m_max;
+
+    private long m_sum;
+
+    private final long[] m_counts = new long[SIZE];
+
+    private static int getIndex(long nanos)
+    {
+        if (nanos < SUB_SIZE)
+            return (int)nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = exponent - SUB_BITS;
+        int sub = (int)(nanos >>> shift) & (SUB_SIZE - 1);
+        return (shift + 1) * SUB_SIZE + sub;
+    }
+
+    private static long getUpperLimit(int index)
+    {
+        if (index < SUB_SIZE)
+            return index;
+        int shift = index / SUB_SIZE - 1;
+        long sub = SUB_SIZE + index % SUB_SIZE;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,203 @@
+// StringCache.java
+
+package net.sf.gogui.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Cache mapping strings to strings.
+    The least recently used entries are removed if the cache is full.
+    Optionally, the entries are stored in a file, which is read at
+    construction time. The file is then rewritten with only the entries
+    that fit into the cache. New entries are appended to the file, and the
+    most recently added ones win when the file is read. If the file
+    contains more than twice the maximum number of entries, it is rewritten
+    again. A last line without a line ending, which is left if the program
+    was terminated while appending, is ignored. */
+public final class StringCache
+{
+    /** Constructor.
+        @param maxSize Maximum number of entries in memory.
+        @param file File for storing the entries or null. */
+    public StringCache(int maxSize, File file) throws IOException
+    {
+        assert maxSize > 0;
+        m_maxSize = maxSize;
+        m_file = file;
+        final int max = maxSize;
+        m_map = new LinkedHashMap<String,String>(16, 0.75f, true)
+            {
+                protected boolean removeEldestEntry(Map.Entry<String,
+                                                    String> eldest)
+                {
+                    return size() > max;
+                }
+            };
+        if (file != null)
+        {
+            if (file.exists())
+                read(file);
+            compact();
+        }
+    }
+
+    public synchronized void close()
+    {
+        if (m_out != null)
+            m_out.close();
+    }
+
+    /** Get a cached value.
+        @return The value or null, if not in the cache. */
+    public synchronized String get(String key)
+    {
+        String value = m_map.get(key);
+        if (value == null)
+            ++m_misses;
+        else
+            ++m_hits;
+        return value;
+    }
+
+    public synchronized int getHits()
+    {
+        return m_hits;
+    }
+
+    public synchronized int getMisses()
+    {
+        return m_misses;
+    }
+
+    /** Add a value.
+        Also appends it to the file, if the cache has a file. */
+    public synchronized void put(String key, String value)
+    {
+        m_map.put(key, value);
+        if (m_out != null)
+        {
+            m_out.print(escape(key) + "\t" + escape(value) + "\n");
+            m_out.flush();
+            if (++m_numberLines > 2 * m_maxSize)
+            {
+                try
+                {
+                    compact();
+                }
+                catch (IOException e)
+                {
+                    // Keep appending to the old file and try again later
+                    m_numberLines = 0;
+                }
+            }
+        }
+    }
+
+    public synchronized int size()
+    {
+        return m_map.size();
+    }
+
+    private final int m_maxSize;
+
+    private int m_hits;
+
+    /** Number of entries in the file. */
+    private int m_numberLines;
+
+    private int m_misses;
+
+    private final LinkedHashMap<String,String> m_map;
+
+    private final File m_file;
+
+    private PrintWriter m_out;
+
+    /** Rewrite the file with the entries in the cache.
+        The entries are written from least to most recently used, so that
+        reading the file restores the order. */
+    private void compact() throws IOException
+    {
+        File tmpFile = new File(m_file.getAbsolutePath() + ".new");
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                                 new FileOutputStream(tmpFile), "UTF-8"));
+        for (Map.Entry<String,String> entry : m_map.entrySet())
+            out.print(escape(entry.getKey()) + "\t"
+                      + escape(entry.getValue()) + "\n");
+        out.close();
+        if (out.checkError())
+            throw new IOException("Could not write to: " + tmpFile);
+        if (m_out != null)
+            m_out.close();
+        if (Platform.isWindows())
+            // File.renameTo() fails on Windows if target exists
+            m_file.delete();
+        boolean renamed = tmpFile.renameTo(m_file);
+        m_out = new PrintWriter(new OutputStreamWriter(
+                             new FileOutputStream(m_file, true), "UTF-8"));
+        if (! renamed)
+            throw new IOException("Could not rename " + tmpFile);
+        m_numberLines = m_map.size();
+    }
+
+    private static String escape(String s)
+    {
+        return s.replace("\\", "\\\\").replace("\n", "\\n")
+            .replace("\t", "\\t");
+    }
+
+    private void read(File file) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                  new FileInputStream(file), "UTF-8"));
+        try
+        {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = reader.read()) >= 0)
+            {
+                if (c != '\n')
+                {
+                    line.append((char)c);
+                    continue;
+                }
+                int index = line.indexOf("\t");
+                if (index >= 0)
+                    m_map.put(unescape(line.substring(0, index)),
+                              unescape(line.substring(index + 1)));
+                line.setLength(0);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static String unescape(String s)
+    {
+        StringBuilder result = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); ++i)
+        {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length())
+            {
+                c = s.charAt(++i);
+                if (c == 'n')
+                    c = '\n';
+                else if (c == 't')
+                    c = '\t';
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+}
@@ -2,19 +2,40 @@
 
 package net.sf.gogui.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
-/** Table of string elements. */
+/** Table of string elements.
+    The elements are stored by column. Columns that contain only integers
+    or floating point numbers in their canonical string representation are
+    stored in primitive arrays, other columns as indices into a dictionary
+    of their distinct values. The strings of numbers are created on access
+    and numbers in other columns are parsed only once per distinct value.
+    A table can be saved in a text format with tab-separated values or in a
+    compact binary format; read(File) detects the format.
+    Reading elements does not modify the table, so a table can be read by
+    several threads as long as it is not modified. */
 public class Table
 {
     /** Error thrown on invalid table location argument. */
@@ -57,11 +78,14 @@ public class Table
     {
         m_columnTitles = columnTitles;
         m_numberColumns = columnTitles.size();
+        for (int i = 0; i < m_numberColumns; ++i)
+            m_columns.add(new Column(0));
     }
 
     public String get(int column, int row)
     {
-        return getRow(row).get(column);
+        checkRow(row);
+        return m_columns.get(column).get(row);
     }
 
     public String get(String columnTitle, int row) throws InvalidLocation
@@ -72,12 +96,10 @@ public class Table
     public double getDouble(int column, int row)
         throws InvalidLocation, InvalidElement
     {
+        checkRow(row);
         try
         {
-            String s = get(column, row);
-            if (s == null)
-                s = "";
-            return Double.parseDouble(s);
+            return m_columns.get(column).getDouble(row);
         }
         catch (NumberFormatException e)
         {
@@ -95,12 +117,10 @@ public class Table
 
     public int getInt(int column, int row) throws InvalidElement
     {
+        checkRow(row);
         try
         {
-            String s = get(column, row);
-            if (s == null)
-                s = "";
-            return Integer.parseInt(s);
+            return m_columns.get(column).getInt(row);
         }
         catch (NumberFormatException e)
         {
@@ -144,7 +164,7 @@ public class Table
 
     public int getNumberRows()
     {
-        return m_rows.size();
+        return m_numberRows;
     }
 
     /** Get meta information.
@@ -165,15 +185,57 @@ public class Table
         return m_properties.get(key);
     }
 
+    public boolean hasColumn(String column)
+    {
+        return m_columnTitles.contains(column);
+    }
+
     public boolean hasProperty(String key)
     {
         return m_properties.containsKey(key);
     }
 
+    /** Check if an element is an integer.
+        Equivalent to checking if Integer.parseInt succeeds for the
+        element, but does not parse the element again. */
+    public boolean isInt(int column, int row)
+    {
+        checkRow(row);
+        return m_columns.get(column).isInt(row);
+    }
+
+    /** Check if an element is a floating point number.
+        Equivalent to checking if Double.parseDouble succeeds for the
+        element, but does not parse the element again. */
+    public boolean isNumber(int column, int row)
+    {
+        checkRow(row);
+        return m_columns.get(column).isNumber(row);
+    }
+
+    /** Read a table in text or binary format.
+        The binary format is detected by the first bytes of the file. */
     public void read(File file) throws FileNotFoundException, IOException,
                                        InvalidFormat
     {
-        read(new FileReader(file));
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try
+        {
+            in.mark(4);
+            boolean isBinary = true;
+            for (int i = 0; i < 4; ++i)
+                if (in.read() != ((BINARY_MAGIC >>> (24 - 8 * i)) & 0xff))
+                    isBinary = false;
+            in.reset();
+            if (isBinary)
+                readBinary(in);
+            else
+                read(new InputStreamReader(in));
+        }
+        finally
+        {
+            in.close();
+        }
     }
 
     public void read(Reader reader) throws IOException, InvalidFormat
@@ -190,6 +252,35 @@ public class Table
         bufferedReader.close();
     }
 
+    /** Read a table in binary format.
+        The table must be empty.
+        @see #saveBinary(OutputStream) */
+    public void readBinary(InputStream in) throws IOException, InvalidFormat
+    {
+        assert m_numberColumns == 0 && m_numberRows == 0;
+        DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != BINARY_MAGIC)
+            throw new InvalidFormat("Not a binary table");
+        int version = dataIn.readInt();
+        if (version != BINARY_VERSION)
+            throw new InvalidFormat("Unknown binary table version "
+                                    + version);
+        int numberProperties = dataIn.readInt();
+        for (int i = 0; i < numberProperties; ++i)
+        {
+            String key = readString(dataIn);
+            setProperty(key, readString(dataIn));
+        }
+        int numberColumns = dataIn.readInt();
+        for (int i = 0; i < numberColumns; ++i)
+            addColumnTitle(readString(dataIn));
+        m_numberRows = dataIn.readInt();
+        if (m_numberRows < 0)
+            throw new InvalidFormat("Invalid number of rows");
+        for (int i = 0; i < numberColumns; ++i)
+            m_columns.set(i, Column.read(dataIn, m_numberRows));
+    }
+
     public void save(File file) throws IOException
     {
         FileWriter writer = new FileWriter(file);
@@ -228,12 +319,11 @@ public class Table
                     out.write('\n');
             }
         }
-        for (int i = 0; i < m_rows.size(); ++i)
+        for (int i = 0; i < m_numberRows; ++i)
         {
-            ArrayList<String> row = m_rows.get(i);
             for (int j = 0; j < m_numberColumns; ++j)
             {
-                String value = row.get(j);
+                String value = get(j, i);
                 if (value != null)
                     out.write(value);
                 if (j < m_numberColumns - 1)
@@ -244,17 +334,58 @@ public class Table
         }
     }
 
+    /** Save the table in binary format. */
+    public void saveBinary(File file) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            saveBinary(out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /** Save the table in binary format.
+        The format contains the properties, column titles and the columns
+        in their internal representation, so that no elements need to be
+        parsed when reading the table. */
+    public void saveBinary(OutputStream out) throws IOException
+    {
+        DataOutputStream dataOut =
+            new DataOutputStream(new BufferedOutputStream(out));
+        dataOut.writeInt(BINARY_MAGIC);
+        dataOut.writeInt(BINARY_VERSION);
+        dataOut.writeInt(m_properties.size());
+        for (Map.Entry<String,String> entry : m_properties.entrySet())
+        {
+            writeString(dataOut, entry.getKey());
+            writeString(dataOut, entry.getValue());
+        }
+        dataOut.writeInt(m_numberColumns);
+        for (int i = 0; i < m_numberColumns; ++i)
+            writeString(dataOut, getColumnTitle(i));
+        dataOut.writeInt(m_numberRows);
+        for (int i = 0; i < m_numberColumns; ++i)
+            m_columns.get(i).write(dataOut, m_numberRows);
+        dataOut.flush();
+    }
+
     /** Set element in last row.
         @param column Column in last row.
         @param value The value (must not contain newlines or tabs). */
     public void set(int column, String value)
     {
-        assert m_lastRow.get(column) == null;
+        assert m_numberRows > 0;
+        assert get(column, m_numberRows - 1) == null;
         // Values containing newlines and tabs are not supported by save()
         // yet
         assert value == null || value.indexOf("\n") < 0;
         assert value == null || value.indexOf("\t") < 0;
-        m_lastRow.set(column, value);
+        if (value != null)
+            m_columns.get(column).set(m_numberRows - 1, value);
     }
 
     public void set(String column, int value) throws InvalidLocation
@@ -282,24 +413,33 @@ public class Table
 
     public void startRow()
     {
-        ArrayList<String> row = new ArrayList<String>(m_numberColumns);
         for (int i = 0; i < m_numberColumns; ++i)
-            row.add(null);
-        m_rows.add(row);
-        m_lastRow = row;
+            m_columns.get(i).addRow(m_numberRows);
+        ++m_numberRows;
     }
 
+    /** Sort rows by the integer values of a column.
+        The sort is stable. */
     public void sortByIntColumn(int column, int rowBegin,
                                 int rowEnd) throws InvalidElement
     {
-        for (int row1 = rowBegin; row1 < rowEnd - 1; ++row1)
-            for (int row2 = row1 + 1; row2 < rowEnd; ++row2)
-                if (getInt(column, row2) < getInt(column, row1))
+        int n = rowEnd - rowBegin;
+        final int[] keys = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; ++i)
+        {
+            keys[i] = getInt(column, rowBegin + i);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+            {
+                public int compare(Integer i1, Integer i2)
                 {
-                    ArrayList<String> tmp = m_rows.get(row1);
-                    m_rows.set(row1, m_rows.get(row2));
-                    m_rows.set(row2, tmp);
+                    return Integer.compare(keys[i1], keys[i2]);
                 }
+            });
+        for (int i = 0; i < m_numberColumns; ++i)
+            m_columns.get(i).permute(rowBegin, order);
     }
 
     public void sortByIntColumn(String columnTitle, int rowBegin,
@@ -309,31 +449,511 @@ public class Table
         sortByIntColumn(getColumnIndex(columnTitle), rowBegin, rowEnd);
     }
 
+    /** Elements of a column.
+        The column starts as an integer column and is converted to a
+        floating point or string column if an element does not fit. Null
+        elements and empty strings are stored in bit sets for number
+        columns. Bits are only cleared in bulk, because clearing single bits
+        is slow for large bit sets with few set bits. */
+    private static final class Column
+    {
+        public Column(int numberRows)
+        {
+            m_ints = new int[Math.max(numberRows, 16)];
+            m_size = numberRows;
+        }
+
+        public void addRow(int row)
+        {
+            assert row == m_size;
+            int length = (m_type == TYPE_DOUBLE ? m_doubles.length
+                          : m_ints.length);
+            if (row >= length)
+            {
+                int newLength = 2 * length;
+                if (m_type == TYPE_DOUBLE)
+                    m_doubles = Arrays.copyOf(m_doubles, newLength);
+                else
+                    m_ints = Arrays.copyOf(m_ints, newLength);
+            }
+            ++m_size;
+        }
+
+        public String get(int row)
+        {
+            if (! m_hasValue.get(row))
+                return null;
+            if (m_type == TYPE_STRING)
+                return m_dictionary.get(m_ints[row]);
+            if (m_empty.get(row))
+                return "";
+            if (m_type == TYPE_INT)
+                return Integer.toString(m_ints[row]);
+            if (m_intFormat.get(row))
+                return Integer.toString((int)m_doubles[row]);
+            return Double.toString(m_doubles[row]);
+        }
+
+        public double getDouble(int row)
+        {
+            if (m_type == TYPE_STRING)
+            {
+                if (! isNumber(row))
+                    throw new NumberFormatException();
+                return m_parsed[m_ints[row]];
+            }
+            if (! m_hasValue.get(row) || m_empty.get(row))
+                throw new NumberFormatException();
+            if (m_type == TYPE_INT)
+                return m_ints[row];
+            return m_doubles[row];
+        }
+
+        public int getInt(int row)
+        {
+            if (m_type == TYPE_STRING)
+            {
+                if (! isInt(row))
+                    throw new NumberFormatException();
+                return (int)m_parsed[m_ints[row]];
+            }
+            if (! isInt(row))
+                throw new NumberFormatException();
+            if (m_type == TYPE_INT)
+                return m_ints[row];
+            return (int)m_doubles[row];
+        }
+
+        public boolean isInt(int row)
+        {
+            if (! m_hasValue.get(row))
+                return false;
+            if (m_type == TYPE_STRING)
+                return (m_parseState[m_ints[row]] & PARSED_INT) != 0;
+            if (m_empty.get(row))
+                return false;
+            return (m_type == TYPE_INT || m_intFormat.get(row));
+        }
+
+        public boolean isNumber(int row)
+        {
+            if (! m_hasValue.get(row))
+                return false;
+            if (m_type == TYPE_STRING)
+                return (m_parseState[m_ints[row]] & PARSED_NUMBER) != 0;
+            return ! m_empty.get(row);
+        }
+
+        /** Reorder rows.
+            @param begin The first row to reorder.
+            @param order The new order of the rows relative to begin. */
+        public void permute(int begin, Integer[] order)
+        {
+            int n = order.length;
+            int end = begin + n;
+            int[] ints = null;
+            if (m_ints != null)
+                ints = Arrays.copyOfRange(m_ints, begin, end);
+            double[] doubles = null;
+            if (m_doubles != null)
+                doubles = Arrays.copyOfRange(m_doubles, begin, end);
+            BitSet hasValue = m_hasValue.get(begin, end);
+            BitSet empty = m_empty.get(begin, end);
+            BitSet intFormat = m_intFormat.get(begin, end);
+            m_hasValue.clear(begin, end);
+            m_empty.clear(begin, end);
+            m_intFormat.clear(begin, end);
+            for (int i = 0; i < n; ++i)
+            {
+                int from = order[i];
+                int row = begin + i;
+                if (ints != null)
+                    m_ints[row] = ints[from];
+                if (doubles != null)
+                    m_doubles[row] = doubles[from];
+                if (hasValue.get(from))
+                    m_hasValue.set(row);
+                if (empty.get(from))
+                    m_empty.set(row);
+                if (intFormat.get(from))
+                    m_intFormat.set(row);
+            }
+        }
+
+        public static Column read(DataInputStream in, int numberRows)
+            throws IOException, InvalidFormat
+        {
+            Column column = new Column(0);
+            column.m_size = numberRows;
+            column.m_type = in.readByte();
+            column.m_hasValue = readBitSet(in);
+            if (column.m_type == TYPE_STRING)
+            {
+                int size = in.readInt();
+                if (size < 0)
+                    throw new InvalidFormat("Invalid dictionary size");
+                column.m_dictionary = new ArrayList<String>(size);
+                column.m_codes = new HashMap<String,Integer>(2 * size);
+                for (int i = 0; i < size; ++i)
+                {
+                    String value = readString(in);
+                    column.m_codes.put(value, i);
+                    column.m_dictionary.add(value);
+                    column.parse(i);
+                }
+                int[] codes = new int[Math.max(numberRows, 16)];
+                int width = getCodeWidth(size);
+                for (int row = 0; row < numberRows; ++row)
+                {
+                    int code;
+                    if (width == 1)
+                        code = in.readUnsignedByte();
+                    else if (width == 2)
+                        code = in.readUnsignedShort();
+                    else
+                        code = in.readInt();
+                    if (code < 0 || (code >= size
+                                     && column.m_hasValue.get(row)))
+                        throw new InvalidFormat("Invalid dictionary index");
+                    codes[row] = code;
+                }
+                column.m_ints = codes;
+            }
+            else if (column.m_type == TYPE_INT)
+            {
+                column.m_empty = readBitSet(in);
+                int[] ints = new int[Math.max(numberRows, 16)];
+                for (int row = 0; row < numberRows; ++row)
+                    ints[row] = in.readInt();
+                column.m_ints = ints;
+            }
+            else if (column.m_type == TYPE_DOUBLE)
+            {
+                column.m_empty = readBitSet(in);
+                column.m_intFormat = readBitSet(in);
+                double[] doubles = new double[Math.max(numberRows, 16)];
+                for (int row = 0; row < numberRows; ++row)
+                    doubles[row] = in.readDouble();
+                column.m_doubles = doubles;
+                column.m_ints = null;
+            }
+            else
+                throw new InvalidFormat("Invalid column type");
+            return column;
+        }
+
+        public void set(int row, String value)
+        {
+            if (m_type == TYPE_INT)
+            {
+                if (value.equals(""))
+                {
+                    m_empty.set(row);
+                    m_hasValue.set(row);
+                    return;
+                }
+                if (isCanonicalInt(value))
+                {
+                    m_ints[row] = Integer.parseInt(value);
+                    m_hasValue.set(row);
+                    return;
+                }
+                convert(isCanonicalDouble(value) ? TYPE_DOUBLE
+                        : TYPE_STRING);
+            }
+            if (m_type == TYPE_DOUBLE)
+            {
+                if (value.equals(""))
+                {
+                    m_empty.set(row);
+                    m_hasValue.set(row);
+                    return;
+                }
+                if (isCanonicalInt(value))
+                {
+                    m_doubles[row] = Integer.parseInt(value);
+                    m_intFormat.set(row);
+                    m_hasValue.set(row);
+                    return;
+                }
+                if (isCanonicalDouble(value))
+                {
+                    m_doubles[row] = Double.parseDouble(value);
+                    m_hasValue.set(row);
+                    return;
+                }
+                convert(TYPE_STRING);
+            }
+            m_ints[row] = getCode(value);
+            m_hasValue.set(row);
+        }
+
+        public void write(DataOutputStream out, int numberRows)
+            throws IOException
+        {
+            assert numberRows == m_size;
+            out.writeByte(m_type);
+            writeBitSet(out, m_hasValue);
+            if (m_type == TYPE_STRING)
+            {
+                int size = m_dictionary.size();
+                out.writeInt(size);
+                for (String value : m_dictionary)
+                    writeString(out, value);
+                int width = getCodeWidth(size);
+                for (int row = 0; row < numberRows; ++row)
+                {
+                    int code = (m_hasValue.get(row) ? m_ints[row] : 0);
+                    if (width == 1)
+                        out.writeByte(code);
+                    else if (width == 2)
+                        out.writeShort(code);
+                    else
+                        out.writeInt(code);
+                }
+            }
+            else if (m_type == TYPE_INT)
+            {
+                writeBitSet(out, m_empty);
+                for (int row = 0; row < numberRows; ++row)
+                    out.writeInt(m_ints[row]);
+            }
+            else
+            {
+                writeBitSet(out, m_empty);
+                writeBitSet(out, m_intFormat);
+                for (int row = 0; row < numberRows; ++row)
+                    out.writeDouble(m_doubles[row]);
+            }
+        }
+
+        private static final int TYPE_INT = 0;
+
+        private static final int TYPE_DOUBLE = 1;
+
+        private static final int TYPE_STRING = 2;
+
+        private static final byte PARSED_NUMBER = 1;
+
+        private static final byte PARSED_INT = 2;
+
+        private int m_size;
+
+        private int m_type = TYPE_INT;
+
+        /** Values of integer columns or dictionary indices of string
+            columns. */
+        private int[] m_ints;
+
+        /** Values of floating point columns. */
+        private double[] m_doubles;
+
+        /** Parse results of dictionary values of string columns.
+            Filled when a value is added to the dictionary, such that
+            reading a table does not modify it. */
+        private byte[] m_parseState;
+
+        /** Parsed dictionary values of string columns. */
+        private double[] m_parsed;
+
+        /** Non-null elements. */
+        private BitSet m_hasValue = new BitSet();
+
+        /** Empty string elements of number columns. */
+        private BitSet m_empty = new BitSet();
+
+        /** Elements of floating point columns that are formatted as
+            integers. */
+        private BitSet m_intFormat = new BitSet();
+
+        private ArrayList<String> m_dictionary;
+
+        private HashMap<String,Integer> m_codes;
+
+        /** Convert to a more general column type. */
+        private void convert(int type)
+        {
+            assert type > m_type;
+            int length = (m_type == TYPE_DOUBLE ? m_doubles.length
+                          : m_ints.length);
+            if (type == TYPE_DOUBLE)
+            {
+                m_doubles = new double[length];
+                for (int row = 0; row < m_size; ++row)
+                    if (m_hasValue.get(row) && ! m_empty.get(row))
+                    {
+                        m_doubles[row] = m_ints[row];
+                        m_intFormat.set(row);
+                    }
+                m_ints = null;
+            }
+            else
+            {
+                m_dictionary = new ArrayList<String>();
+                m_codes = new HashMap<String,Integer>();
+                int[] codes = new int[length];
+                for (int row = 0; row < m_size; ++row)
+                    if (m_hasValue.get(row))
+                        codes[row] = getCode(get(row));
+                m_ints = codes;
+                m_doubles = null;
+                m_empty.clear();
+                m_intFormat.clear();
+            }
+            m_type = type;
+        }
+
+        private int getCode(String value)
+        {
+            Integer code = m_codes.get(value);
+            if (code == null)
+            {
+                code = m_dictionary.size();
+                m_dictionary.add(value);
+                m_codes.put(value, code);
+                parse(code);
+            }
+            return code.intValue();
+        }
+
+        private static int getCodeWidth(int dictionarySize)
+        {
+            if (dictionarySize <= 0x100)
+                return 1;
+            if (dictionarySize <= 0x10000)
+                return 2;
+            return 4;
+        }
+
+        /** Check for the string representation of Integer.toString. */
+        private static boolean isCanonicalInt(String s)
+        {
+            int length = s.length();
+            int i = (length > 0 && s.charAt(0) == '-' ? 1 : 0);
+            if (length == i || length > 11)
+                return false;
+            if (s.charAt(i) == '0')
+                return (length == 1);
+            for (; i < length; ++i)
+            {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9')
+                    return false;
+            }
+            if (length < 10)
+                return true;
+            long value = Long.parseLong(s);
+            return (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE);
+        }
+
+        /** Check for the string representation of Double.toString. */
+        private static boolean isCanonicalDouble(String s)
+        {
+            char c = s.charAt(0);
+            if ((c < '0' || c > '9') && c != '-' && c != 'N' && c != 'I')
+                return false;
+            try
+            {
+                return Double.toString(Double.parseDouble(s)).equals(s);
+            }
+            catch (NumberFormatException e)
+            {
+                return false;
+            }
+        }
+
+        /** Parse a new dictionary value of a string column.
+            Stores the parse state flags and the parsed value. */
+        private void parse(int code)
+        {
+            if (m_parseState == null || code >= m_parseState.length)
+            {
+                int length = Math.max(2 * code, 16);
+                if (m_parseState == null)
+                {
+                    m_parseState = new byte[length];
+                    m_parsed = new double[length];
+                }
+                else
+                {
+                    m_parseState = Arrays.copyOf(m_parseState, length);
+                    m_parsed = Arrays.copyOf(m_parsed, length);
+                }
+            }
+            byte state = 0;
+            String value = m_dictionary.get(code);
+            try
+            {
+                m_parsed[code] = Integer.parseInt(value);
+                state = PARSED_NUMBER | PARSED_INT;
+            }
+            catch (NumberFormatException e)
+            {
+                try
+                {
+                    m_parsed[code] = Double.parseDouble(value);
+                    state = PARSED_NUMBER;
+                }
+                catch (NumberFormatException e2)
+                {
+                }
+            }
+            m_parseState[code] = state;
+        }
+
+        private static BitSet readBitSet(DataInputStream in)
+            throws IOException, InvalidFormat
+        {
+            int n = in.readInt();
+            if (n < 0)
+                throw new InvalidFormat("Invalid bit set size");
+            long[] words = new long[n];
+            for (int i = 0; i < n; ++i)
+                words[i] = in.readLong();
+            return BitSet.valueOf(words);
+        }
+
+        private static void writeBitSet(DataOutputStream out, BitSet bits)
+            throws IOException
+        {
+            long[] words = bits.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words)
+                out.writeLong(word);
+        }
+    }
+
+    /** First bytes of the binary format ("\0GTB"). */
+    private static final int BINARY_MAGIC = 0x00475442;
+
+    private static final int BINARY_VERSION = 1;
+
     private boolean m_propertiesRead;
 
     private int m_lineNumber;
 
     private int m_numberColumns;
 
+    private int m_numberRows;
+
     private final Map<String,String> m_properties =
         new TreeMap<String,String>();
 
     private final ArrayList<String> m_columnTitles;
 
-    private ArrayList<String> m_lastRow;
-
-    private final ArrayList<ArrayList<String>> m_rows
-        = new ArrayList<ArrayList<String>>();
+    private final ArrayList<Column> m_columns = new ArrayList<Column>();
 
     private void addColumnTitle(String columnTitle)
     {
         m_columnTitles.add(columnTitle);
+        m_columns.add(new Column(m_numberRows));
         ++m_numberColumns;
     }
 
-    private ArrayList<String> getRow(int index)
+    private void checkRow(int row)
     {
-        return m_rows.get(index);
+        if (row < 0 || row >= m_numberRows)
+            throw new IndexOutOfBoundsException("Row " + row);
     }
 
     private void handleComment(String comment)
@@ -379,4 +999,23 @@ public class Table
         for (int i = 0; i < array.length; ++i)
             set(i, array[i]);
     }
+
+    private static String readString(DataInputStream in)
+        throws IOException, InvalidFormat
+    {
+        int length = in.readInt();
+        if (length < 0)
+            throw new InvalidFormat("Invalid string length");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
 }
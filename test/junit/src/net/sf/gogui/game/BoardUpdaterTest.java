@@ -7,6 +7,7 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 
 import net.sf.gogui.gtp.BoardParameters;
+import net.sf.gogui.go.GoColor;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Move;
 
@@ -82,5 +83,64 @@ public final class BoardUpdaterTest
         assertEquals(BLACK, board.getColor(GoPoint.get(3, 3)));
     }
 
+    /** Test that incremental updates give the same positions as updates
+        from scratch when navigating between variations of a deep tree. */
+    public void testIncremental()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        Node node = root;
+        Node branch = null;
+        for (int i = 0; i < 100; ++i)
+        {
+            node = appendMove(node, i);
+            if (i == 10)
+                branch = node;
+        }
+        Node mainEnd = node;
+        node = branch;
+        for (int i = 0; i < 80; ++i)
+            node = appendMove(node, i + 3);
+        Node variationEnd = node;
+        node = appendMove((Node)NodeUtil.backward(variationEnd, 40), 200);
+        node.addStone(BLACK, GoPoint.get(0, 0));
+        Node setupEnd = appendMove(node, 201);
+        ConstNode[] targets = {
+            mainEnd, variationEnd, NodeUtil.backward(mainEnd, 1), branch,
+            setupEnd, root, NodeUtil.backward(variationEnd, 33), mainEnd,
+            NodeUtil.backward(mainEnd, 64), setupEnd, variationEnd
+        };
+        Board board = new Board(new BoardParameters(19));
+        for (ConstNode target : targets)
+        {
+            m_updater.update(tree, target, board);
+            Board expected = new Board(new BoardParameters(19));
+            new BoardUpdater().update(tree, target, expected);
+            assertSameBoard(expected, board);
+        }
+    }
+
     private BoardUpdater m_updater;
+
+    /** Append a move node with a move derived from a number.
+        Points are taken from a walk over the board, such that some moves
+        capture stones. */
+    private static Node appendMove(Node node, int i)
+    {
+        GoColor c = (NodeUtil.getMoveNumber(node) % 2 == 0 ? BLACK : WHITE);
+        Node child = new Node(Move.get(c, GoPoint.get((i * 7) % 19,
+                                                      (i * 3) % 19)));
+        node.append(child);
+        return child;
+    }
+
+    private static void assertSameBoard(Board expected, Board board)
+    {
+        for (GoPoint p : expected)
+            assertEquals(expected.getColor(p), board.getColor(p));
+        assertEquals(expected.getToMove(), board.getToMove());
+        assertEquals(expected.getNumberMoves(), board.getNumberMoves());
+        for (GoColor c : GoColor.BLACK_WHITE)
+            assertEquals(expected.getCaptured(c), board.getCaptured(c));
+    }
 }
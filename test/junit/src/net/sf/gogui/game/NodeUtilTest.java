@@ -128,6 +128,16 @@ public final class NodeUtilTest
         assertEquals(1, NodeUtil.getMovesLeft(m_node7));
     }
 
+    public void testNextNode()
+    {
+        assertSame(m_node2, NodeUtil.nextNode(m_node1, m_node0));
+        assertSame(m_node7, NodeUtil.nextNode(m_node6, m_node0));
+        assertSame(m_node9, NodeUtil.nextNode(m_node8, m_node0));
+        assertNull(NodeUtil.nextNode(m_node11, m_node0));
+        assertNull(NodeUtil.nextNode(m_node6, m_node2));
+        assertNull(NodeUtil.nextNode(m_node11, m_node7));
+    }
+
     public void testSubtreeSize()
     {
         assertEquals(12, NodeUtil.subtreeSize(m_node0));
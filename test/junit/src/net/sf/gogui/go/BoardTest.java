@@ -136,12 +136,42 @@ public final class BoardTest
         white.add(GoPoint.get(2, 0));
         board.setup(black, white, BLACK);
         assertFalse(board.isKo(GoPoint.get(0, 0)));
+        assertNull(board.getKoPoint());
         board.play(WHITE, GoPoint.get(0, 0));
         assertTrue(board.isKo(GoPoint.get(1, 0)));
+        assertEquals(GoPoint.get(1, 0), board.getKoPoint());
         board.play(BLACK, GoPoint.get(5, 5));
         assertFalse(board.isKo(GoPoint.get(1, 0)));
+        assertNull(board.getKoPoint());
         board.undo();
         assertTrue(board.isKo(GoPoint.get(1, 0)));
+        assertEquals(GoPoint.get(1, 0), board.getKoPoint());
+    }
+
+    /** Test the incremental hash code of the position. */
+    public void testHash()
+    {
+        Board board = new Board(new BoardParameters(19));
+        assertEquals(0L, board.getHash());
+        board.play(BLACK, GoPoint.get(0, 0));
+        long hash = board.getHash();
+        assertEquals(Board.getHash(GoPoint.get(0, 0), BLACK), hash);
+        board.play(WHITE, GoPoint.get(1, 0));
+        assertTrue(board.getHash() != hash);
+        board.undo();
+        assertEquals(hash, board.getHash());
+        // Capture restores the hash code of the position without the
+        // captured stone
+        board.play(WHITE, GoPoint.get(0, 1));
+        board.play(BLACK, GoPoint.get(5, 5));
+        board.play(WHITE, GoPoint.get(1, 0));
+        Board other = new Board(new BoardParameters(19));
+        other.play(WHITE, GoPoint.get(1, 0));
+        other.play(BLACK, GoPoint.get(5, 5));
+        other.play(WHITE, GoPoint.get(0, 1));
+        assertEquals(other.getHash(), board.getHash());
+        board.clear();
+        assertEquals(0L, board.getHash());
     }
 
     public void testIsSuicide()
@@ -218,6 +248,82 @@ public final class BoardTest
         assertEquals(stones, board.getSetup(BLACK));
     }
 
+    public void testSuperko()
+    {
+        Board board = new Board(new BoardParameters(19));
+        PointList black = new PointList();
+        black.add(GoPoint.get(1, 2));
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 0));
+        PointList white = new PointList();
+        white.add(GoPoint.get(2, 2));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(3, 1));
+        white.add(GoPoint.get(2, 0));
+        board.setup(black, white, BLACK);
+        board.play(BLACK, GoPoint.get(2, 1));
+        assertTrue(board.isKo(GoPoint.get(1, 1)));
+        assertFalse(board.isRepetition(WHITE, GoPoint.get(1, 1)));
+        board.setKoRule(KoRule.POSITIONAL_SUPERKO);
+        assertTrue(board.isRepetition(WHITE, GoPoint.get(1, 1)));
+        assertFalse(board.isRepetition(WHITE, GoPoint.get(5, 5)));
+        assertFalse(board.isRepetition(WHITE, null));
+        board.undo();
+        assertFalse(board.isRepetition(BLACK, GoPoint.get(2, 1)));
+        board.play(BLACK, GoPoint.get(2, 1));
+        assertTrue(board.isRepetition(WHITE, GoPoint.get(1, 1)));
+        board.setKoRule(KoRule.SIMPLE);
+        assertFalse(board.isRepetition(WHITE, GoPoint.get(1, 1)));
+    }
+
+    /** Test that Board.isRepetition() does not change the board. */
+    public void testSuperkoNoChange()
+    {
+        Board board = new Board(new BoardParameters(19));
+        board.setKoRule(KoRule.POSITIONAL_SUPERKO);
+        board.play(BLACK, GoPoint.get(1, 0));
+        board.play(WHITE, GoPoint.get(0, 0));
+        board.play(BLACK, GoPoint.get(5, 5));
+        long hash = board.getHash();
+        assertFalse(board.isRepetition(BLACK, GoPoint.get(0, 1)));
+        assertEquals(hash, board.getHash());
+        assertEquals(3, board.getNumberMoves());
+        assertEquals(WHITE, board.getColor(GoPoint.get(0, 0)));
+        assertEquals(0, board.getCaptured(WHITE));
+        assertEquals(WHITE, board.getToMove());
+    }
+
+    /** Test that situational superko distinguishes the color to move.
+        A suicide of a single stone recreates the position with the other
+        color to move. */
+    public void testSuperkoSituational()
+    {
+        Board board = new Board(new BoardParameters(19));
+        PointList black = new PointList();
+        black.add(GoPoint.get(1, 0));
+        black.add(GoPoint.get(0, 1));
+        board.setup(black, null, WHITE);
+        board.setKoRule(KoRule.POSITIONAL_SUPERKO);
+        assertTrue(board.isRepetition(WHITE, GoPoint.get(0, 0)));
+        board.setKoRule(KoRule.SITUATIONAL_SUPERKO);
+        assertFalse(board.isRepetition(WHITE, GoPoint.get(0, 0)));
+        board.play(WHITE, GoPoint.get(0, 0));
+        board.play(BLACK, null);
+        assertTrue(board.isRepetition(WHITE, GoPoint.get(0, 0)));
+    }
+
+    /** Test that a position set with setPoints() is used for superko. */
+    public void testSuperkoSetPoints()
+    {
+        Board board = new Board(new BoardParameters(19));
+        board.setKoRule(KoRule.POSITIONAL_SUPERKO);
+        PointList white = new PointList();
+        white.add(GoPoint.get(1, 0));
+        white.add(GoPoint.get(0, 1));
+        board.setPoints(white, WHITE);
+        assertTrue(board.isRepetition(BLACK, GoPoint.get(0, 0)));
+    }
+
     public void testToMove()
     {
         Board board = new Board(new BoardParameters(19));
@@ -236,4 +342,23 @@ public final class BoardTest
         assertEquals(EMPTY, board.getColor(GoPoint.get(0, 0)));
         assertEquals(BLACK, board.getToMove());
     }
+
+    /** Test that reused undo information of a taken back capture does not
+        affect a later move. */
+    public void testUndoReuse()
+    {
+        Board board = new Board(new BoardParameters(19));
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(5, 5));
+        board.play(WHITE, GoPoint.get(0, 1));
+        assertEquals(1, board.getKilled().size());
+        board.undo();
+        board.play(WHITE, GoPoint.get(6, 6));
+        assertTrue(board.getKilled().isEmpty());
+        board.undo(4);
+        assertEquals(0, board.getNumberMoves());
+        assertEquals(0L, board.getHash());
+        assertEquals(0, board.getCaptured(BLACK));
+    }
 }
@@ -0,0 +1,54 @@
+// BoardUtilTest.java
+
+package net.sf.gogui.go;
+
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+import net.sf.gogui.gtp.BoardParameters;
+
+public final class BoardUtilTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BoardUtilTest.class);
+    }
+
+    public void testGetPositionKey()
+    {
+        Board board = new Board(new BoardParameters(19));
+        String key = BoardUtil.getPositionKey(board, null, "genmove b");
+        assertEquals(key, BoardUtil.getPositionKey(board, new Komi(0),
+                                                   "genmove b"));
+        Board board9 = new Board(new BoardParameters(9));
+        assertFalse(key.equals(BoardUtil.getPositionKey(board9, null,
+                                                        "genmove b")));
+        board.play(BLACK, GoPoint.get(3, 3));
+        String key2 = BoardUtil.getPositionKey(board, null, "genmove b");
+        assertFalse(key.equals(key2));
+        board.undo();
+        assertEquals(key, BoardUtil.getPositionKey(board, null, "genmove b"));
+    }
+
+    /** Test that the position key contains only the simple ko point.
+        Superko repetitions depend on the history of the game, not only on
+        the position. */
+    public void testGetPositionKeySuperko()
+    {
+        Board board = new Board(new BoardParameters(19));
+        PointList black = new PointList();
+        black.add(GoPoint.get(1, 0));
+        black.add(GoPoint.get(0, 1));
+        board.setup(black, null, WHITE);
+        String key = BoardUtil.getPositionKey(board, null, "genmove w");
+        board.setKoRule(KoRule.POSITIONAL_SUPERKO);
+        assertTrue(board.isKo(GoPoint.get(0, 0)));
+        assertEquals(key, BoardUtil.getPositionKey(board, null, "genmove w"));
+    }
+}
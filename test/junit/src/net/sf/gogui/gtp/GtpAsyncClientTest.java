@@ -0,0 +1,178 @@
+// GtpAsyncClientTest.java
+
+package net.sf.gogui.gtp;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public final class GtpAsyncClientTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpAsyncClientTest.class);
+    }
+
+    public void setUp()
+    {
+        m_engine = new GtpEngine(null)
+            {
+                public void interruptCommand()
+                {
+                    m_interrupted.countDown();
+                }
+            };
+        m_engine.register("echo", new GtpCallback() {
+                public void run(GtpCommand cmd) {
+                    cmd.setResponse(cmd.getArgLine());
+                }
+            });
+        m_engine.register("fail", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    throw new GtpError("failed");
+                }
+            });
+        m_engine.register("wait", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    m_started.countDown();
+                    try
+                    {
+                        m_interrupted.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new GtpError("interrupted");
+                    }
+                }
+            });
+        m_gtp = new GtpAsyncClient(new GtpEngineClient(m_engine));
+    }
+
+    public void tearDown() throws Exception
+    {
+        m_gtp.shutdown();
+        m_gtp.waitForShutdown();
+    }
+
+    public void testCancel() throws Exception
+    {
+        CompletableFuture<String> running = m_gtp.send("wait");
+        CompletableFuture<String> queued = m_gtp.send("fail");
+        m_started.await();
+        assertTrue(queued.cancel(true));
+        assertTrue(running.cancel(true));
+        assertEquals("foo", m_gtp.send("echo foo").get());
+        assertTrue(queued.isCancelled());
+        assertEquals(0, m_interrupted.getCount());
+    }
+
+    /** Test that cancelling a command that is just completing does not
+        interrupt the next command. */
+    public void testCancelCompleting() throws Exception
+    {
+        final CountDownLatch finish = new CountDownLatch(1);
+        final CountDownLatch nextStarted = new CountDownLatch(1);
+        final boolean[] interruptedNext = new boolean[1];
+        GtpEngine engine = new GtpEngine(null)
+            {
+                public void interruptCommand()
+                {
+                    // Let the running command complete and give the next
+                    // command time to start
+                    finish.countDown();
+                    try
+                    {
+                        interruptedNext[0] =
+                            nextStarted.await(500, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                    }
+                }
+            };
+        engine.register("block", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    m_started.countDown();
+                    try
+                    {
+                        finish.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new GtpError("interrupted");
+                    }
+                }
+            });
+        engine.register("next", new GtpCallback() {
+                public void run(GtpCommand cmd) {
+                    nextStarted.countDown();
+                }
+            });
+        GtpAsyncClient gtp = new GtpAsyncClient(new GtpEngineClient(engine));
+        CompletableFuture<String> running = gtp.send("block");
+        CompletableFuture<String> next = gtp.send("next");
+        m_started.await();
+        assertTrue(running.cancel(true));
+        assertEquals("", next.get());
+        assertFalse(interruptedNext[0]);
+        gtp.shutdown();
+        gtp.waitForShutdown();
+    }
+
+    public void testError() throws Exception
+    {
+        CompletableFuture<String> future = m_gtp.send("fail");
+        try
+        {
+            future.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof GtpError);
+            assertEquals("failed", e.getCause().getMessage());
+        }
+    }
+
+    public void testOrder() throws Exception
+    {
+        ArrayList<CompletableFuture<String>> futures =
+            new ArrayList<CompletableFuture<String>>();
+        for (int i = 0; i < 100; ++i)
+            futures.add(m_gtp.send("echo " + i));
+        for (int i = 0; i < 100; ++i)
+            assertEquals(Integer.toString(i), futures.get(i).get());
+    }
+
+    public void testTimeout() throws Exception
+    {
+        CompletableFuture<String> future = m_gtp.send("wait", 10);
+        try
+        {
+            future.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals("Timeout", e.getCause().getMessage());
+        }
+        assertEquals("foo", m_gtp.send("echo foo").get());
+        assertEquals(0, m_interrupted.getCount());
+    }
+
+    private GtpAsyncClient m_gtp;
+
+    private GtpEngine m_engine;
+
+    private final CountDownLatch m_interrupted = new CountDownLatch(1);
+
+    private final CountDownLatch m_started = new CountDownLatch(1);
+}
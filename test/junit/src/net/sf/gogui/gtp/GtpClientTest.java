@@ -0,0 +1,115 @@
+// GtpClientTest.java
+
+package net.sf.gogui.gtp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+
+public final class GtpClientTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpClientTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_expect = new GtpExpectEngine(null);
+        m_gtp = new GtpEngineConnection(m_expect).getGtpClient();
+    }
+
+    public void testMetrics() throws GtpError
+    {
+        m_expect.expect("play B A1");
+        m_expect.expect("play W A2");
+        m_expect.expect("name", "foo");
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("play B A1");
+        commands.add("play W A2");
+        m_gtp.sendPipelined(commands);
+        m_gtp.send("name");
+        GtpMetrics metrics = m_gtp.getMetrics();
+        assertEquals(2, metrics.get("play").getCount());
+        assertEquals(1, metrics.get("name").getCount());
+        assertNull(metrics.get("genmove"));
+        assertEquals(3, metrics.getTotal().getCount());
+        assertEquals("play", GtpMetrics.getCommandName("12 play B A1"));
+        assertEquals("name", GtpMetrics.getCommandName(" name"));
+    }
+
+    /** Test sending more commands than are sent ahead of the responses. */
+    public void testSendPipelined() throws GtpError
+    {
+        ArrayList<String> commands = new ArrayList<String>();
+        for (int i = 0; i < 200; ++i)
+        {
+            commands.add("play B A" + (i % 19 + 1));
+            m_expect.expect(commands.get(i), Integer.toString(i));
+        }
+        ArrayList<String> responses = m_gtp.sendPipelined(commands);
+        assertTrue(m_expect.isExpectQueueEmpty());
+        assertEquals(200, responses.size());
+        for (int i = 0; i < 200; ++i)
+            assertEquals(Integer.toString(i), responses.get(i));
+        m_expect.expect("name", "foo");
+        assertEquals("foo", m_gtp.send("name"));
+    }
+
+    /** Test that all commands are executed if a command fails. */
+    public void testSendPipelinedError()
+    {
+        m_expect.expect("play B A1");
+        m_expect.expect("play W A2");
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("play B A1");
+        commands.add("play B A3");
+        commands.add("play W A2");
+        try
+        {
+            m_gtp.sendPipelined(commands);
+            fail();
+        }
+        catch (GtpError e)
+        {
+            assertTrue(e.getCommand().endsWith("play B A3"));
+        }
+        assertTrue(m_expect.isExpectQueueEmpty());
+    }
+
+    /** Test that the responses of commands already sent are read after
+        an invalid response id. */
+    public void testSendPipelinedInvalidId() throws Exception
+    {
+        String responses = "=1 a\n\n=7 b\n\n=3 c\n\n=4 d\n\n=5 e\n\n";
+        ByteArrayInputStream in =
+            new ByteArrayInputStream(responses.getBytes("US-ASCII"));
+        GtpClient gtp =
+            new GtpClient(in, new ByteArrayOutputStream(), false, null);
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("a");
+        commands.add("b");
+        commands.add("c");
+        commands.add("d");
+        try
+        {
+            gtp.sendPipelined(commands);
+            fail();
+        }
+        catch (GtpError e)
+        {
+            assertTrue(e.getCommand().endsWith("b"));
+        }
+        assertEquals("e", gtp.send("e"));
+    }
+
+    private GtpClientBase m_gtp;
+
+    private GtpExpectEngine m_expect;
+}
@@ -0,0 +1,158 @@
+// SgfCollectionReaderTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.go.GoPoint;
+
+public final class SgfCollectionReaderTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfCollectionReaderTest.class);
+    }
+
+    public void testCharset() throws Exception
+    {
+        // Second game has no CA property and uses the default charset
+        byte[] utf8 = "(;CA[UTF-8]C[\u00e4])".getBytes("UTF-8");
+        byte[] latin1 = "(;C[\u00e4])".getBytes("ISO-8859-1");
+        byte[] bytes = new byte[utf8.length + latin1.length];
+        System.arraycopy(utf8, 0, bytes, 0, utf8.length);
+        System.arraycopy(latin1, 0, bytes, utf8.length, latin1.length);
+        SgfCollectionReader reader =
+            new SgfCollectionReader(new ByteArrayInputStream(bytes), null,
+                                    false, false);
+        assertEquals("\u00e4", reader.readNext().getRoot().getComment());
+        assertEquals("\u00e4", reader.readNext().getRoot().getComment());
+        assertNull(reader.readNext());
+    }
+
+    public void testCharsetShiftJis() throws Exception
+    {
+        // Second byte of U+8868 in Shift_JIS is 0x5C (backslash)
+        String comment = "\u8868";
+        String text = "(;CA[Shift_JIS]C[" + comment + "])(;CA[Shift_JIS]C["
+            + comment + "])";
+        SgfCollectionReader reader =
+            getReader(text.getBytes("Shift_JIS"), false, false);
+        assertEquals(comment, reader.readNext().getRoot().getComment());
+        assertEquals(comment, reader.readNext().getRoot().getComment());
+        assertNull(reader.readNext());
+    }
+
+    public void testHandler() throws Exception
+    {
+        String text = "(;SZ[9]C[foo]AB[aa][bb];B[cc](;W[dd])(;W[ee]))(;B[ff])";
+        SgfCollectionReader reader =
+            getReader(text.getBytes("ISO-8859-1"), true, true);
+        final StringBuilder events = new StringBuilder();
+        SgfHandler handler = new SgfHandler()
+            {
+                public void startTree()
+                {
+                    events.append('(');
+                }
+
+                public void endTree()
+                {
+                    events.append(')');
+                }
+
+                public void startNode()
+                {
+                    events.append(';');
+                }
+
+                public void property(String identifier, List<String> values)
+                {
+                    events.append(identifier);
+                    for (String value : values)
+                        events.append('[').append(value).append(']');
+                }
+
+                public void endNode()
+                {
+                    events.append('.');
+                }
+            };
+        assertTrue(reader.readNext(handler));
+        assertEquals("(;AB[aa][bb]SZ[9].;B[cc].(;W[dd].))", events.toString());
+        events.setLength(0);
+        assertTrue(reader.readNext(handler));
+        assertEquals("(;B[ff].)", events.toString());
+        assertFalse(reader.readNext(handler));
+        assertEquals(2, reader.getNumberGames());
+    }
+
+    /** Test reading many games and values larger than the input buffer. */
+    public void testLarge() throws Exception
+    {
+        StringBuilder comment = new StringBuilder();
+        for (int i = 0; i < 100000; ++i)
+            comment.append((char)('a' + i % 26));
+        StringBuilder text = new StringBuilder();
+        int numberGames = 2000;
+        for (int i = 0; i < numberGames; ++i)
+        {
+            text.append("(;SZ[9]GN[");
+            text.append(i);
+            text.append("];B[aa]");
+            if (i == numberGames / 2)
+                text.append("C[").append(comment).append(']');
+            text.append(";W[bb])\n");
+        }
+        SgfCollectionReader reader =
+            getReader(text.toString().getBytes("ISO-8859-1"), false, false);
+        GameTree tree;
+        while ((tree = reader.readNext()) != null)
+        {
+            assertEquals(9, tree.getBoardSize());
+            ConstNode node = tree.getRoot().getChildConst();
+            if (reader.getNumberGames() == numberGames / 2 + 1)
+                assertEquals(comment.toString(), node.getComment());
+            assertEquals(GoPoint.get(1, 7),
+                         node.getChildConst().getMove().getPoint());
+        }
+        assertEquals(numberGames, reader.getNumberGames());
+    }
+
+    public void testSkip() throws Exception
+    {
+        String text = "(;C[root];B[aa](;W[bb]C[foo])(;W[cc](;B[dd])))"
+            + "(;B[ee]C[bar\\]])";
+        SgfCollectionReader reader =
+            getReader(text.getBytes("ISO-8859-1"), true, true);
+        ConstNode root = reader.readNext().getRootConst();
+        assertFalse(root.hasComment());
+        ConstNode node = root.getChildConst();
+        assertEquals(1, node.getNumberChildren());
+        node = node.getChildConst();
+        assertFalse(node.hasComment());
+        assertFalse(node.hasChildren());
+        root = reader.readNext().getRootConst();
+        assertEquals(GoPoint.get(4, 14), root.getMove().getPoint());
+        assertFalse(root.hasComment());
+        assertNull(reader.readNext());
+        assertNull(reader.getWarnings());
+    }
+
+    private SgfCollectionReader getReader(byte[] bytes,
+                                          boolean skipVariations,
+                                          boolean skipComments)
+    {
+        InputStream in = new ByteArrayInputStream(bytes);
+        return new SgfCollectionReader(in, null, skipVariations,
+                                       skipComments);
+    }
+}
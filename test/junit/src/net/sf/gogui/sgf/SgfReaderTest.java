@@ -38,6 +38,34 @@ public final class SgfReaderTest
         return new junit.framework.TestSuite(SgfReaderTest.class);
     }
 
+    /** Test that CA property is respected without reopening the stream. */
+    public void testCharset() throws Exception
+    {
+        String comment = "\u00e4\u00f6\u00fc";
+        String text = "(;FF[4]CA[UTF-8]GN[" + comment + "];B[aa]C["
+            + comment + "])";
+        InputStream in = new ByteArrayInputStream(text.getBytes("UTF-8"));
+        SgfReader reader = new SgfReader(in, null, null, 0);
+        ConstNode root = reader.getTree().getRootConst();
+        assertEquals(comment, root.getChildConst().getComment());
+    }
+
+    /** Test charset with multi-byte characters containing the byte of a
+        backslash. */
+    public void testCharsetShiftJis() throws Exception
+    {
+        // Second byte of U+8868 in Shift_JIS is 0x5C (backslash)
+        String comment = "\u8868";
+        String text = "(;FF[4]CA[Shift_JIS]C[" + comment + "];B[aa]C["
+            + comment + "])";
+        InputStream in =
+            new ByteArrayInputStream(text.getBytes("Shift_JIS"));
+        SgfReader reader = new SgfReader(in, null, null, 0);
+        ConstNode root = reader.getTree().getRootConst();
+        assertEquals(comment, root.getComment());
+        assertEquals(comment, root.getChildConst().getComment());
+    }
+
     public void testDuplicateProperty() throws Exception
     {
         readSgfFileString("(;C[foo]C[bar])", false, true);
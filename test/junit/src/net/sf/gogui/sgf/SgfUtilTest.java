@@ -2,6 +2,11 @@
 
 package net.sf.gogui.sgf;
 
+import java.util.Arrays;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.go.PointList;
+
 public final class SgfUtilTest
     extends junit.framework.TestCase
 {
@@ -15,6 +20,58 @@ public final class SgfUtilTest
         return new junit.framework.TestSuite(SgfUtilTest.class);
     }
 
+    public void testParsePoint() throws Exception
+    {
+        assertEquals(GoPoint.get(0, 18), SgfUtil.parsePoint("aa", 19));
+        assertEquals(GoPoint.get(2, 2), SgfUtil.parsePoint("C3", 19));
+        assertNull(SgfUtil.parsePoint("tt", 19));
+        assertNull(SgfUtil.parsePoint("jj", 9));
+        assertNull(SgfUtil.parsePoint("", 9));
+        PointList list =
+            SgfUtil.parsePointList(Arrays.asList("aa:bb", "tt", "cc"), 19);
+        assertEquals(5, list.size());
+        assertTrue(list.contains(GoPoint.get(1, 17)));
+        assertTrue(list.contains(GoPoint.get(2, 16)));
+    }
+
+    public void testParsePointStatus() throws Exception
+    {
+        SgfUtil.ParseStatus status = new SgfUtil.ParseStatus();
+        assertNull(SgfUtil.parsePoint("tt", 19, status));
+        assertFalse(status.m_nonStandardPass);
+        assertNull(SgfUtil.parsePoint("jj", 9, status));
+        assertTrue(status.m_nonStandardPass);
+        PointList list = new PointList();
+        SgfUtil.parsePointList(Arrays.asList("aa", "tt"), 19, list, status);
+        assertTrue(status.m_passInList);
+        assertFalse(status.m_passInCompressedList);
+        SgfUtil.parsePointList(Arrays.asList("aa:tt"), 19, list, status);
+        assertTrue(status.m_passInCompressedList);
+        assertEquals(1, list.size());
+        try
+        {
+            SgfUtil.parsePointList(Arrays.asList("aa", "kk", "bb"), 9, list,
+                                   status);
+            fail();
+        }
+        catch (InvalidPointException e)
+        {
+            assertTrue(status.m_outsideBoard);
+            assertEquals("kk", status.m_value);
+        }
+        status = new SgfUtil.ParseStatus();
+        try
+        {
+            SgfUtil.parsePoint("a", 9, status);
+            fail();
+        }
+        catch (InvalidPointException e)
+        {
+            assertFalse(status.m_outsideBoard);
+            assertEquals("a", status.m_value);
+        }
+    }
+
     public void testParseTime() throws Exception
     {
         assertEquals(13L * 3600L * 1000L, SgfUtil.parseTime("13h"));
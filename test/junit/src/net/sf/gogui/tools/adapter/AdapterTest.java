@@ -13,6 +13,7 @@ import net.sf.gogui.gtp.GtpEngineConnection;
 import net.sf.gogui.gtp.GtpExpectEngine;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.StreamCopy;
+import net.sf.gogui.util.StringCache;
 
 public final class AdapterTest
     extends junit.framework.TestCase
@@ -27,6 +28,51 @@ public final class AdapterTest
         return new junit.framework.TestSuite(AdapterTest.class);
     }
 
+    /** Test that cached responses are not sent to the program again and
+        that moves from the cache are played in the program. */
+    public void testCache() throws ErrorMessage, IOException, GtpError
+    {
+        initAdapter(false, "gogui-analyze_commands\nfoo");
+        expect("gogui-analyze_commands", "string/Foo/foo %p");
+        StringCache cache = new StringCache(10, null);
+        m_adapter.setCache(cache);
+        expect("foo D4", "bar");
+        assertEquals("bar", send("foo D4"));
+        assertEquals("bar", send("foo D4"));
+        expect("genmove b", "D4");
+        assertEquals("D4", send("genmove b"));
+        expect("boardsize 19", "");
+        expect("clear_board", "");
+        send("clear_board");
+        expect("play B D4", "");
+        assertEquals("D4", send("genmove b"));
+        assertExpectQueueEmpty();
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    /** Test that analyze commands of type param are not cached.
+        Repeating a command that sets a parameter must reach the program,
+        because the parameter may have been changed in between. */
+    public void testCacheParam() throws ErrorMessage, IOException, GtpError
+    {
+        initAdapter(false, "gogui-analyze_commands\nfoo_param");
+        expect("gogui-analyze_commands", "param/Foo Param/foo_param");
+        StringCache cache = new StringCache(10, null);
+        m_adapter.setCache(cache);
+        expect("foo_param bar 1", "");
+        send("foo_param bar 1");
+        expect("foo_param bar 2", "");
+        send("foo_param bar 2");
+        expect("foo_param bar 1", "");
+        send("foo_param bar 1");
+        expect("foo_param", "[string] bar 1");
+        assertEquals("[string] bar 1", send("foo_param"));
+        assertExpectQueueEmpty();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
     /** Test clear_board and boardsize commands.
         The GtpSynchronizer used by Adapter should always send a boardsize
         and clear_board command after receiving a boardsize command to avoid
@@ -0,0 +1,83 @@
+// DummyTest.java
+
+package net.sf.gogui.tools.dummy;
+
+import java.util.Random;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.gtp.BoardParameters;
+import net.sf.gogui.gtp.GtpEngineClient;
+import net.sf.gogui.gtp.GtpUtil;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class DummyTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(DummyTest.class);
+    }
+
+    /** Test that a game in benchmark mode ends with legal moves. */
+    public void testBenchmarkGame() throws Exception
+    {
+        Dummy dummy = new Dummy(null, true, 1, -1);
+        dummy.setBenchmark(null, 0, 0, 0);
+        GtpEngineClient gtp = new GtpEngineClient(dummy);
+        gtp.send("boardsize 9");
+        gtp.send("clear_board");
+        gtp.send("play b E5");
+        Board board = new Board(new BoardParameters(9));
+        board.play(GoColor.BLACK, GoPoint.get(4, 4));
+        int i;
+        for (i = 0; i < 1000 && ! board.bothPassed(); ++i)
+        {
+            GoColor c = board.getToMove();
+            String response = gtp.send("genmove " + c.getUppercaseLetter());
+            GoPoint p = GtpUtil.parsePoint(response, 9);
+            if (p != null)
+            {
+                assertEquals(GoColor.EMPTY, board.getColor(p));
+                assertFalse(board.isSuicide(c, p));
+                assertFalse(board.isKo(p));
+            }
+            board.play(c, p);
+        }
+        assertTrue(i < 1000);
+    }
+
+    public void testLatencyDistribution() throws ErrorMessage
+    {
+        Random random = new Random(1);
+        assertEquals(5000000L,
+                     LatencyDistribution.parse("5").sample(random));
+        LatencyDistribution uniform = LatencyDistribution.parse("1-2.5");
+        for (int i = 0; i < 100; ++i)
+        {
+            long time = uniform.sample(random);
+            assertTrue(time >= 1000000L && time <= 2500000L);
+        }
+        assertTrue(LatencyDistribution.parse("exp:0.5").sample(random) >= 0);
+        checkInvalid("2-1");
+        checkInvalid("-1");
+        checkInvalid("exp:foo");
+    }
+
+    private void checkInvalid(String spec)
+    {
+        try
+        {
+            LatencyDistribution.parse(spec);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+// ReplayTest.java
+
+package net.sf.gogui.tools.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpClient;
+import net.sf.gogui.gtp.GtpEngineConnection;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpExpectEngine;
+
+public final class ReplayTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ReplayTest.class);
+    }
+
+    /** Record a session and replay it with one changed response. */
+    public void testRecordAndReplay() throws Exception
+    {
+        GtpExpectEngine expect = new GtpExpectEngine(null);
+        GtpClient gtp =
+            (GtpClient)new GtpEngineConnection(expect).getGtpClient();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(out);
+        gtp.setIOCallback(new TranscriptWriter(print));
+        expect.expect("boardsize 9");
+        expect.expect("play B A1");
+        expect.expect("genmove W", "B2\nfoo");
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("boardsize 9");
+        commands.add("play B A1");
+        gtp.sendPipelined(commands);
+        gtp.send("genmove W");
+        try
+        {
+            gtp.send("play B A1");
+            fail();
+        }
+        catch (GtpError e)
+        {
+        }
+        print.close();
+        Transcript transcript =
+            new Transcript(new StringReader(out.toString()), "test");
+        assertEquals(4, transcript.size());
+        assertEquals("play B A1", transcript.get(1).getCommand());
+        assertEquals("B2\nfoo", transcript.get(2).getResponse());
+        assertTrue(transcript.get(3).isError());
+        assertEquals(4, transcript.getMetrics().getTotal().getCount());
+
+        expect = new GtpExpectEngine(null);
+        expect.expect("boardsize 9");
+        expect.expect("play B A1");
+        expect.expect("genmove W", "C3");
+        Replay replay = new Replay(new GtpEngineConnection(expect)
+                                   .getGtpClient(), transcript, false, null);
+        replay.run();
+        assertTrue(expect.isExpectQueueEmpty());
+        assertEquals(4, replay.getNumberSent());
+        assertEquals(1, replay.getNumberDifferences());
+        assertEquals(2, replay.getMetrics().get("play").getCount());
+    }
+
+    public void testRemoveId()
+    {
+        assertEquals("play B A1", Transcript.removeId("12 play B A1"));
+        assertEquals("name", Transcript.removeId(" name "));
+        assertEquals("123", Transcript.removeId("123"));
+    }
+}
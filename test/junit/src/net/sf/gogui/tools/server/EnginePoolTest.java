@@ -0,0 +1,155 @@
+// EnginePoolTest.java
+
+package net.sf.gogui.tools.server;
+
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpEngineClient;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpExpectEngine;
+import net.sf.gogui.tools.dummy.Dummy;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class EnginePoolTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(EnginePoolTest.class);
+    }
+
+    /** Test that a reused program receives clear_board. */
+    public void testClearBoard() throws Exception
+    {
+        final GtpExpectEngine expect = new GtpExpectEngine(null);
+        EnginePool pool = new EnginePool(new EnginePool.Factory() {
+                public GtpClientBase create()
+                {
+                    return new GtpEngineClient(expect);
+                }
+            }, 1, 0);
+        expect.expect("clear_board", "");
+        pool.release(pool.acquire(), false);
+        assertTrue(expect.isExpectQueueEmpty());
+    }
+
+    /** Test that the pool fails after a program could not be restarted. */
+    public void testFailedRestart() throws Exception
+    {
+        DummyFactory factory = new DummyFactory(1);
+        EnginePool pool = new EnginePool(factory, 1, 0);
+        pool.release(pool.acquire(), true);
+        assertEquals(4, factory.m_numberCalls);
+        try
+        {
+            pool.checkError();
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+        try
+        {
+            pool.acquire();
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+    }
+
+    /** Test that a program is restarted if the restart fails only once. */
+    public void testRestartRetry() throws Exception
+    {
+        DummyFactory factory = new DummyFactory(1);
+        factory.m_maxFailures = 1;
+        EnginePool pool = new EnginePool(factory, 1, 0);
+        pool.release(pool.acquire(), true);
+        assertEquals(3, factory.m_numberCalls);
+        pool.checkError();
+        assertNotNull(pool.acquire());
+    }
+
+    /** Test that a program is replaced after its setup was changed. */
+    public void testRestartSetupChanged() throws Exception
+    {
+        DummyFactory factory = new DummyFactory(-1);
+        EnginePool pool = new EnginePool(factory, 1, 0);
+        GtpClientBase gtp = pool.acquire();
+        pool.release(gtp, true);
+        assertEquals(2, factory.m_numberCalls);
+        assertNotSame(gtp, pool.acquire());
+    }
+
+    /** Test that programs are reused and that acquire waits for a released
+        program if all programs are in use. */
+    public void testReuse() throws Exception
+    {
+        DummyFactory factory = new DummyFactory(-1);
+        final EnginePool pool = new EnginePool(factory, 2, 0);
+        GtpClientBase gtp1 = pool.acquire();
+        GtpClientBase gtp2 = pool.acquire();
+        assertNotSame(gtp1, gtp2);
+        pool.release(gtp1, false);
+        assertSame(gtp1, pool.acquire());
+        final GtpClientBase[] acquired = new GtpClientBase[1];
+        Thread thread = new Thread() {
+                public void run()
+                {
+                    try
+                    {
+                        acquired[0] = pool.acquire();
+                    }
+                    catch (Exception e)
+                    {
+                    }
+                }
+            };
+        thread.start();
+        pool.release(gtp2, false);
+        thread.join();
+        assertSame(gtp2, acquired[0]);
+        assertEquals(2, factory.m_numberCalls);
+    }
+
+    /** Factory for Dummy programs, which can simulate failures. */
+    private static class DummyFactory
+        implements EnginePool.Factory
+    {
+        public int m_numberCalls;
+
+        /** Number of failures after m_maxSuccesses successful calls or -1
+            for unlimited. */
+        public int m_maxFailures = -1;
+
+        /** Number of successful calls before calls fail or -1 for no
+            failures. */
+        public final int m_maxSuccesses;
+
+        public DummyFactory(int maxSuccesses)
+        {
+            m_maxSuccesses = maxSuccesses;
+        }
+
+        public GtpClientBase create() throws GtpError
+        {
+            ++m_numberCalls;
+            int failures = m_numberCalls - m_maxSuccesses;
+            if (m_maxSuccesses >= 0 && failures > 0
+                && (m_maxFailures < 0 || failures <= m_maxFailures))
+                throw new GtpError("start failed");
+            try
+            {
+                return new GtpEngineClient(new Dummy(null, true, 0, -1));
+            }
+            catch (Exception e)
+            {
+                throw new GtpError(e.getMessage());
+            }
+        }
+    }
+}
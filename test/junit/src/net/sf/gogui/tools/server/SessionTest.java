@@ -0,0 +1,135 @@
+// SessionTest.java
+
+package net.sf.gogui.tools.server;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import net.sf.gogui.gtp.GtpClient;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpEngineClient;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.tools.dummy.Dummy;
+
+public final class SessionTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SessionTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_numberEngines = 0;
+        m_pool = new EnginePool(new EnginePool.Factory() {
+                public GtpClientBase create() throws GtpError
+                {
+                    ++m_numberEngines;
+                    try
+                    {
+                        return new GtpEngineClient(new Dummy(null, true, 0,
+                                                             -1));
+                    }
+                    catch (Exception e)
+                    {
+                        throw new GtpError(e.getMessage());
+                    }
+                }
+            }, 1, 0);
+        m_serverSocket = new ServerSocket(0);
+    }
+
+    public void tearDown() throws Exception
+    {
+        m_serverSocket.close();
+        m_pool.close();
+    }
+
+    /** Test that a session forwards commands and that quit returns the
+        program to the pool without restarting it. */
+    public void testQuit() throws Exception
+    {
+        GtpClientBase gtp = m_pool.acquire();
+        m_pool.release(gtp, false);
+        Socket socket = connect();
+        GtpClient client = new GtpClient(socket.getInputStream(),
+                                         socket.getOutputStream(), false,
+                                         null);
+        assertEquals("foo", client.send("echo foo"));
+        client.send("quit");
+        m_thread.join();
+        socket.close();
+        assertSame(gtp, m_pool.acquire());
+        assertEquals(1, m_numberEngines);
+    }
+
+    /** Test that closing the connection ends the session. */
+    public void testClose() throws Exception
+    {
+        Socket socket = connect();
+        socket.close();
+        m_thread.join();
+        assertNotNull(m_pool.acquire());
+        assertEquals(1, m_numberEngines);
+    }
+
+    /** Test that a read timeout of the socket ends the session. */
+    public void testTimeout() throws Exception
+    {
+        Socket socket = connect(100);
+        m_thread.join();
+        socket.close();
+        assertNotNull(m_pool.acquire());
+    }
+
+    /** Test that the program is restarted after the board size was
+        changed. */
+    public void testSetupChanged() throws Exception
+    {
+        GtpClientBase gtp = m_pool.acquire();
+        m_pool.release(gtp, false);
+        Socket socket = connect();
+        GtpClient client = new GtpClient(socket.getInputStream(),
+                                         socket.getOutputStream(), false,
+                                         null);
+        client.send("boardsize 9");
+        client.send("quit");
+        m_thread.join();
+        socket.close();
+        assertNotSame(gtp, m_pool.acquire());
+        assertEquals(2, m_numberEngines);
+    }
+
+    private int m_numberEngines;
+
+    private EnginePool m_pool;
+
+    private ServerSocket m_serverSocket;
+
+    private Thread m_thread;
+
+    private Socket connect() throws Exception
+    {
+        return connect(0);
+    }
+
+    /** Connect to the server socket and run a session for the connection
+        in m_thread.
+        @param timeout Read timeout of the session in milliseconds or zero
+        for no timeout */
+    private Socket connect(int timeout) throws Exception
+    {
+        Socket socket = new Socket("localhost",
+                                   m_serverSocket.getLocalPort());
+        Socket sessionSocket = m_serverSocket.accept();
+        sessionSocket.setSoTimeout(timeout);
+        m_thread = new Thread(new Session(m_pool, sessionSocket));
+        m_thread.start();
+        return socket;
+    }
+}
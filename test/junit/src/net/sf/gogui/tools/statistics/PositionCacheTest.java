@@ -0,0 +1,90 @@
+// PositionCacheTest.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.BoardUtil;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.gtp.BoardParameters;
+
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+public final class PositionCacheTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(PositionCacheTest.class);
+    }
+
+    public void testFile() throws IOException
+    {
+        File file = File.createTempFile("gogui", null);
+        file.delete();
+        file.deleteOnExit();
+        Board board = new Board(new BoardParameters(9));
+        Komi komi = new Komi(6.5);
+        PositionCache cache = new PositionCache(10, file, false);
+        cache.put(board, komi, "foo", "line 1\nline\t2\\");
+        cache.close();
+        cache = new PositionCache(10, file, false);
+        assertEquals(1, cache.size());
+        assertEquals("line 1\nline\t2\\", cache.get(board, komi, "foo"));
+        assertNull(cache.get(board, null, "foo"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        cache.close();
+    }
+
+    public void testPosition() throws IOException
+    {
+        PositionCache cache = new PositionCache(10, null, false);
+        Board board = new Board(new BoardParameters(9));
+        board.play(BLACK, GoPoint.get(2, 2));
+        cache.put(board, null, "foo", "1");
+        assertEquals("1", cache.get(board, null, "foo"));
+        assertNull(cache.get(board, null, "bar"));
+        board.play(WHITE, GoPoint.get(6, 6));
+        assertNull(cache.get(board, null, "foo"));
+        board.undo();
+        assertEquals("1", cache.get(board, null, "foo"));
+        Board other = new Board(new BoardParameters(9));
+        other.play(BLACK, GoPoint.get(6, 2));
+        assertNull(cache.get(other, null, "foo"));
+    }
+
+    /** Test that symmetric positions share entries and that point
+        responses are transformed. */
+    public void testSymmetry() throws IOException
+    {
+        PositionCache cache = new PositionCache(10, null, true);
+        Board board = new Board(new BoardParameters(9));
+        board.play(BLACK, GoPoint.get(2, 3));
+        cache.put(board, null, "reg_genmove w", "D7");
+        cache.put(board, null, "estimate_score", "B+3");
+        for (int i = 0; i < 8; ++i)
+        {
+            Board rotated = new Board(new BoardParameters(9));
+            rotated.play(BLACK, rotate(i, GoPoint.get(2, 3)));
+            String expected = rotate(i, GoPoint.get(3, 6)).toString();
+            assertEquals(expected, cache.get(rotated, null,
+                                             "reg_genmove w"));
+            assertEquals("B+3", cache.get(rotated, null, "estimate_score"));
+        }
+        assertEquals(2, cache.size());
+    }
+
+    private static GoPoint rotate(int rotation, GoPoint p)
+    {
+        return BoardUtil.rotate(rotation, p, 9);
+    }
+}
@@ -2,10 +2,17 @@
 
 package net.sf.gogui.tools.statistics;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpEngineClient;
 import net.sf.gogui.gtp.GtpExpectEngine;
+import net.sf.gogui.tools.dummy.Dummy;
+import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.Table;
 
 public final class StatisticsTest
     extends junit.framework.TestCase
@@ -20,6 +27,47 @@ public final class StatisticsTest
         return new junit.framework.TestSuite(StatisticsTest.class);
     }
 
+    /** Test that pages with unchanged inputs are not written again. */
+    public void testAnalyze() throws Exception
+    {
+        GtpClientBase gtp = new GtpEngineClient(new Dummy(null, true, 0, -1));
+        ArrayList<String> sgfFiles = new ArrayList<String>();
+        sgfFiles.add(getClass().getResource("game-1.sgf").getFile());
+        sgfFiles.add(getClass().getResource("game-2.sgf").getFile());
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("echo 1");
+        Statistics statistics = new Statistics();
+        statistics.setQuiet(true);
+        statistics.run(gtp, null, sgfFiles, 9, commands, null, null, false,
+                       false, false);
+        File dir = File.createTempFile("gogui", "");
+        dir.delete();
+        dir.mkdir();
+        try
+        {
+            File file = new File(dir, "statistics.dat");
+            statistics.saveTable(file);
+            new Analyze(file.getPath(), "", 3, 2);
+            File gamePage = new File(dir, "statistics.game-0.html");
+            File plot = new File(dir, "statistics.game-1.command-0.png");
+            assertTrue(new File(dir, "statistics.manifest").exists());
+            assertTrue(new File(dir, "statistics.command-0.html").exists());
+            assertTrue(gamePage.exists());
+            assertTrue(plot.exists());
+            writeFile(gamePage, "unchanged");
+            plot.delete();
+            new Analyze(file.getPath(), "", 3, 2);
+            assertEquals("unchanged", readFile(gamePage));
+            assertTrue(plot.exists());
+        }
+        finally
+        {
+            for (File f : dir.listFiles())
+                f.delete();
+            dir.delete();
+        }
+    }
+
     public void testBasics() throws Exception
     {
         GtpExpectEngine expect = new GtpExpectEngine(null);
@@ -51,4 +99,190 @@ public final class StatisticsTest
                        allowSetup, backward, false);
         assertTrue(expect.isExpectQueueEmpty());
     }
+
+    /** Test that repeated positions are answered from the cache. */
+    public void testCache() throws Exception
+    {
+        GtpClientBase gtp = new GtpEngineClient(new Dummy(null, true, 0, -1));
+        ArrayList<String> sgfFiles = new ArrayList<String>();
+        sgfFiles.add(getClass().getResource("game-1.sgf").getFile());
+        sgfFiles.add(getClass().getResource("game-1.sgf").getFile());
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("name");
+        Statistics statistics = new Statistics();
+        statistics.setQuiet(true);
+        PositionCache cache = new PositionCache(100, null, false);
+        statistics.setCache(cache);
+        statistics.run(gtp, null, sgfFiles, 9, commands, null, null, false,
+                       false, false);
+        assertEquals(4, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            statistics.saveTable(file);
+            Table table = new Table();
+            table.read(file);
+            assertEquals("4", table.getProperty("Cache hits"));
+            assertEquals(8, table.getNumberRows());
+            for (int row = 0; row < 8; ++row)
+                assertEquals("gogui-dummy", table.get("name", row));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /** Test continuing a terminated run from the journal. */
+    public void testJournal() throws Exception
+    {
+        ArrayList<String> sgfFiles = new ArrayList<String>();
+        sgfFiles.add(getClass().getResource("game-1.sgf").getFile());
+        sgfFiles.add(getClass().getResource("game-2.sgf").getFile());
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("name");
+        File journal = File.createTempFile("gogui", ".journal");
+        journal.delete();
+        try
+        {
+            Table table = runWithJournal(sgfFiles, commands, journal);
+            assertEquals(4 + 6, table.getNumberRows());
+            // Keep only the first file and replace the responses, so that
+            // the rows from the journal can be recognized. Add an
+            // incomplete line like after a crash during a write.
+            String content = readFile(journal);
+            String done = "done\t0\t" + sgfFiles.get(0) + "\n";
+            content = content.substring(0, content.indexOf(done)
+                                        + done.length());
+            content = content.replace("gogui-dummy", "journal");
+            writeFile(journal, content + "row\tfoo");
+            table = runWithJournal(sgfFiles, commands, journal);
+            assertEquals(4 + 6, table.getNumberRows());
+            assertEquals("2", table.getProperty("Games"));
+            for (int row = 0; row < table.getNumberRows(); ++row)
+                assertEquals(row < 4 ? "journal" : "gogui-dummy",
+                             table.get("name", row));
+            content = readFile(journal);
+            assertTrue(content.endsWith("done\t1\t" + sgfFiles.get(1)
+                                        + "\n"));
+            assertFalse(content.contains("foo"));
+            commands.add("version");
+            try
+            {
+                runWithJournal(sgfFiles, commands, journal);
+                fail();
+            }
+            catch (ErrorMessage e)
+            {
+            }
+        }
+        finally
+        {
+            journal.delete();
+        }
+    }
+
+    /** Test that the rows of several workers are in the order of the
+        files. */
+    public void testWorkers() throws Exception
+    {
+        ArrayList<GtpClientBase> gtps = new ArrayList<GtpClientBase>();
+        for (int i = 0; i < 3; ++i)
+            gtps.add(new GtpEngineClient(new Dummy(null, true, i, -1)));
+        ArrayList<String> sgfFiles = new ArrayList<String>();
+        for (int i = 0; i < 4; ++i)
+        {
+            sgfFiles.add(getClass().getResource("game-1.sgf").getFile());
+            sgfFiles.add(getClass().getResource("game-2.sgf").getFile());
+        }
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("name");
+        Statistics statistics = new Statistics();
+        statistics.setQuiet(true);
+        statistics.run(gtps, null, sgfFiles, 9, commands, null, null,
+                       false, false, false);
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            statistics.saveTable(file);
+            Table table = new Table();
+            table.read(file);
+            assertEquals("8", table.getProperty("Games"));
+            assertEquals("3", table.getProperty("Workers"));
+            assertEquals(4 * (4 + 6), table.getNumberRows());
+            int row = 0;
+            for (int i = 0; i < 8; ++i)
+            {
+                String name = sgfFiles.get(i);
+                int numberMoves = (i % 2 == 0 ? 3 : 5);
+                for (int move = 0; move <= numberMoves; ++move)
+                {
+                    assertEquals(name, table.get("File", row));
+                    assertEquals(move, table.getInt("Move", row));
+                    ++row;
+                }
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static String readFile(File file) throws IOException
+    {
+        byte[] bytes = new byte[(int)file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            int length = 0;
+            while (length < bytes.length)
+                length += in.read(bytes, length, bytes.length - length);
+        }
+        finally
+        {
+            in.close();
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    private static Table runWithJournal(ArrayList<String> sgfFiles,
+                                        ArrayList<String> commands,
+                                        File journal)
+        throws Exception
+    {
+        GtpClientBase gtp = new GtpEngineClient(new Dummy(null, true, 0, -1));
+        Statistics statistics = new Statistics();
+        statistics.setQuiet(true);
+        statistics.setJournal(journal);
+        statistics.run(gtp, null, sgfFiles, 9, commands, null, null, false,
+                       false, false);
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            statistics.saveTable(file);
+            Table table = new Table();
+            table.read(file);
+            return table;
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static void writeFile(File file, String content)
+        throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
 }
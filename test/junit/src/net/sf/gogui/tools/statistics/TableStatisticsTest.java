@@ -0,0 +1,68 @@
+// TableStatisticsTest.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.util.ArrayList;
+import net.sf.gogui.util.Table;
+
+public final class TableStatisticsTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(TableStatisticsTest.class);
+    }
+
+    public void testBasics() throws Exception
+    {
+        ArrayList<String> columnTitles = new ArrayList<String>();
+        columnTitles.add("File");
+        columnTitles.add("Move");
+        columnTitles.add("score");
+        columnTitles.add("final_score");
+        Table table = new Table(columnTitles);
+        addRow(table, "1.sgf", 0, "1", null);
+        addRow(table, "1.sgf", 1, "2", null);
+        addRow(table, "1.sgf", 2, "foo", "B+3");
+        addRow(table, "2.sgf", 0, "3", null);
+        addRow(table, "2.sgf", 1, "4.5", "2");
+        TableStatistics statistics = new TableStatistics(table);
+        assertEquals(2, statistics.getNumberCommands());
+        assertEquals(2, statistics.getMaxMove());
+        PositionStatistics all = statistics.getStatisticsAll(0);
+        assertEquals(4, all.getCount());
+        assertEquals(1, all.m_numberNoResult);
+        assertEquals(10.5, all.getSum(), 1e-10);
+        assertFalse(all.m_onlyIntValues);
+        PositionStatistics atMove = statistics.getStatisticsAtMove(0, 1);
+        assertEquals(2, atMove.getCount());
+        assertEquals(3.25, atMove.getMean(), 1e-10);
+        assertFalse(atMove.m_onlyIntValues);
+        assertEquals(0, statistics.getStatisticsAtMove(0, 3).getCount());
+        PositionStatistics finalStatistics =
+            statistics.getStatisticsFinal(0);
+        assertEquals(1, finalStatistics.getCount());
+        assertEquals(1, finalStatistics.m_numberNoResult);
+        assertNull(statistics.getGameResults(0));
+        ArrayList<String> gameResults = statistics.getGameResults(1);
+        assertEquals(2, gameResults.size());
+        assertEquals("B+3", gameResults.get(0));
+        assertEquals("2", gameResults.get(1));
+        assertEquals(1, statistics.getStatisticsAll(1).getCount());
+    }
+
+    private static void addRow(Table table, String file, int move,
+                               String value1, String value2)
+    {
+        table.startRow();
+        table.set(0, file);
+        table.set(1, Integer.toString(move));
+        table.set(2, value1);
+        table.set(3, value2);
+    }
+}
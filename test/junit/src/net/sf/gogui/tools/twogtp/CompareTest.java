@@ -0,0 +1,201 @@
+// CompareTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+import net.sf.gogui.sgf.SgfError;
+import net.sf.gogui.sgf.SgfReader;
+
+public final class CompareTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CompareTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_dir = DummyProgram.createTempDir();
+    }
+
+    public void tearDown()
+    {
+        DummyProgram.deleteTempDir(m_dir);
+    }
+
+    public void testBoardSizeMismatch() throws Exception
+    {
+        ArrayList<String> files = new ArrayList<String>();
+        files.add(write("1.sgf", "(;FF[4]SZ[9];B[cc])"));
+        files.add(write("2.sgf", "(;FF[4]SZ[13];B[cc])"));
+        try
+        {
+            compare(files, 2);
+            fail();
+        }
+        catch (Exception e)
+        {
+            assertTrue(e.getMessage().indexOf("Board size") >= 0);
+        }
+    }
+
+    /** Test that invalid board sizes are ignored like in SgfReader. */
+    public void testInvalidSize() throws Exception
+    {
+        ArrayList<String> files = new ArrayList<String>();
+        files.add(write("1.sgf", "(;FF[4];B[cc])"));
+        files.add(write("2.sgf", "(;FF[4]SZ[foo];B[cc])"));
+        files.add(write("3.sgf", "(;FF[4]SZ[99];B[cc])"));
+        assertEquals("0 " + files.get(0) + " -\n"
+                     + "1 " + files.get(1) + " 0\n"
+                     + "2 " + files.get(2) + " 0\n", compare(files, 2));
+    }
+
+    /** Test that exceptions of the reader threads are rethrown. */
+    public void testReadError() throws Exception
+    {
+        ArrayList<String> files = new ArrayList<String>();
+        files.add(write("1.sgf", "(;FF[4]SZ[9];B[cc])"));
+        files.add(write("2.sgf", "(;FF[4]SZ[9];B[zz])"));
+        try
+        {
+            compare(files, 2);
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+        files.set(1, new File(m_dir, "missing.sgf").toString());
+        try
+        {
+            compare(files, 2);
+            fail();
+        }
+        catch (FileNotFoundException e)
+        {
+        }
+    }
+
+    /** Test that the placements read with PlacementHandler are the same as
+        the ones of getPlacements() on the game tree. */
+    public void testRead() throws Exception
+    {
+        checkRead("(;FF[4]SZ[9];B[cc];W[gg];B[];W[tt])");
+        checkRead("(;FF[4]SZ[9]AB[aa:bc][ee]AW[gg][hh:ih];B[cd]"
+                  + ";AE[bb]AB[ii];W[dd])");
+        checkRead("(;FF[4]AW[ss]AB[aa:cb];B[dd];W[tt](;B[ee])(;B[ff]))");
+        checkRead("(;FF[4]SZ[9];B[jj];W[C3];B[cc]AW[dd])");
+    }
+
+    /** Test that the output with several threads is the same as with a
+        single thread. */
+    public void testThreads() throws Exception
+    {
+        Random random = new Random(3);
+        ArrayList<String> games = new ArrayList<String>();
+        for (int i = 0; i < 5; ++i)
+            games.add(createGame(random));
+        ArrayList<String> files = new ArrayList<String>();
+        // More files than read ahead by compare()
+        for (int i = 0; i < 100; ++i)
+        {
+            String game;
+            if (random.nextInt(3) == 0)
+                game = createGame(random);
+            else
+                game = games.get(random.nextInt(games.size()));
+            files.add(write(i + ".sgf", game));
+        }
+        String expected = compare(files, 1);
+        assertTrue(expected.indexOf(" -\n") >= 0);
+        assertEquals(100, expected.split("\n").length);
+        assertEquals(expected, compare(files, 4));
+    }
+
+    private File m_dir;
+
+    private void checkRead(String sgf) throws Exception
+    {
+        SgfReader reader =
+            new SgfReader(new ByteArrayInputStream(sgf.getBytes("UTF-8")),
+                          null, null, 0);
+        ArrayList<Compare.Placement> expected =
+            Compare.getPlacements(reader.getTree().getRoot());
+        Compare.ReadResult result = Compare.read(write("test.sgf", sgf));
+        assertEquals(reader.getTree().getBoardSize(), result.m_size);
+        assertEquals(expected.size(), result.m_moves.size());
+        for (int i = 0; i < expected.size(); ++i)
+        {
+            Compare.Placement placement = result.m_moves.get(i);
+            assertEquals(expected.get(i).m_isSetup, placement.m_isSetup);
+            assertEquals(expected.get(i).m_color, placement.m_color);
+            assertEquals(expected.get(i).m_point, placement.m_point);
+        }
+    }
+
+    /** Run Compare.compare() and return its output. */
+    private static String compare(ArrayList<String> files, int numberThreads)
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream oldOut = System.out;
+        System.setOut(new PrintStream(out, true, "UTF-8"));
+        try
+        {
+            Compare.compare(files, numberThreads, null);
+        }
+        finally
+        {
+            System.setOut(oldOut);
+        }
+        return out.toString("UTF-8").replace("\r\n", "\n");
+    }
+
+    private static String createGame(Random random)
+    {
+        StringBuilder buffer = new StringBuilder("(;FF[4]SZ[9]");
+        if (random.nextBoolean())
+            buffer.append("AB[aa:bb]AW[ii]");
+        int numberMoves = 1 + random.nextInt(40);
+        for (int i = 0; i < numberMoves; ++i)
+        {
+            buffer.append(i % 2 == 0 ? ";B[" : ";W[");
+            if (random.nextInt(20) != 0)
+            {
+                buffer.append((char)('a' + random.nextInt(9)));
+                buffer.append((char)('a' + random.nextInt(9)));
+            }
+            buffer.append(']');
+        }
+        buffer.append(')');
+        return buffer.toString();
+    }
+
+    private String write(String name, String sgf) throws Exception
+    {
+        File file = new File(m_dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(sgf.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        return file.toString();
+    }
+}
@@ -0,0 +1,45 @@
+// DummyProgram.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.File;
+
+/** Utility functions for tests that need gogui-dummy as a program
+    running in its own process. */
+final class DummyProgram
+{
+    /** Get the command line for running gogui-dummy with the Java runtime
+        and class path of the test.
+        @param seed The random seed, used to tell programs apart by their
+        command. */
+    public static String getCommand(int seed)
+    {
+        File java = new File(new File(System.getProperty("java.home"), "bin"),
+                             "java");
+        return "\"" + java + "\" -cp \""
+            + System.getProperty("java.class.path")
+            + "\" net.sf.gogui.tools.dummy.Main -srand " + seed;
+    }
+
+    /** Create a temporary directory. */
+    public static File createTempDir() throws Exception
+    {
+        File dir = File.createTempFile("gogui", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    /** Delete a directory created with createTempDir(). */
+    public static void deleteTempDir(File dir)
+    {
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private DummyProgram()
+    {
+    }
+}
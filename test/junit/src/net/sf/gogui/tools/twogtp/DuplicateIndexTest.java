@@ -0,0 +1,122 @@
+// DuplicateIndexTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.BoardUtil;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.gtp.BoardParameters;
+
+public final class DuplicateIndexTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(DuplicateIndexTest.class);
+    }
+
+    public void testExact()
+    {
+        DuplicateIndex index = new DuplicateIndex(9);
+        ArrayList<Compare.Placement> game = createGame(new Random(1), 9, 40);
+        assertEquals("-", index.checkDuplicate(game, false, false));
+        index.add(0, game);
+        index.add(1, createGame(new Random(2), 9, 40));
+        assertEquals("0", index.checkDuplicate(game, false, false));
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            assertEquals("0", index.checkDuplicate(rotate(game, rot, 9),
+                                                   false, false));
+        // Game 0 was played with players not exchanged
+        assertEquals("-", index.checkDuplicate(game, true, true));
+    }
+
+    public void testNear()
+    {
+        DuplicateIndex index = new DuplicateIndex(9);
+        ArrayList<Compare.Placement> game = createGame(new Random(1), 9, 50);
+        index.add(3, game);
+        ArrayList<Compare.Placement> changed =
+            new ArrayList<Compare.Placement>(game);
+        changed.set(7, changed.get(8));
+        changed.set(20, changed.get(21));
+        changed.remove(changed.size() - 1);
+        assertEquals("3?", index.checkDuplicate(rotate(changed, 5, 9),
+                                                false, false));
+    }
+
+    /** Compare results with Compare.checkDuplicate. */
+    public void testSameAsCompare()
+    {
+        int size = 5;
+        Board board = new Board(new BoardParameters(size));
+        Random random = new Random(7);
+        DuplicateIndex index = new DuplicateIndex(size);
+        TreeMap<Integer, ArrayList<Compare.Placement>> games =
+            new TreeMap<Integer, ArrayList<Compare.Placement>>();
+        ArrayList<ArrayList<Compare.Placement>> base =
+            new ArrayList<ArrayList<Compare.Placement>>();
+        for (int i = 0; i < 5; ++i)
+            base.add(createGame(random, size, 10 + random.nextInt(20)));
+        for (int n = 0; n < 300; ++n)
+        {
+            ArrayList<Compare.Placement> game =
+                new ArrayList<Compare.Placement>(base.get(random.nextInt(5)));
+            int numberChanges = random.nextInt(4);
+            for (int i = 0; i < numberChanges && game.size() > 0; ++i)
+                game.set(random.nextInt(game.size()),
+                         createGame(random, size, 1).get(0));
+            if (random.nextBoolean() && game.size() > 0)
+                game.remove(game.size() - 1);
+            game = rotate(game, random.nextInt(BoardUtil.NUMBER_ROTATIONS),
+                          size);
+            boolean isAlternated = random.nextBoolean();
+            String expected = Compare.checkDuplicate(board, game, games,
+                                                     true, isAlternated);
+            String result = index.checkDuplicate(game, true, isAlternated);
+            if (expected.endsWith("?"))
+                assertTrue(result.endsWith("?"));
+            else
+                assertEquals(expected, result);
+            index.add(n, game);
+            games.put(n, game);
+        }
+    }
+
+    private static ArrayList<Compare.Placement> createGame(Random random,
+                                                           int size,
+                                                           int numberMoves)
+    {
+        ArrayList<Compare.Placement> result =
+            new ArrayList<Compare.Placement>();
+        for (int i = 0; i < numberMoves; ++i)
+        {
+            GoColor color = (i % 2 == 0 ? GoColor.BLACK : GoColor.WHITE);
+            GoPoint point = GoPoint.get(random.nextInt(size),
+                                        random.nextInt(size));
+            result.add(new Compare.Placement(false, color, point));
+        }
+        return result;
+    }
+
+    private static ArrayList<Compare.Placement>
+        rotate(ArrayList<Compare.Placement> game, int rot, int size)
+    {
+        ArrayList<Compare.Placement> result =
+            new ArrayList<Compare.Placement>();
+        for (Compare.Placement move : game)
+            result.add(new Compare.Placement(move.m_isSetup, move.m_color,
+                                             BoardUtil.rotate(rot,
+                                                              move.m_point,
+                                                              size)));
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+// ProgramPoolTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpError;
+
+public final class ProgramPoolTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ProgramPoolTest.class);
+    }
+
+    public void setUp()
+    {
+        ArrayList<String> commands = new ArrayList<String>();
+        for (int i = 0; i < 3; ++i)
+            commands.add(DummyProgram.getCommand(i));
+        m_pool = new ProgramPool(commands, 2, false);
+    }
+
+    public void tearDown()
+    {
+        m_pool.close();
+    }
+
+    /** Test that a program that died is replaced by a new process. */
+    public void testCrash() throws Exception
+    {
+        Program program = m_pool.acquire(0)[0];
+        try
+        {
+            program.send("gogui-dummy-crash");
+            fail();
+        }
+        catch (GtpError e)
+        {
+        }
+        assertTrue(program.isProgramDead());
+        m_pool.release(0, program);
+        assertEquals(0, m_pool.getNumberIdle(0));
+        Program newProgram = m_pool.acquire(0)[0];
+        assertNotSame(program, newProgram);
+        assertEquals("gogui-dummy", newProgram.send("name"));
+        m_pool.release(0, newProgram);
+        assertEquals(1, m_pool.getNumberIdle(0));
+    }
+
+    /** Test that an idle process of another program is terminated if the
+        maximum number of processes is reached. */
+    public void testEvict() throws Exception
+    {
+        Program[] programs = m_pool.acquire(0, 1);
+        m_pool.release(0, programs[0]);
+        m_pool.release(1, programs[1]);
+        assertEquals(1, m_pool.getNumberIdle(0));
+        assertEquals(1, m_pool.getNumberIdle(1));
+        Program program = m_pool.acquire(2)[0];
+        assertEquals(1, m_pool.getNumberIdle(0) + m_pool.getNumberIdle(1));
+        m_pool.release(2, program);
+        assertEquals(1, m_pool.getNumberIdle(2));
+    }
+
+    /** Test that an idle process is reused. */
+    public void testReuse() throws Exception
+    {
+        Program program = m_pool.acquire(0)[0];
+        m_pool.release(0, program);
+        assertSame(program, m_pool.acquire(0)[0]);
+        m_pool.release(0, program);
+    }
+
+    /** Test that acquire waits if all processes are in use. */
+    public void testWait() throws Exception
+    {
+        final Program[] programs = m_pool.acquire(0, 1);
+        final Program[] acquired = new Program[1];
+        Thread thread = new Thread() {
+                public void run()
+                {
+                    try
+                    {
+                        acquired[0] = m_pool.acquire(0)[0];
+                    }
+                    catch (Exception e)
+                    {
+                    }
+                }
+            };
+        thread.start();
+        thread.join(500);
+        assertTrue(thread.isAlive());
+        // Release program 0 first, otherwise the waiting thread could
+        // terminate the idle program 1 and start a new process
+        m_pool.release(0, programs[0]);
+        thread.join();
+        m_pool.release(1, programs[1]);
+        assertSame(programs[0], acquired[0]);
+        m_pool.release(0, acquired[0]);
+    }
+
+    private ProgramPool m_pool;
+}
@@ -0,0 +1,92 @@
+// TournamentTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.File;
+import java.util.ArrayList;
+import net.sf.gogui.game.TimeSettings;
+import net.sf.gogui.go.KoRule;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class TournamentTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(TournamentTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_dir = DummyProgram.createTempDir();
+        m_prefix = new File(m_dir, "test").toString();
+        m_commands = new ArrayList<String>();
+        for (int i = 0; i < 3; ++i)
+            m_commands.add(DummyProgram.getCommand(i));
+    }
+
+    public void tearDown()
+    {
+        DummyProgram.deleteTempDir(m_dir);
+    }
+
+    /** Test that a gauntlet plays only the pairings with the first
+        program. */
+    public void testGauntlet() throws Exception
+    {
+        createTournament(true, 2).run();
+        assertTrue(ResultFile.isFinished(m_prefix + "-1-2", 2));
+        assertTrue(ResultFile.isFinished(m_prefix + "-1-3", 2));
+        assertFalse(new File(m_prefix + "-2-3.dat").exists());
+    }
+
+    /** Test that the number of processes is checked against the number of
+        threads. */
+    public void testMaxProcesses() throws Exception
+    {
+        try
+        {
+            new Tournament(m_commands, "", false, 2, 9, new Komi(6.5), 0, 20,
+                           KoRule.SIMPLE, true, m_prefix, false, false, null,
+                           null, false, 2, 3);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+    }
+
+    /** Test that all games of a round-robin tournament are played and that
+        a finished tournament is not continued. */
+    public void testRoundRobin() throws Exception
+    {
+        createTournament(false, 2).run();
+        assertTrue(ResultFile.isFinished(m_prefix + "-1-2", 2));
+        assertTrue(ResultFile.isFinished(m_prefix + "-1-3", 2));
+        assertTrue(ResultFile.isFinished(m_prefix + "-2-3", 2));
+        assertFalse(ResultFile.isFinished(m_prefix + "-2-3", 3));
+        long modified = new File(m_prefix + "-1-2.dat").lastModified();
+        createTournament(false, 2).run();
+        assertEquals(modified, new File(m_prefix + "-1-2.dat").lastModified());
+    }
+
+    private ArrayList<String> m_commands;
+
+    private File m_dir;
+
+    private String m_prefix;
+
+    private Tournament createTournament(boolean gauntlet, int numberGames)
+        throws ErrorMessage
+    {
+        return new Tournament(m_commands, "", gauntlet, numberGames, 9,
+                              new Komi(6.5), 0, 20, KoRule.SIMPLE, true,
+                              m_prefix, false, false, null, null, false, 2, 4);
+    }
+}
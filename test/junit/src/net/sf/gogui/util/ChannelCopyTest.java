@@ -0,0 +1,148 @@
+// ChannelCopyTest.java
+
+package net.sf.gogui.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+public final class ChannelCopyTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ChannelCopyTest.class);
+    }
+
+    /** Test copying from a file channel to a pipe.
+        The file is larger than the buffer size, so that it is copied with
+        several calls of FileChannel.transferTo. The copy starts at the
+        current position of the file channel. */
+    public void testFileToPipe() throws Exception
+    {
+        byte[] data = getData(200000);
+        FileChannel src = openFile(data);
+        src.position(10);
+        Pipe pipe = Pipe.open();
+        Thread thread =
+            new Thread(new ChannelCopy(null, src, pipe.sink(), true));
+        thread.start();
+        byte[] result = readAll(pipe.source());
+        thread.join();
+        src.close();
+        assertEquals(data.length - 10, result.length);
+        for (int i = 0; i < result.length; ++i)
+            assertEquals(data[i + 10], result[i]);
+    }
+
+    /** Test copying from a file channel to a socket.
+        The socket is only shut down for output at the end of the file, so
+        that the other side reads the end of the stream, but can still send
+        data. */
+    public void testFileToSocket() throws Exception
+    {
+        byte[] data = getData(100000);
+        FileChannel src = openFile(data);
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("localhost", 0));
+        SocketChannel client = SocketChannel.open(
+                                  server.socket().getLocalSocketAddress());
+        SocketChannel socket = server.accept();
+        Thread thread = new Thread(new ChannelCopy(null, src, socket, true));
+        thread.start();
+        byte[] result = readAll(client);
+        thread.join();
+        assertTrue(Arrays.equals(data, result));
+        assertTrue(socket.isOpen());
+        client.write(ByteBuffer.wrap(new byte[] { 'a' }));
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        assertEquals(1, socket.read(buffer));
+        assertEquals('a', buffer.get(0));
+        src.close();
+        client.close();
+        socket.close();
+        server.close();
+    }
+
+    /** Test that the data is logged and that the destination is only
+        closed at the end of the source if requested. */
+    public void testLogAndEndOfFile() throws Exception
+    {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Pipe src = Pipe.open();
+        Pipe dest = Pipe.open();
+        Thread thread = new Thread(new ChannelCopy(new PrintStream(log),
+                                                   src.source(),
+                                                   dest.sink(), false));
+        thread.start();
+        src.sink().write(ByteBuffer.wrap("foo\n".getBytes()));
+        src.sink().close();
+        thread.join();
+        assertTrue(dest.sink().isOpen());
+        dest.sink().close();
+        assertEquals("foo\n", new String(readAll(dest.source())));
+        assertEquals("foo\n", log.toString());
+    }
+
+    /** Test that a channel from newFlushingChannel flushes buffered
+        streams after each write. */
+    public void testNewFlushingChannel() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel =
+            ChannelCopy.newFlushingChannel(new BufferedOutputStream(out));
+        channel.write(ByteBuffer.wrap("foo\n".getBytes()));
+        assertEquals("foo\n", out.toString());
+        channel.close();
+        assertFalse(channel.isOpen());
+    }
+
+    private static byte[] getData(int size)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i)
+            data[i] = (byte)(i % 251);
+        return data;
+    }
+
+    private static FileChannel openFile(byte[] data) throws IOException
+    {
+        File file = File.createTempFile("gogui", null);
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        return new FileInputStream(file).getChannel();
+    }
+
+    private static byte[] readAll(ReadableByteChannel channel)
+        throws IOException
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (channel.read(buffer) >= 0)
+        {
+            result.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        return result.toByteArray();
+    }
+}
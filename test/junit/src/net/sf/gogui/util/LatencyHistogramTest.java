@@ -0,0 +1,67 @@
+// LatencyHistogramTest.java
+
+package net.sf.gogui.util;
+
+public final class LatencyHistogramTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(LatencyHistogramTest.class);
+    }
+
+    public void testBasic()
+    {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(50));
+        for (long i = 1; i <= 100; ++i)
+            h.add(i * 1000000);
+        assertEquals(100, h.getCount());
+        assertEquals(100000000L, h.getMax());
+        assertEquals(50.5e6, h.getMean(), 1e-3);
+        assertWithinError(50000000L, h.getPercentile(50));
+        assertWithinError(90000000L, h.getPercentile(90));
+        assertEquals(100000000L, h.getPercentile(100));
+        assertWithinError(1000000L, h.getPercentile(0));
+    }
+
+    public void testMerge()
+    {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        for (int i = 0; i < 90; ++i)
+            h1.add(1000);
+        for (int i = 0; i < 10; ++i)
+            h2.add(1000000);
+        h1.add(h2);
+        assertEquals(100, h1.getCount());
+        assertEquals(1000000L, h1.getMax());
+        assertWithinError(1000L, h1.getPercentile(90));
+        assertWithinError(1000000L, h1.getPercentile(91));
+        assertEquals(10, h2.getCount());
+    }
+
+    public void testSmallAndLargeValues()
+    {
+        LatencyHistogram h = new LatencyHistogram();
+        h.add(-1);
+        h.add(7);
+        h.add(Long.MAX_VALUE);
+        assertEquals(0, h.getPercentile(1));
+        assertEquals(7, h.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+    }
+
+    /** Check that a percentile is not less than the exact value and not
+        larger by more than the interval size of 12.5 percent. */
+    private void assertWithinError(long expected, long value)
+    {
+        assertTrue(value >= expected);
+        assertTrue(value <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,104 @@
+// StringCacheTest.java
+
+package net.sf.gogui.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public final class StringCacheTest
+    extends junit.framework.TestCase
+{
+    public static void main(String[] args)
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(StringCacheTest.class);
+    }
+
+    public void testFile() throws IOException
+    {
+        File file = File.createTempFile("gogui", null);
+        file.delete();
+        file.deleteOnExit();
+        StringCache cache = new StringCache(10, file);
+        cache.put("a", "line 1\nline\t2\\");
+        cache.put("b", "foo");
+        cache.put("a", "bar");
+        cache.close();
+        cache = new StringCache(10, file);
+        assertEquals(2, cache.size());
+        assertEquals("bar", cache.get("a"));
+        assertEquals("foo", cache.get("b"));
+        cache.put("c", "line 1\nline\t2\\");
+        cache.close();
+        cache = new StringCache(10, file);
+        assertEquals("line 1\nline\t2\\", cache.get("c"));
+        cache.close();
+    }
+
+    /** Test that the file does not keep more entries than the cache. */
+    public void testFileCompact() throws IOException
+    {
+        File file = File.createTempFile("gogui", null);
+        file.delete();
+        file.deleteOnExit();
+        StringCache cache = new StringCache(2, file);
+        for (int i = 0; i < 100; ++i)
+            cache.put("key" + i, "value" + i);
+        cache.close();
+        assertTrue(countLines(file) <= 4);
+        cache = new StringCache(2, file);
+        assertEquals(2, countLines(file));
+        assertEquals("value98", cache.get("key98"));
+        assertEquals("value99", cache.get("key99"));
+        cache.close();
+    }
+
+    /** Test that an incomplete last line is ignored.
+        Such a line is left if the program was terminated while appending
+        an entry. */
+    public void testFileIncompleteLine() throws IOException
+    {
+        File file = File.createTempFile("gogui", null);
+        file.delete();
+        file.deleteOnExit();
+        StringCache cache = new StringCache(10, file);
+        cache.put("a", "foo");
+        cache.close();
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("b\tincompl".getBytes("UTF-8"));
+        out.close();
+        cache = new StringCache(10, file);
+        assertEquals(1, cache.size());
+        assertNull(cache.get("b"));
+        cache.put("c", "bar");
+        cache.close();
+        cache = new StringCache(10, file);
+        assertEquals(2, cache.size());
+        assertEquals("foo", cache.get("a"));
+        assertEquals("bar", cache.get("c"));
+        cache.close();
+    }
+
+    public void testLeastRecentlyUsed() throws IOException
+    {
+        StringCache cache = new StringCache(2, null);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    private static int countLines(File file) throws IOException
+    {
+        return FileUtil.readStringListFromFile(file).size();
+    }
+}
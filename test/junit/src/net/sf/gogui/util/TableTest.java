@@ -2,7 +2,9 @@
 
 package net.sf.gogui.util;
 
+import java.io.File;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 
 public final class TableTest
@@ -126,10 +128,136 @@ public final class TableTest
         assertTrue(errorThrown);
     }
 
+    public void testSortByIntColumn() throws Exception
+    {
+        Table table = get("#\n" +
+                          "#Col1\tCol2\n" +
+                          "3\ta\n" +
+                          "1\tb\n" +
+                          "2\tc\n" +
+                          "1\td\n" +
+                          "0\te\n");
+        table.sortByIntColumn("Col1", 0, 4);
+        assertEquals("b", table.get(1, 0));
+        assertEquals("d", table.get(1, 1));
+        assertEquals("c", table.get(1, 2));
+        assertEquals("a", table.get(1, 3));
+        assertEquals("e", table.get(1, 4));
+    }
+
+    /** Test that saving in binary format and reading preserves all
+        elements and properties. */
+    public void testBinary() throws Exception
+    {
+        String text = "# Key: Value\n" +
+            "#\n" +
+            "#String\tInt\tDouble\tMixed\tEmpty\n" +
+            "foo\t1\t1.5\t2\t\n" +
+            "x\t\t-0.25\t2.5\t\n" +
+            "bar\t-7\t3\t01\t\n" +
+            "foo\t2147483647\tNaN\t1.0E10\t\n";
+        Table table = get(text);
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            table.saveBinary(file);
+            Table binaryTable = new Table();
+            binaryTable.read(file);
+            assertEquals("Value", binaryTable.getProperty("Key"));
+            assertEquals(5, binaryTable.getNumberColumns());
+            assertEquals(4, binaryTable.getNumberRows());
+            assertEquals(toString(table), toString(binaryTable));
+            assertEquals(text, toString(binaryTable));
+            table = new Table();
+            table.read(file);
+            assertEquals(text, toString(table));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /** Test that elements of number and string columns are preserved
+        exactly and can be accessed as numbers. */
+    public void testColumnTypes() throws Exception
+    {
+        Table table = get("#\n" +
+                          "#String\tInt\tDouble\tMixed\n" +
+                          "foo\t1\t1.5\t2\n" +
+                          "x\t\t-0.25\t2.50\n" +
+                          "5\t-7\t3\t1e1\n" +
+                          "x\n");
+        assertEquals("1", table.get(1, 0));
+        assertEquals("", table.get(1, 1));
+        assertEquals("-7", table.get(1, 2));
+        assertEquals(-7, table.getInt(1, 2));
+        assertTrue(table.isInt(1, 0));
+        assertFalse(table.isNumber(1, 1));
+        assertNull(table.get(1, 3));
+        assertFalse(table.isNumber(1, 3));
+        assertEquals("1.5", table.get(2, 0));
+        assertEquals("3", table.get(2, 2));
+        assertTrue(table.isInt(2, 2));
+        assertFalse(table.isInt(2, 1));
+        assertEquals(3, table.getInt(2, 2));
+        assertEquals(-0.25, table.getDouble(2, 1), 0);
+        assertEquals("2.50", table.get(3, 1));
+        assertEquals("1e1", table.get(3, 2));
+        assertEquals(2.5, table.getDouble(3, 1), 0);
+        assertTrue(table.isNumber(3, 2));
+        assertFalse(table.isInt(3, 2));
+        assertFalse(table.isNumber(0, 0));
+        assertTrue(table.isInt(0, 2));
+        assertEquals(5, table.getInt(0, 2));
+    }
+
+    /** Test access to numbers in a string column, if the dictionary grows
+        after elements were accessed and if it is read from the binary
+        format. */
+    public void testStringColumnNumbers() throws Exception
+    {
+        ArrayList<String> columnTitles = new ArrayList<String>();
+        columnTitles.add("Mixed");
+        Table table = new Table(columnTitles);
+        table.startRow();
+        table.set(0, "foo");
+        for (int i = 1; i < 100; ++i)
+        {
+            table.startRow();
+            table.set(0, (i % 2 == 0 ? Integer.toString(i) : i + ".5"));
+            assertEquals(i % 2 == 0, table.isInt(0, i));
+            assertTrue(table.isNumber(0, i));
+            assertFalse(table.isNumber(0, 0));
+        }
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            table.saveBinary(file);
+            table = new Table();
+            table.read(file);
+        }
+        finally
+        {
+            file.delete();
+        }
+        assertFalse(table.isNumber(0, 0));
+        assertEquals(98, table.getInt(0, 98));
+        assertEquals(99.5, table.getDouble(0, 99), 0);
+        assertFalse(table.isInt(0, 99));
+    }
+
     private static Table get(String string) throws Exception
     {
         Table table = new Table();
         table.read(new StringReader(string));
         return table;
     }
+
+    private static String toString(Table table) throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        table.save(writer);
+        return writer.toString();
+    }
 }